@@ -0,0 +1,60 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Runs the blocking calls of the service and its backend stores, such as JDBC round trips.
+ * <p>
+ * By default every call gets a virtual thread of its own. A call waiting on the database then
+ * parks its virtual thread rather than holding a pool thread. Concurrency is bounded by the
+ * datasource's connection pool, not by a thread pool that would need tuning. With
+ * {@code bloom.filter.backend.virtual.threads=false}, calls run on the common fork-join pool
+ * as before.
+ */
+@ApplicationScoped
+public class BackendExecutor implements Executor {
+
+    private static final Logger LOG = Logger.getLogger(BackendExecutor.class);
+
+    @ConfigProperty(name = "bloom.filter.backend.virtual.threads", defaultValue = "true")
+    boolean virtualThreads;
+
+    private ExecutorService virtualExecutor;
+
+    @PostConstruct
+    void init() {
+        if (virtualThreads) {
+            virtualExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bloom-filter-backend-", 0).factory());
+        }
+        LOG.infof("Blocking backend calls run on %s", virtualThreads ? "virtual threads" : "the common fork-join pool");
+    }
+
+    @PreDestroy
+    void close() {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (virtualExecutor != null) {
+            virtualExecutor.execute(task);
+        } else {
+            ForkJoinPool.commonPool().execute(task);
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+}
@@ -16,11 +16,38 @@ public interface BackendStore {
     CompletableFuture<Boolean> contains(String item);
     
     /**
-     * Store an item in the backend store
+     * Store an item in the backend store, to be kept until removed
      * @param item The item to store
      * @return CompletableFuture that completes when the item is stored
      */
-    CompletableFuture<Void> store(String item);
+    default CompletableFuture<Void> store(String item) {
+        return store(item, 0);
+    }
+    
+    /**
+     * Store an item that expires at {@code expiresAt}. Storing an item that is already stored is
+     * not an error; it replaces the item's expiry.
+     * @param item The item to store
+     * @param expiresAt Epoch millis from which {@link #contains} no longer reports the item, or 0
+     *                  to keep it until removed
+     * @return CompletableFuture that completes when the item is stored
+     */
+    CompletableFuture<Void> store(String item, long expiresAt);
+    
+    /**
+     * Delete the items that expired by {@code now}. Expired items are never reported by
+     * {@link #contains}, so this only gives back their space.
+     * @param now Epoch millis
+     * @return CompletableFuture that completes with the number of items deleted
+     */
+    CompletableFuture<Long> purgeExpired(long now);
+    
+    /**
+     * Remove an item from the backend store
+     * @param item The item to remove
+     * @return CompletableFuture that completes with true if the item was stored, false otherwise
+     */
+    CompletableFuture<Boolean> remove(String item);
     
     /**
      * Get the total number of items stored
@@ -3,29 +3,38 @@ package com.chinthakad.statemachine.bloomfilter;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
 
 /**
- * Configuration class for selecting the appropriate backend store
+ * Configuration class for selecting the appropriate backend store.
+ * <p>
+ * The implementations are beans of their own class only (see their {@code @Typed}), so this
+ * producer is the single {@link BackendStore}. They are injected as client proxies and only
+ * initialized when used, so the stores that were not selected never open files or connections.
  */
 @ApplicationScoped
 public class BackendStoreConfig {
-    
+
+    private static final Logger LOG = Logger.getLogger(BackendStoreConfig.class);
+
     @ConfigProperty(name = "bloom.filter.backend.store", defaultValue = "in-memory")
     String backendStoreType;
-    
+
     @Produces
     @ApplicationScoped
-    public BackendStore backendStore(InMemoryBackendStore inMemoryStore, 
-                                   PostgreSQLBackendStore postgresStore) {
+    public BackendStore backendStore(InMemoryBackendStore inMemoryStore,
+                                   PostgreSQLBackendStore postgresStore,
+                                   MappedFileBackendStore mappedFileStore,
+                                   PartitionedPostgreSQLBackendStore partitionedPostgresStore) {
         return switch (backendStoreType.toLowerCase()) {
             case "postgresql", "postgres" -> postgresStore;
+            case "postgresql-partitioned", "postgres-partitioned" -> partitionedPostgresStore;
+            case "mapped", "mmap" -> mappedFileStore;
             case "in-memory", "memory" -> inMemoryStore;
             default -> {
-                System.out.println("Unknown backend store type: " + backendStoreType + 
-                                 ". Defaulting to in-memory store.");
+                LOG.warnf("Unknown backend store type: %s. Defaulting to in-memory store.", backendStoreType);
                 yield inMemoryStore;
             }
         };
     }
 }
-
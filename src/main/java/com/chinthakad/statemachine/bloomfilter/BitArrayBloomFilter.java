@@ -0,0 +1,174 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over a plain array of 64-bit words that remembers which words changed, so its
+ * changes can be shipped to other replicas and OR-ed into their copies.
+ * <p>
+ * Sizing and hashing follow Guava's BloomFilter (murmur3_128, double hashing), so the false
+ * positive rate matches the {@link BloomMembershipFilter} it stands in for. A second bitmap holds
+ * one dirty bit per word; {@link #drainChangedWords} clears it while reading, and words merged
+ * from peers are not marked, so replicas never echo each other's changes back. Bits are only
+ * ever set, which makes merging idempotent and order-independent.
+ */
+public class BitArrayBloomFilter implements MembershipFilter {
+
+    private final AtomicLongArray words;
+    private final AtomicLongArray dirty;
+    private final long bitSize;
+    private final int numHashFunctions;
+
+    public BitArrayBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / FilterNamespace.LN2_SQUARED);
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE));
+        this.words = new AtomicLongArray(wordCount);
+        this.dirty = new AtomicLongArray((wordCount + Long.SIZE - 1) / Long.SIZE);
+        this.bitSize = (long) wordCount * Long.SIZE;
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+    }
+
+    @Override
+    public boolean mightContain(String item) {
+        long[] hash = hash(item);
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitSize;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    @Override
+    public boolean put(String item) {
+        long[] hash = hash(item);
+        long combined = hash[0];
+        for (int i = 0; i < numHashFunctions; i++) {
+            long bit = (combined & Long.MAX_VALUE) % bitSize;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.getAndUpdate(index, word -> word | mask) & mask) == 0) {
+                markDirty(index);
+            }
+            combined += hash[1];
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(String item) {
+        throw new UnsupportedOperationException("Bloom filters do not support removal");
+    }
+
+    @Override
+    public boolean supportsRemoval() {
+        return false;
+    }
+
+    /**
+     * Estimated from the fraction of bits set, as Guava does.
+     */
+    @Override
+    public long approximateElementCount() {
+        long setBits = 0;
+        for (int i = 0; i < words.length(); i++) {
+            setBits += Long.bitCount(words.get(i));
+        }
+        double fractionSet = (double) setBits / bitSize;
+        return Math.round(-Math.log1p(-fractionSet) * bitSize / numHashFunctions);
+    }
+
+    @Override
+    public String getName() {
+        return "BitArrayBloom";
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    /**
+     * Hand every word changed by {@link #put} since the last drain to {@code sink}, in index
+     * order, and forget that it changed. A word changed again while draining is either included
+     * now or reported by the next drain.
+     */
+    public void drainChangedWords(WordSink sink) {
+        for (int block = 0; block < dirty.length(); block++) {
+            if (dirty.get(block) == 0) {
+                continue;
+            }
+            long marks = dirty.getAndSet(block, 0);
+            while (marks != 0) {
+                int index = block * Long.SIZE + Long.numberOfTrailingZeros(marks);
+                sink.accept(index, words.get(index));
+                marks &= marks - 1;
+            }
+        }
+    }
+
+    /**
+     * Hand every word with a bit set to {@code sink}, in index order, without touching the dirty
+     * marks. For sending the whole filter to a peer that missed deltas.
+     */
+    public void forEachSetWord(WordSink sink) {
+        for (int index = 0; index < words.length(); index++) {
+            long word = words.get(index);
+            if (word != 0) {
+                sink.accept(index, word);
+            }
+        }
+    }
+
+    /**
+     * Mark a word as changed again, so the next {@link #drainChangedWords} reports it; used when
+     * a delta holding it could not be delivered.
+     */
+    public void markChanged(int index) {
+        markDirty(index);
+    }
+
+    /**
+     * OR a word received from a peer into this filter.
+     * @throws IndexOutOfBoundsException if the peer's filter is larger than this one
+     */
+    public void mergeWord(int index, long word) {
+        if (word != 0) {
+            words.getAndUpdate(index, current -> current | word);
+        }
+    }
+
+    public int getWordCount() {
+        return words.length();
+    }
+
+    private void markDirty(int index) {
+        long mark = 1L << index;
+        int block = index >>> 6;
+        if ((dirty.get(block) & mark) == 0) {
+            dirty.getAndUpdate(block, marks -> marks | mark);
+        }
+    }
+
+    private static long[] hash(String item) {
+        ByteBuffer bytes = ByteBuffer.wrap(Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8).asBytes())
+            .order(ByteOrder.LITTLE_ENDIAN);
+        return new long[] {bytes.getLong(), bytes.getLong()};
+    }
+
+    @FunctionalInterface
+    public interface WordSink {
+        void accept(int index, long word);
+    }
+}
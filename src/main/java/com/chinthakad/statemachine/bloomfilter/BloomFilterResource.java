@@ -1,19 +1,29 @@
 package com.chinthakad.statemachine.bloomfilter;
 
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import io.smallrye.common.annotation.RunOnVirtualThread;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.jboss.logging.Logger;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
- * REST API endpoint for bloom filter duplicate detection
+ * REST API endpoint for bloom filter duplicate detection.
+ * <p>
+ * Requests run on virtual threads, so checks call the service synchronously. A check waiting on
+ * the backend store parks its virtual thread instead of holding a worker thread.
  */
 @Path("/bloom-filter")
+@RunOnVirtualThread
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class BloomFilterResource {
@@ -39,10 +49,7 @@ public class BloomFilterResource {
                     .build();
             }
             
-            CompletableFuture<BloomFilterService.DuplicateCheckResult> future = 
-                bloomFilterService.checkAndStore(item);
-            
-            BloomFilterService.DuplicateCheckResult result = future.get();
+            BloomFilterService.DuplicateCheckResult result = bloomFilterService.checkAndStoreNow(item);
             
             Map<String, Object> response = Map.of(
                 "item", item,
@@ -67,14 +74,12 @@ public class BloomFilterResource {
      */
     @POST
     @Path("/check-random")
+    @Consumes(MediaType.WILDCARD) // Takes no body, so callers need not send a content type
     public Response checkRandomDuplicate() {
         try {
             String randomUuid = UUID.randomUUID().toString();
             
-            CompletableFuture<BloomFilterService.DuplicateCheckResult> future = 
-                bloomFilterService.checkAndStore(randomUuid);
-            
-            BloomFilterService.DuplicateCheckResult result = future.get();
+            BloomFilterService.DuplicateCheckResult result = bloomFilterService.checkAndStoreNow(randomUuid);
             
             Map<String, Object> response = Map.of(
                 "item", randomUuid,
@@ -106,15 +111,7 @@ public class BloomFilterResource {
             
             BloomFilterService.BloomFilterStats stats = future.get();
             
-            Map<String, Object> response = Map.of(
-                "expectedInsertions", stats.getExpectedInsertions(),
-                "falsePositiveRate", stats.getFalsePositiveRate(),
-                "backendCount", stats.getBackendCount(),
-                "approximateElementCount", stats.getApproximateElementCount(),
-                "backendStoreName", stats.getBackendStoreName()
-            );
-            
-            return Response.ok(response).build();
+            return Response.ok(describe(stats)).build();
             
         } catch (Exception e) {
             LOG.errorf(e, "Error getting bloom filter stats");
@@ -145,9 +142,249 @@ public class BloomFilterResource {
         }
     }
     
+    /**
+     * Remove a single item. "clear" is matched by {@link #clear()} instead.
+     * @param item The item to remove
+     * @return Response indicating whether the item was stored
+     */
+    @DELETE
+    @Path("/{item}")
+    public Response remove(@PathParam("item") String item) {
+        try {
+            boolean removed = bloomFilterService.remove(item).get();
+            if (!removed) {
+                return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("error", "Item not found: " + item))
+                    .build();
+            }
+            return Response.ok(Map.of("item", item, "removed", true)).build();
+            
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getCause().getMessage()))
+                    .build();
+            }
+            LOG.errorf(e, "Error removing item: %s", item);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error removing item: %s", item);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        }
+    }
+    
+    /**
+     * Check if an item is a duplicate within a namespace
+     * @param namespace A configured namespace
+     * @param request The request containing the item to check
+     * @return Response with duplicate check result, or 404 for an unknown namespace
+     */
+    @POST
+    @Path("/{namespace}/check")
+    public Response checkDuplicate(@PathParam("namespace") String namespace, DuplicateCheckRequest request) {
+        if (!bloomFilterService.hasNamespace(namespace)) {
+            return unknownNamespace(namespace);
+        }
+        try {
+            String item = request.getItem();
+            if (item == null || item.trim().isEmpty()) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Item cannot be null or empty"))
+                    .build();
+            }
+            
+            BloomFilterService.DuplicateCheckResult result = bloomFilterService.checkAndStoreNow(namespace, item);
+            
+            Map<String, Object> response = Map.of(
+                "namespace", namespace,
+                "item", item,
+                "isDuplicate", result.isDuplicate(),
+                "wasFalsePositive", result.wasFalsePositive(),
+                "message", result.getMessage()
+            );
+            
+            return Response.ok(response).build();
+            
+        } catch (Exception e) {
+            LOG.errorf(e, "Error checking duplicate in %s for request: %s", namespace, request);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        }
+    }
+    
+    /**
+     * Get the statistics of one namespace
+     * @param namespace A configured namespace
+     * @return Response with the namespace's stats, or 404 for an unknown namespace
+     */
+    @GET
+    @Path("/{namespace}/stats")
+    public Response getStats(@PathParam("namespace") String namespace) {
+        if (!bloomFilterService.hasNamespace(namespace)) {
+            return unknownNamespace(namespace);
+        }
+        try {
+            return Response.ok(describe(bloomFilterService.getStats(namespace).get())).build();
+            
+        } catch (Exception e) {
+            LOG.errorf(e, "Error getting stats of namespace %s", namespace);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        }
+    }
+    
+    /**
+     * List the namespaces with their sizing and the shared memory budget
+     * @return Response with the budget, memory in use and one entry per namespace
+     */
+    @GET
+    @Path("/namespaces")
+    public Response getNamespaces() {
+        FilterNamespaces namespaces = bloomFilterService.getNamespaces();
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (FilterNamespace namespace : namespaces.all()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("namespace", namespace.getName());
+            entry.put("filterName", namespace.getFilterName());
+            entry.put("expectedInsertions", namespace.getExpectedInsertions());
+            entry.put("falsePositiveRate", namespace.getFalsePositiveRate());
+            entry.put("ttlMillis", namespace.getTtlMillis());
+            entry.put("replicated", namespace.isReplicated());
+            entry.put("capacity", namespace.getCapacity());
+            entry.put("approximateElementCount", namespace.approximateElementCount());
+            entry.put("memoryBytes", namespace.getMemoryBytes());
+            entries.add(entry);
+        }
+        return Response.ok(Map.of(
+            "budgetBytes", namespaces.getBudgetBytes(),
+            "usedBytes", namespaces.getUsedBytes(),
+            "namespaces", entries
+        )).build();
+    }
+    
+    /**
+     * Remove a single item from a namespace
+     * @param namespace A configured namespace
+     * @param item The item to remove
+     * @return Response indicating whether the item was stored
+     */
+    @DELETE
+    @Path("/{namespace}/{item}")
+    public Response remove(@PathParam("namespace") String namespace, @PathParam("item") String item) {
+        if (!bloomFilterService.hasNamespace(namespace)) {
+            return unknownNamespace(namespace);
+        }
+        try {
+            boolean removed = bloomFilterService.remove(namespace, item).get();
+            if (!removed) {
+                return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("error", "Item not found: " + item))
+                    .build();
+            }
+            return Response.ok(Map.of("namespace", namespace, "item", item, "removed", true)).build();
+            
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", e.getCause().getMessage()))
+                    .build();
+            }
+            LOG.errorf(e, "Error removing item %s from %s", item, namespace);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        } catch (Exception e) {
+            LOG.errorf(e, "Error removing item %s from %s", item, namespace);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                .entity(Map.of("error", "Internal server error: " + e.getMessage()))
+                .build();
+        }
+    }
+    
+    /**
+     * Receive a filter delta from a peer replica
+     * @param secret The replicas' shared secret
+     * @param delta The encoded delta
+     * @return 202 once handed to the replicator, 403 without the shared secret, 404 if
+     * replication is disabled
+     */
+    @POST
+    @Path("/replication/delta")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response receiveDelta(@HeaderParam(HttpReplicationTransport.SECRET_HEADER) String secret, byte[] delta) {
+        if (bloomFilterService.getReplicator() == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                .entity(Map.of("error", "Replication is disabled"))
+                .build();
+        }
+        if (!bloomFilterService.isReplicationPeer(secret)) {
+            LOG.warn("Rejected a filter delta without the replication secret");
+            return Response.status(Response.Status.FORBIDDEN)
+                .entity(Map.of("error", "Missing or wrong " + HttpReplicationTransport.SECRET_HEADER))
+                .build();
+        }
+        bloomFilterService.receiveDelta(delta);
+        return Response.accepted().build();
+    }
+    
+    /**
+     * Get replication counters of this replica
+     * @return Response with the node id and delta counts, 404 if replication is disabled
+     */
+    @GET
+    @Path("/replication/stats")
+    public Response getReplicationStats() {
+        FilterReplicator replicator = bloomFilterService.getReplicator();
+        if (replicator == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                .entity(Map.of("error", "Replication is disabled"))
+                .build();
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("nodeId", replicator.getNodeId());
+        response.put("transport", replicator.getTransportName());
+        response.put("sentDeltas", replicator.getSentDeltas());
+        response.put("sentBytes", replicator.getSentBytes());
+        response.put("sentWords", replicator.getSentWords());
+        response.put("failedDeltas", replicator.getFailedDeltas());
+        response.put("fullSyncs", replicator.getFullSyncs());
+        response.put("receivedDeltas", replicator.getReceivedDeltas());
+        response.put("mergedWords", replicator.getMergedWords());
+        response.put("rejectedDeltas", replicator.getRejectedDeltas());
+        return Response.ok(response).build();
+    }
+    
+    private static Map<String, Object> describe(BloomFilterService.BloomFilterStats stats) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("namespace", stats.getNamespace());
+        response.put("expectedInsertions", stats.getExpectedInsertions());
+        response.put("falsePositiveRate", stats.getFalsePositiveRate());
+        response.put("backendCount", stats.getBackendCount());
+        response.put("approximateElementCount", stats.getApproximateElementCount());
+        response.put("backendStoreName", stats.getBackendStoreName());
+        response.put("filterName", stats.getFilterName());
+        response.put("capacity", stats.getCapacity());
+        response.put("memoryBytes", stats.getMemoryBytes());
+        response.put("ttlMillis", stats.getTtlMillis());
+        return response;
+    }
+    
+    private static Response unknownNamespace(String namespace) {
+        return Response.status(Response.Status.NOT_FOUND)
+            .entity(Map.of("error", "Unknown namespace: " + namespace))
+            .build();
+    }
+    
     /**
      * Request model for duplicate check
      */
+    @RegisterForReflection
     public static class DuplicateCheckRequest {
         private String item;
         
@@ -1,22 +1,41 @@
 package com.chinthakad.statemachine.bloomfilter;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
 import io.quarkus.cache.Cache;
 import io.quarkus.cache.CacheName;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 /**
  * Bloom Filter Service that combines:
- * 1. Google Guava Bloom Filter for fast duplicate detection
+ * 1. A membership filter (Guava Bloom filter or cuckoo filter) for fast duplicate detection
  * 2. In-memory cache for false positive verification
  * 3. Pluggable backend store for persistence
+ * <p>
+ * Filters are kept per namespace (see {@link FilterNamespace}), so each use case gets its own
+ * sizing, false positive rate and expiry under a shared memory budget. The cache and backend
+ * store are shared, with items prefixed by their namespace. The "default" namespace is configured
+ * by the plain bloom.filter.* properties and stores items unprefixed. Backend entries expire with
+ * their namespace's TTL; expired ones are purged every bloom.filter.purge.interval.seconds, and a
+ * namespace's cached answers are dropped whenever its filter rotates.
+ * <p>
+ * With bloom.filter.replication.enabled, Bloom namespaces exchange filter deltas with the
+ * replicas listed in bloom.filter.replication.peers, see {@link FilterReplicator}.
  */
 @ApplicationScoped
 public class BloomFilterService {
@@ -30,7 +49,19 @@ public class BloomFilterService {
     @Inject
     BackendStore backendStore;
     
-    private BloomFilter<String> bloomFilter;
+    @Inject
+    BackendExecutor backendExecutor;
+    
+    public static final String DEFAULT_NAMESPACE = "default";
+    private static final Pattern NAMESPACE_NAME = Pattern.compile("[a-z0-9][a-z0-9_-]*");
+    
+    @Inject
+    Config config;
+    
+    private FilterNamespaces namespaces;
+    private ScheduledExecutorService scheduler;
+    private HttpReplicationTransport replicationTransport;
+    private FilterReplicator replicator;
     
     @ConfigProperty(name = "bloom.filter.expected.insertions", defaultValue = "1000000")
     long expectedInsertions;
@@ -38,13 +69,156 @@ public class BloomFilterService {
     @ConfigProperty(name = "bloom.filter.false.positive.rate", defaultValue = "0.01")
     double falsePositiveRate;
     
-    public BloomFilterService() {
-        // Initialize bloom filter with default values
-        this.bloomFilter = BloomFilter.create(
-            Funnels.stringFunnel(StandardCharsets.UTF_8),
-            expectedInsertions,
-            falsePositiveRate
-        );
+    @ConfigProperty(name = "bloom.filter.type", defaultValue = "bloom")
+    String filterType;
+    
+    // 0 keeps items until the filter is cleared
+    @ConfigProperty(name = "bloom.filter.ttl.minutes", defaultValue = "0")
+    long ttlMinutes;
+    
+    @ConfigProperty(name = "bloom.filter.namespaces")
+    Optional<List<String>> namespaceNames;
+    
+    @ConfigProperty(name = "bloom.filter.memory.budget.mb", defaultValue = "256")
+    long memoryBudgetMb;
+    
+    @ConfigProperty(name = "bloom.filter.purge.interval.seconds", defaultValue = "60")
+    long purgeIntervalSeconds;
+    
+    @ConfigProperty(name = "bloom.filter.replication.enabled", defaultValue = "false")
+    boolean replicationEnabled;
+    
+    // Base URLs of the other replicas
+    @ConfigProperty(name = "bloom.filter.replication.peers")
+    Optional<List<String>> replicationPeers;
+    
+    @ConfigProperty(name = "bloom.filter.replication.interval.ms", defaultValue = "1000")
+    long replicationIntervalMillis;
+    
+    // Whole filters are sent this often, for peers that restarted or missed deltas
+    @ConfigProperty(name = "bloom.filter.replication.full.sync.seconds", defaultValue = "300")
+    long fullSyncSeconds;
+    
+    @ConfigProperty(name = "bloom.filter.replication.node.id")
+    Optional<String> nodeId;
+    
+    // Peers must send it with every delta; required once replication is enabled
+    @ConfigProperty(name = "bloom.filter.replication.secret")
+    Optional<String> replicationSecret;
+    
+    @PostConstruct
+    void init() {
+        // Created once config is injected; in a constructor the fields are still zero
+        List<FilterNamespace> configured = new ArrayList<>();
+        configured.add(new FilterNamespace(DEFAULT_NAMESPACE, filterType(filterType), expectedInsertions,
+            falsePositiveRate, TimeUnit.MINUTES.toMillis(ttlMinutes), "", replicationEnabled));
+        for (String name : namespaceNames.orElse(List.of())) {
+            configured.add(configureNamespace(name.trim()));
+        }
+        this.namespaces = new FilterNamespaces(configured, memoryBudgetMb * 1024 * 1024);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bloom-filter-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rotateDue, 1, 1, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, purgeIntervalSeconds, purgeIntervalSeconds, TimeUnit.SECONDS);
+        if (replicationEnabled) {
+            String secret = replicationSecret.filter(value -> !value.isBlank()).orElseThrow(() ->
+                new IllegalStateException("bloom.filter.replication.secret must be set when replication is enabled"));
+            replicationTransport = new HttpReplicationTransport(replicationPeers.orElse(List.of()),
+                Duration.ofMillis(Math.max(1000, replicationIntervalMillis)), secret);
+            replicator = new FilterReplicator(namespaces, replicationTransport, nodeId.orElse(UUID.randomUUID().toString()));
+            scheduler.scheduleWithFixedDelay(this::publishDeltas, replicationIntervalMillis, replicationIntervalMillis,
+                TimeUnit.MILLISECONDS);
+            scheduler.scheduleWithFixedDelay(this::publishFull, fullSyncSeconds, fullSyncSeconds, TimeUnit.SECONDS);
+            LOG.infof("Replicating filters as %s to %s", replicator.getNodeId(), replicationPeers.orElse(List.of()));
+        }
+    }
+    
+    @PreDestroy
+    void close() {
+        scheduler.shutdownNow();
+    }
+    
+    private void rotateDue() {
+        try {
+            for (FilterNamespace rotated : namespaces.rotateDue(System.currentTimeMillis())) {
+                // The filter forgot a generation; cached answers must not remember it for longer
+                cache.invalidateIf(key -> namespaces.ownerOf((String) key) == rotated).await().indefinitely();
+            }
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error rotating filter generations");
+        }
+    }
+    
+    private void purgeExpired() {
+        try {
+            long purged = backendStore.purgeExpired(System.currentTimeMillis()).join();
+            if (purged > 0) {
+                LOG.debugf("Purged %d expired items from %s", purged, backendStore.getName());
+            }
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error purging expired items");
+        }
+    }
+    
+    private void publishDeltas() {
+        try {
+            replicator.publish();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error publishing filter deltas");
+        }
+    }
+    
+    private void publishFull() {
+        try {
+            replicator.publishFull();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error publishing full filters");
+        }
+    }
+    
+    /**
+     * Settings under bloom.filter.namespace.{name}.*, each falling back to the global one.
+     */
+    private FilterNamespace configureNamespace(String name) {
+        if (!NAMESPACE_NAME.matcher(name).matches() || name.equals(DEFAULT_NAMESPACE)) {
+            throw new IllegalArgumentException("Invalid namespace name: " + name);
+        }
+        String prefix = "bloom.filter.namespace." + name + ".";
+        return new FilterNamespace(
+            name,
+            filterType(config.getOptionalValue(prefix + "type", String.class).orElse(filterType)),
+            config.getOptionalValue(prefix + "expected.insertions", Long.class).orElse(expectedInsertions),
+            config.getOptionalValue(prefix + "false.positive.rate", Double.class).orElse(falsePositiveRate),
+            TimeUnit.MINUTES.toMillis(config.getOptionalValue(prefix + "ttl.minutes", Long.class).orElse(ttlMinutes)),
+            name + ":",
+            config.getOptionalValue(prefix + "replicated", Boolean.class).orElse(replicationEnabled));
+    }
+    
+    private static String filterType(String type) {
+        String normalized = type.toLowerCase();
+        if (!normalized.equals("bloom") && !normalized.equals("cuckoo")) {
+            LOG.warnf("Unknown filter type: %s. Defaulting to bloom filter.", type);
+            return "bloom";
+        }
+        return normalized;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    private FilterNamespace namespace(String name) {
+        FilterNamespace namespace = namespaces.get(name);
+        if (namespace == null) {
+            throw new IllegalArgumentException("Unknown namespace: " + name);
+        }
+        return namespace;
+    }
+    
+    public boolean hasNamespace(String name) {
+        return namespaces.get(name) != null;
     }
     
     /**
@@ -53,45 +227,123 @@ public class BloomFilterService {
      * @return CompletableFuture with DuplicateCheckResult
      */
     public CompletableFuture<DuplicateCheckResult> checkAndStore(String item) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                // First, check the bloom filter
-                boolean mightContain = bloomFilter.mightContain(item);
+        return checkAndStore(DEFAULT_NAMESPACE, item);
+    }
+    
+    public CompletableFuture<DuplicateCheckResult> checkAndStore(String namespace, String item) {
+        return CompletableFuture.supplyAsync(() -> checkAndStoreNow(namespace, item), backendExecutor);
+    }
+    
+    public DuplicateCheckResult checkAndStoreNow(String item) {
+        return checkAndStoreNow(DEFAULT_NAMESPACE, item);
+    }
+    
+    /**
+     * Synchronous variant of {@link #checkAndStore(String, String)} for callers that are already on a
+     * worker or virtual thread, such as the Kafka consumer and the REST endpoints. New items cost a single bloom filter probe
+     * plus the store; only probable duplicates go through the cache and backend.
+     * @param namespace The namespace to check in
+     * @param item The item to check
+     * @return DuplicateCheckResult
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    public DuplicateCheckResult checkAndStoreNow(String namespace, String item) {
+        FilterNamespace current = namespace(namespace);
+        String key = current.backendKey(item);
+        DedupLookupEvent jfr = new DedupLookupEvent();
+        boolean timed = jfr.isEnabled();
+        jfr.begin();
+        boolean mightContain = false;
+        boolean[] cacheMiss = {false};
+        long backendNanos = 0;
+        DuplicateCheckResult result = null;
+        try {
+            // First, check the bloom filter
+            mightContain = current.mightContain(item);
+            
+            if (!mightContain) {
+                // Bloom filter says it's definitely new
+                current.put(item);
+                long started = timed ? System.nanoTime() : 0;
+                backendStore.store(key, current.expiresAt(System.currentTimeMillis())).join();
+                backendNanos += timed ? System.nanoTime() - started : 0;
+                cache.invalidate(key).await().indefinitely();
                 
-                if (!mightContain) {
-                    // Bloom filter says it's definitely new
-                    bloomFilter.put(item);
-                    backendStore.store(item).join();
-                    cache.invalidate(item).await().indefinitely();
-                    
-                    LOG.debugf("Item %s is new (bloom filter)", item);
-                    return new DuplicateCheckResult(false, false, "New item");
+                LOG.debugf("Item %s is new (bloom filter)", item);
+                result = new DuplicateCheckResult(false, false, "New item");
+            } else {
+                // Bloom filter says it might be a duplicate - check cache first
+                long started = timed ? System.nanoTime() : 0;
+                Boolean cacheResult = cache.get(key, k -> {
+                    // Cache miss - check backend store
+                    cacheMiss[0] = true;
+                    return backendStore.contains(k).join();
+                }).await().indefinitely();
+                if (cacheMiss[0]) {
+                    backendNanos += timed ? System.nanoTime() - started : 0;
+                }
+                
+                if (cacheResult != null && cacheResult) {
+                    // Confirmed duplicate in cache/backend
+                    LOG.debugf("Item %s is confirmed duplicate (cache/backend)", item);
+                    result = new DuplicateCheckResult(true, false, "Confirmed duplicate");
                 } else {
-                    // Bloom filter says it might be a duplicate - check cache first
-                    Boolean cacheResult = cache.get(item, key -> {
-                        // Cache miss - check backend store
-                        return backendStore.contains(key).join();
-                    }).await().indefinitely();
+                    // False positive - item is actually new
+                    current.put(item);
+                    started = timed ? System.nanoTime() : 0;
+                    backendStore.store(key, current.expiresAt(System.currentTimeMillis())).join();
+                    backendNanos += timed ? System.nanoTime() - started : 0;
+                    cache.invalidate(key).await().indefinitely();
                     
-                    if (cacheResult != null && cacheResult) {
-                        // Confirmed duplicate in cache/backend
-                        LOG.debugf("Item %s is confirmed duplicate (cache/backend)", item);
-                        return new DuplicateCheckResult(true, false, "Confirmed duplicate");
-                    } else {
-                        // False positive - item is actually new
-                        bloomFilter.put(item);
-                        backendStore.store(item).join();
-                        cache.invalidate(item).await().indefinitely();
-                        
-                        LOG.debugf("Item %s is new (false positive resolved)", item);
-                        return new DuplicateCheckResult(false, true, "New item (false positive resolved)");
-                    }
+                    LOG.debugf("Item %s is new (false positive resolved)", item);
+                    result = new DuplicateCheckResult(false, true, "New item (false positive resolved)");
                 }
-            } catch (Exception e) {
-                LOG.errorf(e, "Error checking duplicate for item: %s", item);
-                return new DuplicateCheckResult(false, false, "Error: " + e.getMessage());
             }
-        });
+        } catch (Exception e) {
+            LOG.errorf(e, "Error checking duplicate for item: %s", item);
+            result = new DuplicateCheckResult(false, false, "Error: " + e.getMessage());
+        } finally {
+            jfr.end();
+            if (jfr.shouldCommit()) {
+                jfr.item = item;
+                jfr.namespace = current.getName();
+                jfr.filter = current.getFilterName();
+                jfr.backendStore = backendStore.getName();
+                jfr.filterHit = mightContain;
+                jfr.cacheHit = mightContain && !cacheMiss[0];
+                jfr.duplicate = result != null && result.isDuplicate();
+                jfr.backendLatency = backendNanos;
+                jfr.commit();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Whether an item was stored before, without storing it. Together with {@link #storeNow} this
+     * lets a caller mark an item only once the work it guards has succeeded; the caller must
+     * serialize both calls for the same item.
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    public boolean containsNow(String namespace, String item) {
+        FilterNamespace current = namespace(namespace);
+        if (!current.mightContain(item)) {
+            return false;
+        }
+        Boolean stored = cache.get(current.backendKey(item), k -> backendStore.contains(k).join()).await().indefinitely();
+        return stored != null && stored;
+    }
+    
+    /**
+     * Store an item in the filter and backend store, see {@link #containsNow}.
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    public void storeNow(String namespace, String item) {
+        FilterNamespace current = namespace(namespace);
+        String key = current.backendKey(item);
+        current.put(item);
+        backendStore.store(key, current.expiresAt(System.currentTimeMillis())).join();
+        cache.invalidate(key).await().indefinitely();
     }
     
     /**
@@ -99,36 +351,111 @@ public class BloomFilterService {
      * @return CompletableFuture with BloomFilterStats
      */
     public CompletableFuture<BloomFilterStats> getStats() {
+        return getStats(DEFAULT_NAMESPACE);
+    }
+    
+    /**
+     * Statistics of one namespace. The backend count covers all namespaces, which share the store.
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    public CompletableFuture<BloomFilterStats> getStats(String namespace) {
+        FilterNamespace current = namespace(namespace);
         return CompletableFuture.supplyAsync(() -> {
             try {
                 long backendCount = backendStore.getCount().join();
                 return new BloomFilterStats(
-                    expectedInsertions,
-                    falsePositiveRate,
+                    current.getExpectedInsertions(),
+                    current.getFalsePositiveRate(),
                     backendCount,
-                    bloomFilter.approximateElementCount(),
-                    backendStore.getName()
+                    current.approximateElementCount(),
+                    backendStore.getName(),
+                    current.getFilterName(),
+                    current.getName(),
+                    current.getCapacity(),
+                    current.getMemoryBytes(),
+                    current.getTtlMillis()
                 );
             } catch (Exception e) {
                 LOG.errorf(e, "Error getting bloom filter stats");
                 throw new RuntimeException("Failed to get stats", e);
             }
+        }, backendExecutor);
+    }
+    
+    /**
+     * @return Every namespace with its current sizing
+     */
+    public FilterNamespaces getNamespaces() {
+        return namespaces;
+    }
+    
+    /**
+     * @return The replicator, or null if replication is disabled
+     */
+    public FilterReplicator getReplicator() {
+        return replicator;
+    }
+    
+    /**
+     * @param secret The secret a peer sent along with a delta, may be null
+     * @return Whether it is the replicas' shared secret; false if replication is disabled
+     */
+    public boolean isReplicationPeer(String secret) {
+        return replicationTransport != null && replicationTransport.authenticates(secret);
+    }
+    
+    /**
+     * Hand a delta posted by a peer to the replicator. Deltas that do not fit are counted as
+     * rejected in the replication stats.
+     * @throws IllegalStateException if replication is disabled
+     */
+    public void receiveDelta(byte[] delta) {
+        if (replicationTransport == null) {
+            throw new IllegalStateException("Replication is disabled");
+        }
+        replicationTransport.receive(delta);
+    }
+    
+    public CompletableFuture<Boolean> remove(String item) {
+        return remove(DEFAULT_NAMESPACE, item);
+    }
+    
+    /**
+     * Remove a single item from the filter, cache and backend store.
+     * The filter entry is only removed if the backend confirms the item was stored, since removing
+     * a fingerprint that was never added could evict another item's entry.
+     * @param namespace The namespace to remove from
+     * @param item The item to remove
+     * @return CompletableFuture with true if the item was stored, failing with
+     *         UnsupportedOperationException if the namespace's filter cannot remove entries
+     * @throws IllegalArgumentException if the namespace is not configured
+     */
+    public CompletableFuture<Boolean> remove(String namespace, String item) {
+        FilterNamespace current = namespace(namespace);
+        if (!current.supportsRemoval()) {
+            return CompletableFuture.failedFuture(new UnsupportedOperationException(
+                current.getFilterName() + " filter does not support removal; set bloom.filter.type=cuckoo"));
+        }
+        String key = current.backendKey(item);
+        return backendStore.remove(key).thenApply(removed -> {
+            if (removed) {
+                current.remove(item);
+            }
+            cache.invalidate(key).await().indefinitely();
+            LOG.debugf("Item %s removed: %s", item, removed);
+            return removed;
         });
     }
     
     /**
-     * Clear all data (bloom filter, cache, and backend store)
+     * Clear all data (every namespace's filters, cache, and backend store)
      * @return CompletableFuture that completes when cleared
      */
     public CompletableFuture<Void> clear() {
         return CompletableFuture.runAsync(() -> {
             try {
-                // Create a new bloom filter
-                this.bloomFilter = BloomFilter.create(
-                    Funnels.stringFunnel(StandardCharsets.UTF_8),
-                    expectedInsertions,
-                    falsePositiveRate
-                );
+                // Start every namespace over with fresh filters
+                namespaces.resetAll();
                 
                 // Clear backend store
                 backendStore.clear().join();
@@ -141,7 +468,7 @@ public class BloomFilterService {
                 LOG.errorf(e, "Error clearing bloom filter system");
                 throw new RuntimeException("Failed to clear system", e);
             }
-        });
+        }, backendExecutor);
     }
     
     /**
@@ -180,14 +507,26 @@ public class BloomFilterService {
         private final long backendCount;
         private final long approximateElementCount;
         private final String backendStoreName;
+        private final String filterName;
+        private final String namespace;
+        private final long capacity;
+        private final long memoryBytes;
+        private final long ttlMillis;
         
         public BloomFilterStats(long expectedInsertions, double falsePositiveRate, 
-                              long backendCount, long approximateElementCount, String backendStoreName) {
+                              long backendCount, long approximateElementCount, String backendStoreName,
+                              String filterName, String namespace, long capacity, long memoryBytes,
+                              long ttlMillis) {
             this.expectedInsertions = expectedInsertions;
             this.falsePositiveRate = falsePositiveRate;
             this.backendCount = backendCount;
             this.approximateElementCount = approximateElementCount;
             this.backendStoreName = backendStoreName;
+            this.filterName = filterName;
+            this.namespace = namespace;
+            this.capacity = capacity;
+            this.memoryBytes = memoryBytes;
+            this.ttlMillis = ttlMillis;
         }
         
         public long getExpectedInsertions() {
@@ -209,6 +548,29 @@ public class BloomFilterService {
         public String getBackendStoreName() {
             return backendStoreName;
         }
+        
+        public String getFilterName() {
+            return filterName;
+        }
+        
+        public String getNamespace() {
+            return namespace;
+        }
+        
+        /**
+         * @return Items the current generation was sized for under the memory budget
+         */
+        public long getCapacity() {
+            return capacity;
+        }
+        
+        public long getMemoryBytes() {
+            return memoryBytes;
+        }
+        
+        public long getTtlMillis() {
+            return ttlMillis;
+        }
     }
 }
 
@@ -0,0 +1,53 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MembershipFilter backed by a Guava BloomFilter. Lock-free, but items cannot be removed.
+ */
+public class BloomMembershipFilter implements MembershipFilter {
+    
+    private final BloomFilter<String> bloomFilter;
+    
+    public BloomMembershipFilter(long expectedInsertions, double falsePositiveRate) {
+        this.bloomFilter = BloomFilter.create(
+            Funnels.stringFunnel(StandardCharsets.UTF_8),
+            expectedInsertions,
+            falsePositiveRate
+        );
+    }
+    
+    @Override
+    public boolean mightContain(String item) {
+        return bloomFilter.mightContain(item);
+    }
+    
+    @Override
+    public boolean put(String item) {
+        bloomFilter.put(item);
+        return true;
+    }
+    
+    @Override
+    public boolean remove(String item) {
+        throw new UnsupportedOperationException("Bloom filters do not support removal");
+    }
+    
+    @Override
+    public boolean supportsRemoval() {
+        return false;
+    }
+    
+    @Override
+    public long approximateElementCount() {
+        return bloomFilter.approximateElementCount();
+    }
+    
+    @Override
+    public String getName() {
+        return "Bloom";
+    }
+}
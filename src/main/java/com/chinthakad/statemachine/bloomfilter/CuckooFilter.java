@@ -0,0 +1,202 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Cuckoo filter with 4 slots of 16-bit fingerprints per bucket, one bucket per long.
+ * <p>
+ * An item may live in one of two buckets: its hash picks the first, and the second is the first
+ * XOR a hash of the fingerprint, so either bucket can be derived from the other when entries are
+ * relocated. At 16 bits per fingerprint and 95% load the false positive rate is about 0.012%,
+ * at roughly 17 bits per item, and entries can be removed.
+ * <p>
+ * Lookups are optimistic reads that only fall back to the lock while an insert is relocating
+ * entries. If an insert cannot find room after {@value #MAX_KICKS} relocations one fingerprint
+ * is lost, so from then on the filter answers true for everything until it is recreated.
+ */
+public class CuckooFilter implements MembershipFilter {
+    
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int FINGERPRINT_BITS = 16;
+    private static final long FINGERPRINT_MASK = 0xFFFFL;
+    private static final long LANE_LOW_BITS = 0x0001_0001_0001_0001L;
+    private static final long LANE_HIGH_BITS = 0x8000_8000_8000_8000L;
+    private static final int MAX_KICKS = 500;
+    private static final double LOAD_FACTOR = 0.95;
+    
+    private final long[] buckets;
+    private final int bucketMask;
+    private final StampedLock lock = new StampedLock();
+    private volatile long count;
+    private volatile boolean overflowed;
+    
+    public CuckooFilter(long expectedInsertions) {
+        long needed = Math.max(1, (long) Math.ceil(expectedInsertions / (SLOTS_PER_BUCKET * LOAD_FACTOR)));
+        int bucketCount = (int) Math.min(Long.highestOneBit(needed - 1) << 1, 1 << 30);
+        this.buckets = new long[Math.max(1, bucketCount)];
+        this.bucketMask = buckets.length - 1;
+    }
+    
+    @Override
+    public boolean mightContain(String item) {
+        if (overflowed) {
+            return true;
+        }
+        long hash = hash(item);
+        int fingerprint = fingerprint(hash);
+        int first = firstBucket(hash);
+        int second = alternateBucket(first, fingerprint);
+        long stamp = lock.tryOptimisticRead();
+        boolean found = containsFingerprint(buckets[first], fingerprint)
+            || containsFingerprint(buckets[second], fingerprint);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                found = containsFingerprint(buckets[first], fingerprint)
+                    || containsFingerprint(buckets[second], fingerprint);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return found;
+    }
+    
+    @Override
+    public boolean put(String item) {
+        long hash = hash(item);
+        int fingerprint = fingerprint(hash);
+        int first = firstBucket(hash);
+        int second = alternateBucket(first, fingerprint);
+        long stamp = lock.writeLock();
+        try {
+            if (insert(first, fingerprint) || insert(second, fingerprint)) {
+                count++;
+                return true;
+            }
+            if (overflowed) {
+                return false;
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int bucket = random.nextBoolean() ? first : second;
+            for (int kick = 0; kick < MAX_KICKS; kick++) {
+                int lane = random.nextInt(SLOTS_PER_BUCKET);
+                int evicted = lane(buckets[bucket], lane);
+                buckets[bucket] = withLane(buckets[bucket], lane, fingerprint);
+                fingerprint = evicted;
+                bucket = alternateBucket(bucket, fingerprint);
+                if (insert(bucket, fingerprint)) {
+                    count++;
+                    return true;
+                }
+            }
+            // The last evicted fingerprint has nowhere to go
+            overflowed = true;
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    @Override
+    public boolean remove(String item) {
+        long hash = hash(item);
+        int fingerprint = fingerprint(hash);
+        int first = firstBucket(hash);
+        int second = alternateBucket(first, fingerprint);
+        long stamp = lock.writeLock();
+        try {
+            if (delete(first, fingerprint) || delete(second, fingerprint)) {
+                count--;
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+    
+    @Override
+    public boolean supportsRemoval() {
+        return true;
+    }
+    
+    @Override
+    public long approximateElementCount() {
+        return count;
+    }
+    
+    @Override
+    public String getName() {
+        return "Cuckoo";
+    }
+    
+    public boolean isOverflowed() {
+        return overflowed;
+    }
+    
+    public int getBucketCount() {
+        return buckets.length;
+    }
+    
+    private boolean insert(int bucket, int fingerprint) {
+        long slots = buckets[bucket];
+        for (int lane = 0; lane < SLOTS_PER_BUCKET; lane++) {
+            if (lane(slots, lane) == 0) {
+                buckets[bucket] = withLane(slots, lane, fingerprint);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean delete(int bucket, int fingerprint) {
+        long slots = buckets[bucket];
+        for (int lane = 0; lane < SLOTS_PER_BUCKET; lane++) {
+            if (lane(slots, lane) == fingerprint) {
+                buckets[bucket] = withLane(slots, lane, 0);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private int firstBucket(long hash) {
+        return (int) hash & bucketMask;
+    }
+    
+    private int alternateBucket(int bucket, int fingerprint) {
+        // Involution: applying it twice gives back the original bucket
+        return (bucket ^ (fingerprint * 0x5bd1e995)) & bucketMask;
+    }
+    
+    /**
+     * Whether any of the four 16-bit lanes equals the fingerprint, tested on all lanes at once.
+     */
+    private static boolean containsFingerprint(long slots, int fingerprint) {
+        long diff = slots ^ (fingerprint * LANE_LOW_BITS);
+        return ((diff - LANE_LOW_BITS) & ~diff & LANE_HIGH_BITS) != 0;
+    }
+    
+    private static int lane(long slots, int lane) {
+        return (int) ((slots >>> (lane * FINGERPRINT_BITS)) & FINGERPRINT_MASK);
+    }
+    
+    private static long withLane(long slots, int lane, int fingerprint) {
+        int shift = lane * FINGERPRINT_BITS;
+        return (slots & ~(FINGERPRINT_MASK << shift)) | ((long) fingerprint << shift);
+    }
+    
+    private static long hash(String item) {
+        return Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8).asLong();
+    }
+    
+    private static int fingerprint(long hash) {
+        // Zero marks an empty slot
+        int fingerprint = (int) (hash >>> (64 - FINGERPRINT_BITS));
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+}
@@ -0,0 +1,48 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a duplicate check, split into where the time went.
+ * Only checks slower than the threshold are recorded.
+ */
+@Name("com.chinthakad.statemachine.DedupLookup")
+@Label("Dedup Lookup")
+@Category("Bloom Filter")
+@Description("A duplicate check through filter, cache and backend store")
+@Threshold("5 ms")
+@StackTrace(false)
+class DedupLookupEvent extends Event {
+    @Label("Item")
+    String item;
+    
+    @Label("Namespace")
+    String namespace;
+    
+    @Label("Filter")
+    String filter;
+    
+    @Label("Backend Store")
+    String backendStore;
+    
+    @Label("Filter Hit")
+    @Description("The filter reported the item as possibly present")
+    boolean filterHit;
+    
+    @Label("Cache Hit")
+    boolean cacheHit;
+    
+    @Label("Duplicate")
+    boolean duplicate;
+    
+    @Label("Backend Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long backendLatency;
+}
@@ -0,0 +1,236 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One tenant of the duplicate detection service: its own filter, sizing, false positive rate
+ * and expiry, and its own slice of the backend store's key space.
+ * <p>
+ * With a TTL the namespace keeps two filter generations. New items go into the current one,
+ * lookups consult both, and every half TTL the previous generation is dropped and a fresh one
+ * started, so an item is remembered for between half and the full TTL without ever having to
+ * delete from a Bloom filter. Each new generation is sized from the memory the namespace is
+ * granted at that time, see {@link FilterNamespaces}. Backend entries expire a full TTL after they
+ * were last stored, the longest the filter can remember them, see {@link #expiresAt(long)}.
+ * <p>
+ * A replicated Bloom namespace uses a {@link BitArrayBloomFilter} whose changes
+ * {@link FilterReplicator} ships to peers. It is always sized from its configuration, never from
+ * local load, so that every replica builds filters of the same shape.
+ */
+public class FilterNamespace {
+
+    static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+    // CuckooFilter packs four 16-bit fingerprints per 8-byte bucket and fills to 95%
+    static final double CUCKOO_ITEMS_PER_BUCKET = 4 * 0.95;
+
+    private final String name;
+    private final String type;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final long ttlMillis;
+    private final String keyPrefix;
+    private final boolean replicated;
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param keyPrefix Prepended to items in the shared cache and backend store
+     * @param ttlMillis How long items are remembered, or 0 to remember them until cleared
+     */
+    public FilterNamespace(String name, String type, long expectedInsertions, double falsePositiveRate,
+                           long ttlMillis, String keyPrefix) {
+        this(name, type, expectedInsertions, falsePositiveRate, ttlMillis, keyPrefix, false);
+    }
+
+    /**
+     * @param replicated Whether to share this namespace's filter with peers; only Bloom
+     *                   namespaces can be replicated, so it is ignored for cuckoo filters
+     */
+    public FilterNamespace(String name, String type, long expectedInsertions, double falsePositiveRate,
+                           long ttlMillis, String keyPrefix, boolean replicated) {
+        if (!type.equals("bloom") && !type.equals("cuckoo")) {
+            throw new IllegalArgumentException("Unknown filter type for namespace " + name + ": " + type);
+        }
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Invalid sizing for namespace " + name);
+        }
+        this.name = name;
+        this.type = type;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.ttlMillis = ttlMillis;
+        this.keyPrefix = keyPrefix;
+        this.replicated = replicated && type.equals("bloom");
+    }
+
+    public boolean mightContain(String item) {
+        Generation older = previous;
+        return current.filter.mightContain(item) || (older != null && older.filter.mightContain(item));
+    }
+
+    public boolean put(String item) {
+        Generation generation = current;
+        generation.inserts.increment();
+        return generation.filter.put(item);
+    }
+
+    /**
+     * Remove an item known to have been added, from whichever generation holds it.
+     */
+    public boolean remove(String item) {
+        Generation older = previous;
+        return current.filter.remove(item) || (older != null && older.filter.remove(item));
+    }
+
+    public boolean supportsRemoval() {
+        return type.equals("cuckoo");
+    }
+
+    /**
+     * Start over with a single, empty generation sized for {@code capacity} items.
+     */
+    synchronized void reset(long capacity) {
+        previous = null;
+        current = new Generation(createFilter(capacity), capacity, System.currentTimeMillis());
+    }
+
+    /**
+     * Drop the previous generation and start a new current one sized for {@code capacity} items.
+     */
+    synchronized void rotate(long capacity, long now) {
+        Generation fresh = new Generation(createFilter(capacity), capacity, now);
+        previous = current;
+        current = fresh;
+    }
+
+    boolean isRotationDue(long now) {
+        return ttlMillis > 0 && now - current.startedAt >= ttlMillis / 2;
+    }
+
+    /**
+     * Generations alive at once, and thus how many times a generation's memory is needed.
+     */
+    int generations() {
+        return ttlMillis > 0 ? 2 : 1;
+    }
+
+    /**
+     * Items the next generation should hold: the configured size, or more if the current
+     * generation has seen more inserts than that and the namespace is not replicated.
+     */
+    long demand() {
+        Generation generation = current;
+        return generation == null || replicated ? expectedInsertions : Math.max(expectedInsertions, generation.inserts.sum());
+    }
+
+    String backendKey(String item) {
+        return keyPrefix + item;
+    }
+
+    String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * @return When the backend entry of an item stored at {@code now} expires, 0 for never
+     */
+    long expiresAt(long now) {
+        return ttlMillis > 0 ? now + ttlMillis : 0;
+    }
+
+    private MembershipFilter createFilter(long capacity) {
+        if (type.equals("cuckoo")) {
+            return new CuckooFilter(capacity);
+        }
+        return replicated
+            ? new BitArrayBloomFilter(capacity, falsePositiveRate)
+            : new BloomMembershipFilter(capacity, falsePositiveRate);
+    }
+
+    MembershipFilter currentFilter() {
+        return current.filter;
+    }
+
+    /**
+     * Memory one generation of {@code insertions} items takes.
+     */
+    long bytesFor(long insertions) {
+        if (type.equals("cuckoo")) {
+            long needed = Math.max(1, (long) Math.ceil(insertions / CUCKOO_ITEMS_PER_BUCKET));
+            return Math.max(1, Long.highestOneBit(needed - 1) << 1) * Long.BYTES;
+        }
+        return (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / LN2_SQUARED / Byte.SIZE);
+    }
+
+    /**
+     * Most items a generation can hold at this namespace's false positive rate within {@code bytes}.
+     */
+    long insertionsFor(long bytes) {
+        if (type.equals("cuckoo")) {
+            long buckets = Long.highestOneBit(Math.max(1, bytes / Long.BYTES));
+            return Math.max(1, (long) (buckets * CUCKOO_ITEMS_PER_BUCKET));
+        }
+        return Math.max(1, (long) (bytes * Byte.SIZE * LN2_SQUARED / -Math.log(falsePositiveRate)));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public boolean isReplicated() {
+        return replicated;
+    }
+
+    /**
+     * @return Items the current generation was sized for
+     */
+    public long getCapacity() {
+        return current.capacity;
+    }
+
+    public long approximateElementCount() {
+        Generation older = previous;
+        return current.filter.approximateElementCount() + (older == null ? 0 : older.filter.approximateElementCount());
+    }
+
+    /**
+     * @return Estimated bytes held by the live generations
+     */
+    public long getMemoryBytes() {
+        Generation older = previous;
+        return bytesFor(current.capacity) + (older == null ? 0 : bytesFor(older.capacity));
+    }
+
+    public String getFilterName() {
+        return current.filter.getName();
+    }
+
+    private static final class Generation {
+        final MembershipFilter filter;
+        final long capacity;
+        final long startedAt;
+        final LongAdder inserts = new LongAdder();
+
+        Generation(MembershipFilter filter, long capacity, long startedAt) {
+            this.filter = filter;
+            this.capacity = capacity;
+            this.startedAt = startedAt;
+        }
+    }
+}
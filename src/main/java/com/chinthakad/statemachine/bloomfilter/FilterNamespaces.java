@@ -0,0 +1,145 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The filter namespaces of the service and the memory budget they share.
+ * <p>
+ * Every namespace is guaranteed the memory its configured size needs. Memory left over is
+ * handed to namespaces that have outgrown their configured size, in proportion to how far they
+ * outgrew it, whenever one of their generations is created. A noisy tenant can therefore take
+ * spare memory but never another tenant's reservation, and its own false positive rate is what
+ * suffers if it outgrows the budget. If the reservations alone exceed the budget they are all
+ * scaled down by the same factor.
+ */
+public class FilterNamespaces {
+
+    private static final Logger LOG = Logger.getLogger(FilterNamespaces.class);
+
+    private final Map<String, FilterNamespace> namespaces = new LinkedHashMap<>();
+    private final long budgetBytes;
+
+    public FilterNamespaces(Collection<FilterNamespace> namespaces, long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        for (FilterNamespace namespace : namespaces) {
+            if (this.namespaces.put(namespace.getName(), namespace) != null) {
+                throw new IllegalArgumentException("Duplicate namespace: " + namespace.getName());
+            }
+        }
+        this.budgetBytes = budgetBytes;
+        resetAll();
+    }
+
+    /**
+     * @return The namespace, or null if it is not configured
+     */
+    public FilterNamespace get(String name) {
+        return namespaces.get(name);
+    }
+
+    public Collection<FilterNamespace> all() {
+        return namespaces.values();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getUsedBytes() {
+        long used = 0;
+        for (FilterNamespace namespace : namespaces.values()) {
+            used += namespace.getMemoryBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Empty every namespace, sizing each from its share of the budget.
+     */
+    public synchronized void resetAll() {
+        Map<String, Long> capacities = allocate();
+        namespaces.forEach((name, namespace) -> namespace.reset(capacities.get(name)));
+    }
+
+    /**
+     * @return The namespace a backend or cache key belongs to: the one whose prefix it starts
+     * with, otherwise the unprefixed one, or null if there is none
+     */
+    public FilterNamespace ownerOf(String key) {
+        FilterNamespace unprefixed = null;
+        for (FilterNamespace namespace : namespaces.values()) {
+            String prefix = namespace.getKeyPrefix();
+            if (prefix.isEmpty()) {
+                unprefixed = namespace;
+            } else if (key.startsWith(prefix)) {
+                return namespace;
+            }
+        }
+        return unprefixed;
+    }
+
+    /**
+     * Rotate the generations of every namespace whose half TTL has passed.
+     * @return The namespaces rotated
+     */
+    public synchronized List<FilterNamespace> rotateDue(long now) {
+        Map<String, Long> capacities = null;
+        List<FilterNamespace> rotated = new ArrayList<>();
+        for (FilterNamespace namespace : namespaces.values()) {
+            if (namespace.isRotationDue(now)) {
+                if (capacities == null) {
+                    capacities = allocate();
+                }
+                long capacity = capacities.get(namespace.getName());
+                if (capacity != namespace.getCapacity()) {
+                    LOG.infof("Namespace %s resized from %d to %d items", namespace.getName(), namespace.getCapacity(), capacity);
+                }
+                namespace.rotate(capacity, now);
+                rotated.add(namespace);
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * Items each namespace's next generation can hold under the budget.
+     */
+    Map<String, Long> allocate() {
+        Map<String, Long> reserved = new HashMap<>();
+        Map<String, Long> extra = new HashMap<>();
+        long totalReserved = 0;
+        long totalExtra = 0;
+        for (FilterNamespace namespace : namespaces.values()) {
+            long reserve = namespace.bytesFor(namespace.getExpectedInsertions()) * namespace.generations();
+            long want = namespace.bytesFor(namespace.demand()) * namespace.generations();
+            reserved.put(namespace.getName(), reserve);
+            extra.put(namespace.getName(), Math.max(0, want - reserve));
+            totalReserved += reserve;
+            totalExtra += Math.max(0, want - reserve);
+        }
+        double reserveScale = 1.0;
+        long spare = budgetBytes - totalReserved;
+        if (spare < 0) {
+            reserveScale = (double) budgetBytes / totalReserved;
+            spare = 0;
+            LOG.warnf("Configured namespaces need %d bytes, over the %d byte budget; scaling all down", totalReserved, budgetBytes);
+        }
+        double extraScale = totalExtra <= spare ? 1.0 : (double) spare / totalExtra;
+        Map<String, Long> capacities = new HashMap<>();
+        for (FilterNamespace namespace : namespaces.values()) {
+            String name = namespace.getName();
+            long grant = (long) (reserved.get(name) * reserveScale + extra.get(name) * extraScale);
+            capacities.put(name, namespace.insertionsFor(grant / namespace.generations()));
+        }
+        return capacities;
+    }
+}
@@ -0,0 +1,289 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ships the words each replicated namespace changed since the last epoch to the peers, and ORs
+ * the words peers send into the local filters, so every replica converges on the union of what
+ * all of them have seen.
+ * <p>
+ * A delta lists the changed words as runs of consecutive indices: the gap from the previous
+ * run and the run length as varints, then the words. Only a namespace's current generation is
+ * replicated, and a delta is only merged into a filter of identical bit size and hash count;
+ * replicated namespaces are sized from configuration alone so that all replicas agree.
+ * Since merging only ever sets bits, a late or repeated delta cannot cause a missed duplicate.
+ * <p>
+ * The words of a delta that any peer failed to take are marked changed again and go out with
+ * the next epoch. That does not help a peer that restarts and loses its filter, or one that
+ * joins late, so {@link #publishFull()} also sends every set word of each filter, and the
+ * service calls it periodically.
+ */
+public class FilterReplicator {
+
+    private static final Logger LOG = Logger.getLogger(FilterReplicator.class);
+    static final int MAGIC = 0x42464431; // "BFD1"
+
+    private final FilterNamespaces namespaces;
+    private final ReplicationTransport transport;
+    private final String nodeId;
+    private final AtomicLong epoch = new AtomicLong();
+    private final AtomicLong sentDeltas = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong sentWords = new AtomicLong();
+    private final AtomicLong failedDeltas = new AtomicLong();
+    private final AtomicLong fullSyncs = new AtomicLong();
+    private final AtomicLong receivedDeltas = new AtomicLong();
+    private final AtomicLong mergedWords = new AtomicLong();
+    private final AtomicLong rejectedDeltas = new AtomicLong();
+
+    public FilterReplicator(FilterNamespaces namespaces, ReplicationTransport transport, String nodeId) {
+        this.namespaces = namespaces;
+        this.transport = transport;
+        this.nodeId = nodeId;
+        transport.onReceive(this::receive);
+    }
+
+    /**
+     * Broadcast one delta per replicated namespace that changed since the last call.
+     * @return Number of words sent
+     */
+    public int publish() {
+        long currentEpoch = epoch.incrementAndGet();
+        int words = 0;
+        for (FilterNamespace namespace : namespaces.all()) {
+            if (namespace.currentFilter() instanceof BitArrayBloomFilter filter) {
+                ChangedWords changed = new ChangedWords();
+                filter.drainChangedWords(changed);
+                if (changed.size == 0) {
+                    continue;
+                }
+                words += send(namespace.getName(), filter, currentEpoch, changed).size;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Broadcast every set word of each replicated namespace, whether or not it changed, so peers
+     * that lost or missed deltas converge again.
+     * @return Number of words sent
+     */
+    public int publishFull() {
+        long currentEpoch = epoch.incrementAndGet();
+        int words = 0;
+        for (FilterNamespace namespace : namespaces.all()) {
+            if (namespace.currentFilter() instanceof BitArrayBloomFilter filter) {
+                ChangedWords all = new ChangedWords();
+                filter.forEachSetWord(all);
+                if (all.size > 0) {
+                    words += send(namespace.getName(), filter, currentEpoch, all).size;
+                }
+            }
+        }
+        fullSyncs.incrementAndGet();
+        return words;
+    }
+
+    private ChangedWords send(String name, BitArrayBloomFilter filter, long currentEpoch, ChangedWords changed) {
+        byte[] delta = encode(name, filter, currentEpoch, changed);
+        sentDeltas.incrementAndGet();
+        sentBytes.addAndGet(delta.length);
+        sentWords.addAndGet(changed.size);
+        transport.broadcast(delta).whenComplete((ignored, failure) -> {
+            if (failure != null) {
+                failedDeltas.incrementAndGet();
+                // The next epoch reads the words again, with whatever was set since
+                for (int i = 0; i < changed.size; i++) {
+                    filter.markChanged(changed.indices[i]);
+                }
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * Merge a delta from a peer.
+     * @return false if the delta was malformed or does not fit the local namespace
+     */
+    public boolean receive(byte[] delta) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta))) {
+            if (in.readInt() != MAGIC) {
+                return reject("bad magic");
+            }
+            String sender = in.readUTF();
+            in.readLong(); // sender's epoch, for debugging
+            String name = in.readUTF();
+            long bitSize = in.readLong();
+            int numHashFunctions = in.readInt();
+            if (sender.equals(nodeId)) {
+                return reject("own delta");
+            }
+            FilterNamespace namespace = namespaces.get(name);
+            if (namespace == null || !(namespace.currentFilter() instanceof BitArrayBloomFilter filter)) {
+                return reject("namespace " + name + " is not replicated here");
+            }
+            if (filter.getBitSize() != bitSize || filter.getNumHashFunctions() != numHashFunctions) {
+                return reject("namespace " + name + " is sized differently on " + sender);
+            }
+            int runs = readVarint(in);
+            int index = 0;
+            long merged = 0;
+            for (int run = 0; run < runs; run++) {
+                index += readVarint(in);
+                int length = readVarint(in);
+                if (index + (long) length > filter.getWordCount()) {
+                    return reject("run past the end of " + name);
+                }
+                for (int i = 0; i < length; i++) {
+                    filter.mergeWord(index++, in.readLong());
+                }
+                merged += length;
+            }
+            receivedDeltas.incrementAndGet();
+            mergedWords.addAndGet(merged);
+            return true;
+        } catch (IOException e) {
+            return reject("truncated delta");
+        }
+    }
+
+    private boolean reject(String reason) {
+        rejectedDeltas.incrementAndGet();
+        LOG.debugf("Rejected filter delta: %s", reason);
+        return false;
+    }
+
+    private byte[] encode(String name, BitArrayBloomFilter filter, long currentEpoch, ChangedWords changed) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changed.size * Long.BYTES);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(nodeId);
+            out.writeLong(currentEpoch);
+            out.writeUTF(name);
+            out.writeLong(filter.getBitSize());
+            out.writeInt(filter.getNumHashFunctions());
+            writeVarint(out, changed.countRuns());
+            int previousEnd = 0;
+            int i = 0;
+            while (i < changed.size) {
+                int start = changed.indices[i];
+                int end = i + 1;
+                while (end < changed.size && changed.indices[end] == changed.indices[end - 1] + 1) {
+                    end++;
+                }
+                writeVarint(out, start - previousEnd);
+                writeVarint(out, end - i);
+                for (int j = i; j < end; j++) {
+                    out.writeLong(changed.words[j]);
+                }
+                previousEnd = start + (end - i);
+                i = end;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getTransportName() {
+        return transport.getName();
+    }
+
+    public long getSentDeltas() {
+        return sentDeltas.get();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    public long getSentWords() {
+        return sentWords.get();
+    }
+
+    /**
+     * @return Deltas at least one peer did not take; their words were sent again
+     */
+    public long getFailedDeltas() {
+        return failedDeltas.get();
+    }
+
+    public long getFullSyncs() {
+        return fullSyncs.get();
+    }
+
+    public long getReceivedDeltas() {
+        return receivedDeltas.get();
+    }
+
+    public long getMergedWords() {
+        return mergedWords.get();
+    }
+
+    public long getRejectedDeltas() {
+        return rejectedDeltas.get();
+    }
+
+    /**
+     * Changed words in drain order, which is ascending index order.
+     */
+    private static final class ChangedWords implements BitArrayBloomFilter.WordSink {
+        int[] indices = new int[64];
+        long[] words = new long[64];
+        int size;
+
+        @Override
+        public void accept(int index, long word) {
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                words = Arrays.copyOf(words, size * 2);
+            }
+            indices[size] = index;
+            words[size] = word;
+            size++;
+        }
+
+        int countRuns() {
+            int runs = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || indices[i] != indices[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+    }
+}
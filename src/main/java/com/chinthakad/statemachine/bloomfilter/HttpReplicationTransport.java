@@ -0,0 +1,100 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Posts deltas to {@code <peer>/bloom-filter/replication/delta} on every peer; deltas arriving
+ * at this node's endpoint are handed over through {@link #receive(byte[])}. Every replica shares
+ * one secret, sent in the {@value #SECRET_HEADER} header; the endpoint drops deltas that do not
+ * carry it, see {@link #authenticates(String)}.
+ */
+public class HttpReplicationTransport implements ReplicationTransport {
+    
+    private static final Logger LOG = Logger.getLogger(HttpReplicationTransport.class);
+    static final String DELTA_PATH = "/bloom-filter/replication/delta";
+    public static final String SECRET_HEADER = "X-Replication-Secret";
+    
+    private final List<URI> peers;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final byte[] secret;
+    private volatile Consumer<byte[]> handler = delta -> {};
+    
+    /**
+     * @param peers Base URLs of the other replicas, e.g. http://replica-2:8080
+     * @param secret Shared by every replica
+     */
+    public HttpReplicationTransport(List<String> peers, Duration timeout, String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("secret must not be blank");
+        }
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.peers = peers.stream().map(peer -> URI.create(stripTrailingSlash(peer) + DELTA_PATH)).toList();
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+    }
+    
+    @Override
+    public CompletableFuture<Void> broadcast(byte[] delta) {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[peers.size()];
+        for (int i = 0; i < sends.length; i++) {
+            URI peer = peers.get(i);
+            HttpRequest request = HttpRequest.newBuilder(peer)
+                .timeout(timeout)
+                .header("Content-Type", "application/octet-stream")
+                .header(SECRET_HEADER, new String(secret, StandardCharsets.UTF_8))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(delta))
+                .build();
+            sends[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenAccept(response -> {
+                if (response.statusCode() >= 300) {
+                    throw new IllegalStateException("Delta to " + peer + " rejected with status " + response.statusCode());
+                }
+            }).whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    LOG.warnf("Delta to %s failed: %s", peer, failure.getMessage());
+                }
+            });
+        }
+        return CompletableFuture.allOf(sends);
+    }
+    
+    /**
+     * @param secret The {@value #SECRET_HEADER} header of a posted delta, may be null
+     * @return Whether it is the shared secret; compared in constant time
+     */
+    public boolean authenticates(String secret) {
+        return secret != null && MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Deliver a delta posted to this node
+     */
+    public void receive(byte[] delta) {
+        handler.accept(delta);
+    }
+    
+    @Override
+    public void onReceive(Consumer<byte[]> handler) {
+        this.handler = handler;
+    }
+    
+    @Override
+    public String getName() {
+        return "Http";
+    }
+    
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
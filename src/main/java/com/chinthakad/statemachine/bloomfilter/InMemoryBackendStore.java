@@ -1,6 +1,8 @@
 package com.chinthakad.statemachine.bloomfilter;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -8,27 +10,61 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * In-memory implementation of BackendStore using ConcurrentHashMap.
  * This is suitable for development and testing, but not for production persistence.
+ * Expired items stay in the map until {@link #purgeExpired} runs.
  */
 @ApplicationScoped
+@Typed(InMemoryBackendStore.class)
 public class InMemoryBackendStore implements BackendStore {
     
-    private final ConcurrentHashMap<String, Boolean> store = new ConcurrentHashMap<>();
+    // Item to its expiry, 0 for none
+    private final ConcurrentHashMap<String, Long> store = new ConcurrentHashMap<>();
     private final AtomicLong counter = new AtomicLong(0);
     
     @Override
     public CompletableFuture<Boolean> contains(String item) {
-        return CompletableFuture.completedFuture(store.containsKey(item));
+        Long expiresAt = store.get(item);
+        return CompletableFuture.completedFuture(expiresAt != null && !expired(expiresAt, System.currentTimeMillis()));
     }
     
     @Override
-    public CompletableFuture<Void> store(String item) {
+    public CompletableFuture<Void> store(String item, long expiresAt) {
         return CompletableFuture.runAsync(() -> {
-            if (store.putIfAbsent(item, true) == null) {
+            if (store.put(item, expiresAt) == null) {
                 counter.incrementAndGet();
             }
         });
     }
     
+    @Override
+    public CompletableFuture<Long> purgeExpired(long now) {
+        return CompletableFuture.supplyAsync(() -> {
+            long purged = 0;
+            for (Map.Entry<String, Long> entry : store.entrySet()) {
+                // Only if not stored again meanwhile
+                if (expired(entry.getValue(), now) && store.remove(entry.getKey(), entry.getValue())) {
+                    counter.decrementAndGet();
+                    purged++;
+                }
+            }
+            return purged;
+        });
+    }
+    
+    private static boolean expired(long expiresAt, long now) {
+        return expiresAt != 0 && expiresAt <= now;
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> remove(String item) {
+        return CompletableFuture.supplyAsync(() -> {
+            if (store.remove(item) != null) {
+                counter.decrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+    
     @Override
     public CompletableFuture<Long> getCount() {
         return CompletableFuture.completedFuture(counter.get());
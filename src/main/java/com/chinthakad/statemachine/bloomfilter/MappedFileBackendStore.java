@@ -0,0 +1,494 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable BackendStore backed by a memory-mapped open-addressing hash file.
+ * <p>
+ * Each item is stored as its 128-bit murmur3 fingerprint and its expiry in a 24-byte slot, probed
+ * linearly. Storing an item again replaces its expiry in place; expired slots read as absent and
+ * become tombstones when {@link #purgeExpired} sweeps the table.
+ * Lookups never lock: they read the current table's mapping with acquire semantics, and writers
+ * publish a slot by writing its second half before its first. Writes are serialized and made
+ * durable in groups: a flusher forces the dirty range of the mapping every
+ * {@code bloom.filter.mapped.flush.interval.ms}. A store completes as soon as it is in the
+ * mapping, which survives a crash of the process but not of the machine; callers that need the
+ * stronger guarantee wait on {@link #sync()}, or set {@code bloom.filter.mapped.await.flush} to
+ * have every store wait for the next flush.
+ * When the table passes 70% load it is rehashed into a file twice the size, which atomically
+ * replaces the old one.
+ * <p>
+ * Two different items collide only with probability 2^-128, so a match is treated as exact.
+ */
+@ApplicationScoped
+@Typed(MappedFileBackendStore.class)
+public class MappedFileBackendStore implements BackendStore {
+    
+    private static final Logger LOG = Logger.getLogger(MappedFileBackendStore.class);
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final long MAGIC = 0x4246_4D41_5030_3032L; // "BFMAP002"
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 24;
+    private static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.7;
+    
+    @ConfigProperty(name = "bloom.filter.mapped.path", defaultValue = "bloom-filter-store.dat")
+    String path;
+    
+    @ConfigProperty(name = "bloom.filter.mapped.initial.capacity", defaultValue = "1048576")
+    int initialCapacity;
+    
+    // 0 completes stores without waiting for the flush, leaving durability to OS writeback
+    @ConfigProperty(name = "bloom.filter.mapped.flush.interval.ms", defaultValue = "5")
+    long flushIntervalMillis;
+    
+    // Ties every store's latency to the flush interval, so off by default
+    @ConfigProperty(name = "bloom.filter.mapped.await.flush", defaultValue = "false")
+    boolean awaitFlushOnStore;
+    
+    // Not a monitor, so writers waiting on virtual threads do not pin their carriers
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Table table;
+    private Path file;
+    private int capacity;
+    private long flushInterval;
+    private boolean awaitFlush;
+    private ScheduledExecutorService flusher;
+    // Guarded by writeLock
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    
+    @PostConstruct
+    void init() {
+        open(Path.of(path), initialCapacity, flushIntervalMillis, awaitFlushOnStore);
+    }
+    
+    void open(Path file, int initialCapacity, long flushIntervalMillis, boolean awaitFlush) {
+        this.file = file;
+        this.capacity = tableSize(initialCapacity);
+        this.flushInterval = flushIntervalMillis;
+        this.awaitFlush = awaitFlush;
+        try {
+            this.table = Table.open(file, capacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open backend store file " + file, e);
+        }
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "bloom-filter-mapped-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        LOG.infof("Opened mapped backend store %s with %d items in %d slots", file, getCountNow(), table.capacity);
+    }
+    
+    @PreDestroy
+    void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flush();
+        writeLock.lock();
+        try {
+            table.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> contains(String item) {
+        long[] key = fingerprint(item);
+        Table current = table;
+        int slot = current.find(key[0], key[1]);
+        return CompletableFuture.completedFuture(slot >= 0 && !current.expired(slot, System.currentTimeMillis()));
+    }
+    
+    @Override
+    public CompletableFuture<Void> store(String item, long expiresAt) {
+        long[] key = fingerprint(item);
+        writeLock.lock();
+        try {
+            Table current = table;
+            int slot = current.find(key[0], key[1]);
+            if (slot >= 0) {
+                current.setExpiry(slot, expiresAt);
+            } else {
+                if (current.used + 1 > current.capacity * MAX_LOAD) {
+                    current = grow(current);
+                }
+                current.insert(key[0], key[1], expiresAt);
+            }
+            return awaitFlush ? nextFlush() : CompletableFuture.completedFuture(null);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Long> purgeExpired(long now) {
+        writeLock.lock();
+        try {
+            Table current = table;
+            long purged = 0;
+            for (int slot = 0; slot < current.capacity; slot++) {
+                if (current.hi(slot) != 0 && current.expired(slot, now)) {
+                    current.delete(slot);
+                    purged++;
+                }
+            }
+            return CompletableFuture.completedFuture(purged);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> remove(String item) {
+        long[] key = fingerprint(item);
+        writeLock.lock();
+        try {
+            Table current = table;
+            int slot = current.find(key[0], key[1]);
+            if (slot < 0) {
+                return CompletableFuture.completedFuture(false);
+            }
+            current.delete(slot);
+            return awaitFlush ? nextFlush().thenApply(v -> true) : CompletableFuture.completedFuture(true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Long> getCount() {
+        return CompletableFuture.completedFuture(getCountNow());
+    }
+    
+    @Override
+    public CompletableFuture<Void> clear() {
+        return CompletableFuture.runAsync(() -> {
+            writeLock.lock();
+            try {
+                replace(table, Table.create(temporaryFile(), capacity));
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+    
+    @Override
+    public String getName() {
+        return "MappedFile";
+    }
+    
+    private long getCountNow() {
+        return table.count();
+    }
+    
+    /**
+     * Force everything written so far and complete the stores that were waiting for it.
+     */
+    void flush() {
+        List<CompletableFuture<Void>> batch;
+        Table current;
+        long from;
+        long to;
+        writeLock.lock();
+        try {
+            current = table;
+            if (current.dirtyTo < 0 && waiting.isEmpty()) {
+                return;
+            }
+            batch = waiting;
+            waiting = new ArrayList<>();
+            from = current.dirtyFrom;
+            to = current.dirtyTo;
+            current.clearDirty();
+        } finally {
+            writeLock.unlock();
+        }
+        try {
+            if (to >= 0) {
+                current.force(from, to);
+            }
+            batch.forEach(future -> future.complete(null));
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to flush backend store %s", file);
+            batch.forEach(future -> future.completeExceptionally(e));
+        }
+    }
+    
+    /**
+     * @return Completes once everything stored or removed so far has been forced to disk
+     */
+    public CompletableFuture<Void> sync() {
+        writeLock.lock();
+        try {
+            return table.dirtyTo < 0 ? CompletableFuture.completedFuture(null) : nextFlush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    private CompletableFuture<Void> nextFlush() {
+        if (flusher == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        waiting.add(future);
+        return future;
+    }
+    
+    private Table grow(Table current) {
+        if (current.capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Mapped backend store is full at " + current.capacity + " slots");
+        }
+        Table grown = Table.create(temporaryFile(), current.capacity * 2);
+        current.forEachLive(grown::insert);
+        replace(current, grown);
+        return grown;
+    }
+    
+    /**
+     * Make {@code next} durable, move its file over the live one and publish it. Readers still on
+     * the old table keep a valid mapping until they finish.
+     */
+    private void replace(Table current, Table next) {
+        next.force(0, HEADER_SIZE + (long) next.capacity * SLOT_SIZE);
+        next.clearDirty();
+        try {
+            Files.move(next.file, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replace backend store file " + file, e);
+        }
+        next.file = file;
+        table = next;
+        current.close();
+        // Everything the waiting stores wrote is in the new, already forced file
+        waiting.forEach(future -> future.complete(null));
+        waiting = new ArrayList<>();
+    }
+    
+    private Path temporaryFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+    
+    private static int tableSize(int requested) {
+        int size = Integer.highestOneBit(Math.max(16, Math.min(requested, MAX_CAPACITY)) - 1) << 1;
+        return Math.min(size, MAX_CAPACITY);
+    }
+    
+    /**
+     * Neither half is ever zero: an all-zero slot is empty and a zero first half is a tombstone.
+     */
+    private static long[] fingerprint(String item) {
+        HashCode hash = Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8);
+        ByteBuffer bytes = ByteBuffer.wrap(hash.asBytes());
+        long hi = bytes.getLong();
+        long lo = bytes.getLong();
+        return new long[] {hi == 0 ? 1 : hi, lo == 0 ? 1 : lo};
+    }
+    
+    private static final class Table {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private final int mask;
+        private Path file;
+        // Writer-only state, guarded by the store's write lock
+        private int used;
+        private long dirtyFrom = Long.MAX_VALUE;
+        private long dirtyTo = -1;
+        
+        private Table(Path file, FileChannel channel, MappedByteBuffer buffer, int capacity) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+        }
+        
+        static Table open(Path file, int capacity) throws IOException {
+            if (!Files.exists(file) || Files.size(file) < HEADER_SIZE) {
+                return create(file, capacity);
+            }
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getLong(0) != MAGIC) {
+                channel.close();
+                throw new IOException("Not a mapped backend store file: " + file);
+            }
+            int stored = header.getInt(CAPACITY_OFFSET);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) stored * SLOT_SIZE);
+            Table table = new Table(file, channel, buffer, stored);
+            long live = 0;
+            for (int slot = 0; slot < stored; slot++) {
+                if (table.hi(slot) != 0) {
+                    live++;
+                }
+                if (table.hi(slot) != 0 || table.lo(slot) != 0) {
+                    table.used++;
+                }
+            }
+            // The header count may lag the slots if the process died between their writes
+            LONGS.setRelease(buffer, COUNT_OFFSET, live);
+            return table;
+        }
+        
+        static Table create(Path file, int capacity) {
+            try {
+                Files.deleteIfExists(file);
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                return new Table(file, channel, buffer, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create backend store file " + file, e);
+            }
+        }
+        
+        /**
+         * @return The slot holding the fingerprint, or -1 if it is not stored
+         */
+        int find(long hi, long lo) {
+            int slot = (int) hi & mask;
+            for (int probe = 0; probe < capacity; probe++) {
+                long slotHi = hi(slot);
+                if (slotHi == hi && lo(slot) == lo) {
+                    return slot;
+                }
+                if (slotHi == 0 && lo(slot) == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+        
+        void insert(long hi, long lo, long expiresAt) {
+            int slot = (int) hi & mask;
+            // Reuse the first tombstone or empty slot
+            while (hi(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            if (lo(slot) == 0) {
+                used++;
+            }
+            int offset = offset(slot);
+            LONGS.setRelease(buffer, offset + 16, expiresAt);
+            LONGS.setRelease(buffer, offset + 8, lo);
+            LONGS.setRelease(buffer, offset, hi);
+            LONGS.setRelease(buffer, COUNT_OFFSET, count() + 1);
+            markDirty(offset);
+        }
+        
+        void setExpiry(int slot, long expiresAt) {
+            int offset = offset(slot);
+            LONGS.setRelease(buffer, offset + 16, expiresAt);
+            markDirty(offset);
+        }
+        
+        boolean expired(int slot, long now) {
+            long expiresAt = (long) LONGS.getAcquire(buffer, offset(slot) + 16);
+            return expiresAt != 0 && expiresAt <= now;
+        }
+        
+        void delete(int slot) {
+            // Leaves the second half in place, so the slot reads as a tombstone
+            int offset = offset(slot);
+            LONGS.setRelease(buffer, offset, 0L);
+            LONGS.setRelease(buffer, COUNT_OFFSET, count() - 1);
+            markDirty(offset);
+        }
+        
+        void forEachLive(Insert target) {
+            for (int slot = 0; slot < capacity; slot++) {
+                long hi = hi(slot);
+                if (hi != 0) {
+                    target.insert(hi, lo(slot), (long) LONGS.getAcquire(buffer, offset(slot) + 16));
+                }
+            }
+        }
+        
+        long count() {
+            return (long) LONGS.getAcquire(buffer, COUNT_OFFSET);
+        }
+        
+        void force(long from, long to) {
+            buffer.force(0, HEADER_SIZE);
+            if (to > from) {
+                buffer.force((int) from, (int) (to - from));
+            }
+        }
+        
+        void clearDirty() {
+            dirtyFrom = Long.MAX_VALUE;
+            dirtyTo = -1;
+        }
+        
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warnf(e, "Failed to close backend store file %s", file);
+            }
+        }
+        
+        private void markDirty(int offset) {
+            dirtyFrom = Math.min(dirtyFrom, offset);
+            dirtyTo = Math.max(dirtyTo, offset + SLOT_SIZE);
+        }
+        
+        private long hi(int slot) {
+            return (long) LONGS.getAcquire(buffer, offset(slot));
+        }
+        
+        private long lo(int slot) {
+            return (long) LONGS.getAcquire(buffer, offset(slot) + 8);
+        }
+        
+        private static int offset(int slot) {
+            return HEADER_SIZE + slot * SLOT_SIZE;
+        }
+    }
+    
+    @FunctionalInterface
+    private interface Insert {
+        void insert(long hi, long lo, long expiresAt);
+    }
+}
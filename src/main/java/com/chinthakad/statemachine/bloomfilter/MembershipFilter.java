@@ -0,0 +1,40 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+/**
+ * Probabilistic set used as the first stage of duplicate detection.
+ * Implementations may report false positives but never false negatives.
+ */
+public interface MembershipFilter {
+    
+    /**
+     * @param item The item to check
+     * @return false if the item was definitely never added, true if it might have been
+     */
+    boolean mightContain(String item);
+    
+    /**
+     * Add an item to the filter
+     * @param item The item to add
+     * @return false if the filter is full; it then stays correct but answers true more often
+     */
+    boolean put(String item);
+    
+    /**
+     * Remove an item that was previously added. Removing an item that was never added
+     * may remove another item's entry and introduce false negatives.
+     * @param item The item to remove
+     * @return true if an entry for the item was found and removed
+     * @throws UnsupportedOperationException if {@link #supportsRemoval()} is false
+     */
+    boolean remove(String item);
+    
+    boolean supportsRemoval();
+    
+    long approximateElementCount();
+    
+    /**
+     * Get the name/type of this filter
+     * @return The filter name
+     */
+    String getName();
+}
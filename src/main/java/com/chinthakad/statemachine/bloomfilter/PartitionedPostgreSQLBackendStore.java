@@ -0,0 +1,319 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PostgreSQL BackendStore tuned for high insert and purge volume.
+ * <p>
+ * Items are stored as 16-byte murmur3 fingerprints in a table range-partitioned by insertion
+ * time, one partition per {@code bloom.filter.postgres.partition.hours}. Partitions are created
+ * ahead of time, and ones older than {@code bloom.filter.postgres.retention.hours} are dropped
+ * whole instead of being deleted row by row, so neither the table nor its indexes bloat.
+ * {@link #clear()} truncates every partition. Rows past their own expiry are ignored by lookups and
+ * go with their partition. Storing an item again inserts another row, as its old one may sit in
+ * a partition due to be dropped, so items are counted by distinct fingerprint. Plain JDBC is used
+ * throughout; Hibernate adds nothing for single-column statements.
+ */
+@ApplicationScoped
+@Typed(PartitionedPostgreSQLBackendStore.class)
+public class PartitionedPostgreSQLBackendStore implements BackendStore {
+    
+    private static final Logger LOG = Logger.getLogger(PartitionedPostgreSQLBackendStore.class);
+    static final String TABLE = "bloom_filter_fingerprints";
+    private static final DateTimeFormatter PARTITION_SUFFIX =
+        DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+    private static final String DUPLICATE_TABLE = "42P07";
+    private static final String NO_PARTITION = "23514";
+    private static final int PARTITIONS_AHEAD = 2;
+    
+    @Inject
+    DataSource injectedDataSource;
+    
+    @Inject
+    BackendExecutor injectedExecutor;
+    
+    @ConfigProperty(name = "bloom.filter.postgres.partition.hours", defaultValue = "24")
+    int partitionHours;
+    
+    // 0 keeps every partition
+    @ConfigProperty(name = "bloom.filter.postgres.retention.hours", defaultValue = "168")
+    int retentionHours;
+    
+    private DataSource dataSource;
+    // Runs the JDBC calls; virtual threads unless configured otherwise
+    private Executor executor = ForkJoinPool.commonPool();
+    private Duration partitionInterval;
+    private Duration retention;
+    private Clock clock;
+    private ScheduledExecutorService maintenance;
+    
+    @PostConstruct
+    void init() {
+        executor = injectedExecutor;
+        open(injectedDataSource, Duration.ofHours(partitionHours), Duration.ofHours(retentionHours), Clock.systemUTC());
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "bloom-filter-partition-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::maintain, 1, 1, TimeUnit.HOURS);
+    }
+    
+    void open(DataSource dataSource, Duration partitionInterval, Duration retention, Clock clock) {
+        if (partitionInterval.toHours() < 1) {
+            throw new IllegalArgumentException("Partition interval must be at least one hour");
+        }
+        this.dataSource = dataSource;
+        this.partitionInterval = partitionInterval;
+        this.retention = retention;
+        this.clock = clock;
+        execute("CREATE TABLE IF NOT EXISTS " + TABLE + " ("
+            + "fingerprint bytea NOT NULL, "
+            + "inserted_at timestamptz NOT NULL DEFAULT now(), "
+            + "expires_at timestamptz"
+            + ") PARTITION BY RANGE (inserted_at)");
+        execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_fingerprint_idx ON " + TABLE + " USING hash (fingerprint)");
+        maintain();
+    }
+    
+    @PreDestroy
+    void close() {
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> contains(String item) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                     "SELECT 1 FROM " + TABLE + " WHERE fingerprint = ? AND (expires_at IS NULL OR expires_at > ?) LIMIT 1")) {
+                statement.setBytes(1, fingerprint(item));
+                statement.setObject(2, clock.instant().atOffset(ZoneOffset.UTC));
+                try (ResultSet rs = statement.executeQuery()) {
+                    return rs.next();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to look up item", e);
+            }
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Void> store(String item, long expiresAt) {
+        return CompletableFuture.runAsync(() -> {
+            Instant now = clock.instant();
+            try {
+                insert(item, now, expiresAt);
+            } catch (SQLException e) {
+                if (!NO_PARTITION.equals(e.getSQLState())) {
+                    throw new IllegalStateException("Failed to store item", e);
+                }
+                // Maintenance has not caught up with the clock; create the partition and retry
+                createPartition(partitionStart(now));
+                try {
+                    insert(item, now, expiresAt);
+                } catch (SQLException retry) {
+                    throw new IllegalStateException("Failed to store item", retry);
+                }
+            }
+        }, executor);
+    }
+    
+    /**
+     * Expired rows are left in their partition, which {@link #maintain()} drops whole once it is
+     * past retention; deleting them one by one would bring back the bloat partitioning avoids.
+     */
+    @Override
+    public CompletableFuture<Long> purgeExpired(long now) {
+        return CompletableFuture.completedFuture(0L);
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> remove(String item) {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + TABLE + " WHERE fingerprint = ?")) {
+                statement.setBytes(1, fingerprint(item));
+                return statement.executeUpdate() > 0;
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to remove item", e);
+            }
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Long> getCount() {
+        return CompletableFuture.supplyAsync(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT count(DISTINCT fingerprint) FROM " + TABLE)) {
+                rs.next();
+                return rs.getLong(1);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Failed to count items", e);
+            }
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Void> clear() {
+        return CompletableFuture.runAsync(() -> execute("TRUNCATE " + TABLE), executor);
+    }
+    
+    @Override
+    public String getName() {
+        return "PostgreSQL (partitioned)";
+    }
+    
+    /**
+     * Create the upcoming partitions and drop the expired ones.
+     */
+    void maintain() {
+        try {
+            Instant start = partitionStart(clock.instant());
+            for (int i = 0; i <= PARTITIONS_AHEAD; i++) {
+                createPartition(start.plus(partitionInterval.multipliedBy(i)));
+            }
+            purgeExpired();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Partition maintenance failed for %s", TABLE);
+        }
+    }
+    
+    /**
+     * Drop every partition whose whole range is older than the retention period. The range comes
+     * from the partition's bound in the catalog, so partitions are judged by what they hold
+     * whatever they are called; a default partition or one without an upper bound is kept.
+     * @return The number of partitions dropped
+     */
+    int purgeExpired() {
+        if (retention.isZero()) {
+            return 0;
+        }
+        Instant cutoff = clock.instant().minus(retention);
+        int dropped = 0;
+        for (Map.Entry<String, Instant> partition : partitionUpperBounds().entrySet()) {
+            Instant end = partition.getValue();
+            if (end != null && !end.isAfter(cutoff)) {
+                execute("DROP TABLE IF EXISTS " + partition.getKey());
+                LOG.infof("Dropped expired partition %s", partition.getKey());
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+    
+    List<String> partitions() {
+        return new ArrayList<>(partitionUpperBounds().keySet());
+    }
+    
+    /**
+     * The partitions of the table, as names usable in SQL, with the exclusive upper bound of their
+     * range. The bound is read from {@code pg_class.relpartbound} and cast back to a timestamp by
+     * PostgreSQL itself; it is null for a default partition or a {@code MAXVALUE} bound.
+     */
+    Map<String, Instant> partitionUpperBounds() {
+        Map<String, Instant> partitions = new LinkedHashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT c.oid::regclass::text, "
+                     + "(regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \\(''([^'']+)''\\)'))[1]::timestamptz "
+                     + "FROM pg_partition_tree(?::regclass) t "
+                     + "JOIN pg_class c ON c.oid = t.relid "
+                     + "WHERE t.isleaf AND t.level > 0 ORDER BY 2 NULLS LAST, 1")) {
+            statement.setString(1, TABLE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    OffsetDateTime end = rs.getObject(2, OffsetDateTime.class);
+                    partitions.put(rs.getString(1), end == null ? null : end.toInstant());
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to list partitions", e);
+        }
+        return partitions;
+    }
+    
+    private void insert(String item, Instant now, long expiresAt) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "INSERT INTO " + TABLE + " (fingerprint, inserted_at, expires_at) VALUES (?, ?, ?)")) {
+            statement.setBytes(1, fingerprint(item));
+            statement.setObject(2, now.atOffset(ZoneOffset.UTC));
+            if (expiresAt == 0) {
+                statement.setNull(3, Types.TIMESTAMP_WITH_TIMEZONE);
+            } else {
+                statement.setObject(3, Instant.ofEpochMilli(expiresAt).atOffset(ZoneOffset.UTC));
+            }
+            statement.executeUpdate();
+        }
+    }
+    
+    private void createPartition(Instant start) {
+        String name = TABLE + "_p" + PARTITION_SUFFIX.format(start);
+        Instant end = start.plus(partitionInterval);
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE
+                + " FOR VALUES FROM ('" + start + "') TO ('" + end + "')");
+        } catch (SQLException e) {
+            // Another node created it between our check and create
+            if (!DUPLICATE_TABLE.equals(e.getSQLState())) {
+                throw new IllegalStateException("Failed to create partition " + name, e);
+            }
+        }
+    }
+    
+    private Instant partitionStart(Instant time) {
+        long intervalSeconds = partitionInterval.getSeconds();
+        return Instant.ofEpochSecond(Math.floorDiv(time.getEpochSecond(), intervalSeconds) * intervalSeconds);
+    }
+    
+    private void execute(String sql) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to execute: " + sql, e);
+        }
+    }
+    
+    static byte[] fingerprint(String item) {
+        return Hashing.murmur3_128().hashString(item, StandardCharsets.UTF_8).asBytes();
+    }
+}
@@ -1,8 +1,11 @@
 package com.chinthakad.statemachine.bloomfilter;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Typed;
 import jakarta.inject.Inject;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
@@ -13,39 +16,65 @@ import java.util.function.Supplier;
 /**
  * PostgreSQL implementation of BackendStore using Hibernate ORM.
  * This provides persistent storage for the bloom filter backend.
+ * Stores are upserts, so storing an item again only moves its expiry.
  */
 @ApplicationScoped
+@Typed(PostgreSQLBackendStore.class)
 public class PostgreSQLBackendStore implements BackendStore {
     
     @Inject
     BloomFilterItemRepository repository;
     
+    // Virtual threads by default, so a query in flight does not hold a pool thread
+    @Inject
+    BackendExecutor executor;
+    
     @Override
     public CompletableFuture<Boolean> contains(String item) {
         return CompletableFuture.supplyAsync((Supplier<Boolean>) () -> {
-            return repository.find("item", item).firstResult() != null;
-        });
+            return repository.find("item = ?1 and (expiresAt = 0 or expiresAt > ?2)", item, System.currentTimeMillis())
+                .firstResult() != null;
+        }, executor);
     }
     
     @Override
-    public CompletableFuture<Void> store(String item) {
+    public CompletableFuture<Void> store(String item, long expiresAt) {
         return CompletableFuture.runAsync(() -> {
-            repository.persist(new BloomFilterItem(item));
-        });
+            QuarkusTransaction.requiringNew().run(() -> repository.getEntityManager()
+                .createNativeQuery("INSERT INTO bloom_filter_items (item, expires_at) VALUES (?1, ?2) "
+                    + "ON CONFLICT (item) DO UPDATE SET expires_at = EXCLUDED.expires_at")
+                .setParameter(1, item)
+                .setParameter(2, expiresAt)
+                .executeUpdate());
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Long> purgeExpired(long now) {
+        return CompletableFuture.supplyAsync(() -> {
+            return QuarkusTransaction.requiringNew().call(() -> repository.delete("expiresAt > 0 and expiresAt <= ?1", now));
+        }, executor);
+    }
+    
+    @Override
+    public CompletableFuture<Boolean> remove(String item) {
+        return CompletableFuture.supplyAsync(() -> {
+            return repository.delete("item", item) > 0;
+        }, executor);
     }
     
     @Override
     public CompletableFuture<Long> getCount() {
         return CompletableFuture.supplyAsync(() -> {
             return repository.count();
-        });
+        }, executor);
     }
     
     @Override
     public CompletableFuture<Void> clear() {
         return CompletableFuture.runAsync(() -> {
             repository.deleteAll();
-        });
+        }, executor);
     }
     
     @Override
@@ -59,6 +88,10 @@ public class PostgreSQLBackendStore implements BackendStore {
         @Id
         private String item;
         
+        // Epoch millis, 0 for never
+        @Column(name = "expires_at", nullable = false)
+        private long expiresAt;
+        
         public BloomFilterItem() {}
         
         public BloomFilterItem(String item) {
@@ -72,6 +105,14 @@ public class PostgreSQLBackendStore implements BackendStore {
         public void setItem(String item) {
             this.item = item;
         }
+        
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+        
+        public void setExpiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
     }
     
     @ApplicationScoped
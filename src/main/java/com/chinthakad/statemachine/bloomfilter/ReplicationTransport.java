@@ -0,0 +1,30 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Carries filter deltas between replicas. Delivery may fail; the replicator sends the words of a
+ * failed delta again and periodically sends whole filters, so a peer that was down catches up.
+ */
+public interface ReplicationTransport {
+    
+    /**
+     * Send a delta to every peer
+     * @param delta An encoded delta, see {@link FilterReplicator}
+     * @return Completes once every peer accepted the delta, exceptionally if any did not
+     */
+    CompletableFuture<Void> broadcast(byte[] delta);
+    
+    /**
+     * Register the handler for deltas arriving from peers
+     * @param handler Called with each received delta
+     */
+    void onReceive(Consumer<byte[]> handler);
+    
+    /**
+     * Get the name/type of this transport
+     * @return The transport name
+     */
+    String getName();
+}
@@ -0,0 +1,159 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.framework.BackpressureController;
+import io.smallrye.reactive.messaging.kafka.KafkaClientService;
+import io.smallrye.reactive.messaging.kafka.KafkaConsumer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backpressure for the order-events consumer, applied at intake by pausing the Kafka partitions
+ * of the channel; records already fetched still go through. Lanes are bounded on top of this (see
+ * {@link OrderEventConsumer#consume}), which also holds back the in-memory connector.
+ * <p>
+ * The intake controller watches live orders and in-flight messages (queued on or running in a
+ * lane), and the channel stays paused while either is above its high watermark.
+ * <p>
+ * The pending controller watches buffered events. Those only drain when their missing
+ * predecessors arrive, so a pause for them could wait for the very records it refuses to read.
+ * The channel is therefore paused for them for at most {@code order.backpressure.max.wait.ms};
+ * if they are still saturated by then, intake resumes and stays open until they clear.
+ */
+@ApplicationScoped
+public class OrderBackpressure {
+    private static final Logger log = LoggerFactory.getLogger(OrderBackpressure.class);
+    static final String CHANNEL = "order-events";
+
+    @Inject
+    KafkaClientService kafka;
+
+    @ConfigProperty(name = "order.backpressure.pending.high", defaultValue = "100000")
+    long pendingHigh;
+
+    @ConfigProperty(name = "order.backpressure.pending.low", defaultValue = "50000")
+    long pendingLow;
+
+    @ConfigProperty(name = "order.backpressure.orders.high", defaultValue = "2000000")
+    long ordersHigh;
+
+    @ConfigProperty(name = "order.backpressure.orders.low", defaultValue = "1500000")
+    long ordersLow;
+
+    @ConfigProperty(name = "order.backpressure.inflight.high", defaultValue = "1024")
+    long inFlightHigh;
+
+    @ConfigProperty(name = "order.backpressure.inflight.low", defaultValue = "512")
+    long inFlightLow;
+
+    @ConfigProperty(name = "order.backpressure.max.wait.ms", defaultValue = "1000")
+    long maxWaitMillis;
+
+    @ConfigProperty(name = "order.backpressure.check.interval.ms", defaultValue = "100")
+    long checkIntervalMillis;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private BackpressureController controller;
+    private BackpressureController pendingController;
+    private ScheduledExecutorService poller;
+    // Poller thread only
+    private long pendingSaturatedSince = -1;
+    private volatile boolean paused;
+
+    @PostConstruct
+    void init() {
+        controller = new BackpressureController()
+                .signal("orders", () -> OrderEventConsumer.getRepository().size(), ordersHigh, ordersLow)
+                .signal("in-flight messages", inFlight::get, inFlightHigh, inFlightLow);
+        pendingController = new BackpressureController()
+                .signal("pending events", OrderEventConsumer.getRepository()::pendingCount, pendingHigh, pendingLow);
+        // Keeps sampling while paused, when no messages arrive to trigger an update
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "order-backpressure");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::update, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void close() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Count a message as in flight until {@link #release()}. Never blocks; the channel is paused
+     * instead.
+     */
+    public void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return Whether intake is currently paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void update() {
+        boolean intakeSaturated = controller.update();
+        boolean pendingSaturated = pendingController.update();
+        long now = System.nanoTime();
+        if (!pendingSaturated) {
+            pendingSaturatedSince = -1;
+        } else if (pendingSaturatedSince < 0) {
+            pendingSaturatedSince = now;
+        }
+        boolean pause = intakeSaturated || pendingSaturated
+                && now - pendingSaturatedSince < TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        if (pause != paused) {
+            paused = pause;
+            if (!pause && pendingSaturated) {
+                log.warn("[Kafka] Still saturated after {} ms ({}); resuming to let buffered events drain",
+                        maxWaitMillis, pendingController.getCause());
+            }
+            pauseOrResume(pause, intakeSaturated ? controller.getCause() : pendingController.getCause());
+        }
+    }
+
+    /**
+     * @return The intake controller, which keeps the channel paused while saturated
+     */
+    public BackpressureController getController() {
+        return controller;
+    }
+
+    /**
+     * @return The controller for buffered events, which pauses intake for a limited time
+     */
+    public BackpressureController getPendingController() {
+        return pendingController;
+    }
+
+    private void pauseOrResume(boolean saturated, String cause) {
+        for (KafkaConsumer<Object, Object> consumer : kafka.<Object, Object>getConsumers(CHANNEL)) {
+            if (saturated) {
+                consumer.pause().subscribe().with(
+                        partitions -> log.warn("[Kafka] Paused {} ({})", partitions, cause),
+                        failure -> log.error("[Kafka] Failed to pause {}", CHANNEL, failure));
+            } else {
+                consumer.resume().subscribe().with(
+                        ignored -> log.info("[Kafka] Resumed {}", CHANNEL),
+                        failure -> log.error("[Kafka] Failed to resume {}", CHANNEL, failure));
+            }
+        }
+    }
+}
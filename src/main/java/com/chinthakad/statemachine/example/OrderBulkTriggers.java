@@ -0,0 +1,88 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.framework.BulkTrigger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bulk triggers over all orders, run on a pool of their own so they cannot occupy the
+ * request or consumer threads. Keeps the most recent jobs for progress queries. Orders a job
+ * moved are followed up by the consumer, as if the event had been consumed.
+ */
+@ApplicationScoped
+public class OrderBulkTriggers {
+    private static final Logger log = LoggerFactory.getLogger(OrderBulkTriggers.class);
+    static final int MAX_RETAINED_JOBS = 100;
+
+    // 0 means a quarter of the available processors
+    @ConfigProperty(name = "order.bulk.parallelism", defaultValue = "0")
+    int parallelism;
+
+    // Triggers per second across all bulk jobs; 0 means no limit
+    @ConfigProperty(name = "order.bulk.max.rate", defaultValue = "0")
+    long maxRate;
+
+    @Inject
+    OrderEventConsumer consumer;
+
+    private final Map<String, BulkTrigger.Job<OrderEvent>> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BulkTrigger.Job<OrderEvent>> eldest) {
+            return size() > MAX_RETAINED_JOBS;
+        }
+    };
+    private ForkJoinPool pool;
+    private BulkTrigger<OrderState, OrderEvent> bulkTrigger;
+
+    @PostConstruct
+    void init() {
+        int threads = parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+        pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("order-bulk-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        bulkTrigger = new BulkTrigger<>(OrderEventConsumer.getRepository(), pool, maxRate,
+                (id, sm) -> consumer.afterTransition(id));
+    }
+
+    @PreDestroy
+    void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Apply {@code event} to every order in one of {@code states} created before {@code createdBefore}.
+     * @param createdBefore Epoch milliseconds, or {@link Long#MAX_VALUE} for any age
+     */
+    public BulkTrigger.Job<OrderEvent> start(OrderEvent event, Set<OrderState> states, long createdBefore) {
+        BulkTrigger.Job<OrderEvent> job = bulkTrigger.start(event, states::contains,
+                (id, sm) -> sm.getCreatedAt() < createdBefore);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+        }
+        job.completion().thenAccept(done -> log.info("Bulk {} on {}: {} applied, {} failed of {} matched in {} ms",
+                event, states, done.getApplied(), done.getFailed(), done.getMatched(),
+                done.getFinishedAt() - done.getStartedAt()));
+        return job;
+    }
+
+    /**
+     * @return The job, or null if it is unknown or no longer retained
+     */
+    public BulkTrigger.Job<OrderEvent> get(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.chinthakad.statemachine.example;
 
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+// Enum constants are looked up reflectively when definitions and codecs are compiled
+@RegisterForReflection
 public enum OrderEvent {
     PAY,
     SHIP,
@@ -0,0 +1,145 @@
+package com.chinthakad.statemachine.example;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Compact binary wire format for order events: the {@link #MAGIC} byte, a 16-byte order id (UUID,
+ * big-endian most/least significant bits) and a 1-byte {@link OrderEvent} ordinal.
+ * Records carrying an event id set the high bit of the ordinal byte and append the
+ * 16-byte event id, for 34 bytes in total.
+ * <p>
+ * The format is compact and cheap to decode: no text parsing and no Jackson. It is not
+ * allocation-free, though. {@link #decode} builds an {@link OrderEventMessage} with the order and
+ * event ids as strings, because orders are keyed by string id and the message outlives the
+ * fetched buffer. Only the accessors, which read fields at absolute offsets, inspect a record in
+ * place without allocating, as replay does.
+ */
+public final class OrderEventBinaryCodec {
+    /**
+     * First byte of every binary record. It is a UTF-8 continuation byte, so no JSON text can
+     * start with it.
+     */
+    public static final byte MAGIC = (byte) 0xB0;
+    public static final int RECORD_SIZE = 18;
+    public static final int RECORD_WITH_EVENT_ID_SIZE = 34;
+
+    private static final int ORDER_ID_MSB_OFFSET = 1;
+    private static final int ORDER_ID_LSB_OFFSET = 9;
+    private static final int EVENT_OFFSET = 17;
+    private static final int EVENT_ID_MSB_OFFSET = 18;
+    private static final int EVENT_ID_LSB_OFFSET = 26;
+    private static final int EVENT_ID_FLAG = 0x80;
+    private static final OrderEvent[] EVENTS = OrderEvent.values();
+
+    private OrderEventBinaryCodec() {}
+
+    public static boolean isBinary(ByteBuffer buffer) {
+        return buffer.remaining() > 0 && buffer.get(buffer.position()) == MAGIC;
+    }
+
+    /**
+     * @return Size of the record at {@code offset}, or -1 if it does not start with {@link #MAGIC}
+     * or is cut off by the buffer's limit
+     */
+    public static int recordSize(ByteBuffer buffer, int offset) {
+        int available = buffer.limit() - offset;
+        if (available < RECORD_SIZE || buffer.get(offset) != MAGIC) {
+            return -1;
+        }
+        int size = hasEventId(buffer, offset) ? RECORD_WITH_EVENT_ID_SIZE : RECORD_SIZE;
+        return size <= available ? size : -1;
+    }
+
+    public static long orderIdMostSigBits(ByteBuffer buffer) {
+        return orderIdMostSigBits(buffer, buffer.position());
+    }
+
+    public static long orderIdMostSigBits(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + ORDER_ID_MSB_OFFSET);
+    }
+
+    public static long orderIdLeastSigBits(ByteBuffer buffer) {
+        return orderIdLeastSigBits(buffer, buffer.position());
+    }
+
+    public static long orderIdLeastSigBits(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset + ORDER_ID_LSB_OFFSET);
+    }
+
+    public static int eventOrdinal(ByteBuffer buffer) {
+        return eventOrdinal(buffer, buffer.position());
+    }
+
+    public static int eventOrdinal(ByteBuffer buffer, int offset) {
+        return buffer.get(offset + EVENT_OFFSET) & ~EVENT_ID_FLAG & 0xFF;
+    }
+
+    public static boolean hasEventId(ByteBuffer buffer) {
+        return hasEventId(buffer, buffer.position());
+    }
+
+    public static boolean hasEventId(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset + EVENT_OFFSET) & EVENT_ID_FLAG) != 0;
+    }
+
+    public static long eventIdMostSigBits(ByteBuffer buffer) {
+        return buffer.getLong(buffer.position() + EVENT_ID_MSB_OFFSET);
+    }
+
+    public static long eventIdLeastSigBits(ByteBuffer buffer) {
+        return buffer.getLong(buffer.position() + EVENT_ID_LSB_OFFSET);
+    }
+
+    /**
+     * Decode the record at the buffer's current position into a new message; the order id, and the
+     * event id if present, become new strings, while the event name is the enum constant's.
+     * Unknown ordinals are passed through as their decimal value so the consumer rejects them like
+     * any other invalid event name.
+     * @throws IllegalArgumentException if the record is not a binary record or is truncated
+     */
+    public static OrderEventMessage decode(ByteBuffer buffer) {
+        if (!isBinary(buffer)) {
+            throw new IllegalArgumentException("Not a binary order event record");
+        }
+        int expected = buffer.remaining() > EVENT_OFFSET && hasEventId(buffer) ? RECORD_WITH_EVENT_ID_SIZE : RECORD_SIZE;
+        if (buffer.remaining() < expected) {
+            throw new IllegalArgumentException("Truncated binary order event record: " + buffer.remaining() + " of " + expected + " bytes");
+        }
+        String orderId = new UUID(orderIdMostSigBits(buffer), orderIdLeastSigBits(buffer)).toString();
+        int ordinal = eventOrdinal(buffer);
+        String event = ordinal < EVENTS.length ? EVENTS[ordinal].name() : Integer.toString(ordinal);
+        String eventId = hasEventId(buffer)
+                ? new UUID(eventIdMostSigBits(buffer), eventIdLeastSigBits(buffer)).toString()
+                : null;
+        return new OrderEventMessage(orderId, event, eventId);
+    }
+
+    public static void encode(UUID orderId, OrderEvent event, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.putLong(orderId.getMostSignificantBits());
+        buffer.putLong(orderId.getLeastSignificantBits());
+        buffer.put((byte) event.ordinal());
+    }
+
+    public static void encode(UUID orderId, OrderEvent event, UUID eventId, ByteBuffer buffer) {
+        buffer.put(MAGIC);
+        buffer.putLong(orderId.getMostSignificantBits());
+        buffer.putLong(orderId.getLeastSignificantBits());
+        buffer.put((byte) (event.ordinal() | EVENT_ID_FLAG));
+        buffer.putLong(eventId.getMostSignificantBits());
+        buffer.putLong(eventId.getLeastSignificantBits());
+    }
+
+    public static byte[] encode(UUID orderId, OrderEvent event) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        encode(orderId, event, buffer);
+        return buffer.array();
+    }
+
+    public static byte[] encode(UUID orderId, OrderEvent event, UUID eventId) {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_WITH_EVENT_ID_SIZE);
+        encode(orderId, event, eventId, buffer);
+        return buffer.array();
+    }
+}
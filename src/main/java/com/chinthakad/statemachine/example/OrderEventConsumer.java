@@ -1,10 +1,19 @@
 package com.chinthakad.statemachine.example;
 
+import com.chinthakad.statemachine.bloomfilter.BloomFilterService;
+import com.chinthakad.statemachine.bloomfilter.FilterNamespace;
+import com.chinthakad.statemachine.framework.DefinitionRegistry;
 import com.chinthakad.statemachine.framework.StateMachine;
 import com.chinthakad.statemachine.framework.StateMachineRepository;
-import io.smallrye.reactive.messaging.annotations.Blocking;
+import com.chinthakad.statemachine.framework.KeyedLanes;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.concurrent.CompletionStage;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,40 +21,161 @@ import org.slf4j.LoggerFactory;
 public class OrderEventConsumer {
     private static final Logger log = LoggerFactory.getLogger(OrderEventConsumer.class);
     private static final StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = new StateMachineRepository<>();
+    // Filter namespace for event ids, sized and expired apart from other dedup use cases
+    static final String DEDUP_NAMESPACE = "order-events";
 
+    @Inject
+    BloomFilterService deduplicator;
+
+    @Inject
+    OrderBackpressure backpressure;
+
+    @ConfigProperty(name = "order.consumer.lanes", defaultValue = "256")
+    int laneCount;
+
+    @ConfigProperty(name = "order.consumer.lane.capacity", defaultValue = "64")
+    int laneCapacity;
+
+    @ConfigProperty(name = "order.history.removed.retained", defaultValue = "10000")
+    int removedRetained;
+
+    private KeyedLanes lanes;
+
+    @PostConstruct
+    void init() {
+        // Every consumed event id is stored; only the namespace's TTL keeps that from growing forever
+        FilterNamespace dedup = deduplicator.getNamespaces().get(DEDUP_NAMESPACE);
+        if (dedup == null || dedup.getTtlMillis() == 0) {
+            throw new IllegalStateException("bloom.filter.namespace." + DEDUP_NAMESPACE + ".ttl.minutes must be set and positive");
+        }
+        lanes = new KeyedLanes(laneCount, laneCapacity, "order-events-lane");
+        // Orders cancelled by their unpaid timeout are cleaned up like ones cancelled by an event
+        repository.setTerminalTimeoutHandler(this::cleanUp);
+        // Finished orders are removed, but their history stays readable for a while for auditing
+        repository.setRemovedRetention(removedRetained);
+        // The consumer starts with the application, so the definition is compiled now rather than by the first order
+        log.info("[Kafka] Order definition v{} ready", OrderStateMachineFactory.DEFINITIONS.current(DefinitionRegistry.DEFAULT_VARIANT).getNumber());
+    }
+
+    /**
+     * Hands each record to the lane of its order, so records of different orders are processed in
+     * parallel while those of one order keep their partition order. The returned stage completes
+     * once the record is queued, so a full lane holds back the channel rather than growing; the
+     * record is acknowledged once its lane processed it.
+     */
     @Incoming("order-events")
-    @Blocking
-    public void consume(OrderEventMessage message) {
+    public CompletionStage<Void> consume(Message<OrderEventMessage> record) {
+        OrderEventMessage message = record.getPayload();
+        backpressure.acquire();
+        return lanes.submit(message.orderId, () -> {
+            try {
+                process(message);
+            } catch (RuntimeException e) {
+                record.nack(e);
+                return;
+            } finally {
+                backpressure.release();
+            }
+            record.ack();
+        });
+    }
+
+    private void process(OrderEventMessage message) {
         StateMachine<OrderState, OrderEvent> sm = repository.get(message.orderId);
         if (sm == null) {
             log.error("[Kafka] Order not found: {}", message.orderId);
             return;
         }
-        try {
-            OrderEvent event = OrderEvent.valueOf(message.event.toUpperCase());
-            boolean success = sm.trigger(event);
-            if (!success) {
-                log.error("[Kafka] Invalid transition for order {}: {}. Caching event.", message.orderId, message.event);
-                repository.addPendingEvent(message.orderId, message);
+        // Under the machine's lock and only while the order is live, so a terminal cleanup cannot
+        // interleave and leave behind a pending queue for a removed order
+        Boolean drain = repository.withMachine(message.orderId, locked -> apply(locked, message));
+        if (drain == null) {
+            log.debug("[Kafka] Order {} was removed; dropping event {}", message.orderId, message.event);
+            return;
+        }
+        if (drain) {
+            drainPending(message.orderId, sm);
+        }
+    }
+
+    /**
+     * Follow up a transition applied outside this consumer, such as by a bulk trigger, as if it
+     * had been consumed: retry the order's buffered events, and clean it up if it ended terminal.
+     * Runs on the order's lane, in turn with its records.
+     */
+    public void afterTransition(String orderId) {
+        lanes.submit(orderId, () -> {
+            StateMachine<OrderState, OrderEvent> sm = repository.get(orderId);
+            if (sm != null) {
+                drainPending(orderId, sm);
             }
-            sm.processPendingEvents(
-                message.orderId,
-                repository.getPendingEvents(message.orderId),
-                (OrderEventMessage m) -> {
-                    try {
-                        return OrderEvent.valueOf(m.event.toUpperCase());
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-                },
-                () -> {
-                    repository.clearPendingEvents(message.orderId);
-                    repository.remove(message.orderId);
-                }
-            );
-        } catch (IllegalArgumentException e) {
+        });
+    }
+
+    private void drainPending(String orderId, StateMachine<OrderState, OrderEvent> sm) {
+        sm.processPendingEvents(
+            orderId,
+            repository.getPendingEvents(orderId),
+            (OrderEventMessage m) -> OrderStateMachineFactory.EVENTS.decode(m.event),
+            () -> cleanUp(orderId)
+        );
+    }
+
+    private void cleanUp(String orderId) {
+        repository.clearPendingEvents(orderId);
+        repository.remove(orderId);
+    }
+
+    /**
+     * Apply or buffer one event; runs under the machine's lock. The event id is only marked as
+     * seen once the event was applied or buffered, so a failure in between leaves a redelivery
+     * free to try again.
+     * @return Whether pending events should be retried
+     */
+    private boolean apply(StateMachine<OrderState, OrderEvent> sm, OrderEventMessage message) {
+        if (isRedelivery(message)) {
+            log.debug("[Kafka] Dropping redelivered event {} for order {}", message.eventId, message.orderId);
+            return false;
+        }
+        OrderEvent event = OrderStateMachineFactory.EVENTS.decode(message.event);
+        if (event == null) {
             log.error("[Kafka] Invalid event: {}", message.event);
+            return false;
         }
+        if (!sm.trigger(event)) {
+            log.error("[Kafka] Invalid transition for order {}: {}. Caching event.", message.orderId, message.event);
+            repository.addPendingEvent(message.orderId, message);
+        }
+        markSeen(message);
+        return true;
+    }
+
+    private boolean isRedelivery(OrderEventMessage message) {
+        if (message.eventId == null) {
+            return false;
+        }
+        try {
+            return deduplicator.containsNow(DEDUP_NAMESPACE, message.eventId);
+        } catch (RuntimeException e) {
+            log.warn("[Kafka] Cannot check event {} for redelivery; processing it", message.eventId, e);
+            return false;
+        }
+    }
+
+    private void markSeen(OrderEventMessage message) {
+        if (message.eventId == null) {
+            return;
+        }
+        try {
+            deduplicator.storeNow(DEDUP_NAMESPACE, message.eventId);
+        } catch (RuntimeException e) {
+            log.error("[Kafka] Cannot record event {}; a redelivery would apply it again", message.eventId, e);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        lanes.close();
     }
 
     // Expose repository for other classes (e.g., REST)
@@ -1,8 +1,14 @@
 package com.chinthakad.statemachine.example;
 
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+// Deserialized reflectively by Jackson from Kafka records and REST bodies, also in native mode
+@RegisterForReflection
 public class OrderEventMessage {
     public String orderId;
     public String event;
+    // Unique per event and stable across redeliveries; optional for producers that predate it
+    public String eventId;
 
     // Default constructor for deserialization
     public OrderEventMessage() {}
@@ -11,4 +17,10 @@ public class OrderEventMessage {
         this.orderId = orderId;
         this.event = event;
     }
+
+    public OrderEventMessage(String orderId, String event, String eventId) {
+        this.orderId = orderId;
+        this.event = event;
+        this.eventId = eventId;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.chinthakad.statemachine.example;
+
+import io.quarkus.kafka.client.serialization.ObjectMapperDeserializer;
+import org.apache.kafka.common.header.Headers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Deserializer for the order-events channel. Records starting with the
+ * {@link OrderEventBinaryCodec#MAGIC} byte are decoded from the compact binary layout, without
+ * Jackson but still into a new message; anything else is treated as JSON.
+ */
+public class OrderEventMessageDeserializer extends ObjectMapperDeserializer<OrderEventMessage> {
+
+    public OrderEventMessageDeserializer() {
+        super(OrderEventMessage.class);
+    }
+
+    @Override
+    public OrderEventMessage deserialize(String topic, byte[] data) {
+        if (data != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (OrderEventBinaryCodec.isBinary(buffer)) {
+                return OrderEventBinaryCodec.decode(buffer);
+            }
+        }
+        return super.deserialize(topic, data);
+    }
+
+    @Override
+    public OrderEventMessage deserialize(String topic, Headers headers, ByteBuffer data) {
+        if (data != null && OrderEventBinaryCodec.isBinary(data)) {
+            return OrderEventBinaryCodec.decode(data);
+        }
+        return super.deserialize(topic, headers, data);
+    }
+}
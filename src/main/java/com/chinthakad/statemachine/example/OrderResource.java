@@ -1,55 +1,679 @@
 package com.chinthakad.statemachine.example;
 
+import com.chinthakad.statemachine.framework.BulkTrigger;
+import com.chinthakad.statemachine.framework.EventCodec;
+import com.chinthakad.statemachine.framework.ExportCursor;
+import com.chinthakad.statemachine.framework.IdGenerator;
 import com.chinthakad.statemachine.framework.StateMachine;
 import com.chinthakad.statemachine.framework.StateMachineRepository;
+import com.chinthakad.statemachine.framework.StateSnapshot;
+import com.chinthakad.statemachine.framework.TransitionRecord;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Multi;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 
+// Requests run on virtual threads; machines lock with ReentrantLock, so blocking in a callback does not pin carriers
 @Path("/order")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
+@RunOnVirtualThread
 public class OrderResource {
+    static final String NDJSON = "application/x-ndjson";
+    static final int MAX_BATCH_SIZE = 10_000;
+    static final int MAX_PAGE_SIZE = 1_000;
+    static final int MAX_EXPORT_PAGE = 100_000;
+    static final String EXPORT_CURSOR_HEADER = "X-Export-Next-Cursor";
+    private static final EventCodec<OrderState> STATES = EventCodec.of(OrderState.class);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    OrderStateChangeStream stateChangeStream;
+
+    @Inject
+    OrderBulkTriggers bulkTriggers;
+
+    @Inject
+    OrderStateChangePublisher stateChangePublisher;
+
+    @ConfigProperty(name = "order.id.generator", defaultValue = "uuidv7")
+    String idGeneratorName;
+
+    private IdGenerator idGenerator;
+
+    @PostConstruct
+    void init() {
+        idGenerator = IdGenerator.named(idGeneratorName);
+    }
 
     @POST
     public Response createOrder() {
-        String id = java.util.UUID.randomUUID().toString();
+        String id = idGenerator.nextIdString();
         StateMachine<OrderState, OrderEvent> sm = OrderStateMachineFactory.create();
         OrderEventConsumer.getRepository().save(id, sm);
         return Response.ok(Map.of("id", id)).build();
     }
 
+    /**
+     * Create one order per array element. Elements may carry a client "ref" that is echoed back
+     * next to the generated id.
+     */
+    @POST
+    @Path("batch")
+    public Response createOrders(InputStream body) throws IOException {
+        return readBatch(body, true, CreateOrderRequest.class, this::create);
+    }
+
+    @POST
+    @Path("batch")
+    @Consumes(NDJSON)
+    public Response createOrdersNdjson(InputStream body) throws IOException {
+        return readBatch(body, false, CreateOrderRequest.class, this::create);
+    }
+
+    /**
+     * Apply an event to one order. With an If-Match header carrying the ETag from
+     * {@code GET /order/{id}}, the event is only applied if the order has not changed since,
+     * and 412 is returned otherwise. If-Match uses strong comparison, so weak tags never match,
+     * and a list matches if any of its tags does.
+     */
     @POST
     @Path("{id}/trigger/{event}")
-    public Response triggerEvent(@PathParam("id") String id, @PathParam("event") String eventStr) {
+    public Response triggerEvent(@PathParam("id") String id, @PathParam("event") String eventStr,
+                                 @HeaderParam(HttpHeaders.IF_MATCH) String ifMatch) {
         StateMachine<OrderState, OrderEvent> sm = OrderEventConsumer.getRepository().get(id);
         if (sm == null) {
             return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "Order not found")).build();
         }
-        OrderEvent event;
-        try {
-            event = OrderEvent.valueOf(eventStr.toUpperCase());
-        } catch (IllegalArgumentException e) {
+        OrderEvent event = OrderStateMachineFactory.EVENTS.decode(eventStr);
+        if (event == null) {
             return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid event")).build();
         }
-        boolean success = sm.trigger(event);
+        Set<Long> expectedVersions = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expectedVersions = parseVersionTags(ifMatch);
+            if (expectedVersions.isEmpty()) {
+                return preconditionFailed(sm.readState());
+            }
+        }
+        boolean success = expectedVersions == null ? sm.trigger(event) : triggerIfAnyVersion(sm, expectedVersions, event);
+        StateSnapshot<OrderState> snapshot = sm.readState();
         if (!success) {
-            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid transition", "state", sm.getCurrentState())).build();
+            // Not atomic with the attempt, but a version that moved on can only have moved further
+            if (expectedVersions != null && !expectedVersions.contains(snapshot.getVersion())) {
+                return preconditionFailed(snapshot);
+            }
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid transition", "state", snapshot.getState())).build();
+        }
+        return Response.ok(Map.of("state", snapshot.getState(), "version", snapshot.getVersion()))
+                .tag(versionTag(snapshot))
+                .build();
+    }
+
+    /**
+     * Apply one {"orderId", "event"} element per array entry. Every element gets a result;
+     * a failing element does not stop the rest of the batch.
+     */
+    @POST
+    @Path("trigger-batch")
+    public Response triggerEvents(InputStream body) throws IOException {
+        return readBatch(body, true, OrderEventMessage.class, this::trigger);
+    }
+
+    @POST
+    @Path("trigger-batch")
+    @Consumes(NDJSON)
+    public Response triggerEventsNdjson(InputStream body) throws IOException {
+        return readBatch(body, false, OrderEventMessage.class, this::trigger);
+    }
+
+    /**
+     * Start applying an event to every order in one of the given states, optionally only to orders
+     * older than {@code olderThanSeconds}. Returns 202 with the job; poll /order/bulk/{jobId} for
+     * progress and the final counts.
+     */
+    @POST
+    @Path("bulk/trigger/{event}")
+    public Response bulkTrigger(@PathParam("event") String eventStr,
+                                @QueryParam("state") List<String> stateNames,
+                                @QueryParam("olderThanSeconds") Long olderThanSeconds) {
+        OrderEvent event = OrderStateMachineFactory.EVENTS.decode(eventStr);
+        if (event == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid event")).build();
+        }
+        if (stateNames.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "At least one state is required")).build();
+        }
+        Set<OrderState> states = EnumSet.noneOf(OrderState.class);
+        for (String name : stateNames) {
+            OrderState state = parseState(name);
+            if (state == null) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid state: " + name)).build();
+            }
+            states.add(state);
+        }
+        if (olderThanSeconds != null && olderThanSeconds < 0) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "olderThanSeconds must be >= 0")).build();
+        }
+        long createdBefore = olderThanSeconds == null ? Long.MAX_VALUE : System.currentTimeMillis() - olderThanSeconds * 1000;
+        BulkTrigger.Job<OrderEvent> job = bulkTriggers.start(event, states, createdBefore);
+        return Response.accepted(describe(job)).build();
+    }
+
+    @GET
+    @Path("bulk/{jobId}")
+    public Response getBulkJob(@PathParam("jobId") String jobId) {
+        BulkTrigger.Job<OrderEvent> job = bulkTriggers.get(jobId);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "Job not found")).build();
+        }
+        return Response.ok(describe(job)).build();
+    }
+
+    /**
+     * Stop a running bulk job. Orders already triggered keep their new state.
+     */
+    @DELETE
+    @Path("bulk/{jobId}")
+    public Response cancelBulkJob(@PathParam("jobId") String jobId) {
+        BulkTrigger.Job<OrderEvent> job = bulkTriggers.get(jobId);
+        if (job == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "Job not found")).build();
+        }
+        job.cancel();
+        return Response.ok(describe(job)).build();
+    }
+
+    /**
+     * List the ids of orders currently in a state, a page at a time, in ascending id order. The
+     * next page's cursor comes back in the X-Export-Next-Cursor header.
+     */
+    @GET
+    public Response listByState(@QueryParam("state") String stateName,
+                                @QueryParam("cursor") String token,
+                                @QueryParam("limit") @DefaultValue("100") int limit) {
+        OrderState state = parseState(stateName);
+        if (state == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid state")).build();
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE))
+                    .build();
+        }
+        ExportCursor cursor = parseCursor(token);
+        if (cursor == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid cursor")).build();
+        }
+        StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = OrderEventConsumer.getRepository();
+        List<String> ids = new ArrayList<>(Math.min(limit, 1024));
+        ExportCursor next = repository.exportState(state, cursor, limit, (id, sm) -> ids.add(id));
+        Response.ResponseBuilder response = Response.ok(Map.of(
+                "state", state,
+                "total", repository.count(state),
+                "ids", ids));
+        if (next != null) {
+            response.header(EXPORT_CURSOR_HEADER, next.toToken());
+        }
+        return response.build();
+    }
+
+    /**
+     * Histogram of orders per state, with buffered events and state changes not yet published or
+     * dropped unpublished by a full in-memory outbox.
+     */
+    @GET
+    @Path("stats")
+    public Response getStats() {
+        StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = OrderEventConsumer.getRepository();
+        Map<OrderState, Long> counts = new EnumMap<>(OrderState.class);
+        for (OrderState state : OrderState.values()) {
+            counts.put(state, repository.count(state));
+        }
+        return Response.ok(Map.of("total", repository.size(), "states", counts, "pending", repository.pendingCount(),
+                "unpublished", stateChangePublisher.getPublisher().getPendingRecords(),
+                "droppedUnpublished", stateChangePublisher.getPublisher().getDroppedRecords())).build();
+    }
+
+    /**
+     * Server-sent stream of state changes for the given orders (all orders if none are given),
+     * optionally limited to transitions into the given states.
+     */
+    @GET
+    @Path("stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    // A Multi is non-blocking by default, which the class-level @RunOnVirtualThread rejects
+    @Blocking
+    public Multi<OrderStateChangeStream.StateChange> streamStateChanges(@QueryParam("id") List<String> ids,
+                                                                         @QueryParam("state") List<String> stateNames) {
+        Set<OrderState> states = EnumSet.noneOf(OrderState.class);
+        for (String name : stateNames) {
+            OrderState state = parseState(name);
+            if (state == null) {
+                throw new BadRequestException("Invalid state: " + name);
+            }
+            states.add(state);
         }
-        return Response.ok(Map.of("state", sm.getCurrentState())).build();
+        return stateChangeStream.subscribe(new HashSet<>(ids), states);
+    }
+
+    /**
+     * Export one page of all live orders as NDJSON {"id", "state"} lines. The next page's cursor
+     * comes back in the X-Export-Next-Cursor header, which is absent once the export is complete.
+     * The export is weakly consistent and never blocks triggers; see
+     * {@link StateMachineRepository#export}.
+     */
+    @GET
+    @Path("export")
+    @Produces(NDJSON)
+    public Response exportNdjson(@QueryParam("cursor") String cursor,
+                                 @QueryParam("limit") @DefaultValue("10000") int limit) {
+        return export(cursor, limit, (page, out) -> {
+            for (ExportedOrder order : page) {
+                out.write(objectMapper.writeValueAsBytes(order));
+                out.write('\n');
+            }
+        });
     }
 
+    /**
+     * Same as {@link #exportNdjson}, with each order written as a modified-UTF-8 id
+     * ({@link DataOutputStream#writeUTF}) followed by one byte holding the state's ordinal.
+     */
+    @GET
+    @Path("export")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response exportBinary(@QueryParam("cursor") String cursor,
+                                 @QueryParam("limit") @DefaultValue("10000") int limit) {
+        return export(cursor, limit, (page, out) -> {
+            DataOutputStream data = new DataOutputStream(out);
+            for (ExportedOrder order : page) {
+                data.writeUTF(order.id);
+                data.writeByte(order.state.ordinal());
+            }
+            data.flush();
+        });
+    }
+
+    /**
+     * Current state of an order. The ETag is the order's version, so polling clients can send
+     * If-None-Match and get 304 until the state changes. The read never blocks transitions.
+     */
     @GET
     @Path("{id}")
-    public Response getState(@PathParam("id") String id) {
+    public Response getState(@PathParam("id") String id, @Context Request request) {
         StateMachine<OrderState, OrderEvent> sm = OrderEventConsumer.getRepository().get(id);
         if (sm == null) {
             return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "Order not found")).build();
         }
-        return Response.ok(Map.of("state", sm.getCurrentState())).build();
+        StateSnapshot<OrderState> snapshot = sm.readState();
+        EntityTag tag = versionTag(snapshot);
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.tag(tag).build();
+        }
+        return Response.ok(Map.of("state", snapshot.getState(), "version", snapshot.getVersion())).tag(tag).build();
+    }
+
+    /**
+     * The order's most recent transitions, oldest first. Only the last few are kept, see
+     * {@link OrderStateMachineFactory#HISTORY}. Finished orders keep theirs once removed, for the
+     * latest {@code order.history.removed.retained} of them.
+     */
+    @GET
+    @Path("{id}/history")
+    public Response getHistory(@PathParam("id") String id) {
+        StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = OrderEventConsumer.getRepository();
+        StateMachine<OrderState, OrderEvent> sm = repository.get(id);
+        boolean removed = sm == null;
+        if (removed) {
+            // A finished order is removed; its final history is kept for the latest ones only
+            sm = repository.findRemoved(id);
+        }
+        if (sm == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "Order not found")).build();
+        }
+        List<HistoryEntry> transitions = new ArrayList<>();
+        for (TransitionRecord<OrderState, OrderEvent> record : sm.getHistory()) {
+            transitions.add(new HistoryEntry(record.getFrom(), record.getEvent(), record.getTo(), record.getTimestamp()));
+        }
+        return Response.ok(Map.of("id", id, "createdAt", sm.getCreatedAt(), "removed", removed, "transitions", transitions)).build();
+    }
+
+    private Response export(String token, int limit, PageWriter writer) {
+        if (limit < 1 || limit > MAX_EXPORT_PAGE) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "limit must be between 1 and " + MAX_EXPORT_PAGE))
+                    .build();
+        }
+        ExportCursor cursor = parseCursor(token);
+        if (cursor == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Invalid cursor")).build();
+        }
+        // The page is collected first so the next cursor can go out as a header ahead of the body
+        List<ExportedOrder> page = new ArrayList<>(Math.min(limit, 1024));
+        ExportCursor next = OrderEventConsumer.getRepository().export(cursor, limit,
+                (id, sm) -> page.add(new ExportedOrder(id, sm.getCurrentState())));
+        StreamingOutput body = out -> {
+            BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            writer.write(page, buffered);
+            buffered.flush();
+        };
+        Response.ResponseBuilder response = Response.ok(body);
+        if (next != null) {
+            response.header(EXPORT_CURSOR_HEADER, next.toToken());
+        }
+        return response.build();
+    }
+
+    @FunctionalInterface
+    private interface PageWriter {
+        void write(List<ExportedOrder> page, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Stream a whole batch, a JSON array or NDJSON, before any of it is applied, so an oversized
+     * or malformed batch is rejected without side effects. Reading stops one element past the
+     * limit; a malformed element is reported with its line.
+     */
+    private <T> Response readBatch(InputStream body, boolean array, Class<T> type,
+                                   Function<List<T>, Response> apply) throws IOException {
+        List<T> batch = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            ObjectReader reader = objectMapper.readerFor(type);
+            if (array) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "Request body must be a JSON array")).build();
+                }
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new JsonParseException(parser, "Unterminated array");
+                    }
+                    if (batch.size() == MAX_BATCH_SIZE) {
+                        return batchTooLarge();
+                    }
+                    batch.add(reader.readValue(parser));
+                }
+            } else {
+                MappingIterator<T> elements = reader.readValues(parser);
+                while (elements.hasNext()) {
+                    if (batch.size() == MAX_BATCH_SIZE) {
+                        return batchTooLarge();
+                    }
+                    batch.add(elements.next());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            return malformedBatch(e);
+        } catch (RuntimeException e) {
+            // The iterator wraps what it cannot read
+            if (e.getCause() instanceof JsonProcessingException cause) {
+                return malformedBatch(cause);
+            }
+            throw e;
+        }
+        return apply.apply(batch);
+    }
+
+    private static Response malformedBatch(JsonProcessingException e) {
+        JsonLocation location = e.getLocation();
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", "Malformed batch element: " + e.getOriginalMessage());
+        if (location != null) {
+            error.put("line", location.getLineNr());
+        }
+        return Response.status(Response.Status.BAD_REQUEST).entity(error).build();
+    }
+
+    private Response create(List<CreateOrderRequest> requests) {
+        StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = OrderEventConsumer.getRepository();
+        List<CreateOrderResult> results = new ArrayList<>(requests.size());
+        for (CreateOrderRequest request : requests) {
+            String id = idGenerator.nextIdString();
+            repository.save(id, OrderStateMachineFactory.create());
+            results.add(new CreateOrderResult(request == null ? null : request.ref, id));
+        }
+        return Response.ok(Map.of("created", results.size(), "results", results)).build();
+    }
+
+    private Response trigger(List<OrderEventMessage> requests) {
+        StateMachineRepository<OrderState, OrderEvent, OrderEventMessage> repository = OrderEventConsumer.getRepository();
+        List<TriggerResult> results = new ArrayList<>(requests.size());
+        int applied = 0;
+        for (OrderEventMessage request : requests) {
+            if (request == null) {
+                results.add(new TriggerResult(null, null, TriggerStatus.INVALID_EVENT, null));
+                continue;
+            }
+            StateMachine<OrderState, OrderEvent> sm = request.orderId == null ? null : repository.get(request.orderId);
+            if (sm == null) {
+                results.add(new TriggerResult(request.orderId, request.event, TriggerStatus.NOT_FOUND, null));
+                continue;
+            }
+            OrderEvent event = OrderStateMachineFactory.EVENTS.decode(request.event);
+            if (event == null) {
+                results.add(new TriggerResult(request.orderId, request.event, TriggerStatus.INVALID_EVENT, sm.getCurrentState()));
+            } else if (sm.trigger(event)) {
+                applied++;
+                results.add(new TriggerResult(request.orderId, request.event, TriggerStatus.OK, sm.getCurrentState()));
+            } else {
+                results.add(new TriggerResult(request.orderId, request.event, TriggerStatus.INVALID_TRANSITION, sm.getCurrentState()));
+            }
+        }
+        return Response.ok(Map.of("applied", applied, "failed", results.size() - applied, "results", results)).build();
+    }
+
+    private static EntityTag versionTag(StateSnapshot<OrderState> snapshot) {
+        return new EntityTag(Long.toString(snapshot.getVersion()));
+    }
+
+    /**
+     * Apply {@code event} if the order is at one of {@code versions}. Versions only grow, so
+     * this retries at most once per listed version that the order moves through meanwhile.
+     */
+    private static boolean triggerIfAnyVersion(StateMachine<OrderState, OrderEvent> sm, Set<Long> versions, OrderEvent event) {
+        long version = sm.readState().getVersion();
+        while (versions.contains(version)) {
+            if (sm.triggerIfVersion(version, event)) {
+                return true;
+            }
+            long current = sm.readState().getVersion();
+            if (current == version) {
+                // Still at a listed version, so the transition itself was invalid
+                return false;
+            }
+            version = current;
+        }
+        return false;
+    }
+
+    /**
+     * The versions in an If-Match list such as {@code "3", "4"}. Only strong tags count:
+     * {@code W/"3"} and tags that are not ours are skipped, as they can never match.
+     */
+    static Set<Long> parseVersionTags(String value) {
+        Set<Long> versions = new HashSet<>();
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            if (c == ',' || c == ' ' || c == '\t') {
+                i++;
+                continue;
+            }
+            boolean weak = value.startsWith("W/", i);
+            int open = weak ? i + 2 : i;
+            if (open >= value.length() || value.charAt(open) != '"') {
+                // Not an entity tag; skip to the next element
+                int comma = value.indexOf(',', i);
+                i = comma < 0 ? value.length() : comma + 1;
+                continue;
+            }
+            int close = value.indexOf('"', open + 1);
+            if (close < 0) {
+                break;
+            }
+            if (!weak && close > open + 1) {
+                try {
+                    versions.add(Long.parseLong(value.substring(open + 1, close)));
+                } catch (NumberFormatException e) {
+                    // Someone else's tag
+                }
+            }
+            i = close + 1;
+        }
+        return versions;
+    }
+
+    private static Response preconditionFailed(StateSnapshot<OrderState> current) {
+        return Response.status(Response.Status.PRECONDITION_FAILED)
+                .entity(Map.of("error", "Order has changed", "state", current.getState(), "version", current.getVersion()))
+                .tag(versionTag(current))
+                .build();
+    }
+
+    private static Map<String, Object> describe(BulkTrigger.Job<OrderEvent> job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", job.getId());
+        view.put("event", job.getEvent());
+        view.put("done", job.isDone());
+        view.put("cancelled", job.isCancelled());
+        view.put("progress", job.getProgress());
+        view.put("scanned", job.getScanned());
+        view.put("matched", job.getMatched());
+        view.put("applied", job.getApplied());
+        view.put("failed", job.getFailed());
+        long end = job.isDone() ? job.getFinishedAt() : System.currentTimeMillis();
+        view.put("elapsedMillis", end - job.getStartedAt());
+        return view;
+    }
+
+    private static OrderState parseState(String name) {
+        return STATES.decode(name);
+    }
+
+    /**
+     * @return The cursor, {@link ExportCursor#START} for none, or null if it is malformed
+     */
+    private static ExportCursor parseCursor(String token) {
+        try {
+            return ExportCursor.parse(token);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Response batchTooLarge() {
+        return Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE)
+                .entity(Map.of("error", "Batch exceeds " + MAX_BATCH_SIZE + " items"))
+                .build();
+    }
+
+    public enum TriggerStatus {
+        OK,
+        NOT_FOUND,
+        INVALID_EVENT,
+        INVALID_TRANSITION
+    }
+
+    @RegisterForReflection
+    public static class CreateOrderRequest {
+        public String ref;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @RegisterForReflection
+    public static class CreateOrderResult {
+        public final String ref;
+        public final String id;
+
+        public CreateOrderResult(String ref, String id) {
+            this.ref = ref;
+            this.id = id;
+        }
+    }
+
+    @RegisterForReflection
+    public static class ExportedOrder {
+        public final String id;
+        public final OrderState state;
+
+        public ExportedOrder(String id, OrderState state) {
+            this.id = id;
+            this.state = state;
+        }
+    }
+
+    // No event means the order moved through a definition migration
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @RegisterForReflection
+    public static class HistoryEntry {
+        public final OrderState from;
+        public final OrderEvent event;
+        public final OrderState to;
+        public final long at;
+
+        public HistoryEntry(OrderState from, OrderEvent event, OrderState to, long at) {
+            this.from = from;
+            this.event = event;
+            this.to = to;
+            this.at = at;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @RegisterForReflection
+    public static class TriggerResult {
+        public final String orderId;
+        public final String event;
+        public final TriggerStatus status;
+        public final OrderState state;
+
+        public TriggerResult(String orderId, String event, TriggerStatus status, OrderState state) {
+            this.orderId = orderId;
+            this.event = event;
+            this.status = status;
+            this.state = state;
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package com.chinthakad.statemachine.example;
 
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+// Enum constants are looked up reflectively when definitions and codecs are compiled
+@RegisterForReflection
 public enum OrderState implements com.chinthakad.statemachine.framework.TerminalState {
     CREATED,
     PAID,
@@ -0,0 +1,152 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.framework.FileOutbox;
+import com.chinthakad.statemachine.framework.InMemoryOutbox;
+import com.chinthakad.statemachine.framework.Outbox;
+import com.chinthakad.statemachine.framework.OutboxPublisher;
+import com.chinthakad.statemachine.framework.OutboxRecord;
+import com.chinthakad.statemachine.framework.TransitionListener;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.quarkus.runtime.Startup;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.eclipse.microprofile.reactive.messaging.Metadata;
+import org.eclipse.microprofile.reactive.messaging.OnOverflow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes every order transition to the order-state-changes channel.
+ * <p>
+ * Transitions are appended to an outbox while the order is still locked, in memory or, with
+ * {@code order.outbox.type=file}, in a log that survives restarts. A background publisher sends
+ * them in batches keyed by order id, so each order's changes stay in one partition and in order,
+ * and acknowledges a batch only once Kafka acknowledged all of its records. Delivery is at least
+ * once; consumers drop duplicates by the messages' (epoch, seq) pair, as seq alone starts over
+ * whenever an in-memory outbox is recreated. Batching, compression and idempotence of the
+ * producer itself are configured on the channel.
+ */
+@ApplicationScoped
+@Startup
+public class OrderStateChangePublisher {
+    private static final Logger log = LoggerFactory.getLogger(OrderStateChangePublisher.class);
+    static final String CHANNEL = "order-state-changes";
+    // Must hold a full batch, which is sent before any of it is acknowledged
+    static final int EMITTER_BUFFER = 16_384;
+
+    @Inject
+    @Channel(CHANNEL)
+    @OnOverflow(value = OnOverflow.Strategy.BUFFER, bufferSize = EMITTER_BUFFER)
+    Emitter<StateChangeMessage> emitter;
+
+    @ConfigProperty(name = "order.outbox.type", defaultValue = "memory")
+    String type;
+
+    @ConfigProperty(name = "order.outbox.memory.capacity", defaultValue = "1000000")
+    int memoryCapacity;
+
+    @ConfigProperty(name = "order.outbox.path", defaultValue = "order-outbox.log")
+    String path;
+
+    @ConfigProperty(name = "order.outbox.fsync", defaultValue = "false")
+    boolean fsync;
+
+    @ConfigProperty(name = "order.outbox.segment.mb", defaultValue = "64")
+    long segmentMb;
+
+    @ConfigProperty(name = "order.outbox.batch.max.records", defaultValue = "1000")
+    int maxBatchRecords;
+
+    @ConfigProperty(name = "order.outbox.batch.max.bytes", defaultValue = "1048576")
+    int maxBatchBytes;
+
+    @ConfigProperty(name = "order.outbox.linger.ms", defaultValue = "20")
+    long lingerMillis;
+
+    private Outbox outbox;
+    private TransitionListener<OrderState, OrderEvent> listener;
+    private OutboxPublisher publisher;
+
+    @PostConstruct
+    void init() {
+        if (maxBatchRecords > EMITTER_BUFFER) {
+            throw new IllegalStateException("order.outbox.batch.max.records must not exceed " + EMITTER_BUFFER);
+        }
+        outbox = switch (type) {
+            case "memory" -> new InMemoryOutbox(memoryCapacity);
+            case "file" -> new FileOutbox(Path.of(path), fsync, segmentMb << 20);
+            default -> throw new IllegalStateException("Unknown order.outbox.type: " + type);
+        };
+        listener = outbox.listener();
+        OrderEventConsumer.getRepository().addTransitionListener(listener);
+        publisher = new OutboxPublisher(outbox, this::send, maxBatchRecords, maxBatchBytes, lingerMillis);
+        publisher.start("order-outbox-publisher");
+        log.info("[Outbox] Publishing order state changes from a {} outbox ({} pending)", type, outbox.size());
+    }
+
+    @PreDestroy
+    void close() {
+        OrderEventConsumer.getRepository().removeTransitionListener(listener);
+        publisher.close();
+        outbox.close();
+    }
+
+    private CompletionStage<Void> send(List<OutboxRecord> batch) {
+        CompletableFuture<?>[] acks = new CompletableFuture<?>[batch.size()];
+        for (int i = 0; i < acks.length; i++) {
+            OutboxRecord record = batch.get(i);
+            CompletableFuture<Void> ack = new CompletableFuture<>();
+            acks[i] = ack;
+            Metadata metadata = Metadata.of(OutgoingKafkaRecordMetadata.<String>builder().withKey(record.getMachineId()).build());
+            emitter.send(Message.of(new StateChangeMessage(record), metadata,
+                    () -> {
+                        ack.complete(null);
+                        return CompletableFuture.completedFuture(null);
+                    },
+                    failure -> {
+                        ack.completeExceptionally(failure);
+                        return CompletableFuture.completedFuture(null);
+                    }));
+        }
+        return CompletableFuture.allOf(acks);
+    }
+
+    public OutboxPublisher getPublisher() {
+        return publisher;
+    }
+
+    @RegisterForReflection
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class StateChangeMessage {
+        public final long epoch;
+        public final long seq;
+        public final String id;
+        public final String from;
+        /** Null when the order migrated to a new definition version */
+        public final String event;
+        public final String to;
+        public final long at;
+
+        StateChangeMessage(OutboxRecord record) {
+            this.epoch = record.getEpoch();
+            this.seq = record.getSequence();
+            this.id = record.getMachineId();
+            this.from = record.getFrom();
+            this.event = record.getEvent();
+            this.to = record.getTo();
+            this.at = record.getTimestamp();
+        }
+    }
+}
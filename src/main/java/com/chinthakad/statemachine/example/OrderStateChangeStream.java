@@ -0,0 +1,174 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.framework.TransitionListener;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+import io.smallrye.mutiny.Multi;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans order transitions out to streaming subscribers.
+ * Each subscriber keeps only the latest state per order between flushes, so a slow client sees
+ * coalesced updates instead of an ever-growing backlog; flush ticks it cannot keep up with are dropped.
+ */
+@ApplicationScoped
+public class OrderStateChangeStream implements TransitionListener<OrderState, OrderEvent> {
+
+    @ConfigProperty(name = "order.stream.flush.interval.ms", defaultValue = "100")
+    long flushIntervalMs;
+
+    @ConfigProperty(name = "order.stream.max.pending", defaultValue = "10000")
+    int maxPending;
+
+    private final Map<String, List<Subscription>> byOrderId = new ConcurrentHashMap<>();
+    private final List<Subscription> wildcard = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    void init() {
+        OrderEventConsumer.getRepository().addTransitionListener(this);
+    }
+
+    @PreDestroy
+    void destroy() {
+        OrderEventConsumer.getRepository().removeTransitionListener(this);
+    }
+
+    /**
+     * Stream state changes.
+     * @param orderIds Orders to watch; empty watches every order
+     * @param states Only report transitions into these states; empty reports all
+     * @return Coalesced stream of state changes
+     */
+    public Multi<StateChange> subscribe(Set<String> orderIds, Set<OrderState> states) {
+        Subscription subscription = new Subscription(orderIds, states);
+        return Multi.createFrom().ticks().every(Duration.ofMillis(flushIntervalMs))
+                .onOverflow().drop()
+                .onSubscription().invoke(() -> register(subscription))
+                .onItem().transformToIterable(tick -> subscription.drain())
+                .onTermination().invoke(() -> unregister(subscription));
+    }
+
+    @Override
+    public void onTransition(String id, OrderState from, OrderEvent event, OrderState to) {
+        List<Subscription> targeted = byOrderId.get(id);
+        if (targeted != null) {
+            for (Subscription subscription : targeted) {
+                subscription.offer(id, to);
+            }
+        }
+        for (Subscription subscription : wildcard) {
+            subscription.offer(id, to);
+        }
+    }
+
+    /**
+     * @return The live subscriptions that watch {@code orderId} by id
+     */
+    int subscriberCount(String orderId) {
+        List<Subscription> subscriptions = byOrderId.get(orderId);
+        return subscriptions == null ? 0 : subscriptions.size();
+    }
+
+    private void register(Subscription subscription) {
+        if (subscription.orderIds.isEmpty()) {
+            wildcard.add(subscription);
+        } else {
+            for (String id : subscription.orderIds) {
+                byOrderId.computeIfAbsent(id, k -> new CopyOnWriteArrayList<>()).add(subscription);
+            }
+        }
+    }
+
+    private void unregister(Subscription subscription) {
+        if (subscription.orderIds.isEmpty()) {
+            wildcard.remove(subscription);
+        } else {
+            for (String id : subscription.orderIds) {
+                byOrderId.computeIfPresent(id, (k, subscriptions) -> {
+                    subscriptions.remove(subscription);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+            }
+        }
+    }
+
+    private class Subscription {
+        private final Set<String> orderIds;
+        private final Set<OrderState> states;
+        private final Map<String, OrderState> latest = new ConcurrentHashMap<>();
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        Subscription(Set<String> orderIds, Set<OrderState> states) {
+            this.orderIds = orderIds;
+            this.states = states;
+        }
+
+        void offer(String id, OrderState state) {
+            if (!states.isEmpty() && !states.contains(state)) {
+                return;
+            }
+            // Updates to an order already waiting are always coalesced; new orders are bounded
+            if (latest.size() >= maxPending && !latest.containsKey(id)) {
+                dropped.incrementAndGet();
+                return;
+            }
+            latest.put(id, state);
+        }
+
+        List<StateChange> drain() {
+            List<StateChange> changes = new ArrayList<>(latest.size());
+            Iterator<String> ids = latest.keySet().iterator();
+            while (ids.hasNext()) {
+                String id = ids.next();
+                OrderState state = latest.remove(id);
+                if (state != null) {
+                    changes.add(new StateChange(id, state));
+                }
+            }
+            int lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                changes.add(StateChange.overflow(lost));
+            }
+            return changes;
+        }
+    }
+
+    /**
+     * One streamed update. An update with only {@code dropped} set reports how many orders were
+     * skipped because the subscriber fell too far behind.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @RegisterForReflection
+    public static class StateChange {
+        public final String id;
+        public final OrderState state;
+        public final Integer dropped;
+
+        public StateChange(String id, OrderState state) {
+            this(id, state, null);
+        }
+
+        private StateChange(String id, OrderState state, Integer dropped) {
+            this.id = id;
+            this.state = state;
+            this.dropped = dropped;
+        }
+
+        static StateChange overflow(int dropped) {
+            return new StateChange(null, null, dropped);
+        }
+    }
+}
@@ -1,19 +1,45 @@
 package com.chinthakad.statemachine.example;
 
+import com.chinthakad.statemachine.framework.DefinitionRegistry;
+import com.chinthakad.statemachine.framework.EventCodec;
+import com.chinthakad.statemachine.framework.HistoryArena;
 import com.chinthakad.statemachine.framework.StateMachine;
 import com.chinthakad.statemachine.framework.StateMachineBuilder;
+import com.chinthakad.statemachine.framework.StateMachineDefinition;
+import java.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class OrderStateMachineFactory {
     private static final Logger log = LoggerFactory.getLogger(OrderStateMachineFactory.class);
+    public static final EventCodec<OrderEvent> EVENTS = EventCodec.of(OrderEvent.class);
+    // Unpaid orders are cancelled automatically
+    static final Duration UNPAID_TIMEOUT = Duration.ofMinutes(30);
+    // The last few transitions of every order, packed into shared chunks rather than an array per order
+    public static final HistoryArena HISTORY = new HistoryArena(8);
+
+    // Validated and compiled once when the class is initialized; every order shares it
+    public static final StateMachineDefinition<OrderState, OrderEvent> DEFINITION = define();
+    // Later versions can be published at runtime; live orders migrate on their next event
+    public static final DefinitionRegistry<OrderState, OrderEvent> DEFINITIONS = new DefinitionRegistry<>();
+
+    static {
+        DEFINITIONS.publish(DefinitionRegistry.DEFAULT_VARIANT, DEFINITION);
+    }
+
     public static StateMachine<OrderState, OrderEvent> create() {
+        return DEFINITIONS.newMachine(DefinitionRegistry.DEFAULT_VARIANT);
+    }
+
+    private static StateMachineDefinition<OrderState, OrderEvent> define() {
         return new StateMachineBuilder<OrderState, OrderEvent>(OrderState.CREATED)
                 .transition(OrderState.CREATED, OrderEvent.PAY, OrderState.PAID)
                 .transition(OrderState.PAID, OrderEvent.SHIP, OrderState.SHIPPED)
                 .transition(OrderState.CREATED, OrderEvent.CANCEL, OrderState.CANCELLED)
                 .transition(OrderState.PAID, OrderEvent.CANCEL, OrderState.CANCELLED)
                 .transition(OrderState.SHIPPED, OrderEvent.DELIVER, OrderState.DELIVERED)
+                .timeout(OrderState.CREATED, UNPAID_TIMEOUT, OrderEvent.CANCEL)
+                .history(HISTORY)
                 .onTransition(OrderState.CREATED, OrderEvent.SHIP, OrderState.SHIPPED, (from, to) -> {
                     log.info("Order shortcut: CREATED -> SHIPPED. Performing both pay and ship logic.");
                     // Simulate both pay and ship logic
@@ -23,6 +49,6 @@ public class OrderStateMachineFactory {
                 .onTransition(OrderEvent.CANCEL, (from, to) -> log.info("Order cancelled: {} -> {}", from, to))
                 .onTransition(OrderEvent.DELIVER, (from, to) -> log.info("Order delivered: {} -> {}", from, to))
                 .onInvalidTransition(msg -> log.error("[OrderStateMachine] {}", msg))
-                .build();
+                .buildDefinition();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,182 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns pressure signals (pending events, live machines, in-flight work, ...) into a single
+ * saturated/clear decision with hysteresis.
+ * <p>
+ * The controller becomes saturated when any signal reaches its high watermark, and clears only
+ * once every signal is back at or below its low watermark, so it does not flap around a single
+ * threshold. Producers call {@link #awaitCapacity} before taking on work; listeners registered
+ * with {@link #onChange} can pause and resume the source. Signals are sampled on every
+ * {@link #update()}, which {@link #awaitCapacity} also calls while it waits, so no background
+ * thread is needed for recovery.
+ */
+public class BackpressureController {
+    private static final Logger log = LoggerFactory.getLogger(BackpressureController.class);
+    private static final long RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final List<Signal> signals = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition capacity = lock.newCondition();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private volatile boolean saturated;
+    private volatile String cause;
+
+    /**
+     * @throws IllegalArgumentException if {@code low} is above {@code high}
+     */
+    public BackpressureController signal(String name, LongSupplier value, long high, long low) {
+        if (low > high) {
+            throw new IllegalArgumentException("Low watermark of " + name + " is above its high watermark");
+        }
+        signals.add(new Signal(name, value, high, low));
+        return this;
+    }
+
+    /**
+     * @param listener Called with true when the controller saturates and false when it clears
+     */
+    public BackpressureController onChange(Consumer<Boolean> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Sample the signals and flip state if a watermark was crossed.
+     * @return Whether the controller is saturated
+     */
+    public boolean update() {
+        boolean next;
+        String reason = null;
+        if (!saturated) {
+            next = false;
+            for (Signal signal : signals) {
+                long value = signal.value.getAsLong();
+                if (value >= signal.high) {
+                    next = true;
+                    reason = signal.name + "=" + value;
+                    break;
+                }
+            }
+        } else {
+            next = false;
+            for (Signal signal : signals) {
+                if (signal.value.getAsLong() > signal.low) {
+                    next = true;
+                    break;
+                }
+            }
+        }
+        if (next == saturated) {
+            return next;
+        }
+        lock.lock();
+        try {
+            if (next == saturated) {
+                return next;
+            }
+            saturated = next;
+            cause = reason;
+            if (!next) {
+                capacity.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next) {
+            log.warn("Backpressure on: {}", reason);
+        } else {
+            log.info("Backpressure off");
+        }
+        for (Consumer<Boolean> listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                log.error("Backpressure listener failed", e);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Wait until the controller is clear, for at most {@code timeout}.
+     * @return true if there is capacity, false if the wait timed out while still saturated
+     */
+    public boolean awaitCapacity(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!update()) {
+            return true;
+        }
+        throttled.incrementAndGet();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                timedOut.incrementAndGet();
+                return false;
+            }
+            lock.lock();
+            try {
+                if (saturated) {
+                    capacity.awaitNanos(Math.min(remaining, RECHECK_NANOS));
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (!update()) {
+                return true;
+            }
+        }
+    }
+
+    public boolean isSaturated() {
+        return saturated;
+    }
+
+    /**
+     * @return The signal and value that caused the current saturation, or null when clear
+     */
+    public String getCause() {
+        return saturated ? cause : null;
+    }
+
+    /**
+     * @return How many {@link #awaitCapacity} calls had to wait
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * @return How many {@link #awaitCapacity} calls gave up while still saturated
+     */
+    public long getTimedOutCount() {
+        return timedOut.get();
+    }
+
+    private static final class Signal {
+        private final String name;
+        private final LongSupplier value;
+        private final long high;
+        private final long low;
+
+        Signal(String name, LongSupplier value, long high, long low) {
+            this.name = name;
+            this.value = value;
+            this.high = high;
+            this.low = low;
+        }
+    }
+}
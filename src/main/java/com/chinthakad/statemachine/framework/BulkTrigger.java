@@ -0,0 +1,212 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies one event to every machine of a repository that matches a selection.
+ * <p>
+ * Each repository shard is scanned as its own task on the given pool, so the pool's parallelism
+ * caps how many cores a bulk job can take from live traffic, and an optional rate limit caps the
+ * triggers per second across all jobs. The scan takes no locks; the state condition is checked
+ * again under the machine's lock when the event fires, so a machine that moved on in the
+ * meantime is left alone. Every applied transition is reported to an {@code onApplied} callback,
+ * after the lock is released, so the owner of the machines can follow up as it does for its own
+ * triggers, e.g. by retrying buffered events or cleaning up a terminal machine.
+ */
+public class BulkTrigger<S, E> {
+    private static final Logger log = LoggerFactory.getLogger(BulkTrigger.class);
+
+    private final StateMachineRepository<S, E, ?> repository;
+    private final ForkJoinPool pool;
+    private final long intervalNanos;
+    private final AtomicLong nextPermit = new AtomicLong(System.nanoTime());
+    private final BiConsumer<String, StateMachine<S, E>> onApplied;
+
+    /**
+     * @param maxPerSecond Triggers per second across all jobs, or 0 for no limit
+     */
+    public BulkTrigger(StateMachineRepository<S, E, ?> repository, ForkJoinPool pool, long maxPerSecond) {
+        this(repository, pool, maxPerSecond, (id, sm) -> {});
+    }
+
+    /**
+     * @param maxPerSecond Triggers per second across all jobs, or 0 for no limit
+     * @param onApplied Called with the id and machine after each applied transition, on the scanning thread
+     */
+    public BulkTrigger(StateMachineRepository<S, E, ?> repository, ForkJoinPool pool, long maxPerSecond,
+                       BiConsumer<String, StateMachine<S, E>> onApplied) {
+        if (maxPerSecond < 0) {
+            throw new IllegalArgumentException("maxPerSecond must not be negative");
+        }
+        this.repository = repository;
+        this.pool = pool;
+        this.onApplied = onApplied;
+        this.intervalNanos = maxPerSecond == 0 ? 0 : Math.max(1, TimeUnit.SECONDS.toNanos(1) / maxPerSecond);
+    }
+
+    /**
+     * Start applying {@code event} to every machine whose state satisfies {@code state} and that
+     * passes {@code filter}.
+     * @param filter Further selection on the id and machine, e.g. by age; evaluated without the lock
+     */
+    public Job<E> start(E event, Predicate<S> state, BiPredicate<String, StateMachine<S, E>> filter) {
+        Job<E> job = new Job<>(event);
+        CompletableFuture<?>[] shards = new CompletableFuture<?>[StateMachineRepository.SHARD_COUNT];
+        for (int shard = 0; shard < shards.length; shard++) {
+            int current = shard;
+            shards[shard] = CompletableFuture.runAsync(() -> scan(job, current, state, filter), pool);
+        }
+        CompletableFuture.allOf(shards).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.error("Bulk trigger {} failed", job.getId(), error);
+            }
+            job.finish();
+        });
+        return job;
+    }
+
+    private void scan(Job<E> job, int shard, Predicate<S> state, BiPredicate<String, StateMachine<S, E>> filter) {
+        repository.forEachInShard(shard, (id, sm) -> {
+            if (job.cancelled) {
+                return;
+            }
+            job.scanned.increment();
+            if (!state.test(sm.getCurrentState()) || !filter.test(id, sm)) {
+                return;
+            }
+            job.matched.increment();
+            throttle();
+            boolean applied;
+            try {
+                applied = sm.triggerIf(state, job.event);
+            } catch (RuntimeException e) {
+                log.warn("Bulk trigger {} failed on {}", job.getId(), id, e);
+                applied = false;
+            }
+            (applied ? job.applied : job.failed).increment();
+            if (applied) {
+                try {
+                    onApplied.accept(id, sm);
+                } catch (RuntimeException e) {
+                    log.warn("Bulk trigger {}: follow-up failed on {}", job.getId(), id, e);
+                }
+            }
+        });
+        job.shardsDone.incrementAndGet();
+    }
+
+    private void throttle() {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        // Reserve the next free slot; callers that fall behind do not build up a burst
+        long slot = nextPermit.accumulateAndGet(now, (next, n) -> Math.max(next, n) + intervalNanos) - intervalNanos;
+        if (slot > now) {
+            LockSupport.parkNanos(slot - now);
+        }
+    }
+
+    /**
+     * Progress and outcome of one bulk trigger. Counters are live while the job runs.
+     */
+    public static final class Job<E> {
+        private final String id = UUID.randomUUID().toString();
+        private final E event;
+        private final long startedAt = System.currentTimeMillis();
+        private final LongAdder scanned = new LongAdder();
+        private final LongAdder matched = new LongAdder();
+        private final LongAdder applied = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final AtomicInteger shardsDone = new AtomicInteger();
+        private final CompletableFuture<Job<E>> completion = new CompletableFuture<>();
+        private volatile boolean cancelled;
+        private volatile long finishedAt;
+
+        Job(E event) {
+            this.event = event;
+        }
+
+        private void finish() {
+            finishedAt = System.currentTimeMillis();
+            completion.complete(this);
+        }
+
+        /**
+         * Stop selecting machines. Triggers already applied stay applied.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public CompletableFuture<Job<E>> completion() {
+            return completion;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public E getEvent() {
+            return event;
+        }
+
+        public long getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * @return When the job finished, in epoch milliseconds, or 0 while it runs
+         */
+        public long getFinishedAt() {
+            return finishedAt;
+        }
+
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return Fraction of repository shards scanned so far, from 0 to 1
+         */
+        public double getProgress() {
+            return (double) shardsDone.get() / StateMachineRepository.SHARD_COUNT;
+        }
+
+        public long getScanned() {
+            return scanned.sum();
+        }
+
+        public long getMatched() {
+            return matched.sum();
+        }
+
+        public long getApplied() {
+            return applied.sum();
+        }
+
+        /**
+         * @return Matched machines the event could not be applied to, because the transition was
+         * invalid, the machine left the selected states first, or a callback threw
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+    }
+}
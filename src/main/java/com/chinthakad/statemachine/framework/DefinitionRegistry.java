@@ -0,0 +1,113 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Named workflow variants, each with a sequence of definition versions.
+ * <p>
+ * Publishing compiles the new definition and swaps it in as the variant's current version.
+ * Versions are immutable apart from a link to their successor, so triggers never take a lock
+ * here: a machine only reads its own version's successor link, and when it finds one it migrates
+ * lazily on its next event, mapping its state through each newer version's migration function.
+ * Superseded versions are garbage once no machine refers to them.
+ */
+public class DefinitionRegistry<S, E> {
+    public static final String DEFAULT_VARIANT = "default";
+
+    private final Map<String, Version<S, E>> current = new ConcurrentHashMap<>();
+
+    /**
+     * Publish a definition whose states carry over unchanged from the previous version.
+     */
+    public Version<S, E> publish(String variant, StateMachineDefinition<S, E> definition) {
+        return publish(variant, definition, Function.identity());
+    }
+
+    /**
+     * Publish a new version of {@code variant}, or its first version if it does not exist yet.
+     * @param migration Maps a state of the previous version to a state of this one; returning
+     *                  null keeps the state as it is. Ignored for the first version.
+     * @return The published version
+     * @throws IllegalStateException if the definition does not compile
+     */
+    public synchronized Version<S, E> publish(String variant, StateMachineDefinition<S, E> definition, Function<S, S> migration) {
+        definition.compile();
+        Version<S, E> previous = current.get(variant);
+        Version<S, E> version = new Version<>(variant, previous == null ? 1 : previous.number + 1, definition, migration);
+        current.put(variant, version);
+        if (previous != null) {
+            // Machines on the previous version see this on their next trigger
+            previous.next = version;
+        }
+        return version;
+    }
+
+    /**
+     * @throws IllegalArgumentException if nothing was published under {@code variant}
+     */
+    public Version<S, E> current(String variant) {
+        Version<S, E> version = current.get(variant);
+        if (version == null) {
+            throw new IllegalArgumentException("Unknown definition variant: " + variant);
+        }
+        return version;
+    }
+
+    public Set<String> variants() {
+        return current.keySet();
+    }
+
+    /**
+     * Create a machine on the current version of {@code variant} that follows later versions.
+     */
+    public StateMachine<S, E> newMachine(String variant) {
+        StateMachine<S, E> sm = new StateMachine<>(current(variant));
+        sm.startTimers();
+        return sm;
+    }
+
+    /**
+     * One published definition of a variant.
+     */
+    public static final class Version<S, E> {
+        private final String variant;
+        private final int number;
+        private final StateMachineDefinition<S, E> definition;
+        private final Function<S, S> migration;
+        private volatile Version<S, E> next;
+
+        Version(String variant, int number, StateMachineDefinition<S, E> definition, Function<S, S> migration) {
+            this.variant = variant;
+            this.number = number;
+            this.definition = definition;
+            this.migration = migration;
+        }
+
+        public String getVariant() {
+            return variant;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        public StateMachineDefinition<S, E> getDefinition() {
+            return definition;
+        }
+
+        /**
+         * @return The version that superseded this one, or null if it is still current
+         */
+        Version<S, E> next() {
+            return next;
+        }
+
+        S migrate(S state) {
+            S mapped = migration.apply(state);
+            return mapped == null ? state : mapped;
+        }
+    }
+}
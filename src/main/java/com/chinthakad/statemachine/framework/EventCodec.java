@@ -0,0 +1,117 @@
+package com.chinthakad.statemachine.framework;
+
+/**
+ * Case-insensitive lookup from event names to enum constants.
+ * The table is sized until every name lands in its own slot, so a lookup is one hash pass over
+ * the input plus one comparison, allocates nothing, and returns {@code null} for unknown names
+ * instead of throwing like {@link Enum#valueOf}.
+ * @param <E> Event enum type
+ */
+public final class EventCodec<E extends Enum<E>> {
+    private static final int MAX_TABLE_SIZE = 1 << 16;
+
+    private static final ClassValue<EventCodec<?>> REGISTRY = new ClassValue<>() {
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        protected EventCodec<?> computeValue(Class<?> type) {
+            return new EventCodec(type);
+        }
+    };
+
+    private final Class<E> type;
+    private final E[] table;
+    private final int mask;
+
+    @SuppressWarnings("unchecked")
+    private EventCodec(Class<E> type) {
+        this.type = type;
+        E[] constants = type.getEnumConstants();
+        int size = Integer.highestOneBit(Math.max(1, constants.length * 2 - 1)) << 1;
+        E[] candidate = (E[]) new Enum[size];
+        while (!place(constants, candidate) && size < MAX_TABLE_SIZE) {
+            size <<= 1;
+            candidate = (E[]) new Enum[size];
+        }
+        if (size >= MAX_TABLE_SIZE) {
+            // No collision-free layout; fall back to linear probing in the largest table
+            candidate = (E[]) new Enum[size];
+            for (E constant : constants) {
+                int slot = hash(constant.name()) & (size - 1);
+                while (candidate[slot] != null) {
+                    slot = (slot + 1) & (size - 1);
+                }
+                candidate[slot] = constant;
+            }
+        }
+        this.table = candidate;
+        this.mask = table.length - 1;
+    }
+
+    /**
+     * Get the shared codec for an event enum type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> EventCodec<E> of(Class<E> type) {
+        return (EventCodec<E>) REGISTRY.get(type);
+    }
+
+    /**
+     * Resolve an event name, ignoring case.
+     * @param name The event name
+     * @return The matching event, or {@code null} if the name is null or unknown
+     */
+    public E decode(CharSequence name) {
+        if (name == null) {
+            return null;
+        }
+        int slot = hash(name) & mask;
+        E candidate;
+        while ((candidate = table[slot]) != null) {
+            if (equalsIgnoreCase(candidate.name(), name)) {
+                return candidate;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public String encode(E event) {
+        return event.name();
+    }
+
+    public Class<E> getType() {
+        return type;
+    }
+
+    private static <E extends Enum<E>> boolean place(E[] constants, E[] table) {
+        int mask = table.length - 1;
+        for (E constant : constants) {
+            int slot = hash(constant.name()) & mask;
+            if (table[slot] != null) {
+                return false;
+            }
+            table[slot] = constant;
+        }
+        return true;
+    }
+
+    private static int hash(CharSequence name) {
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + Character.toUpperCase(name.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsIgnoreCase(String expected, CharSequence actual) {
+        if (expected.length() != actual.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toUpperCase(expected.charAt(i)) != Character.toUpperCase(actual.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
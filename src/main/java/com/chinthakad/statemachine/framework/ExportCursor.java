@@ -0,0 +1,79 @@
+package com.chinthakad.statemachine.framework;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Position in a repository export: a shard and the last id exported from it.
+ * <p>
+ * Ids are exported in ascending order within each shard, so resuming after an id is exact no
+ * matter how the shard changed in between. Tokens are opaque, URL-safe strings.
+ */
+public final class ExportCursor {
+    public static final ExportCursor START = new ExportCursor(0, null);
+
+    private final int shard;
+    private final String afterId;
+
+    ExportCursor(int shard, String afterId) {
+        this.shard = shard;
+        this.afterId = afterId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * @return The last id exported from the shard, or null to start at its beginning
+     */
+    public String getAfterId() {
+        return afterId;
+    }
+
+    public String toToken() {
+        String raw = afterId == null ? Integer.toString(shard) : shard + ":" + afterId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code token} was not produced by {@link #toToken()}
+     */
+    public static ExportCursor parse(String token) {
+        if (token == null || token.isEmpty()) {
+            return START;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed export cursor: " + token, e);
+        }
+        int colon = raw.indexOf(':');
+        try {
+            int shard = Integer.parseInt(colon < 0 ? raw : raw.substring(0, colon));
+            if (shard < 0) {
+                throw new IllegalArgumentException("Malformed export cursor: " + token);
+            }
+            return new ExportCursor(shard, colon < 0 ? null : raw.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed export cursor: " + token, e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ExportCursor other && shard == other.shard && Objects.equals(afterId, other.afterId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * shard + Objects.hashCode(afterId);
+    }
+
+    @Override
+    public String toString() {
+        return "ExportCursor{shard=" + shard + ", afterId=" + afterId + "}";
+    }
+}
@@ -0,0 +1,474 @@
+package com.chinthakad.statemachine.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outbox in append-only segment files, so state changes that were not published yet survive a restart.
+ * <p>
+ * Each record is a frame of its length, sequence number, timestamp and names, written with one
+ * positional write under a short lock to the active segment, {@code <file>.<index>}. Once that
+ * segment has grown past {@code segmentBytes} the next append starts a new one. By default a frame
+ * only reaches the page cache before the transition returns, which survives the process but not
+ * the machine. With {@code forceOnAppend} the transition also waits, outside the append lock, for
+ * a force that covers its frame; concurrent transitions share one force, so throughput holds up,
+ * but each still pays the latency of up to two forces, and does so while holding its machine's
+ * lock, as its record must be durable before the transition completes. The publisher reads
+ * frames from its own position, following segments in order, and for every acknowledged batch
+ * atomically replaces a small checkpoint file with the acknowledged segment and offset; segments
+ * wholly before that position are deleted, so the log stays bounded under steady traffic. The
+ * checkpoint also holds the log's epoch, drawn when the log is created, so sequence numbers carry
+ * on across restarts within one epoch and a deleted log starts a new one. After a restart
+ * everything past the checkpoint is handed out again; a frame torn by a crash is cut off.
+ */
+public class FileOutbox implements Outbox {
+    private static final Logger log = LoggerFactory.getLogger(FileOutbox.class);
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final int CHECKPOINT_BYTES = 4 * Long.BYTES;
+
+    private final Path file;
+    private final Path checkpointFile;
+    private final boolean forceOnAppend;
+    private final long segmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private long epoch;
+    private long sequence;
+    private Segment active;
+    private final AtomicLong size = new AtomicLong();
+
+    // Publisher side
+    private Segment oldest;
+    private Segment readSegment;
+    private long readOffset;
+    private Segment acknowledgedSegment;
+    private long acknowledgedOffset;
+    private long acknowledgedSequence;
+    private final ArrayDeque<Position> handedOut = new ArrayDeque<>();
+
+    public FileOutbox(Path file) {
+        this(file, false, 64L << 20);
+    }
+
+    /**
+     * @param forceOnAppend Force every append to disk before the transition completes
+     * @param segmentBytes Segment size past which appends move on to a new segment
+     */
+    public FileOutbox(Path file, boolean forceOnAppend, long segmentBytes) {
+        this.file = file;
+        this.checkpointFile = file.resolveSibling(file.getFileName() + ".checkpoint");
+        this.forceOnAppend = forceOnAppend;
+        this.segmentBytes = segmentBytes;
+        try {
+            recover();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Cannot open outbox file " + file, e);
+        }
+    }
+
+    static Path segmentFile(Path file, long index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void recover() throws IOException {
+        List<Long> indexes = segmentIndexes();
+        long checkpointSegment = 0;
+        long offset = 0;
+        boolean newEpoch = true;
+        if (Files.exists(checkpointFile)) {
+            byte[] bytes = Files.readAllBytes(checkpointFile);
+            if (bytes.length != CHECKPOINT_BYTES) {
+                throw new IOException("Outbox checkpoint " + checkpointFile + " has " + bytes.length
+                        + " bytes instead of " + CHECKPOINT_BYTES);
+            }
+            // Segment index, offset in it, last acknowledged sequence number and epoch
+            ByteBuffer checkpoint = ByteBuffer.wrap(bytes);
+            checkpointSegment = checkpoint.getLong();
+            offset = checkpoint.getLong();
+            acknowledgedSequence = checkpoint.getLong();
+            epoch = checkpoint.getLong();
+            newEpoch = false;
+        }
+        if (newEpoch) {
+            epoch = ThreadLocalRandom.current().nextLong();
+        }
+        while (!indexes.isEmpty() && indexes.get(0) < checkpointSegment) {
+            // Acknowledged, but the checkpoint moved past it before it was deleted
+            Files.deleteIfExists(segmentFile(file, indexes.remove(0)));
+        }
+        if (indexes.isEmpty()) {
+            indexes.add(checkpointSegment);
+        } else if (indexes.get(0) != checkpointSegment) {
+            log.warn("Outbox {} has lost segment {} of its checkpoint; publishing from segment {}", file, checkpointSegment, indexes.get(0));
+            offset = 0;
+        }
+        sequence = acknowledgedSequence;
+        long pending = 0;
+        Segment previous = null;
+        for (long index : indexes) {
+            Segment segment = new Segment(index, segmentFile(file, index));
+            if (previous == null) {
+                oldest = segment;
+                if (offset > segment.written) {
+                    log.warn("Outbox {} is shorter than its checkpoint; publishing from the start", segment.path);
+                    offset = 0;
+                }
+            } else {
+                previous.next = segment;
+            }
+            pending += scan(segment, previous == null ? offset : 0);
+            previous = segment;
+        }
+        active = previous;
+        readSegment = oldest;
+        readOffset = offset;
+        acknowledgedSegment = oldest;
+        acknowledgedOffset = offset;
+        size.set(pending);
+        if (pending > 0) {
+            log.info("Outbox {} has {} unpublished records", file, pending);
+        }
+        if (newEpoch || oldest.index != checkpointSegment) {
+            // Persist the epoch before any record of it can be published
+            writeCheckpoint();
+        }
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        String prefix = file.getFileName() + ".";
+        List<Long> indexes = new ArrayList<>();
+        Path directory = file.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path path : files) {
+                String suffix = path.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    indexes.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        indexes.sort(null);
+        return indexes;
+    }
+
+    /**
+     * Count the frames of {@code segment} from {@code offset}, note the highest sequence number,
+     * and cut off a torn frame at the end.
+     */
+    private long scan(Segment segment, long offset) throws IOException {
+        long length = segment.written;
+        long end = offset;
+        long frames = 0;
+        try {
+            while (end < length) {
+                int frameLength = segment.readFully(end, LENGTH_BYTES).getInt();
+                if (frameLength < Long.BYTES || end + LENGTH_BYTES + frameLength > length) {
+                    break;
+                }
+                sequence = Math.max(sequence, segment.readFully(end + LENGTH_BYTES, Long.BYTES).getLong());
+                end += LENGTH_BYTES + frameLength;
+                frames++;
+            }
+        } catch (EOFException e) {
+            // Torn length prefix, cut off below
+        }
+        if (end < length) {
+            log.warn("Cutting {} bytes of a torn record off outbox {}", length - end, segment.path);
+            segment.channel.truncate(end);
+            segment.written = end;
+            segment.readable.set(end);
+        }
+        return frames;
+    }
+
+    @Override
+    public void append(String machineId, String from, String event, String to, long timestamp) {
+        byte[] payload = encode(machineId, from, event, to, timestamp);
+        Segment segment;
+        long end;
+        lock.lock();
+        try {
+            if (active.written >= segmentBytes) {
+                roll();
+            }
+            segment = active;
+            ByteBuffer frame = ByteBuffer.allocate(LENGTH_BYTES + Long.BYTES + payload.length);
+            frame.putInt(Long.BYTES + payload.length).putLong(++sequence).put(payload).flip();
+            end = segment.written;
+            while (frame.hasRemaining()) {
+                end += segment.channel.write(frame, end);
+            }
+            segment.written = end;
+            if (!forceOnAppend) {
+                segment.readable.set(end);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to outbox " + active.path, e);
+        } finally {
+            lock.unlock();
+        }
+        if (forceOnAppend) {
+            awaitForced(segment, end);
+        }
+        size.incrementAndGet();
+    }
+
+    /**
+     * Wait until {@code segment} is on disk up to {@code end}. One caller at a time forces the
+     * segment, covering every frame written before it started, and the callers queued behind it
+     * usually find their frames covered already: a group commit. Frames only become readable
+     * once forced, so a record is never published and then lost, with its sequence number reused,
+     * by a crash.
+     */
+    private void awaitForced(Segment segment, long end) {
+        if (segment.readable.get() >= end) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (segment.readable.get() >= end) {
+                return;
+            }
+            long target;
+            lock.lock();
+            try {
+                target = segment.written;
+            } finally {
+                lock.unlock();
+            }
+            segment.channel.force(false);
+            segment.readable.accumulateAndGet(target, Math::max);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot force outbox " + segment.path, e);
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Start a new segment. The full one is linked to it only once it will not grow any more and
+     * all of it is readable, so a reader that sees the link also sees its final size. With
+     * {@code forceOnAppend} that takes one force under the append lock per segment.
+     */
+    private void roll() throws IOException {
+        if (forceOnAppend) {
+            active.channel.force(false);
+        }
+        active.readable.accumulateAndGet(active.written, Math::max);
+        Segment segment = new Segment(active.index + 1, segmentFile(file, active.index + 1));
+        active.next = segment;
+        active = segment;
+    }
+
+    @Override
+    public List<OutboxRecord> next(int maxRecords, int maxBytes) {
+        List<OutboxRecord> batch = new ArrayList<>(Math.min(maxRecords, 1024));
+        int bytes = 0;
+        try {
+            while (batch.size() < maxRecords) {
+                // Read the link first: once it is set, the segment's size is final
+                Segment next = readSegment.next;
+                if (readOffset >= readSegment.readable.get()) {
+                    if (next == null) {
+                        break;
+                    }
+                    readSegment = next;
+                    readOffset = 0;
+                    continue;
+                }
+                int frameLength = readSegment.readFully(readOffset, LENGTH_BYTES).getInt();
+                OutboxRecord record = decode(readSegment.readFully(readOffset + LENGTH_BYTES, frameLength));
+                if (!batch.isEmpty() && bytes + record.estimatedSize() > maxBytes) {
+                    break;
+                }
+                bytes += record.estimatedSize();
+                batch.add(record);
+                readOffset += LENGTH_BYTES + frameLength;
+                handedOut.add(new Position(readSegment, readOffset, record.getSequence()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read outbox " + readSegment.path, e);
+        }
+        return batch;
+    }
+
+    @Override
+    public void acknowledge(int count) {
+        int acknowledged = 0;
+        while (acknowledged < count && !handedOut.isEmpty()) {
+            Position last = handedOut.poll();
+            acknowledgedSegment = last.segment;
+            acknowledgedOffset = last.offset;
+            acknowledgedSequence = last.sequence;
+            acknowledged++;
+        }
+        if (acknowledged == 0) {
+            return;
+        }
+        size.addAndGet(-acknowledged);
+        Segment next = acknowledgedSegment.next;
+        if (next != null && acknowledgedOffset >= acknowledgedSegment.readable.get()) {
+            // The whole segment is acknowledged, so the checkpoint can point past it
+            acknowledgedSegment = next;
+            acknowledgedOffset = 0;
+        }
+        writeCheckpoint();
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * Delete the segments before the checkpoint's. Only done once the checkpoint is written, so a
+     * crash in between leaves a segment that recovery deletes rather than a checkpoint pointing at
+     * a missing one.
+     */
+    private void deleteAcknowledgedSegments() {
+        while (oldest != acknowledgedSegment) {
+            Segment segment = oldest;
+            oldest = segment.next;
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete acknowledged outbox segment {}", segment.path, e);
+            }
+        }
+    }
+
+    private void writeCheckpoint() {
+        ByteBuffer checkpoint = ByteBuffer.allocate(CHECKPOINT_BYTES)
+                .putLong(acknowledgedSegment.index).putLong(acknowledgedOffset).putLong(acknowledgedSequence).putLong(epoch);
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(checkpoint.flip());
+            if (forceOnAppend) {
+                out.force(false);
+            }
+            Files.move(temp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write outbox checkpoint " + checkpointFile, e);
+        }
+    }
+
+    @Override
+    public void rewind() {
+        readSegment = acknowledgedSegment;
+        readOffset = acknowledgedOffset;
+        handedOut.clear();
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment = oldest; segment != null; segment = segment.next) {
+            segment.close();
+        }
+    }
+
+    private static byte[] encode(String machineId, String from, String event, String to, long timestamp) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(timestamp);
+            out.writeUTF(machineId);
+            out.writeUTF(from);
+            out.writeUTF(to);
+            out.writeBoolean(event != null);
+            if (event != null) {
+                out.writeUTF(event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private OutboxRecord decode(ByteBuffer frame) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame.array()))) {
+            long sequence = in.readLong();
+            long timestamp = in.readLong();
+            String machineId = in.readUTF();
+            String from = in.readUTF();
+            String to = in.readUTF();
+            String event = in.readBoolean() ? in.readUTF() : null;
+            return new OutboxRecord(epoch, sequence, machineId, from, event, to, timestamp);
+        }
+    }
+
+    private static final class Segment {
+        final long index;
+        final Path path;
+        final FileChannel channel;
+        // Bytes written, guarded by the append lock
+        long written;
+        // Bytes the publisher may read: written, and forced with forceOnAppend
+        final AtomicLong readable = new AtomicLong();
+        volatile Segment next;
+
+        Segment(long index, Path path) throws IOException {
+            this.index = index;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.written = channel.size();
+            this.readable.set(written);
+        }
+
+        ByteBuffer readFully(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return buffer.flip();
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close outbox segment {}", path, e);
+            }
+        }
+    }
+
+    private static final class Position {
+        final Segment segment;
+        final long offset;
+        final long sequence;
+
+        Position(Segment segment, long offset, long sequence) {
+            this.segment = segment;
+            this.offset = offset;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transition history storage shared by many machines, so that each machine holds an int slot
+ * instead of its own array.
+ * <p>
+ * Slots of {@code depth + 1} longs (a count followed by the ring) are carved out of fixed-size
+ * chunks; growing adds a chunk and never copies existing ones. A machine only touches its own
+ * slot, under its own lock, so the arena itself only synchronizes allocation. Slots freed when
+ * a machine leaves its repository are reused.
+ */
+public class HistoryArena {
+    private static final int SLOTS_PER_CHUNK = 4096;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int depth;
+    private final int stride;
+    private volatile long[][] chunks = new long[0][];
+    private int[] free = new int[64];
+    private int freeCount;
+    private int nextSlot;
+
+    /**
+     * @param depth Transitions kept per machine, between 1 and {@value TransitionHistory#MAX_DEPTH}
+     */
+    public HistoryArena(int depth) {
+        TransitionHistory.checkDepth(depth);
+        this.depth = depth;
+        this.stride = depth + 1;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Slots currently handed out
+     */
+    public int getAllocatedSlots() {
+        lock.lock();
+        try {
+            return nextSlot - freeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Bytes reserved by the arena's chunks
+     */
+    public long getReservedBytes() {
+        return (long) chunks.length * SLOTS_PER_CHUNK * stride * Long.BYTES;
+    }
+
+    int allocate() {
+        lock.lock();
+        try {
+            int slot;
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else {
+                slot = nextSlot++;
+                if (slot / SLOTS_PER_CHUNK == chunks.length) {
+                    long[][] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                    grown[chunks.length] = new long[SLOTS_PER_CHUNK * stride];
+                    chunks = grown;
+                }
+            }
+            chunk(slot)[offset(slot)] = 0;
+            return slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(int slot) {
+        lock.lock();
+        try {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long[] chunk(int slot) {
+        return chunks[slot / SLOTS_PER_CHUNK];
+    }
+
+    int offset(int slot) {
+        return (slot % SLOTS_PER_CHUNK) * stride;
+    }
+}
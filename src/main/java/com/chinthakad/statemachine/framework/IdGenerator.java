@@ -0,0 +1,28 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Pluggable generator for state machine ids.
+ */
+public interface IdGenerator {
+
+    UUID nextId();
+
+    default String nextIdString() {
+        return nextId().toString();
+    }
+
+    /**
+     * Select a generator by name: "uuidv7" (time-ordered, the default) or "random" (UUID v4).
+     * @throws IllegalArgumentException for any other name, rather than quietly using the default
+     */
+    static IdGenerator named(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "uuidv7" -> new UuidV7Generator();
+            case "random", "uuidv4" -> UUID::randomUUID;
+            default -> throw new IllegalArgumentException("Unknown id generator: " + name);
+        };
+    }
+}
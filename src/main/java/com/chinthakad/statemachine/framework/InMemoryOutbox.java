@@ -0,0 +1,120 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbox on the heap. Appending is a single enqueue, so it adds next to nothing to the machine's
+ * critical section. Records that were not published yet are lost with the process.
+ * <p>
+ * Sequence numbers start over with every instance, so each instance draws a random epoch to tell
+ * its records apart from those of earlier runs.
+ * <p>
+ * The outbox holds at most {@code capacity} records that were not handed out yet. Beyond that the
+ * oldest of them is dropped and counted, so a publisher that cannot keep up loses the oldest state
+ * changes rather than the heap; use a {@link FileOutbox} where no change may be lost. Records
+ * already handed out to the publisher stay until acknowledged, so the outbox may exceed its
+ * capacity by the publisher's batch.
+ */
+public class InMemoryOutbox implements Outbox {
+    public static final int DEFAULT_CAPACITY = 1_000_000;
+
+    private final int capacity;
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final Queue<OutboxRecord> appended = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    // Publisher side: handed out and awaiting acknowledgement, and rewound for another attempt
+    private final ArrayDeque<OutboxRecord> handedOut = new ArrayDeque<>();
+    private final ArrayDeque<OutboxRecord> redeliveries = new ArrayDeque<>();
+
+    public InMemoryOutbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryOutbox(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void append(String machineId, String from, String event, String to, long timestamp) {
+        // Sequence numbers must follow queue order; the lock is held for an instant
+        appendLock.lock();
+        try {
+            if (size.get() >= capacity && appended.poll() != null) {
+                size.decrementAndGet();
+                dropped.incrementAndGet();
+            }
+            appended.add(new OutboxRecord(epoch, sequence.incrementAndGet(), machineId, from, event, to, timestamp));
+            size.incrementAndGet();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public List<OutboxRecord> next(int maxRecords, int maxBytes) {
+        List<OutboxRecord> batch = new ArrayList<>(Math.min(maxRecords, 1024));
+        int bytes = 0;
+        while (batch.size() < maxRecords) {
+            OutboxRecord record = redeliveries.isEmpty() ? appended.poll() : redeliveries.poll();
+            if (record == null) {
+                break;
+            }
+            if (!batch.isEmpty() && bytes + record.estimatedSize() > maxBytes) {
+                redeliveries.addFirst(record);
+                break;
+            }
+            bytes += record.estimatedSize();
+            batch.add(record);
+            handedOut.add(record);
+        }
+        return batch;
+    }
+
+    @Override
+    public void acknowledge(int count) {
+        for (int i = 0; i < count && handedOut.poll() != null; i++) {
+            size.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void rewind() {
+        for (Iterator<OutboxRecord> it = handedOut.descendingIterator(); it.hasNext(); ) {
+            redeliveries.addFirst(it.next());
+        }
+        handedOut.clear();
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+}
@@ -0,0 +1,155 @@
+package com.chinthakad.statemachine.framework;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks on a fixed number of lanes, each drained by a single virtual thread. Tasks with the
+ * same key always land on the same lane, so they run one at a time and in submission order, while
+ * tasks for different keys run in parallel across lanes.
+ * <p>
+ * Each lane queues at most {@code laneCapacity} tasks. A task submitted to a full lane waits on a
+ * virtual thread for room, behind any task already waiting for that lane, and the stage returned
+ * by {@link #submit} completes once it is queued. A producer that waits for that stage before
+ * submitting more is thus held back by the slowest lane it feeds, without blocking its own thread.
+ */
+public class KeyedLanes implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(KeyedLanes.class);
+    private static final Runnable STOP = () -> {};
+
+    private final BlockingQueue<Runnable>[] queues;
+    private final Thread[] workers;
+    private final ReentrantLock[] submitLocks;
+    // Per lane, the last task waiting for room; later tasks for the lane queue behind it
+    private final CompletableFuture<Void>[] waiting;
+    private final ExecutorService waiters = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong queued = new AtomicLong();
+
+    public KeyedLanes(int lanes, String threadName) {
+        this(lanes, Integer.MAX_VALUE, threadName);
+    }
+
+    @SuppressWarnings("unchecked")
+    public KeyedLanes(int lanes, int laneCapacity, String threadName) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("lanes must be positive");
+        }
+        if (laneCapacity <= 0) {
+            throw new IllegalArgumentException("laneCapacity must be positive");
+        }
+        queues = new BlockingQueue[lanes];
+        workers = new Thread[lanes];
+        submitLocks = new ReentrantLock[lanes];
+        waiting = new CompletableFuture[lanes];
+        for (int i = 0; i < lanes; i++) {
+            BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(laneCapacity);
+            queues[i] = queue;
+            submitLocks[i] = new ReentrantLock();
+            waiting[i] = CompletableFuture.completedFuture(null);
+            workers[i] = Thread.ofVirtual().name(threadName + "-" + i).start(() -> drain(queue));
+        }
+    }
+
+    /**
+     * Queue {@code task} behind every task submitted earlier with the same key.
+     * @param key Picks the lane; null keys share one lane
+     * @return Completes once the task is queued, right away unless its lane is full
+     */
+    public CompletionStage<Void> submit(String key, Runnable task) {
+        queued.incrementAndGet();
+        int lane = lane(key);
+        BlockingQueue<Runnable> queue = queues[lane];
+        submitLocks[lane].lock();
+        try {
+            if (waiting[lane].isDone() && queue.offer(task)) {
+                return waiting[lane];
+            }
+            waiting[lane] = waiting[lane].thenRunAsync(() -> put(queue, task), waiters);
+            return waiting[lane];
+        } finally {
+            submitLocks[lane].unlock();
+        }
+    }
+
+    private void put(BlockingQueue<Runnable> queue, Runnable task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            // Closing; the task is dropped
+            queued.decrementAndGet();
+        }
+    }
+
+    int lane(String key) {
+        int hash = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), queues.length);
+    }
+
+    private void drain(BlockingQueue<Runnable> queue) {
+        while (true) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == STOP) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Lane task failed", e);
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return Tasks submitted but not finished yet, across all lanes
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public int getLanes() {
+        return queues.length;
+    }
+
+    /**
+     * Run the tasks already queued, then stop the lanes, waiting up to five seconds for them.
+     */
+    @Override
+    public void close() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            for (BlockingQueue<Runnable> queue : queues) {
+                // Tasks waiting for room are not waited for
+                if (!queue.offer(STOP, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    log.warn("Lane still full at close; interrupting it");
+                }
+            }
+            for (Thread worker : workers) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || !worker.join(Duration.ofNanos(remaining))) {
+                    worker.interrupt();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiters.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.List;
+
+/**
+ * State changes waiting to be published, appended by a {@link TransitionListener} while the
+ * machine is still locked. A transition and its record thus happen in one critical section:
+ * nobody can observe the new state before the record exists, and records of one machine are
+ * appended in transition order. An {@link OutboxPublisher} later ships them off the hot path.
+ * <p>
+ * {@link #append} is called concurrently by triggering threads. The reading side,
+ * {@link #next}, {@link #acknowledge} and {@link #rewind}, belongs to a single publisher thread.
+ * Records are handed out until they are acknowledged and may be handed out again after a
+ * rewind, so delivery is at least once.
+ */
+public interface Outbox extends AutoCloseable {
+
+    /**
+     * Record a state change.
+     * @param event The event, or null for a migration
+     */
+    void append(String machineId, String from, String event, String to, long timestamp);
+
+    /**
+     * Hand out the oldest records not handed out yet, at least one if any are waiting.
+     * @param maxRecords Most records to return
+     * @param maxBytes Most estimated bytes to return, unless a single record is larger
+     */
+    List<OutboxRecord> next(int maxRecords, int maxBytes);
+
+    /**
+     * Mark the oldest {@code count} handed out records as published, so they are never handed
+     * out again.
+     */
+    void acknowledge(int count);
+
+    /**
+     * Hand out every unacknowledged record again, oldest first, for instance after a failed send.
+     */
+    void rewind();
+
+    /**
+     * @return Records appended but not acknowledged yet
+     */
+    long size();
+
+    /**
+     * @return Records dropped unpublished because the outbox was full; 0 for outboxes that never drop
+     */
+    default long dropped() {
+        return 0;
+    }
+
+    /**
+     * A listener appending every transition it observes, with states and events by name.
+     */
+    default <S, E> TransitionListener<S, E> listener() {
+        return (id, from, event, to) -> append(id, String.valueOf(from), event == null ? null : String.valueOf(event),
+                String.valueOf(to), System.currentTimeMillis());
+    }
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,177 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Ships the records of an {@link Outbox} to a {@link BatchSink} on a thread of its own, so a
+ * transition only ever pays for the append.
+ * <p>
+ * A batch goes out once {@code maxBatchRecords} records are waiting, or once records have been
+ * waiting for {@code lingerMillis}; it holds at most {@code maxBatchRecords} records and, beyond
+ * its first record, {@code maxBatchBytes} estimated bytes. The next batch is only sent after the
+ * sink confirmed the previous one, which keeps records in outbox order. When the sink fails,
+ * the outbox is rewound and the batch retried after a backoff that doubles up to
+ * {@code maxBackoffMillis}.
+ */
+public class OutboxPublisher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(OutboxPublisher.class);
+
+    /**
+     * Destination of published batches.
+     */
+    @FunctionalInterface
+    public interface BatchSink {
+        /**
+         * @return Completes once every record of the batch is safely stored, exceptionally if
+         *         any of them could not be
+         */
+        CompletionStage<Void> send(List<OutboxRecord> batch);
+    }
+
+    private final Outbox outbox;
+    private final BatchSink sink;
+    private final int maxBatchRecords;
+    private final int maxBatchBytes;
+    private final long lingerMillis;
+    private final long maxBackoffMillis;
+    private final LongSupplier clock;
+
+    private long waitingSince = -1;
+    private long backoffMillis;
+    private final AtomicLong publishedRecords = new AtomicLong();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public OutboxPublisher(Outbox outbox, BatchSink sink, int maxBatchRecords, int maxBatchBytes, long lingerMillis) {
+        this(outbox, sink, maxBatchRecords, maxBatchBytes, lingerMillis, 5000, System::currentTimeMillis);
+    }
+
+    public OutboxPublisher(Outbox outbox, BatchSink sink, int maxBatchRecords, int maxBatchBytes, long lingerMillis,
+                           long maxBackoffMillis, LongSupplier clock) {
+        if (maxBatchRecords <= 0 || maxBatchBytes <= 0 || lingerMillis < 0 || maxBackoffMillis <= 0) {
+            throw new IllegalArgumentException("Invalid outbox batching");
+        }
+        this.outbox = outbox;
+        this.sink = sink;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerMillis = lingerMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Send one batch if one is due.
+     * @return Records published, 0 if no batch was due, or -1 if the sink failed
+     */
+    public int publishDue() {
+        long pending = outbox.size();
+        long now = clock.getAsLong();
+        if (pending == 0) {
+            waitingSince = -1;
+            return 0;
+        }
+        if (waitingSince < 0) {
+            waitingSince = now;
+        }
+        if (pending < maxBatchRecords && now - waitingSince < lingerMillis) {
+            return 0;
+        }
+        List<OutboxRecord> batch = outbox.next(maxBatchRecords, maxBatchBytes);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            sink.send(batch).toCompletableFuture().join();
+        } catch (RuntimeException e) {
+            outbox.rewind();
+            failedBatches.incrementAndGet();
+            backoffMillis = backoffMillis == 0 ? Math.max(1, lingerMillis) : Math.min(maxBackoffMillis, backoffMillis * 2);
+            log.warn("Failed to publish {} outbox records, retrying in {} ms", batch.size(), backoffMillis, e);
+            return -1;
+        }
+        outbox.acknowledge(batch.size());
+        backoffMillis = 0;
+        publishedRecords.addAndGet(batch.size());
+        publishedBatches.incrementAndGet();
+        // Whatever is left keeps lingering from when this batch started waiting
+        if (outbox.size() == 0) {
+            waitingSince = -1;
+        }
+        return batch.size();
+    }
+
+    public void start(String threadName) {
+        if (running) {
+            return;
+        }
+        running = true;
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Math.min(lingerMillis, 10)));
+        worker = new Thread(() -> {
+            while (running) {
+                int published;
+                try {
+                    published = publishDue();
+                } catch (RuntimeException e) {
+                    log.error("Outbox publisher failed", e);
+                    published = -1;
+                    backoffMillis = maxBackoffMillis;
+                }
+                if (published < 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+                } else if (published == 0) {
+                    LockSupport.parkNanos(idleNanos);
+                }
+            }
+        }, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop publishing; records not published yet stay in the outbox.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+    }
+
+    public long getPendingRecords() {
+        return outbox.size();
+    }
+
+    public long getDroppedRecords() {
+        return outbox.dropped();
+    }
+
+    public long getPublishedRecords() {
+        return publishedRecords.get();
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.get();
+    }
+
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.chinthakad.statemachine.framework;
+
+/**
+ * A state change waiting in an {@link Outbox} to be published. States and events are kept by
+ * name so that a durable outbox can store them without knowing their types.
+ */
+public final class OutboxRecord {
+    private final long epoch;
+    private final long sequence;
+    private final String machineId;
+    private final String from;
+    private final String event;
+    private final String to;
+    private final long timestamp;
+
+    OutboxRecord(long epoch, long sequence, String machineId, String from, String event, String to, long timestamp) {
+        this.epoch = epoch;
+        this.sequence = sequence;
+        this.machineId = machineId;
+        this.from = from;
+        this.event = event;
+        this.to = to;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * @return Identifies the numbering this record's sequence belongs to: drawn at random by every
+     *         in-memory outbox, and kept for the life of a file outbox's log. Consumers can drop
+     *         records delivered twice by their (epoch, sequence) pair.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @return Position in the outbox, increasing by one per record within an epoch
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getMachineId() {
+        return machineId;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * @return The event, or null if the machine migrated to a new definition version
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    public String getTo() {
+        return to;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Rough encoded size, used to cap batches by bytes.
+     */
+    int estimatedSize() {
+        return 3 * Long.BYTES + machineId.length() + from.length() + to.length()
+                + (event == null ? 0 : event.length());
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + machineId + ": " + from + " -" + event + "-> " + to;
+    }
+}
@@ -0,0 +1,37 @@
+package com.chinthakad.statemachine.framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a {@link StateMachine#processPendingEvents} call that found buffered
+ * events. Every successful trigger restarts the scan, so many passes over a deep queue point
+ * at the quadratic worst case.
+ */
+@Name("com.chinthakad.statemachine.PendingDrain")
+@Label("Pending Event Drain")
+@Category("State Machine")
+@Description("Retry of buffered events after a transition")
+@Threshold("1 ms")
+@StackTrace(false)
+final class PendingDrainEvent extends Event {
+    @Label("Machine Id")
+    String machineId;
+
+    @Label("Queue Depth")
+    int queueDepth;
+
+    @Label("Applied")
+    int applied;
+
+    @Label("Passes")
+    int passes;
+
+    @Label("Reached Terminal State")
+    boolean terminal;
+}
@@ -0,0 +1,635 @@
+package com.chinthakad.statemachine.framework;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Offline replay of an event log against a definition, for measuring the impact of rule changes
+ * on historical traffic.
+ * <p>
+ * The log is memory-mapped and cut on record boundaries into slices, which are replayed a window
+ * of {@code parallelism} slices at a time on a fork-join pool. First the slices of a window are
+ * parsed in parallel, each record once, into one bin per worker picked by the hash of its machine
+ * id. Then each worker applies its bin of every slice in log order, so it owns the machines that
+ * hash to it and their events are applied in log order without any coordination beyond the step
+ * from parsing to applying. Machines start in
+ * the definition's initial state on their first event. Events that do not apply are buffered and
+ * retried after every successful transition, like the Kafka consumer's pending queue. Callbacks
+ * and listeners are not run, and timeouts are not simulated.
+ * <p>
+ * Supported formats:
+ * <ul>
+ *   <li>{@link Format#BINARY}: back-to-back records in the application's wire format, read through
+ *   the {@link RecordLayout} given to {@link #binaryLayout}. Records may vary in size, so slices
+ *   are cut by walking record headers; a record the layout rejects ends the log.</li>
+ *   <li>{@link Format#NDJSON}: one flat JSON object per line with string id and event fields</li>
+ * </ul>
+ */
+public class ReplayEngine<S extends Enum<S>, E extends Enum<E>> {
+    private static final Logger log = LoggerFactory.getLogger(ReplayEngine.class);
+    private static final long DEFAULT_REGION_SIZE = 256L << 20;
+    private static final int BOUNDARY_WINDOW = 64 << 10;
+    private static final int DEFAULT_SLICE_SIZE = 4 << 20;
+
+    public enum Format {
+        NDJSON,
+        BINARY
+    }
+
+    /**
+     * Reads the fields replay needs from binary records in place, at absolute offsets.
+     */
+    public interface RecordLayout {
+        /**
+         * @return Size of the record starting at {@code offset}, or -1 if the bytes there up to the
+         * buffer's limit are not a whole record
+         */
+        int recordSize(ByteBuffer buffer, int offset);
+
+        long idMostSigBits(ByteBuffer buffer, int offset);
+
+        long idLeastSigBits(ByteBuffer buffer, int offset);
+
+        int eventOrdinal(ByteBuffer buffer, int offset);
+    }
+
+    private final StateMachineDefinition<S, E> definition;
+    private final EventCodec<E> codec;
+    private final E[] eventsByOrdinal;
+    private final S[] statesByOrdinal;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private byte[] idField = quoted("orderId");
+    private byte[] eventField = quoted("event");
+    private long regionSize = DEFAULT_REGION_SIZE;
+    private int sliceSize = DEFAULT_SLICE_SIZE;
+    private RecordLayout layout;
+
+    public ReplayEngine(StateMachineDefinition<S, E> definition, Class<E> eventType) {
+        this.definition = definition.compile();
+        this.codec = EventCodec.of(eventType);
+        this.eventsByOrdinal = eventType.getEnumConstants();
+        this.statesByOrdinal = definition.getInitialState().getDeclaringClass().getEnumConstants();
+    }
+
+    public ReplayEngine<S, E> parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Names of the NDJSON id and event fields; defaults to "orderId" and "event".
+     */
+    public ReplayEngine<S, E> fields(String idField, String eventField) {
+        this.idField = quoted(idField);
+        this.eventField = quoted(eventField);
+        return this;
+    }
+
+    /**
+     * Layout of {@link Format#BINARY} records; required for binary replay.
+     */
+    public ReplayEngine<S, E> binaryLayout(RecordLayout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    ReplayEngine<S, E> regionSize(long regionSize) {
+        this.regionSize = regionSize;
+        return this;
+    }
+
+    ReplayEngine<S, E> sliceSize(int sliceSize) {
+        this.sliceSize = sliceSize;
+        return this;
+    }
+
+    public ReplayReport<S> replay(Path file, Format format) throws IOException {
+        if (format == Format.BINARY && layout == null) {
+            throw new IllegalStateException("Binary replay needs a record layout");
+        }
+        long started = System.nanoTime();
+        ReplayReport<S> report = new ReplayReport<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<ByteBuffer> regions = map(channel, format);
+            List<Partition> partitions = new ArrayList<>(parallelism);
+            for (int p = 0; p < parallelism; p++) {
+                partitions.add(new Partition(p));
+            }
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<Slice> window = new ArrayList<>(parallelism);
+                for (ByteBuffer region : regions) {
+                    int start = 0;
+                    while (start < region.limit()) {
+                        int end = sliceEnd(region, start, format);
+                        window.add(new Slice(region, start, end));
+                        start = end;
+                        if (window.size() == parallelism) {
+                            replayWindow(pool, window, partitions, format, report);
+                            window.clear();
+                        }
+                    }
+                }
+                replayWindow(pool, window, partitions, format, report);
+                for (Partition partition : partitions) {
+                    report.merge(partition.finish());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        report.setElapsedMillis((System.nanoTime() - started) / 1_000_000);
+        return report;
+    }
+
+    private void replayWindow(ForkJoinPool pool, List<Slice> window, List<Partition> partitions, Format format, ReplayReport<S> report) {
+        if (window.isEmpty()) {
+            return;
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(parallelism);
+        for (Slice slice : window) {
+            tasks.add(pool.submit(() -> slice.parse(format)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        tasks.clear();
+        for (Partition partition : partitions) {
+            tasks.add(pool.submit(() -> partition.apply(window)));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        for (Slice slice : window) {
+            report.merge(slice.report);
+        }
+    }
+
+    /**
+     * End of the slice starting at {@code start}: about {@code sliceSize} bytes on, moved up to
+     * the next record boundary.
+     */
+    private int sliceEnd(ByteBuffer region, int start, Format format) {
+        int limit = region.limit();
+        if (limit - start <= sliceSize) {
+            return limit;
+        }
+        if (format == Format.BINARY) {
+            // Regions hold whole records only
+            int end = start;
+            while (end < limit && end - start < sliceSize) {
+                end += layout.recordSize(region, end);
+            }
+            return end;
+        }
+        int newline = indexOf(region, start + sliceSize - 1, limit, (byte) '\n');
+        return newline < 0 ? limit : newline + 1;
+    }
+
+    private List<ByteBuffer> map(FileChannel channel, Format format) throws IOException {
+        long size = channel.size();
+        List<ByteBuffer> regions = new ArrayList<>();
+        if (format == Format.BINARY) {
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, size - position));
+                // Cut the region after its last whole record
+                int end = 0;
+                int record;
+                while (end < mapped.limit() && (record = layout.recordSize(mapped, end)) > 0) {
+                    end += record;
+                }
+                if (end < mapped.limit() && (end == 0 || position + mapped.limit() == size)) {
+                    log.warn("Ignoring {} bytes from offset {} that are not a whole record", size - position - end, position + end);
+                    size = position + end;
+                }
+                if (end > 0) {
+                    regions.add(mapped.slice(0, end));
+                }
+                position += end;
+            }
+            return regions;
+        }
+        long position = 0;
+        while (position < size) {
+            long end = Math.min(position + regionSize, size);
+            // Extend each region to the end of the line it cuts through
+            while (end < size) {
+                long window = Math.min(BOUNDARY_WINDOW, size - end);
+                MappedByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, end, window);
+                int newline = indexOf(tail, 0, (int) window, (byte) '\n');
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += window;
+            }
+            regions.add(channel.map(FileChannel.MapMode.READ_ONLY, position, end - position));
+            position = end;
+        }
+        return regions;
+    }
+
+    /**
+     * One slice of a region, parsed into a bin of records per partition.
+     */
+    private final class Slice {
+        private final ByteBuffer region;
+        private final int start;
+        private final int end;
+        private final Bin[] bins;
+        // Lines without a machine id, which no partition sees
+        private final ReplayReport<S> report = new ReplayReport<>();
+        private final AsciiSlice slice = new AsciiSlice();
+
+        Slice(ByteBuffer region, int start, int end) {
+            this.region = region;
+            this.start = start;
+            this.end = end;
+            this.bins = new Bin[parallelism];
+        }
+
+        void parse(Format format) {
+            if (format == Format.BINARY) {
+                parseBinary();
+            } else {
+                parseNdjson();
+            }
+        }
+
+        private void parseBinary() {
+            for (int offset = start; offset < end; offset += layout.recordSize(region, offset)) {
+                int ordinal = layout.eventOrdinal(region, offset);
+                add(layout.idMostSigBits(region, offset), layout.idLeastSigBits(region, offset),
+                        ordinal < eventsByOrdinal.length ? ordinal : -1);
+            }
+        }
+
+        private void parseNdjson() {
+            int lineStart = start;
+            while (lineStart < end) {
+                int lineEnd = indexOf(region, lineStart, end, (byte) '\n');
+                if (lineEnd < 0) {
+                    lineEnd = end;
+                }
+                parseLine(lineStart, lineEnd);
+                lineStart = lineEnd + 1;
+            }
+        }
+
+        private void parseLine(int from, int to) {
+            int idStart = valueStart(region, from, to, idField);
+            int idEnd = idStart < 0 ? -1 : indexOf(region, idStart, to, (byte) '"');
+            if (idEnd < 0) {
+                if (!isBlank(region, from, to)) {
+                    report.countEvent();
+                    report.countInvalidEvent();
+                }
+                return;
+            }
+            int ordinal = -1;
+            int eventStart = valueStart(region, from, to, eventField);
+            int eventEnd = eventStart < 0 ? -1 : indexOf(region, eventStart, to, (byte) '"');
+            if (eventEnd >= 0) {
+                E event = codec.decode(slice.wrap(region, eventStart, eventEnd));
+                ordinal = event == null ? -1 : event.ordinal();
+            }
+            add(fnv1a(region, idStart, idEnd), murmurStyle(region, idStart, idEnd), ordinal);
+        }
+
+        private void add(long hi, long lo, int ordinal) {
+            int partition = partitionOf(hi, lo);
+            Bin bin = bins[partition];
+            if (bin == null) {
+                bin = bins[partition] = new Bin();
+            }
+            bin.add(hi, lo, ordinal);
+        }
+    }
+
+    /**
+     * Parsed records of one slice for one partition: machine id halves and event ordinal, -1 for
+     * an unknown event.
+     */
+    static final class Bin {
+        private long[] ids = new long[2 * 256];
+        private int[] events = new int[256];
+        private int size;
+
+        void add(long hi, long lo, int event) {
+            if (size == events.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+                events = Arrays.copyOf(events, events.length * 2);
+            }
+            ids[2 * size] = hi;
+            ids[2 * size + 1] = lo;
+            events[size++] = event;
+        }
+    }
+
+    /**
+     * Replays the machines of one hash partition.
+     */
+    private final class Partition {
+        private final int index;
+        private final ReplayReport<S> report = new ReplayReport<>();
+        private final MachineTable machines = new MachineTable((byte) definition.getInitialState().ordinal());
+        private final Map<Integer, ArrayDeque<E>> pending = new HashMap<>();
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        void apply(List<Slice> slices) {
+            for (Slice slice : slices) {
+                Bin bin = slice.bins[index];
+                if (bin == null) {
+                    continue;
+                }
+                for (int i = 0; i < bin.size; i++) {
+                    int event = bin.events[i];
+                    apply(bin.ids[2 * i], bin.ids[2 * i + 1], event < 0 ? null : eventsByOrdinal[event]);
+                }
+            }
+        }
+
+        ReplayReport<S> finish() {
+            for (int machine = 0; machine < machines.size(); machine++) {
+                report.countFinalState(statesByOrdinal[machines.state(machine)]);
+                ArrayDeque<E> buffered = pending.get(machine);
+                report.countPending(buffered == null ? 0 : buffered.size());
+            }
+            return report;
+        }
+
+        private void apply(long hi, long lo, E event) {
+            report.countEvent();
+            if (event == null) {
+                report.countInvalidEvent();
+                return;
+            }
+            int machine = machines.getOrCreate(hi, lo);
+            S state = statesByOrdinal[machines.state(machine)];
+            S next = definition.isTerminal(state) ? null : definition.nextState(state, event);
+            if (next == null) {
+                report.countInvalidTransition();
+                if (!definition.isTerminal(state)) {
+                    ArrayDeque<E> buffered = pending.computeIfAbsent(machine, k -> new ArrayDeque<>(4));
+                    buffered.add(event);
+                    report.observePendingDepth(buffered.size());
+                }
+                return;
+            }
+            report.countApplied();
+            state = drain(machine, next);
+            machines.setState(machine, (byte) state.ordinal());
+        }
+
+        private S drain(int machine, S state) {
+            ArrayDeque<E> buffered = pending.get(machine);
+            if (buffered == null) {
+                return state;
+            }
+            boolean progress;
+            do {
+                progress = false;
+                if (definition.isTerminal(state)) {
+                    break;
+                }
+                Iterator<E> it = buffered.iterator();
+                while (it.hasNext()) {
+                    S next = definition.nextState(state, it.next());
+                    if (next != null) {
+                        it.remove();
+                        report.countApplied();
+                        state = next;
+                        progress = true;
+                        break;
+                    }
+                }
+            } while (progress);
+            // The consumer drops a machine's pending events once it reaches a terminal state
+            if (buffered.isEmpty() || definition.isTerminal(state)) {
+                pending.remove(machine);
+            }
+            return state;
+        }
+    }
+
+    private int partitionOf(long hi, long lo) {
+        return (int) Long.remainderUnsigned(mix(hi ^ Long.rotateLeft(lo, 32)), parallelism);
+    }
+
+    /**
+     * Open-addressing map from 128-bit machine ids to dense machine numbers, plus one byte of
+     * state per machine.
+     */
+    static final class MachineTable {
+        private final byte initialState;
+        private long[] keys = new long[2 * 1024];
+        private int[] slots = new int[1024];
+        private byte[] states = new byte[1024];
+        private int size;
+
+        MachineTable(byte initialState) {
+            this.initialState = initialState;
+            Arrays.fill(slots, -1);
+        }
+
+        int getOrCreate(long hi, long lo) {
+            int mask = slots.length - 1;
+            int slot = (int) mix(hi ^ (lo * 0x9E3779B97F4A7C15L)) & mask;
+            while (slots[slot] >= 0) {
+                if (keys[2 * slot] == hi && keys[2 * slot + 1] == lo) {
+                    return slots[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            int machine = size++;
+            keys[2 * slot] = hi;
+            keys[2 * slot + 1] = lo;
+            slots[slot] = machine;
+            if (machine == states.length) {
+                states = Arrays.copyOf(states, states.length * 2);
+            }
+            states[machine] = initialState;
+            if (size * 2 > slots.length) {
+                grow();
+            }
+            return machine;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int state(int machine) {
+            return states[machine] & 0xFF;
+        }
+
+        void setState(int machine, byte state) {
+            states[machine] = state;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slots;
+            keys = new long[oldKeys.length * 2];
+            slots = new int[oldSlots.length * 2];
+            Arrays.fill(slots, -1);
+            int mask = slots.length - 1;
+            for (int old = 0; old < oldSlots.length; old++) {
+                if (oldSlots[old] < 0) {
+                    continue;
+                }
+                long hi = oldKeys[2 * old];
+                long lo = oldKeys[2 * old + 1];
+                int slot = (int) mix(hi ^ (lo * 0x9E3779B97F4A7C15L)) & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[2 * slot] = hi;
+                keys[2 * slot + 1] = lo;
+                slots[slot] = oldSlots[old];
+            }
+        }
+    }
+
+    /**
+     * Reusable view of an ASCII byte range, so event names are resolved without copying.
+     */
+    private static final class AsciiSlice implements CharSequence {
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+
+        AsciiSlice wrap(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = end - start;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static int valueStart(ByteBuffer buffer, int from, int to, byte[] key) {
+        int at = indexOf(buffer, from, to, key);
+        while (at >= 0) {
+            int i = skipSpaces(buffer, at + key.length, to);
+            if (i < to && buffer.get(i) == ':') {
+                i = skipSpaces(buffer, i + 1, to);
+                return i < to && buffer.get(i) == '"' ? i + 1 : -1;
+            }
+            // The key text appeared somewhere else, e.g. inside a value
+            at = indexOf(buffer, at + 1, to, key);
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        while (i < to && (buffer.get(i) == ' ' || buffer.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, byte[] needle) {
+        int last = to - needle.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buffer.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static long fnv1a(ByteBuffer buffer, int from, int to) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long murmurStyle(ByteBuffer buffer, int from, int to) {
+        long hash = 0x9E3779B97F4A7C15L ^ (to - from);
+        for (int i = from; i < to; i++) {
+            hash = Long.rotateLeft(hash ^ (buffer.get(i) & 0xFF), 23) * 0xC2B2AE3D27D4EB4FL;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static byte[] quoted(String field) {
+        return ("\"" + field + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,133 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Outcome of replaying an event log against a definition.
+ */
+public class ReplayReport<S> {
+    private final Map<S, Long> finalStates = new LinkedHashMap<>();
+    private long events;
+    private long machines;
+    private long applied;
+    private long invalidEvents;
+    private long invalidTransitions;
+    private long pendingRemaining;
+    private long machinesWithPending;
+    private long maxPendingDepth;
+    private long elapsedMillis;
+
+    void countFinalState(S state) {
+        finalStates.merge(state, 1L, Long::sum);
+        machines++;
+    }
+
+    void countEvent() {
+        events++;
+    }
+
+    void countApplied() {
+        applied++;
+    }
+
+    void countInvalidEvent() {
+        invalidEvents++;
+    }
+
+    void countInvalidTransition() {
+        invalidTransitions++;
+    }
+
+    void countPending(int depth) {
+        if (depth > 0) {
+            pendingRemaining += depth;
+            machinesWithPending++;
+        }
+    }
+
+    void observePendingDepth(int depth) {
+        maxPendingDepth = Math.max(maxPendingDepth, depth);
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    ReplayReport<S> merge(ReplayReport<S> other) {
+        other.finalStates.forEach((state, count) -> finalStates.merge(state, count, Long::sum));
+        events += other.events;
+        machines += other.machines;
+        applied += other.applied;
+        invalidEvents += other.invalidEvents;
+        invalidTransitions += other.invalidTransitions;
+        pendingRemaining += other.pendingRemaining;
+        machinesWithPending += other.machinesWithPending;
+        maxPendingDepth = Math.max(maxPendingDepth, other.maxPendingDepth);
+        return this;
+    }
+
+    /**
+     * Number of machines per state at the end of the log.
+     */
+    public Map<S, Long> getFinalStates() {
+        return finalStates;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getMachines() {
+        return machines;
+    }
+
+    /**
+     * Events that caused a transition, directly or when drained from the pending buffer.
+     */
+    public long getApplied() {
+        return applied;
+    }
+
+    /**
+     * Records whose event could not be resolved; they are skipped.
+     */
+    public long getInvalidEvents() {
+        return invalidEvents;
+    }
+
+    /**
+     * Events that did not apply on arrival and were buffered as pending.
+     */
+    public long getInvalidTransitions() {
+        return invalidTransitions;
+    }
+
+    /**
+     * Buffered events still unapplied at the end of the log.
+     */
+    public long getPendingRemaining() {
+        return pendingRemaining;
+    }
+
+    public long getMachinesWithPending() {
+        return machinesWithPending;
+    }
+
+    public long getMaxPendingDepth() {
+        return maxPendingDepth;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplayReport{events=" + events + ", machines=" + machines + ", applied=" + applied
+                + ", invalidEvents=" + invalidEvents + ", invalidTransitions=" + invalidTransitions
+                + ", pendingRemaining=" + pendingRemaining + ", machinesWithPending=" + machinesWithPending
+                + ", maxPendingDepth=" + maxPendingDepth + ", finalStates=" + finalStates
+                + ", elapsedMillis=" + elapsedMillis + "}";
+    }
+}
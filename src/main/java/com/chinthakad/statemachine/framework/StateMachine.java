@@ -1,109 +1,512 @@
 package com.chinthakad.statemachine.framework;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-import java.util.Set;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+/**
+ * A state machine instance. Transitions, and the callbacks and listeners they run, are serialized
+ * by a {@link ReentrantLock} rather than a monitor, so a virtual thread that blocks in a callback
+ * or waits for the lock unmounts from its carrier instead of pinning it.
+ */
 public class StateMachine<S, E> {
-    private static final Logger log = LoggerFactory.getLogger(StateMachine.class);
-    private S currentState;
-    private final Map<S, Map<E, S>> transitions = new HashMap<>();
-    private final Map<E, BiConsumer<S, S>> callbacks = new HashMap<>();
-    private final Map<TransitionKey<S, E>, BiConsumer<S, S>> transitionCallbacks = new HashMap<>();
-    private Consumer<String> invalidTransitionHandler = msg -> log.error(msg);
+    private final ReentrantLock lock = new ReentrantLock();
+    private StateMachineDefinition<S, E> definition;
+    // Set for machines that follow a DefinitionRegistry variant
+    private DefinitionRegistry.Version<S, E> version;
+    // Written under the lock; volatile so exports and status reads see it without taking the lock
+    private volatile S currentState;
+    // Seqlock over currentState: odd while a write is in progress, the state's version is half of it
+    private volatile long stateSeq;
+    // When the current state was entered, on the definition's timer clock
+    private long stateEnteredAt;
+    private TimingWheel.Task timeoutTask;
+    private long timerHandle;
+    private String id;
+    private TransitionListener<S, E> transitionListener;
+    // Run outside the lock when a timeout takes the machine to a terminal state
+    private Runnable onTimeoutTerminal;
+    private final long createdAt = System.currentTimeMillis();
+    // Transition history, allocated on the first transition: an arena slot while the machine is
+    // bound to a repository entry, otherwise an array of our own, since nothing would release the slot
+    private boolean bound;
+    private long[] historyRing;
+    private HistoryArena historyArena;
+    private int historySlot = -1;
 
+    /**
+     * Create a standalone machine with its own, still mutable definition.
+     */
     public StateMachine(S initialState) {
-        this.currentState = initialState;
+        this(new StateMachineDefinition<>(initialState));
+    }
+
+    /**
+     * Create a machine in the initial state of a (usually shared) definition.
+     */
+    public StateMachine(StateMachineDefinition<S, E> definition) {
+        this.definition = definition;
+        this.currentState = definition.getInitialState();
+        this.stateEnteredAt = definition.now();
+    }
+
+    /**
+     * Create a machine that starts on {@code version} and migrates to newer versions of its variant.
+     */
+    StateMachine(DefinitionRegistry.Version<S, E> version) {
+        this(version.getDefinition());
+        this.version = version;
     }
 
     public void addTransition(S from, E event, S to) {
-        transitions.computeIfAbsent(from, k -> new HashMap<>()).put(event, to);
+        definition.addTransition(from, event, to);
     }
 
     public void addCallback(E event, BiConsumer<S, S> callback) {
-        callbacks.put(event, callback);
+        definition.addCallback(event, callback);
     }
 
     public void addTransitionCallback(S from, E event, S to, BiConsumer<S, S> callback) {
-        transitionCallbacks.put(new TransitionKey<>(from, event, to), callback);
+        definition.addTransitionCallback(from, event, to, callback);
     }
 
     public void setInvalidTransitionHandler(Consumer<String> handler) {
-        this.invalidTransitionHandler = handler;
+        definition.setInvalidTransitionHandler(handler);
+    }
+
+    /**
+     * Fire {@code event} if the machine is still in {@code state} after {@code delayMillis}.
+     */
+    public void addTimeout(S state, long delayMillis, E event) {
+        definition.addTimeout(state, delayMillis, event);
+    }
+
+    public void setTimers(TimingWheel timers) {
+        definition.setTimers(timers);
+    }
+
+    /**
+     * Arm the timeout of the current state, if it has one. Called once the machine is fully built.
+     */
+    public void startTimers() {
+        lock.lock();
+        try {
+            armTimeout();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Attach this machine to a repository entry; the listener is told about every transition.
+     * It is called once right away with a null {@code from} and event to announce the current state.
+     * @param onTimeoutTerminal Run after a timeout took the machine to a terminal state, outside its
+     *                          lock, like the {@code onTerminal} of {@link #processPendingEvents}
+     */
+    void bind(String id, TransitionListener<S, E> listener, Runnable onTimeoutTerminal) {
+        lock.lock();
+        try {
+            this.id = id;
+            this.transitionListener = listener;
+            this.onTimeoutTerminal = onTimeoutTerminal;
+            this.bound = true;
+            listener.onTransition(id, null, null, currentState);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Detach this machine from its repository entry and drop any pending timeout. An arena slot
+     * holding its history is copied into an array of its own and released, so callers still
+     * holding the machine can read and extend its history without keeping the slot.
+     * @return The state the machine was in when it was detached
+     */
+    S unbind() {
+        lock.lock();
+        try {
+            this.transitionListener = null;
+            this.onTimeoutTerminal = null;
+            this.bound = false;
+            cancelTimeout();
+            if (historyArena != null) {
+                int offset = historyArena.offset(historySlot);
+                historyRing = Arrays.copyOfRange(historyArena.chunk(historySlot), offset, offset + historyArena.getDepth() + 1);
+                historyArena.release(historySlot);
+                historyArena = null;
+                historySlot = -1;
+            }
+            return currentState;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run {@code action} under the machine's lock, atomically with its transitions and timeouts.
+     * The lock is reentrant, so the action may trigger events.
+     */
+    <R> R locked(Supplier<R> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cancelTimeout() {
+        if (timerHandle != 0) {
+            definition.timers().cancel(timerHandle);
+            timerHandle = 0;
+        }
+    }
+
+    public boolean trigger(E event) {
+        return trigger(null, event);
+    }
+
+    /**
+     * Fire {@code event} only if the current state still satisfies {@code condition}, checked
+     * under the same lock as the transition. A failed condition is not reported to the invalid
+     * transition handler.
+     * @return Whether the condition held and the transition was applied
+     */
+    public boolean triggerIf(Predicate<S> condition, E event) {
+        return trigger(condition, event);
     }
 
-    public synchronized boolean trigger(E event) {
+    /**
+     * Fire {@code event} only if the machine is still at {@code expectedVersion}, as returned by
+     * {@link #readState()}, for optimistic concurrency between clients.
+     * @return Whether the version matched and the transition was applied
+     */
+    public boolean triggerIfVersion(long expectedVersion, E event) {
+        return trigger(state -> (stateSeq >>> 1) == expectedVersion, event);
+    }
+
+    private boolean trigger(Predicate<S> condition, E event) {
+        TransitionEvent jfr = new TransitionEvent();
+        long requested = jfr.isEnabled() ? System.nanoTime() : 0;
+        jfr.begin();
+        String machineId;
+        S from;
+        S to;
+        boolean success;
+        long acquired;
+        lock.lock();
+        try {
+            acquired = requested == 0 ? 0 : System.nanoTime();
+            machineId = id;
+            from = currentState;
+            success = (condition == null || condition.test(currentState)) && transition(event);
+            to = currentState;
+        } finally {
+            lock.unlock();
+        }
+        jfr.end();
+        if (jfr.shouldCommit()) {
+            jfr.machineId = machineId;
+            jfr.fromState = String.valueOf(from);
+            jfr.event = String.valueOf(event);
+            jfr.toState = String.valueOf(to);
+            jfr.success = success;
+            jfr.lockWait = acquired - requested;
+            jfr.commit();
+        }
+        return success;
+    }
+
+    private boolean transition(E event) {
+        migrateIfSuperseded();
         // Reject transitions if in terminal state (generic)
-        if (currentState instanceof TerminalState && ((TerminalState) currentState).isTerminal()) {
-            invalidTransitionHandler.accept("No transitions allowed from terminal state: " + currentState);
+        if (definition.isTerminal(currentState)) {
+            definition.invalidTransition("No transitions allowed from terminal state: " + currentState);
             return false;
         }
-        Map<E, S> stateTransitions = transitions.get(currentState);
-        if (stateTransitions != null && stateTransitions.containsKey(event)) {
+        S nextState = definition.nextState(currentState, event);
+        if (nextState != null) {
             S prevState = currentState;
-            S nextState = stateTransitions.get(event);
-            currentState = nextState;
-            // Per-transition callback
-            BiConsumer<S, S> transitionCb = transitionCallbacks.get(new TransitionKey<>(prevState, event, nextState));
-            if (transitionCb != null) {
-                transitionCb.accept(prevState, nextState);
-            } else if (callbacks.containsKey(event)) {
-                callbacks.get(event).accept(prevState, nextState);
+            setState(nextState);
+            recordHistory(prevState, event, nextState);
+            armTimeout();
+            // Per-transition callback, falling back to the per-event one
+            BiConsumer<S, S> action = definition.action(prevState, event, nextState);
+            if (action != null) {
+                action.accept(prevState, nextState);
+            }
+            if (transitionListener != null) {
+                transitionListener.onTransition(id, prevState, event, nextState);
             }
             return true;
         } else {
-            invalidTransitionHandler.accept("Invalid transition: " + currentState + " --(" + event + ")-> ?");
+            definition.invalidTransition("Invalid transition: " + currentState + " --(" + event + ")-> ?");
             return false;
         }
     }
 
     /**
-     * Process pending events for this state machine.
+     * Process pending events for this state machine. The queue is drained under the machine's
+     * lock, so concurrent drains for the same machine take turns; other threads may keep adding
+     * to a concurrent queue meanwhile. {@code onTerminal} runs after the lock is released.
      * @param id The state machine ID (for cleanup callback)
      * @param pending Queue of pending messages
-     * @param eventExtractor Function to extract event from message
+     * @param eventExtractor Function to extract event from message; returning null discards the message
      * @param onTerminal Cleanup callback when terminal state is reached
      * @param <M> Message type
      */
     public <M> void processPendingEvents(String id, Queue<M> pending, Function<M, E> eventExtractor, Runnable onTerminal) {
-        boolean progress;
-        do {
-            progress = false;
-            Iterator<M> it = pending.iterator();
-            while (it.hasNext()) {
-                M msg = it.next();
-                E event;
-                try {
-                    event = eventExtractor.apply(msg);
-                } catch (Exception e) {
-                    it.remove();
-                    progress = true;
-                    break;
-                }
-                if (this.trigger(event)) {
-                    it.remove();
-                    progress = true;
-                    if (currentState instanceof TerminalState && ((TerminalState) currentState).isTerminal()) {
-                        onTerminal.run();
-                        return;
+        PendingDrainEvent jfr = new PendingDrainEvent();
+        int depth = jfr.isEnabled() ? pending.size() : 0;
+        jfr.begin();
+        int applied = 0;
+        int passes = 0;
+        boolean terminal = false;
+        lock.lock();
+        try {
+            boolean progress;
+            do {
+                passes++;
+                progress = false;
+                Iterator<M> it = pending.iterator();
+                while (it.hasNext()) {
+                    M msg = it.next();
+                    E event;
+                    try {
+                        event = eventExtractor.apply(msg);
+                    } catch (Exception e) {
+                        event = null;
+                    }
+                    if (event == null) {
+                        it.remove();
+                        progress = true;
+                        break;
+                    }
+                    if (this.trigger(event)) {
+                        it.remove();
+                        applied++;
+                        // Nothing applies after a terminal state
+                        progress = !isTerminal();
+                        break;
                     }
-                    break;
                 }
+            } while (progress);
+            terminal = isTerminal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (terminal) {
+                onTerminal.run();
+            }
+        } finally {
+            jfr.end();
+            if (depth > 0 && jfr.shouldCommit()) {
+                jfr.machineId = id;
+                jfr.queueDepth = depth;
+                jfr.applied = applied;
+                jfr.passes = passes;
+                jfr.terminal = terminal;
+                jfr.commit();
+            }
+        }
+    }
+
+    /**
+     * Move to the latest version of this machine's variant, mapping the state through every
+     * version in between. Listeners see a migration that changes the state as a transition with
+     * a null event.
+     */
+    private void migrateIfSuperseded() {
+        if (version == null || version.next() == null) {
+            return;
+        }
+        // Cancel against the old definition's timers before switching
+        cancelTimeout();
+        S prevState = currentState;
+        S migrated = prevState;
+        DefinitionRegistry.Version<S, E> latest = version;
+        while (latest.next() != null) {
+            latest = latest.next();
+            migrated = latest.migrate(migrated);
+        }
+        if (!migrated.equals(prevState)) {
+            setState(migrated);
+            recordHistory(prevState, null, migrated);
+        }
+        version = latest;
+        definition = latest.getDefinition();
+        armTimeout();
+        if (transitionListener != null && !currentState.equals(prevState)) {
+            transitionListener.onTransition(id, prevState, null, currentState);
+        }
+    }
+
+    private void recordHistory(S from, E event, S to) {
+        int depth = definition.historyDepth();
+        if (depth == 0 && historyRing == null && historyArena == null) {
+            return;
+        }
+        long entry = TransitionHistory.pack(((Enum<?>) from).ordinal(), event == null ? -1 : ((Enum<?>) event).ordinal(),
+                ((Enum<?>) to).ordinal(), System.currentTimeMillis() - createdAt);
+        if (historyArena == null && historyRing == null) {
+            HistoryArena arena = bound ? definition.historyArena() : null;
+            if (arena != null) {
+                historySlot = arena.allocate();
+                historyArena = arena;
+            } else {
+                historyRing = new long[depth + 1];
+            }
+        }
+        if (historyArena != null) {
+            TransitionHistory.append(historyArena.chunk(historySlot), historyArena.offset(historySlot), historyArena.getDepth(), entry);
+        } else {
+            TransitionHistory.append(historyRing, 0, historyRing.length - 1, entry);
+        }
+    }
+
+    /**
+     * The most recent transitions, oldest first, up to the depth the definition keeps.
+     * Empty if the definition keeps no history or the machine has not moved yet.
+     */
+    public List<TransitionRecord<S, E>> getHistory() {
+        lock.lock();
+        try {
+            if (historyArena != null) {
+                return TransitionHistory.read(historyArena.chunk(historySlot), historyArena.offset(historySlot), historyArena.getDepth(),
+                        createdAt, definition.stateConstants(), definition.eventConstants());
+            }
+            if (historyRing != null) {
+                return TransitionHistory.read(historyRing, 0, historyRing.length - 1,
+                        createdAt, definition.stateConstants(), definition.eventConstants());
+            }
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Callers hold the lock, so the sequence has a single writer
+    private void setState(S next) {
+        stateSeq++;
+        currentState = next;
+        stateSeq++;
+        stateEnteredAt = definition.now();
+    }
+
+    /**
+     * Arm the timeout of the current state for what is left of it since the state was entered, so
+     * a migration that keeps the state does not restart its clock.
+     */
+    private void armTimeout() {
+        cancelTimeout();
+        long delayMillis = definition.timeoutMillis(currentState);
+        if (delayMillis < 0) {
+            return;
+        }
+        if (timeoutTask == null) {
+            timeoutTask = this::onTimeout;
+        }
+        long remaining = Math.max(0, delayMillis - (definition.now() - stateEnteredAt));
+        timerHandle = definition.timers().schedule(remaining, timeoutTask);
+    }
+
+    private void onTimeout(long handle) {
+        Runnable cleanup = null;
+        lock.lock();
+        try {
+            // A transition since scheduling re-armed or cancelled the timer; ignore the stale one
+            if (handle != timerHandle) {
+                return;
+            }
+            timerHandle = 0;
+            // Fire the timeout the latest version defines for the (possibly migrated) state
+            migrateIfSuperseded();
+            E event = definition.timeoutEvent(currentState);
+            if (event != null && trigger(event) && definition.isTerminal(currentState)) {
+                cleanup = onTimeoutTerminal;
             }
-        } while (progress);
-        if (currentState instanceof TerminalState && ((TerminalState) currentState).isTerminal()) {
-            onTerminal.run();
+        } finally {
+            lock.unlock();
+        }
+        if (cleanup != null) {
+            cleanup.run();
+        }
+    }
+
+    private boolean isTerminal() {
+        lock.lock();
+        try {
+            return definition.isTerminal(currentState);
+        } finally {
+            lock.unlock();
         }
     }
 
     public S getCurrentState() {
         return currentState;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Read the state and its version without blocking writers. Retries while a transition is
+     * in the middle of publishing a new state, which takes nanoseconds.
+     */
+    public StateSnapshot<S> readState() {
+        while (true) {
+            long before = stateSeq;
+            if ((before & 1) == 0) {
+                S state = currentState;
+                if (stateSeq == before) {
+                    return new StateSnapshot<>(state, before >>> 1);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return Number of state changes so far; bumped by every transition and state-changing migration
+     */
+    public long getStateVersion() {
+        return stateSeq >>> 1;
+    }
+
+    /**
+     * @return When this machine was created, in epoch milliseconds
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public StateMachineDefinition<S, E> getDefinition() {
+        lock.lock();
+        try {
+            return definition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The registry version this machine is on, or null if it does not follow a registry
+     */
+    public DefinitionRegistry.Version<S, E> getVersion() {
+        lock.lock();
+        try {
+            return version;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
\ No newline at end of file
@@ -1,36 +1,81 @@
 package com.chinthakad.statemachine.framework;
 
+import java.time.Duration;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 public class StateMachineBuilder<S, E> {
-    private final StateMachine<S, E> stateMachine;
+    private final StateMachineDefinition<S, E> definition;
 
     public StateMachineBuilder(S initialState) {
-        this.stateMachine = new StateMachine<>(initialState);
+        this.definition = new StateMachineDefinition<>(initialState);
     }
 
     public StateMachineBuilder<S, E> transition(S from, E event, S to) {
-        stateMachine.addTransition(from, event, to);
+        definition.addTransition(from, event, to);
         return this;
     }
 
     public StateMachineBuilder<S, E> onTransition(E event, BiConsumer<S, S> callback) {
-        stateMachine.addCallback(event, callback);
+        definition.addCallback(event, callback);
         return this;
     }
 
     public StateMachineBuilder<S, E> onTransition(S from, E event, S to, BiConsumer<S, S> callback) {
-        stateMachine.addTransitionCallback(from, event, to, callback);
+        definition.addTransitionCallback(from, event, to, callback);
+        return this;
+    }
+
+    /**
+     * Trigger {@code event} automatically when the machine stays in {@code state} for {@code after}.
+     * The timer is cancelled as soon as the machine leaves the state.
+     */
+    public StateMachineBuilder<S, E> timeout(S state, Duration after, E event) {
+        definition.addTimeout(state, after.toMillis(), event);
+        return this;
+    }
+
+    /**
+     * Timing wheel backing {@link #timeout}; defaults to {@link TimingWheel#shared()}.
+     */
+    public StateMachineBuilder<S, E> timers(TimingWheel timers) {
+        definition.setTimers(timers);
+        return this;
+    }
+
+    /**
+     * Keep the last {@code depth} transitions of each machine, see {@link StateMachine#getHistory()}.
+     */
+    public StateMachineBuilder<S, E> history(int depth) {
+        definition.setHistory(depth);
+        return this;
+    }
+
+    /**
+     * Keep each machine's recent transitions in a shared arena instead of per-machine arrays.
+     */
+    public StateMachineBuilder<S, E> history(HistoryArena arena) {
+        definition.setHistory(arena);
         return this;
     }
 
     public StateMachineBuilder<S, E> onInvalidTransition(Consumer<String> handler) {
-        stateMachine.setInvalidTransitionHandler(handler);
+        definition.setInvalidTransitionHandler(handler);
         return this;
     }
 
+    /**
+     * Validate and compile the definition, and create a machine from it.
+     */
     public StateMachine<S, E> build() {
-        return stateMachine;
+        return definition.newMachine();
+    }
+
+    /**
+     * Validate and compile the definition so it can be shared by many machines.
+     * @throws IllegalStateException if the rules are inconsistent
+     */
+    public StateMachineDefinition<S, E> buildDefinition() {
+        return definition.compile();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,303 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The transitions, callbacks and timeouts shared by every machine of one workflow.
+ * <p>
+ * A definition is mutable until {@link #compile()} validates it and freezes it. When states and
+ * events are enums, compiling also flattens the rules into ordinal-indexed tables so a trigger is
+ * two array reads instead of nested map lookups plus a {@link TransitionKey} allocation.
+ * Machines created from one definition share it, so per-machine cost is just the current state.
+ */
+public class StateMachineDefinition<S, E> {
+    private static final Logger log = LoggerFactory.getLogger(StateMachineDefinition.class);
+    private static final Logger machineLog = LoggerFactory.getLogger(StateMachine.class);
+
+    private final S initialState;
+    private final Map<S, Map<E, S>> transitions = new HashMap<>();
+    private final Map<E, BiConsumer<S, S>> callbacks = new HashMap<>();
+    private final Map<TransitionKey<S, E>, BiConsumer<S, S>> transitionCallbacks = new HashMap<>();
+    private final Map<S, StateTimeout<E>> timeouts = new HashMap<>();
+    private Consumer<String> invalidTransitionHandler = msg -> machineLog.error(msg);
+    private TimingWheel timers;
+    private int historyDepth;
+    private HistoryArena historyArena;
+    private volatile boolean compiled;
+
+    // Ordinal tables, only when both states and events are enums
+    private int eventCount;
+    private Object[] nextStates;
+    private BiConsumer<S, S>[] actions;
+    private StateTimeout<E>[] timeoutTable;
+    private boolean[] terminal;
+    private Object[] stateConstants;
+    private Object[] eventConstants;
+
+    public StateMachineDefinition(S initialState) {
+        this.initialState = initialState;
+    }
+
+    public void addTransition(S from, E event, S to) {
+        checkMutable();
+        transitions.computeIfAbsent(from, k -> new HashMap<>()).put(event, to);
+    }
+
+    public void addCallback(E event, BiConsumer<S, S> callback) {
+        checkMutable();
+        callbacks.put(event, callback);
+    }
+
+    public void addTransitionCallback(S from, E event, S to, BiConsumer<S, S> callback) {
+        checkMutable();
+        transitionCallbacks.put(new TransitionKey<>(from, event, to), callback);
+    }
+
+    public void addTimeout(S state, long delayMillis, E event) {
+        checkMutable();
+        timeouts.put(state, new StateTimeout<>(delayMillis, event));
+    }
+
+    public void setInvalidTransitionHandler(Consumer<String> handler) {
+        checkMutable();
+        this.invalidTransitionHandler = handler;
+    }
+
+    public void setTimers(TimingWheel timers) {
+        checkMutable();
+        this.timers = timers;
+    }
+
+    /**
+     * Keep the last {@code depth} transitions of every machine in a small array of its own.
+     * History needs enum states and events.
+     */
+    public void setHistory(int depth) {
+        checkMutable();
+        TransitionHistory.checkDepth(depth);
+        this.historyDepth = depth;
+        this.historyArena = null;
+    }
+
+    /**
+     * Keep every machine's recent transitions in slots of a shared arena instead of per-machine
+     * arrays. The arena's depth applies.
+     */
+    public void setHistory(HistoryArena arena) {
+        checkMutable();
+        this.historyDepth = arena.getDepth();
+        this.historyArena = arena;
+    }
+
+    /**
+     * Validate the definition and freeze it. Calling it again is a no-op.
+     * @return this definition
+     * @throws IllegalStateException if the rules are inconsistent
+     */
+    public synchronized StateMachineDefinition<S, E> compile() {
+        if (compiled) {
+            return this;
+        }
+        validate();
+        buildTables();
+        if (historyDepth > 0 && (nextStates == null
+                || stateConstants.length > TransitionHistory.MAX_ORDINAL + 1
+                || eventConstants.length > TransitionHistory.MAX_ORDINAL + 1)) {
+            throw new IllegalStateException("History needs enum states and events with at most "
+                    + (TransitionHistory.MAX_ORDINAL + 1) + " constants each");
+        }
+        compiled = true;
+        return this;
+    }
+
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    public StateMachine<S, E> newMachine() {
+        StateMachine<S, E> sm = new StateMachine<>(compile());
+        sm.startTimers();
+        return sm;
+    }
+
+    public S getInitialState() {
+        return initialState;
+    }
+
+    /**
+     * @return The target state for {@code event} in {@code from}, or null if there is no such transition
+     */
+    @SuppressWarnings("unchecked")
+    public S nextState(S from, E event) {
+        if (nextStates != null) {
+            return (S) nextStates[index(from, event)];
+        }
+        Map<E, S> stateTransitions = transitions.get(from);
+        return stateTransitions == null ? null : stateTransitions.get(event);
+    }
+
+    public boolean isTerminal(S state) {
+        if (terminal != null) {
+            return terminal[((Enum<?>) state).ordinal()];
+        }
+        return state instanceof TerminalState && ((TerminalState) state).isTerminal();
+    }
+
+    BiConsumer<S, S> action(S from, E event, S to) {
+        if (actions != null) {
+            return actions[index(from, event)];
+        }
+        BiConsumer<S, S> transitionCb = transitionCallbacks.get(new TransitionKey<>(from, event, to));
+        return transitionCb != null ? transitionCb : callbacks.get(event);
+    }
+
+    E timeoutEvent(S state) {
+        StateTimeout<E> timeout = timeout(state);
+        return timeout == null ? null : timeout.event;
+    }
+
+    long timeoutMillis(S state) {
+        StateTimeout<E> timeout = timeout(state);
+        return timeout == null ? -1 : timeout.delayMillis;
+    }
+
+    TimingWheel timers() {
+        if (timers == null) {
+            timers = TimingWheel.shared();
+        }
+        return timers;
+    }
+
+    /**
+     * The time on the clock of {@link #timers()}, without starting the shared wheel just to read it.
+     */
+    long now() {
+        return timers == null ? System.currentTimeMillis() : timers.now();
+    }
+
+    int historyDepth() {
+        return historyDepth;
+    }
+
+    HistoryArena historyArena() {
+        return historyArena;
+    }
+
+    Object[] stateConstants() {
+        return stateConstants;
+    }
+
+    Object[] eventConstants() {
+        return eventConstants;
+    }
+
+    void invalidTransition(String message) {
+        invalidTransitionHandler.accept(message);
+    }
+
+    private StateTimeout<E> timeout(S state) {
+        if (timeoutTable != null) {
+            return timeoutTable[((Enum<?>) state).ordinal()];
+        }
+        return timeouts.isEmpty() ? null : timeouts.get(state);
+    }
+
+    private int index(S from, E event) {
+        return ((Enum<?>) from).ordinal() * eventCount + ((Enum<?>) event).ordinal();
+    }
+
+    private void checkMutable() {
+        if (compiled) {
+            throw new IllegalStateException("State machine definition is already compiled");
+        }
+    }
+
+    private void validate() {
+        transitions.forEach((from, byEvent) -> {
+            if (isTerminal(from) && !byEvent.isEmpty()) {
+                throw new IllegalStateException("Transitions declared from terminal state " + from + ": " + byEvent.keySet());
+            }
+        });
+        timeouts.forEach((state, timeout) -> {
+            if (isTerminal(state)) {
+                throw new IllegalStateException("Timeout declared on terminal state " + state);
+            }
+            if (nextState(state, timeout.event) == null) {
+                throw new IllegalStateException("Timeout event " + timeout.event + " has no transition from " + state);
+            }
+        });
+        transitionCallbacks.keySet().forEach(key -> {
+            if (!key.getTo().equals(nextState(key.getFrom(), key.getEvent()))) {
+                log.warn("Callback registered for undeclared transition {} --({})-> {}; it will never run",
+                        key.getFrom(), key.getEvent(), key.getTo());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void buildTables() {
+        Class<?> stateType = enumType(initialState);
+        Class<?> eventType = null;
+        for (Map<E, S> byEvent : transitions.values()) {
+            for (E event : byEvent.keySet()) {
+                eventType = enumType(event);
+                break;
+            }
+            if (eventType != null) {
+                break;
+            }
+        }
+        if (stateType == null || eventType == null) {
+            return;
+        }
+        Object[] states = stateType.getEnumConstants();
+        Object[] events = eventType.getEnumConstants();
+        int eventCount = events.length;
+        Object[] nextStates = new Object[states.length * eventCount];
+        BiConsumer<S, S>[] actions = new BiConsumer[nextStates.length];
+        StateTimeout<E>[] timeoutTable = new StateTimeout[states.length];
+        boolean[] terminal = new boolean[states.length];
+        for (Object state : states) {
+            S from = (S) state;
+            int ordinal = ((Enum<?>) state).ordinal();
+            terminal[ordinal] = from instanceof TerminalState && ((TerminalState) from).isTerminal();
+            timeoutTable[ordinal] = timeouts.get(from);
+            for (Object e : events) {
+                E event = (E) e;
+                S to = nextState(from, event);
+                int index = ordinal * eventCount + ((Enum<?>) e).ordinal();
+                nextStates[index] = to;
+                if (to != null) {
+                    actions[index] = action(from, event, to);
+                }
+            }
+        }
+        this.eventCount = eventCount;
+        this.actions = actions;
+        this.timeoutTable = timeoutTable;
+        this.terminal = terminal;
+        this.stateConstants = states;
+        this.eventConstants = events;
+        // Published last: nextState() switches to the tables once this is set
+        this.nextStates = nextStates;
+    }
+
+    private static Class<?> enumType(Object value) {
+        return value instanceof Enum<?> ? ((Enum<?>) value).getDeclaringClass() : null;
+    }
+
+    private static final class StateTimeout<E> {
+        private final long delayMillis;
+        private final E event;
+
+        StateTimeout(long delayMillis, E event) {
+            this.delayMillis = delayMillis;
+            this.event = event;
+        }
+    }
+}
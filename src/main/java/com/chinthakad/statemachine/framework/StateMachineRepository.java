@@ -1,28 +1,273 @@
 package com.chinthakad.statemachine.framework;
 
+import java.util.AbstractQueue;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Queue;
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class StateMachineRepository<S, E, M> {
-    private final Map<String, StateMachine<S, E>> machines = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(StateMachineRepository.class);
+    /**
+     * Machines are spread over this many maps so exports can walk one shard at a time.
+     */
+    public static final int SHARD_COUNT = 64;
+    private static final int SHARD_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(SHARD_COUNT);
+
+    private final Map<String, StateMachine<S, E>>[] shards = newShards();
+    // Ids of each shard in order, so an export page starts with a seek instead of a scan
+    private final NavigableSet<String>[] sortedIds = newSortedIds();
     private final Map<String, Queue<M>> pendingEvents = new ConcurrentHashMap<>();
+    private final List<TransitionListener<S, E>> listeners = new CopyOnWriteArrayList<>();
+    // Per-state ids in order and counts, maintained from inside each transition, so a state is
+    // listed a page at a time without reading machines in other states
+    private final Map<S, NavigableSet<String>> stateIndex = new ConcurrentHashMap<>();
+    private final Map<S, LongAdder> stateCounts = new ConcurrentHashMap<>();
+    // Events buffered across all machines; pending queues report their own adds and removals
+    private final LongAdder pendingCount = new LongAdder();
+    private volatile Consumer<String> terminalTimeoutHandler;
+    // Recently removed machines, oldest first, so their final state and history stay readable
+    private final ReentrantLock removedLock = new ReentrantLock();
+    private final LinkedHashMap<String, StateMachine<S, E>> removed = new LinkedHashMap<>();
+    private int removedRetention;
+
+    @SuppressWarnings("unchecked")
+    private static <S, E> Map<String, StateMachine<S, E>>[] newShards() {
+        Map<String, StateMachine<S, E>>[] shards = new Map[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        return shards;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static NavigableSet<String>[] newSortedIds() {
+        NavigableSet<String>[] sortedIds = new NavigableSet[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            sortedIds[i] = new ConcurrentSkipListSet<>();
+        }
+        return sortedIds;
+    }
+
+    private static int shardOf(String id) {
+        // Top bits of a multiplicative hash, so each shard's own table still sees well-mixed low bits
+        return (id.hashCode() * 0x9E3779B9) >>> SHARD_SHIFT;
+    }
+
+    private Map<String, StateMachine<S, E>> shard(String id) {
+        return shards[shardOf(id)];
+    }
 
     public void save(String id, StateMachine<S, E> sm) {
-        machines.put(id, sm);
+        StateMachine<S, E> previous = shard(id).put(id, sm);
+        sortedIds[shardOf(id)].add(id);
+        if (previous != null && previous != sm) {
+            deindex(id, previous.unbind());
+        }
+        sm.bind(id, this::onTransition, () -> onTerminalTimeout(id));
+    }
+
+    public void addTransitionListener(TransitionListener<S, E> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeTransitionListener(TransitionListener<S, E> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the cleanup for machines that a timeout takes to a terminal state, usually the same one
+     * passed as {@code onTerminal} to {@link StateMachine#processPendingEvents}. It gets the
+     * machine's id and runs on the timer thread, outside the machine's lock.
+     */
+    public void setTerminalTimeoutHandler(Consumer<String> handler) {
+        this.terminalTimeoutHandler = handler;
+    }
+
+    /**
+     * Keep the last {@code capacity} removed machines readable through {@link #findRemoved}, for
+     * auditing how a finished machine got where it is. 0, the default, keeps none.
+     */
+    public void setRemovedRetention(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        removedLock.lock();
+        try {
+            removedRetention = capacity;
+            trimRemoved();
+        } finally {
+            removedLock.unlock();
+        }
+    }
+
+    /**
+     * @return A machine removed recently enough to be retained, detached from the repository, or
+     * null. Its final state and history are as they were at removal.
+     */
+    public StateMachine<S, E> findRemoved(String id) {
+        removedLock.lock();
+        try {
+            return removed.get(id);
+        } finally {
+            removedLock.unlock();
+        }
     }
 
     public StateMachine<S, E> get(String id) {
-        return machines.get(id);
+        return shard(id).get(id);
     }
 
     public boolean exists(String id) {
-        return machines.containsKey(id);
+        return shard(id).containsKey(id);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, StateMachine<S, E>> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Visit every machine. Iteration is weakly consistent and takes no locks.
+     */
+    public void forEach(BiConsumer<String, StateMachine<S, E>> action) {
+        for (Map<String, StateMachine<S, E>> shard : shards) {
+            shard.forEach(action);
+        }
+    }
+
+    /**
+     * Visit the machines of one shard, for work that is split across shards.
+     */
+    void forEachInShard(int shard, BiConsumer<String, StateMachine<S, E>> action) {
+        shards[shard].forEach(action);
+    }
+
+    /**
+     * Export up to {@code limit} machines starting at {@code cursor}, in ascending id order within
+     * each shard.
+     * <p>
+     * Each shard keeps its ids in a sorted index, so a page seeks to {@code cursor} and reads
+     * {@code limit} ids instead of scanning the shard. Nothing is locked and memory does not grow
+     * with the page, so a full export can run next to live traffic. The result is weakly consistent rather than a
+     * point-in-time snapshot: a machine present for the whole export is visited exactly once,
+     * while machines created or removed meanwhile may or may not be, and each state is read
+     * when its machine is visited.
+     * @return The cursor to continue from, or null once every shard is done
+     */
+    public ExportCursor export(ExportCursor cursor, int limit, BiConsumer<String, StateMachine<S, E>> sink) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        int shard = cursor.getShard();
+        String afterId = cursor.getAfterId();
+        int remaining = limit;
+        while (shard < SHARD_COUNT) {
+            NavigableSet<String> ids = afterId == null ? sortedIds[shard] : sortedIds[shard].tailSet(afterId, false);
+            for (String id : ids) {
+                StateMachine<S, E> sm = shards[shard].get(id);
+                if (sm == null) {
+                    // Removed since the id was read
+                    continue;
+                }
+                sink.accept(id, sm);
+                if (--remaining == 0) {
+                    return new ExportCursor(shard, id);
+                }
+            }
+            shard++;
+            afterId = null;
+        }
+        return null;
+    }
+
+    /**
+     * Export up to {@code limit} machines in {@code state}, in ascending id order, starting after
+     * {@code cursor}. The page seeks into the state's own sorted index, so it costs the same
+     * whatever the state's share of all machines. Consistency is as for
+     * {@link #export(ExportCursor, int, BiConsumer)}: a machine that stays in the state for the
+     * whole listing is visited exactly once, one that moves meanwhile may or may not be.
+     * Cursors of the two exports are not interchangeable.
+     * @return The cursor to continue from, or null once the state is done
+     */
+    public ExportCursor exportState(S state, ExportCursor cursor, int limit, BiConsumer<String, StateMachine<S, E>> sink) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        NavigableSet<String> index = stateIndex.get(state);
+        if (index == null) {
+            return null;
+        }
+        String afterId = cursor.getAfterId();
+        int remaining = limit;
+        for (String id : afterId == null ? index : index.tailSet(afterId, false)) {
+            StateMachine<S, E> sm = get(id);
+            if (sm == null || sm.getCurrentState() != state) {
+                // Removed or moved on since the id was read
+                continue;
+            }
+            sink.accept(id, sm);
+            if (--remaining == 0) {
+                return new ExportCursor(0, id);
+            }
+        }
+        return null;
+    }
+
+    public long count(S state) {
+        LongAdder count = stateCounts.get(state);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Number of machines per state, without scanning the machines.
+     */
+    public Map<S, Long> countByState() {
+        Map<S, Long> counts = new HashMap<>();
+        stateCounts.forEach((state, count) -> counts.put(state, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Run {@code action} on a machine under its lock, as long as the machine is in the repository.
+     * {@link #remove} takes the same lock, so the action either completes before the machine is
+     * removed or does not run at all.
+     * @return The action's result, or null if there is no machine with this id
+     */
+    public <R> R withMachine(String id, Function<StateMachine<S, E>, R> action) {
+        StateMachine<S, E> sm = get(id);
+        if (sm == null) {
+            return null;
+        }
+        return sm.locked(() -> get(id) == sm ? action.apply(sm) : null);
     }
 
-    public void addPendingEvent(String id, M message) {
-        pendingEvents.computeIfAbsent(id, k -> new LinkedList<>()).add(message);
+    /**
+     * Buffer an event for a machine that cannot apply it yet. The queue is only created while the
+     * machine is in the repository, under its lock, so an event that races with {@link #remove}
+     * is dropped instead of leaving an orphaned queue behind.
+     * @return Whether the event was buffered
+     */
+    public boolean addPendingEvent(String id, M message) {
+        return withMachine(id, sm -> pendingEvents.computeIfAbsent(id, k -> new PendingQueue<>(pendingCount)).add(message)) != null;
     }
 
     public Queue<M> getPendingEvents(String id) {
@@ -30,11 +275,183 @@ public class StateMachineRepository<S, E, M> {
     }
 
     public void clearPendingEvents(String id) {
-        pendingEvents.remove(id);
+        dropPendingEvents(id);
+    }
+
+    /**
+     * Total number of events buffered for all machines.
+     */
+    public long pendingCount() {
+        return pendingCount.sum();
     }
 
+    /**
+     * Remove a machine and drop its pending events, under the machine's lock.
+     */
     public void remove(String id) {
-        machines.remove(id);
-        pendingEvents.remove(id);
+        StateMachine<S, E> sm = get(id);
+        if (sm == null) {
+            dropPendingEvents(id);
+            return;
+        }
+        sm.locked(() -> {
+            if (shard(id).remove(id, sm)) {
+                unsort(id);
+                deindex(id, sm.unbind());
+                retain(id, sm);
+            }
+            dropPendingEvents(id);
+            return null;
+        });
+    }
+
+    private void retain(String id, StateMachine<S, E> sm) {
+        removedLock.lock();
+        try {
+            if (removedRetention > 0) {
+                removed.remove(id);
+                removed.put(id, sm);
+                trimRemoved();
+            }
+        } finally {
+            removedLock.unlock();
+        }
+    }
+
+    private void trimRemoved() {
+        Iterator<String> oldest = removed.keySet().iterator();
+        while (removed.size() > removedRetention) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void unsort(String id) {
+        NavigableSet<String> ids = sortedIds[shardOf(id)];
+        ids.remove(id);
+        if (exists(id)) {
+            // Saved again in between; keep it exportable
+            ids.add(id);
+        }
+    }
+
+    private void onTerminalTimeout(String id) {
+        Consumer<String> handler = terminalTimeoutHandler;
+        if (handler == null) {
+            return;
+        }
+        try {
+            handler.accept(id);
+        } catch (RuntimeException e) {
+            log.error("Terminal timeout handler failed for {}", id, e);
+        }
+    }
+
+    private void dropPendingEvents(String id) {
+        Queue<M> pending = pendingEvents.remove(id);
+        if (pending != null) {
+            pending.clear();
+        }
+    }
+
+    private void onTransition(String id, S from, E event, S to) {
+        if (from == null) {
+            index(id, to);
+            return;
+        }
+        deindex(id, from);
+        index(id, to);
+        for (TransitionListener<S, E> listener : listeners) {
+            try {
+                listener.onTransition(id, from, event, to);
+            } catch (RuntimeException e) {
+                log.error("Transition listener failed for {}: {} --({})-> {}", id, from, event, to, e);
+            }
+        }
+    }
+
+    private void index(String id, S state) {
+        LongAdder count = stateCounts.computeIfAbsent(state, k -> new LongAdder());
+        if (stateIndex.computeIfAbsent(state, k -> new ConcurrentSkipListSet<>()).add(id)) {
+            count.increment();
+        }
+    }
+
+    private void deindex(String id, S state) {
+        NavigableSet<String> ids = stateIndex.get(state);
+        if (ids != null && ids.remove(id)) {
+            stateCounts.get(state).decrement();
+        }
+    }
+
+    /**
+     * Pending queue that keeps the repository-wide count in step, including removals made
+     * through its iterator while events are retried. Consumers may add while a drain is
+     * iterating, so it is a lock-free queue and only successful removals are counted.
+     */
+    private static final class PendingQueue<M> extends AbstractQueue<M> {
+        private final Queue<M> events = new ConcurrentLinkedQueue<>();
+        private final LongAdder count;
+
+        PendingQueue(LongAdder count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean offer(M message) {
+            events.add(message);
+            count.increment();
+            return true;
+        }
+
+        @Override
+        public M poll() {
+            M message = events.poll();
+            if (message != null) {
+                count.decrement();
+            }
+            return message;
+        }
+
+        @Override
+        public M peek() {
+            return events.peek();
+        }
+
+        @Override
+        public int size() {
+            return events.size();
+        }
+
+        @Override
+        public Iterator<M> iterator() {
+            Iterator<M> it = events.iterator();
+            return new Iterator<>() {
+                private M last;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public M next() {
+                    last = it.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    // Unlike the iterator's own remove, this tells whether a concurrent clear got there first
+                    if (events.remove(last)) {
+                        count.decrement();
+                    }
+                    last = null;
+                }
+            };
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,30 @@
+package com.chinthakad.statemachine.framework;
+
+/**
+ * A machine's state together with the version it had at the time, read consistently.
+ */
+public final class StateSnapshot<S> {
+    private final S state;
+    private final long version;
+
+    StateSnapshot(S state, long version) {
+        this.state = state;
+        this.version = version;
+    }
+
+    public S getState() {
+        return state;
+    }
+
+    /**
+     * @return Number of state changes the machine had gone through
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return state + "@" + version;
+    }
+}
@@ -0,0 +1,306 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hierarchical timing wheel for large numbers of long-lived timers.
+ * <p>
+ * Timers live in primitive arrays (deadline, links, generation) indexed by a pooled slot, so a
+ * pending timer costs a few dozen bytes and no objects. Scheduling and cancelling are O(1):
+ * a timer is linked into the bucket of the coarsest level that covers its delay and cascades
+ * down one level each time the finer wheel wraps. Expired tasks run on the ticking thread,
+ * outside the wheel's lock. The lock is a {@link ReentrantLock} because machines schedule and
+ * cancel while holding their own lock, possibly on virtual threads.
+ * <p>
+ * A handle returned by {@link #schedule} is never 0 and stays unique after its timer fires or
+ * is cancelled, so stale handles are safely ignored.
+ */
+public class TimingWheel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Work to run when a timer expires; receives the handle it was scheduled under.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void expire(long handle);
+    }
+
+    private final long tickMillis;
+    private final int wheelBits;
+    private final int wheelMask;
+    private final int levels;
+    private final LongSupplier clock;
+    private final long startMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final int[] buckets;
+    private long currentTick;
+
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+    private int[] prev = new int[INITIAL_CAPACITY];
+    private int[] bucketOf = new int[INITIAL_CAPACITY];
+    private int[] generations = new int[INITIAL_CAPACITY];
+    private Task[] tasks = new Task[INITIAL_CAPACITY];
+    private int freeHead = NIL;
+    private int used;
+    private int pending;
+
+    private Thread ticker;
+    private volatile boolean running;
+
+    public TimingWheel(long tickMillis, int wheelBits, int levels) {
+        this(tickMillis, wheelBits, levels, System::currentTimeMillis);
+    }
+
+    public TimingWheel(long tickMillis, int wheelBits, int levels, LongSupplier clock) {
+        if (tickMillis <= 0 || wheelBits <= 0 || levels <= 0 || (long) wheelBits * levels > 62) {
+            throw new IllegalArgumentException("Invalid timing wheel geometry");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelBits = wheelBits;
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.levels = levels;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+        this.buckets = new int[levels << wheelBits];
+        Arrays.fill(buckets, NIL);
+        Arrays.fill(generations, 1);
+    }
+
+    /**
+     * Shared wheel with 100 ms resolution, started on first use.
+     */
+    public static TimingWheel shared() {
+        return SharedHolder.INSTANCE;
+    }
+
+    public long schedule(long delayMillis, Task task) {
+        lock.lock();
+        try {
+            int node = allocate();
+            deadlines[node] = currentTick + Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+            tasks[node] = task;
+            link(node);
+            pending++;
+            return handle(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancel a pending timer.
+     * @return true if the timer was pending, false if it already fired or was cancelled
+     */
+    public boolean cancel(long handle) {
+        lock.lock();
+        try {
+            int node = (int) handle;
+            if (node < 0 || node >= used || generations[node] != (int) (handle >>> 32) || tasks[node] == null) {
+                return false;
+            }
+            unlink(node);
+            release(node);
+            pending--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The current time on this wheel's clock, in milliseconds
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advance the wheel to the clock's current time and run every timer that expired.
+     */
+    public void advance() {
+        List<Object> expired = collectExpired((clock.getAsLong() - startMillis) / tickMillis);
+        for (int i = 0; i < expired.size(); i += 2) {
+            try {
+                ((Task) expired.get(i)).expire((Long) expired.get(i + 1));
+            } catch (RuntimeException e) {
+                log.error("Timer task failed", e);
+            }
+        }
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (running) {
+                return;
+            }
+            running = true;
+            ticker = new Thread(() -> {
+                while (running) {
+                    advance();
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(tickMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }, "state-machine-timing-wheel");
+            ticker.setDaemon(true);
+            ticker.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            running = false;
+            if (ticker != null) {
+                ticker.interrupt();
+                ticker = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Object> collectExpired(long targetTick) {
+        lock.lock();
+        try {
+            List<Object> expired = new ArrayList<>();
+            while (currentTick < targetTick) {
+                currentTick++;
+                cascade(1);
+                int bucket = (int) (currentTick & wheelMask);
+                int node = buckets[bucket];
+                buckets[bucket] = NIL;
+                while (node != NIL) {
+                    int following = next[node];
+                    expired.add(tasks[node]);
+                    expired.add(handle(node));
+                    release(node);
+                    pending--;
+                    node = following;
+                }
+            }
+            return expired;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cascade(int level) {
+        // Level n is due for cascading whenever every finer level has wrapped to slot 0
+        if (level >= levels || (currentTick & ((1L << (wheelBits * level)) - 1)) != 0) {
+            return;
+        }
+        int bucket = (level << wheelBits) | (int) ((currentTick >>> (wheelBits * level)) & wheelMask);
+        int node = buckets[bucket];
+        buckets[bucket] = NIL;
+        while (node != NIL) {
+            int following = next[node];
+            link(node);
+            node = following;
+        }
+        cascade(level + 1);
+    }
+
+    private void link(int node) {
+        long delta = Math.max(1, deadlines[node] - currentTick);
+        int level = 0;
+        while (level < levels - 1 && delta >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+        long slotTick = deadlines[node];
+        if (level == levels - 1 && delta >= (1L << (wheelBits * levels))) {
+            // Beyond the wheel's horizon: park in the furthest bucket and re-place on cascade
+            slotTick = currentTick + (1L << (wheelBits * levels)) - 1;
+        } else if (level == 0 && deadlines[node] < currentTick) {
+            slotTick = currentTick + 1;
+        }
+        int bucket = (level << wheelBits) | (int) ((slotTick >>> (wheelBits * level)) & wheelMask);
+        int head = buckets[bucket];
+        next[node] = head;
+        prev[node] = NIL;
+        if (head != NIL) {
+            prev[head] = node;
+        }
+        buckets[bucket] = node;
+        bucketOf[node] = bucket;
+    }
+
+    private void unlink(int node) {
+        if (prev[node] != NIL) {
+            next[prev[node]] = next[node];
+        } else {
+            buckets[bucketOf[node]] = next[node];
+        }
+        if (next[node] != NIL) {
+            prev[next[node]] = prev[node];
+        }
+    }
+
+    private int allocate() {
+        if (freeHead != NIL) {
+            int node = freeHead;
+            freeHead = next[node];
+            return node;
+        }
+        if (used == tasks.length) {
+            int capacity = tasks.length * 2;
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            tasks = Arrays.copyOf(tasks, capacity);
+            int oldCapacity = generations.length;
+            generations = Arrays.copyOf(generations, capacity);
+            Arrays.fill(generations, oldCapacity, capacity, 1);
+        }
+        return used++;
+    }
+
+    private void release(int node) {
+        tasks[node] = null;
+        // Skip generation 0 so a handle is never 0
+        generations[node] = generations[node] == Integer.MAX_VALUE ? 1 : generations[node] + 1;
+        next[node] = freeHead;
+        freeHead = node;
+    }
+
+    private long handle(int node) {
+        return ((long) generations[node] << 32) | node;
+    }
+
+    private static final class SharedHolder {
+        private static final TimingWheel INSTANCE = new TimingWheel(100, 8, 4);
+
+        static {
+            INSTANCE.start();
+        }
+    }
+}
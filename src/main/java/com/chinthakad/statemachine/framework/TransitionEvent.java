@@ -0,0 +1,41 @@
+package com.chinthakad.statemachine.framework;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one {@link StateMachine#trigger} call, including the time spent
+ * waiting for the machine's lock. Only calls slower than the threshold are recorded.
+ */
+@Name("com.chinthakad.statemachine.Transition")
+@Label("State Machine Transition")
+@Category("State Machine")
+@Description("A trigger call, successful or not")
+@Threshold("1 ms")
+@StackTrace(false)
+final class TransitionEvent extends Event {
+    @Label("Machine Id")
+    String machineId;
+
+    @Label("From")
+    String fromState;
+
+    @Label("Event")
+    String event;
+
+    @Label("To")
+    String toState;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+}
@@ -0,0 +1,62 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packing of history entries into longs, and the ring buffer layout shared by per-machine
+ * arrays and {@link HistoryArena} slots: one count followed by {@code depth} entries.
+ * <p>
+ * An entry holds the from, to and event ordinals in 8 bits each (event 0xFF for migrations) and
+ * the milliseconds since the machine was created in the low 40 bits, which covers 34 years.
+ */
+final class TransitionHistory {
+    static final int MAX_DEPTH = 1024;
+    static final int MAX_ORDINAL = 0xFE;
+    private static final int NO_EVENT = 0xFF;
+    private static final long DELTA_MASK = (1L << 40) - 1;
+
+    private TransitionHistory() {
+    }
+
+    static void checkDepth(int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("History depth must be between 1 and " + MAX_DEPTH);
+        }
+    }
+
+    static long pack(int from, int event, int to, long deltaMillis) {
+        return ((long) from << 56) | ((long) to << 48) | ((long) (event < 0 ? NO_EVENT : event) << 40)
+                | Math.min(Math.max(0, deltaMillis), DELTA_MASK);
+    }
+
+    /**
+     * Append {@code entry} to the ring of {@code depth} entries starting at {@code base}.
+     */
+    static void append(long[] ring, int base, int depth, long entry) {
+        long count = ring[base];
+        ring[base + 1 + (int) (count % depth)] = entry;
+        ring[base] = count + 1;
+    }
+
+    /**
+     * Decode the ring at {@code base}, oldest entry first.
+     */
+    @SuppressWarnings("unchecked")
+    static <S, E> List<TransitionRecord<S, E>> read(long[] ring, int base, int depth, long createdAt,
+                                                    Object[] states, Object[] events) {
+        long count = ring[base];
+        int size = (int) Math.min(count, depth);
+        List<TransitionRecord<S, E>> records = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            long entry = ring[base + 1 + (int) (i % depth)];
+            int event = (int) (entry >>> 40) & 0xFF;
+            records.add(new TransitionRecord<>(
+                    (S) states[(int) (entry >>> 56) & 0xFF],
+                    event == NO_EVENT ? null : (E) events[event],
+                    (S) states[(int) (entry >>> 48) & 0xFF],
+                    createdAt + (entry & DELTA_MASK)));
+        }
+        return records;
+    }
+}
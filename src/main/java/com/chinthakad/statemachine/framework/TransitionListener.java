@@ -0,0 +1,12 @@
+package com.chinthakad.statemachine.framework;
+
+/**
+ * Observes every successful transition of the machines in a {@link StateMachineRepository}.
+ * Listeners run on the triggering thread while the machine is still locked, so they must be
+ * quick and must not trigger the same machine. A machine migrating to a new definition version
+ * is reported with a null event.
+ */
+@FunctionalInterface
+public interface TransitionListener<S, E> {
+    void onTransition(String id, S from, E event, S to);
+}
@@ -0,0 +1,45 @@
+package com.chinthakad.statemachine.framework;
+
+/**
+ * One entry of a machine's transition history.
+ */
+public final class TransitionRecord<S, E> {
+    private final S from;
+    private final E event;
+    private final S to;
+    private final long timestamp;
+
+    TransitionRecord(S from, E event, S to, long timestamp) {
+        this.from = from;
+        this.event = event;
+        this.to = to;
+        this.timestamp = timestamp;
+    }
+
+    public S getFrom() {
+        return from;
+    }
+
+    /**
+     * @return The event, or null if the state changed through a definition migration
+     */
+    public E getEvent() {
+        return event;
+    }
+
+    public S getTo() {
+        return to;
+    }
+
+    /**
+     * @return When the transition happened, in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return from + " --(" + event + ")-> " + to + " @" + timestamp;
+    }
+}
@@ -0,0 +1,48 @@
+package com.chinthakad.statemachine.framework;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * RFC 9562 version 7 UUIDs: a 48-bit millisecond timestamp, a 12-bit sequence and 62 random bits.
+ * The timestamp and sequence of the last id are kept together in one atomic long shared by all
+ * threads, so every id of a generator is strictly greater than the one before it, whichever
+ * thread drew it. A sequence exhausted within a millisecond carries into the next one.
+ */
+public final class UuidV7Generator implements IdGenerator {
+    private static final int SEQUENCE_BITS = 12;
+    private static final int SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+
+    private final LongSupplier clock;
+    // Millisecond timestamp and sequence of the last id, the sequence in the low 12 bits
+    private final AtomicLong last = new AtomicLong();
+
+    public UuidV7Generator() {
+        this(System::currentTimeMillis);
+    }
+
+    UuidV7Generator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public UUID nextId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = clock.getAsLong();
+        // Start in the lower half so there is room to count up within the millisecond
+        long start = (now << SEQUENCE_BITS) | random.nextInt(SEQUENCE_MASK >>> 1);
+        long current = last.updateAndGet(previous -> previous >>> SEQUENCE_BITS < now ? start : previous + 1);
+        long msb = ((current >>> SEQUENCE_BITS) << 16) | 0x7000L | (current & SEQUENCE_MASK);
+        long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    /**
+     * Extract the creation timestamp (epoch millis) from a version 7 id.
+     */
+    public static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
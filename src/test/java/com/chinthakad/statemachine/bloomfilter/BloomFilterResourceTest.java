@@ -145,5 +145,80 @@ public class BloomFilterResourceTest {
             .statusCode(200)
             .body("backendCount", equalTo(5));
     }
-}
 
+    @Test
+    void testRemoveNeedsRemovableFilter() {
+        // The default bloom filter type cannot remove entries
+        given()
+            .when()
+            .delete("/bloom-filter/" + UUID.randomUUID())
+            .then()
+            .statusCode(400)
+            .body("error", containsString("does not support removal"));
+    }
+
+    @Test
+    void testNamespacesDeduplicateIndependently() {
+        String item = UUID.randomUUID().toString();
+        
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"item\":\"" + item + "\"}")
+            .when()
+            .post("/bloom-filter/order-events/check")
+            .then()
+            .statusCode(200)
+            .body("namespace", equalTo("order-events"))
+            .body("isDuplicate", equalTo(false));
+        
+        // The same item is still new in the default namespace
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"item\":\"" + item + "\"}")
+            .when()
+            .post("/bloom-filter/check")
+            .then()
+            .statusCode(200)
+            .body("isDuplicate", equalTo(false));
+        
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"item\":\"" + item + "\"}")
+            .when()
+            .post("/bloom-filter/order-events/check")
+            .then()
+            .statusCode(200)
+            .body("isDuplicate", equalTo(true));
+    }
+
+    @Test
+    void testUnknownNamespace() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"item\":\"x\"}")
+            .when()
+            .post("/bloom-filter/no-such-namespace/check")
+            .then()
+            .statusCode(404)
+            .body("error", equalTo("Unknown namespace: no-such-namespace"));
+    }
+
+    @Test
+    void testNamespaceStats() {
+        given()
+            .when()
+            .get("/bloom-filter/order-events/stats")
+            .then()
+            .statusCode(200)
+            .body("namespace", equalTo("order-events"))
+            .body("falsePositiveRate", equalTo(0.001f))
+            .body("ttlMillis", equalTo(86400000));
+        
+        given()
+            .when()
+            .get("/bloom-filter/namespaces")
+            .then()
+            .statusCode(200)
+            .body("namespaces.namespace", hasItems("default", "order-events"));
+    }
+}
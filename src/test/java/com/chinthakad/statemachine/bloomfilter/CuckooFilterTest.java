@@ -0,0 +1,73 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CuckooFilterTest {
+
+    @Test
+    void testNoFalseNegatives() {
+        CuckooFilter filter = new CuckooFilter(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.put("item-" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("item-" + i));
+        }
+        assertEquals(10_000, filter.approximateElementCount());
+        assertFalse(filter.isOverflowed());
+    }
+
+    @Test
+    void testFalsePositiveRateAtCapacity() {
+        CuckooFilter filter = new CuckooFilter(100_000);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put("present-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+        // ~8 / 2^16 expected with two buckets of four 16-bit fingerprints
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void testRemove() {
+        CuckooFilter filter = new CuckooFilter(1_000);
+        filter.put("a");
+        filter.put("b");
+        assertTrue(filter.remove("a"));
+        assertFalse(filter.mightContain("a"));
+        assertTrue(filter.mightContain("b"));
+        assertFalse(filter.remove("a"));
+        assertEquals(1, filter.approximateElementCount());
+    }
+
+    @Test
+    void testDuplicatePutsNeedMatchingRemoves() {
+        CuckooFilter filter = new CuckooFilter(1_000);
+        filter.put("a");
+        filter.put("a");
+        filter.remove("a");
+        assertTrue(filter.mightContain("a"));
+        filter.remove("a");
+        assertFalse(filter.mightContain("a"));
+    }
+
+    @Test
+    void testOverflowIsConservative() {
+        CuckooFilter filter = new CuckooFilter(4);
+        int bucketSlots = filter.getBucketCount() * 4;
+        boolean rejected = false;
+        for (int i = 0; i <= bucketSlots; i++) {
+            rejected |= !filter.put("item-" + i);
+        }
+        assertTrue(rejected);
+        assertTrue(filter.isOverflowed());
+        assertTrue(filter.mightContain("never-added"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterNamespacesTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void testNamespacesAreIsolated() {
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(
+            new FilterNamespace("payments", "bloom", 10_000, 0.01, 0, "payments:"),
+            new FilterNamespace("webhooks", "cuckoo", 10_000, 0.01, 0, "webhooks:")), 16 * MB);
+        namespaces.get("payments").put("a");
+        assertTrue(namespaces.get("payments").mightContain("a"));
+        assertFalse(namespaces.get("webhooks").mightContain("a"));
+        assertEquals("payments:a", namespaces.get("payments").backendKey("a"));
+    }
+
+    @Test
+    void testKeysBelongToTheirNamespace() {
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(
+            new FilterNamespace("default", "bloom", 10_000, 0.01, 0, ""),
+            new FilterNamespace("payments", "bloom", 10_000, 0.01, 60_000, "payments:")), 16 * MB);
+        assertSame(namespaces.get("payments"), namespaces.ownerOf("payments:a"));
+        assertSame(namespaces.get("default"), namespaces.ownerOf("webhooks:a"));
+        assertEquals(0, namespaces.get("default").expiresAt(1_000));
+        assertEquals(61_000, namespaces.get("payments").expiresAt(1_000));
+    }
+
+    @Test
+    void testConfiguredSizeFitsWithinBudget() {
+        FilterNamespace payments = new FilterNamespace("payments", "bloom", 100_000, 0.01, 0, "");
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(payments), 16 * MB);
+        // Rounding may cost an item or two, never more
+        assertTrue(payments.getCapacity() >= 99_990 && payments.getCapacity() <= 100_000);
+        assertTrue(namespaces.getUsedBytes() <= namespaces.getBudgetBytes());
+    }
+
+    @Test
+    void testOverCommittedReservationsAreScaledDown() {
+        FilterNamespace a = new FilterNamespace("a", "bloom", 1_000_000, 0.01, 0, "");
+        FilterNamespace b = new FilterNamespace("b", "bloom", 1_000_000, 0.01, 0, "");
+        // Each needs about 1.2 MB at 1%
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(a, b), 1 * MB);
+        assertTrue(a.getCapacity() < 1_000_000);
+        assertEquals(a.getCapacity(), b.getCapacity());
+        assertTrue(namespaces.getUsedBytes() <= MB);
+    }
+
+    @Test
+    void testNoisyNamespaceOnlyGrowsIntoSpareMemory() {
+        FilterNamespace quiet = new FilterNamespace("quiet", "bloom", 100_000, 0.01, 60_000, "");
+        FilterNamespace noisy = new FilterNamespace("noisy", "bloom", 100_000, 0.01, 60_000, "");
+        // Reservations take about 0.48 MB of the 1 MB budget
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(quiet, noisy), 1 * MB);
+        for (int i = 0; i < 2_000_000; i++) {
+            noisy.put("item-" + i);
+        }
+        long start = System.currentTimeMillis();
+        assertEquals(2, namespaces.rotateDue(start + 30_000).size());
+        assertEquals(100_000, quiet.getCapacity(), 10);
+        assertTrue(noisy.getCapacity() > 100_000, "noisy namespace grows into spare memory");
+        assertTrue(noisy.getCapacity() < 2_000_000, "but not past the budget");
+
+        Map<String, Long> next = namespaces.allocate();
+        long quietBytes = 2 * quiet.bytesFor(next.get("quiet"));
+        long noisyBytes = 2 * noisy.bytesFor(next.get("noisy"));
+        assertTrue(quietBytes + noisyBytes <= MB + 64);
+    }
+
+    @Test
+    void testItemsExpireAfterTwoRotations() {
+        FilterNamespace sessions = new FilterNamespace("sessions", "bloom", 10_000, 0.001, 60_000, "");
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(sessions), 16 * MB);
+        long now = System.currentTimeMillis();
+        sessions.put("a");
+        assertEquals(0, namespaces.rotateDue(now + 1_000).size());
+        assertEquals(1, namespaces.rotateDue(now + 30_000).size());
+        assertTrue(sessions.mightContain("a"), "still remembered by the previous generation");
+        assertEquals(1, namespaces.rotateDue(now + 60_000).size());
+        assertFalse(sessions.mightContain("a"));
+    }
+
+    @Test
+    void testNamespaceWithoutTtlNeverRotates() {
+        FilterNamespace orders = new FilterNamespace("orders", "bloom", 10_000, 0.01, 0, "");
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(orders), 16 * MB);
+        orders.put("a");
+        assertEquals(0, namespaces.rotateDue(Long.MAX_VALUE / 2).size());
+        assertTrue(orders.mightContain("a"));
+    }
+
+    @Test
+    void testRemovalSearchesBothGenerations() {
+        FilterNamespace carts = new FilterNamespace("carts", "cuckoo", 10_000, 0.01, 60_000, "");
+        FilterNamespaces namespaces = new FilterNamespaces(List.of(carts), 16 * MB);
+        carts.put("a");
+        namespaces.rotateDue(System.currentTimeMillis() + 30_000);
+        assertTrue(carts.remove("a"));
+        assertFalse(carts.mightContain("a"));
+    }
+
+    @Test
+    void testRejectsInvalidNamespaces() {
+        assertThrows(IllegalArgumentException.class, () -> new FilterNamespace("x", "lsm", 10, 0.01, 0, ""));
+        assertThrows(IllegalArgumentException.class, () -> new FilterNamespace("x", "bloom", 10, 1.5, 0, ""));
+        FilterNamespace a = new FilterNamespace("a", "bloom", 10, 0.01, 0, "");
+        FilterNamespace again = new FilterNamespace("a", "bloom", 10, 0.01, 0, "");
+        assertThrows(IllegalArgumentException.class, () -> new FilterNamespaces(List.of(a, again), MB));
+    }
+}
@@ -0,0 +1,147 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterReplicatorTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private final List<FilterNamespaces> replicas = new ArrayList<>();
+    private final List<FilterReplicator> replicators = new ArrayList<>();
+    private List<LoopbackTransport> transports;
+
+    private void startReplicas(int count) {
+        transports = LoopbackTransport.connected(count);
+        for (int i = 0; i < count; i++) {
+            FilterNamespaces namespaces = new FilterNamespaces(List.of(
+                new FilterNamespace("payments", "bloom", 100_000, 0.01, 0, "payments:", true),
+                new FilterNamespace("local", "bloom", 1_000, 0.01, 0, "local:", false)), 16 * MB);
+            replicas.add(namespaces);
+            replicators.add(new FilterReplicator(namespaces, transports.get(i), "node-" + i));
+        }
+    }
+
+    @Test
+    void testReplicasConvergeOnTheUnion() {
+        startReplicas(3);
+        for (int i = 0; i < 3_000; i++) {
+            replicas.get(i % 3).get("payments").put("payment-" + i);
+        }
+        replicators.forEach(FilterReplicator::publish);
+        for (FilterNamespaces replica : replicas) {
+            for (int i = 0; i < 3_000; i++) {
+                assertTrue(replica.get("payments").mightContain("payment-" + i));
+            }
+        }
+        assertEquals(2, replicators.get(0).getReceivedDeltas());
+        assertEquals(0, replicators.get(0).getRejectedDeltas());
+    }
+
+    @Test
+    void testOnlyChangesSinceTheLastEpochAreSent() {
+        startReplicas(2);
+        FilterNamespace payments = replicas.get(0).get("payments");
+        payments.put("a");
+        assertTrue(replicators.get(0).publish() > 0);
+        assertEquals(0, replicators.get(0).publish());
+        // Merged words are not marked dirty, so nothing is echoed back
+        assertEquals(0, replicators.get(1).publish());
+
+        payments.put("b");
+        int words = replicators.get(0).publish();
+        assertTrue(words > 0 && words <= ((BitArrayBloomFilter) payments.currentFilter()).getNumHashFunctions());
+        assertTrue(replicas.get(1).get("payments").mightContain("b"));
+    }
+
+    @Test
+    void testWordsOfAFailedDeltaAreSentAgain() {
+        startReplicas(2);
+        transports.get(1).setDown(true);
+        replicas.get(0).get("payments").put("a");
+        assertTrue(replicators.get(0).publish() > 0);
+        assertEquals(1, replicators.get(0).getFailedDeltas());
+        assertFalse(replicas.get(1).get("payments").mightContain("a"));
+
+        transports.get(1).setDown(false);
+        assertTrue(replicators.get(0).publish() > 0);
+        assertTrue(replicas.get(1).get("payments").mightContain("a"));
+        assertEquals(0, replicators.get(0).publish());
+    }
+
+    @Test
+    void testFullSyncCatchesUpARestartedReplica() {
+        startReplicas(2);
+        replicas.get(0).get("payments").put("a");
+        replicators.get(0).publish();
+        // Restarting loses the filter; no word changes, so deltas alone never resend it
+        replicas.get(1).resetAll();
+        assertEquals(0, replicators.get(0).publish());
+        assertFalse(replicas.get(1).get("payments").mightContain("a"));
+
+        assertTrue(replicators.get(0).publishFull() > 0);
+        assertTrue(replicas.get(1).get("payments").mightContain("a"));
+        assertEquals(1, replicators.get(0).getFullSyncs());
+    }
+
+    @Test
+    void testDeltaIsMuchSmallerThanTheBitset() {
+        startReplicas(2);
+        FilterNamespace payments = replicas.get(0).get("payments");
+        for (int i = 0; i < 100; i++) {
+            payments.put("payment-" + i);
+        }
+        replicators.get(0).publish();
+        long fullBytes = ((BitArrayBloomFilter) payments.currentFilter()).getWordCount() * (long) Long.BYTES;
+        assertTrue(replicators.get(0).getSentBytes() < fullBytes / 10,
+            replicators.get(0).getSentBytes() + " bytes sent for a " + fullBytes + " byte filter");
+    }
+
+    @Test
+    void testUnreplicatedNamespacesStayLocal() {
+        startReplicas(2);
+        replicas.get(0).get("local").put("a");
+        assertEquals(0, replicators.get(0).publish());
+        assertFalse(replicas.get(1).get("local").mightContain("a"));
+    }
+
+    @Test
+    void testRejectsDeltasThatDoNotFit() {
+        startReplicas(1);
+        List<LoopbackTransport> transports = LoopbackTransport.connected(2);
+        FilterNamespaces other = new FilterNamespaces(List.of(
+            new FilterNamespace("payments", "bloom", 200_000, 0.01, 0, "payments:", true)), 16 * MB);
+        FilterReplicator sender = new FilterReplicator(other, transports.get(0), "other");
+        FilterReplicator receiver = new FilterReplicator(replicas.get(0), transports.get(1), "node-0");
+        other.get("payments").put("a");
+        sender.publish();
+        assertEquals(1, receiver.getRejectedDeltas());
+        assertFalse(replicas.get(0).get("payments").mightContain("a"));
+
+        assertFalse(receiver.receive(new byte[] {1, 2, 3}));
+        assertEquals(2, receiver.getRejectedDeltas());
+    }
+
+    @Test
+    void testBitArrayFilterMatchesItsFalsePositiveRate() {
+        BitArrayBloomFilter filter = new BitArrayBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("in-" + i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("in-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("out-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200, falsePositives + " false positives");
+        assertEquals(10_000, filter.approximateElementCount(), 300);
+    }
+}
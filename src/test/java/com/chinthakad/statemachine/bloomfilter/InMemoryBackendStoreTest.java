@@ -0,0 +1,37 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryBackendStoreTest {
+
+    InMemoryBackendStore store = new InMemoryBackendStore();
+
+    @Test
+    void testStoringAgainReplacesTheExpiry() {
+        long now = System.currentTimeMillis();
+        store.store("a", now + 60_000).join();
+        store.store("a", now + 60_000).join();
+        assertTrue(store.contains("a").join());
+        assertEquals(1, store.getCount().join());
+
+        store.store("a", now - 1).join();
+        assertFalse(store.contains("a").join());
+        assertEquals(1, store.getCount().join());
+    }
+
+    @Test
+    void testPurgeDeletesOnlyExpiredItems() {
+        long now = System.currentTimeMillis();
+        store.store("gone", now - 1).join();
+        store.store("kept", now + 60_000).join();
+        store.store("forever").join();
+
+        assertEquals(1, store.purgeExpired(now).join());
+        assertEquals(2, store.getCount().join());
+        assertTrue(store.contains("kept").join());
+        assertTrue(store.contains("forever").join());
+        assertEquals(0, store.purgeExpired(now).join());
+    }
+}
@@ -0,0 +1,64 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport: every endpoint joined to the same hub receives what the others
+ * broadcast, synchronously on the sending thread. An endpoint set down receives nothing, and
+ * broadcasts that should have reached it fail.
+ */
+public class LoopbackTransport implements ReplicationTransport {
+    
+    private final List<LoopbackTransport> hub;
+    private volatile Consumer<byte[]> handler = delta -> {};
+    private volatile boolean down;
+    
+    private LoopbackTransport(List<LoopbackTransport> hub) {
+        this.hub = hub;
+    }
+    
+    /**
+     * Create {@code count} endpoints that are all peers of each other
+     */
+    public static List<LoopbackTransport> connected(int count) {
+        List<LoopbackTransport> hub = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hub.add(new LoopbackTransport(hub));
+        }
+        return List.copyOf(hub);
+    }
+    
+    public void setDown(boolean down) {
+        this.down = down;
+    }
+    
+    @Override
+    public CompletableFuture<Void> broadcast(byte[] delta) {
+        boolean missed = false;
+        for (LoopbackTransport peer : hub) {
+            if (peer == this) {
+                continue;
+            }
+            if (peer.down) {
+                missed = true;
+            } else {
+                peer.handler.accept(delta);
+            }
+        }
+        return missed ? CompletableFuture.failedFuture(new IllegalStateException("A peer is down"))
+            : CompletableFuture.completedFuture(null);
+    }
+    
+    @Override
+    public void onReceive(Consumer<byte[]> handler) {
+        this.handler = handler;
+    }
+    
+    @Override
+    public String getName() {
+        return "Loopback";
+    }
+}
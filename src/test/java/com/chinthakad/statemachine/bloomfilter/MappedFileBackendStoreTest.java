@@ -0,0 +1,132 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileBackendStoreTest {
+
+    @TempDir
+    Path dir;
+
+    MappedFileBackendStore store;
+
+    MappedFileBackendStore open(long flushIntervalMillis) {
+        return open(flushIntervalMillis, false);
+    }
+
+    MappedFileBackendStore open(long flushIntervalMillis, boolean awaitFlush) {
+        store = new MappedFileBackendStore();
+        store.open(dir.resolve("items.dat"), 16, flushIntervalMillis, awaitFlush);
+        return store;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testStoreContainsAndRemove() throws Exception {
+        open(1);
+        store.store("a").get(5, TimeUnit.SECONDS);
+        store.store("a").get(5, TimeUnit.SECONDS);
+        assertTrue(store.contains("a").join());
+        assertFalse(store.contains("b").join());
+        assertEquals(1, store.getCount().join());
+
+        assertTrue(store.remove("a").get(5, TimeUnit.SECONDS));
+        assertFalse(store.remove("a").join());
+        assertFalse(store.contains("a").join());
+        assertEquals(0, store.getCount().join());
+
+        // The tombstone left by "a" is reused
+        store.store("a").get(5, TimeUnit.SECONDS);
+        assertTrue(store.contains("a").join());
+    }
+
+    @Test
+    void testStoresCompleteWithoutWaitingForFlush() {
+        open(60_000);
+        assertTrue(store.store("a").isDone());
+        assertTrue(store.remove("a").isDone());
+        store.store("b");
+
+        CompletableFuture<Void> durable = store.sync();
+        assertFalse(durable.isDone());
+        store.flush();
+        assertTrue(durable.isDone());
+    }
+
+    @Test
+    void testStoresCanAwaitFlush() {
+        open(60_000, true);
+        CompletableFuture<Void> stored = store.store("a");
+        assertFalse(stored.isDone());
+        assertTrue(store.contains("a").join());
+        store.flush();
+        assertTrue(stored.isDone());
+    }
+
+    @Test
+    void testGrowsAndSurvivesReopen() throws Exception {
+        open(1);
+        for (int i = 0; i < 1000; i++) {
+            store.store("item-" + i);
+        }
+        store.store("last").get(5, TimeUnit.SECONDS);
+        store.remove("item-0").get(5, TimeUnit.SECONDS);
+        store.close();
+
+        open(0);
+        assertEquals(1000, store.getCount().join());
+        assertFalse(store.contains("item-0").join());
+        for (int i = 1; i < 1000; i++) {
+            assertTrue(store.contains("item-" + i).join(), "item-" + i);
+        }
+    }
+
+    @Test
+    void testExpiredItemsAreAbsentAndPurged() throws Exception {
+        open(0);
+        long now = System.currentTimeMillis();
+        store.store("gone", now - 1).join();
+        store.store("kept", now + 60_000).join();
+        store.store("forever").join();
+        assertFalse(store.contains("gone").join());
+        assertTrue(store.contains("kept").join());
+
+        assertEquals(1, store.purgeExpired(now).join());
+        assertEquals(2, store.getCount().join());
+        // Storing again moves the expiry instead of adding a slot
+        store.store("kept", now - 1).join();
+        assertFalse(store.contains("kept").join());
+        assertEquals(2, store.getCount().join());
+        store.store("kept", now + 60_000).join();
+        store.close();
+
+        open(0);
+        assertTrue(store.contains("kept").join());
+        assertTrue(store.contains("forever").join());
+        assertEquals(0, store.purgeExpired(now).join());
+    }
+
+    @Test
+    void testClear() throws Exception {
+        open(0);
+        store.store("a").join();
+        store.clear().join();
+        assertFalse(store.contains("a").join());
+        assertEquals(0, store.getCount().join());
+        store.store("b").join();
+        assertTrue(store.contains("b").join());
+    }
+}
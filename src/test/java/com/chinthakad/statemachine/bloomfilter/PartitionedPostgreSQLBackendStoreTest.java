@@ -0,0 +1,131 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against a local PostgreSQL, e.g.
+ * {@code BLOOM_POSTGRES_URL=jdbc:postgresql://localhost:5432/bloomfilter?user=postgres&password=postgres}
+ */
+@EnabledIfEnvironmentVariable(named = "BLOOM_POSTGRES_URL", matches = ".+")
+class PartitionedPostgreSQLBackendStoreTest {
+
+    PGSimpleDataSource dataSource;
+    MutableClock clock = new MutableClock(Instant.parse("2026-01-10T12:00:00Z"));
+    PartitionedPostgreSQLBackendStore store = new PartitionedPostgreSQLBackendStore();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(System.getenv("BLOOM_POSTGRES_URL"));
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + PartitionedPostgreSQLBackendStore.TABLE + " CASCADE");
+        }
+        store.open(dataSource, Duration.ofHours(24), Duration.ofHours(48), clock);
+    }
+
+    @Test
+    void testStoreContainsRemove() {
+        store.store("a").join();
+        assertTrue(store.contains("a").join());
+        assertFalse(store.contains("b").join());
+        assertEquals(1, store.getCount().join());
+        assertTrue(store.remove("a").join());
+        assertFalse(store.contains("a").join());
+    }
+
+    @Test
+    void testItemStoredTwiceIsCountedOnce() {
+        store.store("a").join();
+        clock.now = clock.now.plus(Duration.ofHours(25));
+        store.store("a").join();
+        store.store("a").join();
+        assertEquals(1, store.getCount().join());
+    }
+
+    @Test
+    void testCreatesMissingPartitionOnInsert() {
+        clock.now = clock.now.plus(Duration.ofDays(10));
+        store.store("late").join();
+        assertTrue(store.contains("late").join());
+    }
+
+    @Test
+    void testExpiredPartitionsAreDropped() {
+        store.store("old").join();
+        assertEquals(3, store.partitions().size());
+
+        clock.now = clock.now.plus(Duration.ofDays(3));
+        store.maintain();
+
+        assertFalse(store.contains("old").join());
+        assertTrue(store.partitions().stream().noneMatch(p -> p.endsWith("2026011000")));
+    }
+
+    @Test
+    void testExpiryFollowsPartitionBoundsNotNames() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE archived_early_january PARTITION OF " + PartitionedPostgreSQLBackendStore.TABLE
+                + " FOR VALUES FROM ('2026-01-01T00:00:00Z') TO ('2026-01-02T00:00:00Z')");
+        }
+        assertEquals(Instant.parse("2026-01-02T00:00:00Z"), store.partitionUpperBounds().get("archived_early_january"));
+
+        assertEquals(1, store.purgeExpired());
+        assertFalse(store.partitions().contains("archived_early_january"));
+        assertEquals(3, store.partitions().size());
+    }
+
+    @Test
+    void testExpiredRowsAreIgnored() {
+        long now = clock.now.toEpochMilli();
+        store.store("a", now + 60_000).join();
+        assertTrue(store.contains("a").join());
+        clock.now = clock.now.plusSeconds(60);
+        assertFalse(store.contains("a").join());
+        store.store("a", now + 120_000).join();
+        assertTrue(store.contains("a").join());
+    }
+
+    @Test
+    void testClearTruncates() {
+        store.store("a").join();
+        store.clear().join();
+        assertEquals(0, store.getCount().join());
+    }
+
+    static class MutableClock extends Clock {
+        Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public java.time.ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.chinthakad.statemachine.bloomfilter;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+
+@QuarkusTest
+@TestProfile(ReplicationEndpointTest.Replicated.class)
+class ReplicationEndpointTest {
+
+    static final String SECRET = "replicas-only";
+
+    public static class Replicated implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "bloom.filter.replication.enabled", "true",
+                "bloom.filter.replication.secret", SECRET);
+        }
+    }
+
+    @Test
+    void testDeltaWithoutTheSecretIsRefused() {
+        int rejected = given().when().get("/bloom-filter/replication/stats").then().statusCode(200)
+            .extract().path("rejectedDeltas");
+        given()
+            .contentType("application/octet-stream")
+            .body(new byte[16])
+            .when()
+            .post("/bloom-filter/replication/delta")
+            .then()
+            .statusCode(403);
+        given()
+            .contentType("application/octet-stream")
+            .header(HttpReplicationTransport.SECRET_HEADER, SECRET + "x")
+            .body(new byte[16])
+            .when()
+            .post("/bloom-filter/replication/delta")
+            .then()
+            .statusCode(403);
+        given().when().get("/bloom-filter/replication/stats").then().statusCode(200)
+            .body("rejectedDeltas", equalTo(rejected));
+
+        given()
+            .contentType("application/octet-stream")
+            .header(HttpReplicationTransport.SECRET_HEADER, SECRET)
+            .body(new byte[16])
+            .when()
+            .post("/bloom-filter/replication/delta")
+            .then()
+            .statusCode(202);
+        // Past the gate the replicator sees it, and rejects the empty payload
+        given().when().get("/bloom-filter/replication/stats").then().statusCode(200)
+            .body("rejectedDeltas", equalTo(rejected + 1));
+    }
+}
@@ -0,0 +1,79 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.load.InMemoryOrderEvents;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.QuarkusTestProfile;
+import io.quarkus.test.junit.TestProfile;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@TestProfile(OrderBackpressureTest.LowWatermarks.class)
+@QuarkusTestResource(value = InMemoryOrderEvents.class, restrictToAnnotatedClass = true)
+class OrderBackpressureTest {
+
+    public static class LowWatermarks implements QuarkusTestProfile {
+        @Override
+        public Map<String, String> getConfigOverrides() {
+            return Map.of(
+                "order.backpressure.pending.high", "2",
+                "order.backpressure.pending.low", "0",
+                "order.backpressure.max.wait.ms", "200");
+        }
+    }
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    OrderBackpressure backpressure;
+
+    @Test
+    void testPendingEventsPauseIntakeForALimitedTime() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String a = UUID.randomUUID().toString();
+        String b = UUID.randomUUID().toString();
+        String c = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(a, OrderStateMachineFactory.create());
+        OrderEventConsumer.getRepository().save(b, OrderStateMachineFactory.create());
+        OrderEventConsumer.getRepository().save(c, OrderStateMachineFactory.create());
+
+        // Both arrive before PAY and are buffered, which pauses intake
+        source.send(new OrderEventMessage(a, "SHIP"));
+        source.send(new OrderEventMessage(b, "SHIP"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().pendingCount() == 2);
+        awaitCondition(backpressure::isPaused);
+        assertFalse(backpressure.getController().update());
+
+        // Only for a while: buffered events drain once their predecessors are read
+        awaitCondition(() -> !backpressure.isPaused());
+        assertTrue(backpressure.getPendingController().isSaturated());
+        source.send(new OrderEventMessage(a, "PAY"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(a).getCurrentState() == OrderState.SHIPPED);
+        source.send(new OrderEventMessage(c, "SHIP"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().getPendingEvents(c).size() == 1);
+        assertFalse(backpressure.isPaused());
+
+        source.send(new OrderEventMessage(b, "PAY"));
+        source.send(new OrderEventMessage(c, "PAY"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().pendingCount() == 0);
+        awaitCondition(() -> !backpressure.getPendingController().isSaturated());
+    }
+
+    private static void awaitCondition(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
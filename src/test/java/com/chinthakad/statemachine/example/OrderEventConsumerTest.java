@@ -0,0 +1,128 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.bloomfilter.BloomFilterService;
+import com.chinthakad.statemachine.load.InMemoryOrderEvents;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.restassured.http.ContentType;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryOrderEvents.class, restrictToAnnotatedClass = true)
+class OrderEventConsumerTest {
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    @Inject
+    BloomFilterService deduplicator;
+
+    @Test
+    void testEventsOfOneOrderApplyInOrder() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String id = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+
+        source.send(new OrderEventMessage(id, "PAY"));
+        source.send(new OrderEventMessage(id, "SHIP"));
+        source.send(new OrderEventMessage(id, "CANCEL"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(id).getCurrentState() == OrderState.SHIPPED);
+        // CANCEL came after SHIP, so it waits instead of winning a race
+        awaitCondition(() -> OrderEventConsumer.getRepository().getPendingEvents(id).size() == 1);
+    }
+
+    @Test
+    void testRedeliveredEventIsAppliedOnce() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String id = UUID.randomUUID().toString();
+        String eventId = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+
+        source.send(new OrderEventMessage(id, "PAY", eventId));
+        source.send(new OrderEventMessage(id, "PAY", eventId));
+        // Same order, same lane: once SHIP is applied both deliveries of PAY were processed
+        source.send(new OrderEventMessage(id, "SHIP", UUID.randomUUID().toString()));
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(id).getCurrentState() == OrderState.SHIPPED);
+        assertEquals(2, OrderEventConsumer.getRepository().get(id).getStateVersion());
+        // Without dedup the second PAY would sit here, invalid in PAID and in SHIPPED
+        assertTrue(OrderEventConsumer.getRepository().getPendingEvents(id).isEmpty());
+    }
+
+    @Test
+    void testEventIdIsMarkedOnlyOnceBuffered() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String id = UUID.randomUUID().toString();
+        String eventId = UUID.randomUUID().toString();
+        String invalidEventId = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+
+        // Not applicable yet, so it is buffered and only then marked
+        source.send(new OrderEventMessage(id, "SHIP", eventId));
+        source.send(new OrderEventMessage(id, "SHIP", eventId));
+        source.send(new OrderEventMessage(id, "NOPE", invalidEventId));
+        awaitCondition(() -> deduplicator.containsNow(OrderEventConsumer.DEDUP_NAMESPACE, eventId));
+        source.send(new OrderEventMessage(id, "PAY"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(id).getCurrentState() == OrderState.SHIPPED);
+        // The drain removes SHIP right after applying it
+        awaitCondition(() -> OrderEventConsumer.getRepository().getPendingEvents(id).isEmpty());
+        assertFalse(deduplicator.containsNow(OrderEventConsumer.DEDUP_NAMESPACE, invalidEventId));
+    }
+
+    @Test
+    void testHistoryOutlivesTheRemovalOfAFinishedOrder() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String id = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+
+        source.send(new OrderEventMessage(id, "CANCEL"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(id) == null);
+
+        given()
+            .when().get("/order/" + id + "/history")
+            .then()
+                .statusCode(200)
+                .body("removed", is(true))
+                .body("transitions.size()", is(1))
+                .body("transitions[0].to", is("CANCELLED"));
+    }
+
+    @Test
+    void testBulkTransitionsAreFollowedUpLikeConsumedOnes() throws Exception {
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        String id = UUID.randomUUID().toString();
+        OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+        OrderEventConsumer.getRepository().get(id).trigger(OrderEvent.PAY);
+        source.send(new OrderEventMessage(id, "DELIVER"));
+        awaitCondition(() -> OrderEventConsumer.getRepository().getPendingEvents(id).size() == 1);
+
+        given()
+            .contentType(ContentType.JSON)
+            .queryParam("state", "PAID")
+            .when().post("/order/bulk/trigger/SHIP")
+            .then()
+                .statusCode(202);
+        // The buffered DELIVER applies once shipped, and the delivered order is cleaned up
+        awaitCondition(() -> OrderEventConsumer.getRepository().get(id) == null);
+        assertTrue(OrderEventConsumer.getRepository().getPendingEvents(id).isEmpty());
+        assertEquals(OrderState.DELIVERED, OrderEventConsumer.getRepository().findRemoved(id).getCurrentState());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
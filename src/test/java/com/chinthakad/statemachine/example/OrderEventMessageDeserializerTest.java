@@ -0,0 +1,74 @@
+package com.chinthakad.statemachine.example;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+class OrderEventMessageDeserializerTest {
+    OrderEventMessageDeserializer deserializer = new OrderEventMessageDeserializer();
+
+    @Test
+    void testBinaryRecord() {
+        UUID orderId = UUID.randomUUID();
+        OrderEventMessage message = deserializer.deserialize("order-events", OrderEventBinaryCodec.encode(orderId, OrderEvent.SHIP));
+        assertEquals(orderId.toString(), message.orderId);
+        assertEquals("SHIP", message.event);
+        assertNull(message.eventId);
+    }
+
+    @Test
+    void testBinaryRecordWithEventId() {
+        UUID orderId = UUID.randomUUID();
+        UUID eventId = UUID.randomUUID();
+        OrderEventMessage message = deserializer.deserialize("order-events", OrderEventBinaryCodec.encode(orderId, OrderEvent.DELIVER, eventId));
+        assertEquals(orderId.toString(), message.orderId);
+        assertEquals("DELIVER", message.event);
+        assertEquals(eventId.toString(), message.eventId);
+    }
+
+    @Test
+    void testJsonRecordOfBinaryLengthIsNotMistakenForBinary() {
+        byte[] json = "{\"orderId\":\"abcdef\",\"event\":\"pay\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals(OrderEventBinaryCodec.RECORD_WITH_EVENT_ID_SIZE, json.length);
+        OrderEventMessage message = deserializer.deserialize("order-events", json);
+        assertEquals("abcdef", message.orderId);
+        assertEquals("pay", message.event);
+    }
+
+    @Test
+    void testTruncatedBinaryRecordIsRejected() {
+        byte[] record = OrderEventBinaryCodec.encode(UUID.randomUUID(), OrderEvent.PAY, UUID.randomUUID());
+        byte[] truncated = Arrays.copyOf(record, OrderEventBinaryCodec.RECORD_SIZE);
+        assertThrows(IllegalArgumentException.class, () -> deserializer.deserialize("order-events", truncated));
+    }
+
+    @Test
+    void testBinaryRecordFromBufferOffset() {
+        UUID orderId = UUID.randomUUID();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + OrderEventBinaryCodec.RECORD_SIZE);
+        buffer.position(4);
+        OrderEventBinaryCodec.encode(orderId, OrderEvent.CANCEL, buffer);
+        buffer.position(4);
+        OrderEventMessage message = deserializer.deserialize("order-events", null, buffer);
+        assertEquals(orderId.toString(), message.orderId);
+        assertEquals("CANCEL", message.event);
+    }
+
+    @Test
+    void testJsonRecord() {
+        byte[] json = "{\"orderId\":\"abc\",\"event\":\"pay\"}".getBytes(StandardCharsets.UTF_8);
+        OrderEventMessage message = deserializer.deserialize("order-events", json);
+        assertEquals("abc", message.orderId);
+        assertEquals("pay", message.event);
+    }
+
+    @Test
+    void testJsonRecordWithEventId() {
+        byte[] json = "{\"orderId\":\"abc\",\"event\":\"pay\",\"eventId\":\"e-1\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals("e-1", deserializer.deserialize("order-events", json).eventId);
+    }
+}
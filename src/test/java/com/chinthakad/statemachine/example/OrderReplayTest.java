@@ -0,0 +1,42 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.framework.DefinitionRegistry;
+import com.chinthakad.statemachine.framework.ReplayEngine;
+import com.chinthakad.statemachine.framework.ReplayReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+class OrderReplayTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReplaysRecordsInTheKafkaWireFormat() throws IOException {
+        UUID shipped = UUID.randomUUID();
+        UUID cancelled = UUID.randomUUID();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        records.writeBytes(OrderEventBinaryCodec.encode(shipped, OrderEvent.PAY, UUID.randomUUID()));
+        records.writeBytes(OrderEventBinaryCodec.encode(cancelled, OrderEvent.CANCEL));
+        records.writeBytes(OrderEventBinaryCodec.encode(shipped, OrderEvent.SHIP));
+        Path log = dir.resolve("order-events.bin");
+        Files.write(log, records.toByteArray());
+
+        ReplayReport<OrderState> report = new ReplayEngine<>(
+                OrderStateMachineFactory.DEFINITIONS.current(DefinitionRegistry.DEFAULT_VARIANT).getDefinition(), OrderEvent.class)
+                .binaryLayout(OrderReplay.WIRE_FORMAT)
+                .replay(log, ReplayEngine.Format.BINARY);
+
+        assertEquals(3, report.getEvents());
+        assertEquals(3, report.getApplied());
+        assertEquals(1L, report.getFinalStates().get(OrderState.SHIPPED));
+        assertEquals(1L, report.getFinalStates().get(OrderState.CANCELLED));
+    }
+}
@@ -0,0 +1,281 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.load.InMemoryOrderEvents;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryOrderEvents.class, restrictToAnnotatedClass = true)
+class OrderResourceTest {
+
+    static String createOrder() {
+        return given()
+            .contentType(ContentType.JSON)
+            .when()
+            .post("/order")
+            .then()
+            .statusCode(200)
+            .extract().path("id");
+    }
+
+    static String repeat(String element, String separator, int count, String prefix, String suffix) {
+        StringBuilder body = new StringBuilder(prefix);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                body.append(separator);
+            }
+            body.append(element);
+        }
+        return body.append(suffix).toString();
+    }
+
+    @Test
+    void testCreateBatch() {
+        given()
+            .contentType(ContentType.JSON)
+            .body("[{\"ref\":\"a\"},{\"ref\":\"b\"}]")
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(200)
+            .body("created", equalTo(2))
+            .body("results[1].ref", equalTo("b"));
+    }
+
+    @Test
+    void testOversizedCreateBatchIsRejectedBeforeCreatingOrders() {
+        int before = OrderEventConsumer.getRepository().size();
+        given()
+            .contentType(ContentType.JSON)
+            .body(repeat("{}", ",", OrderResource.MAX_BATCH_SIZE + 1, "[", "]"))
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(413);
+        given()
+            .contentType(OrderResource.NDJSON)
+            .body(repeat("{}", "\n", OrderResource.MAX_BATCH_SIZE + 1, "", "\n").getBytes(StandardCharsets.UTF_8))
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(413);
+        assertEquals(before, OrderEventConsumer.getRepository().size());
+    }
+
+    @Test
+    void testMalformedBatchIsRejectedWithItsLine() {
+        int before = OrderEventConsumer.getRepository().size();
+        given()
+            .contentType(OrderResource.NDJSON)
+            .body("{\"ref\":\"a\"}\n{\"ref\":\n".getBytes(StandardCharsets.UTF_8))
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(400)
+            .body("line", equalTo(3));
+        given()
+            .contentType(OrderResource.NDJSON)
+            .body("{\"orderId\":\"a\",\"event\":\"PAY\"}\n{\"orderId\":[]}\n".getBytes(StandardCharsets.UTF_8))
+            .when()
+            .post("/order/trigger-batch")
+            .then()
+            .statusCode(400)
+            .body("line", equalTo(2));
+        given()
+            .contentType(ContentType.JSON)
+            .body("[{\"ref\":\"a\"},\n{\"ref\" 1}]")
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(400)
+            .body("line", equalTo(2));
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"ref\":\"a\"}")
+            .when()
+            .post("/order/batch")
+            .then()
+            .statusCode(400);
+        assertEquals(before, OrderEventConsumer.getRepository().size());
+    }
+
+    @Test
+    void testOversizedTriggerBatchIsRejectedBeforeApplyingEvents() {
+        String id = createOrder();
+        String element = "{\"orderId\":\"" + id + "\",\"event\":\"PAY\"}";
+        given()
+            .contentType(ContentType.JSON)
+            .body(repeat(element, ",", OrderResource.MAX_BATCH_SIZE + 1, "[", "]"))
+            .when()
+            .post("/order/trigger-batch")
+            .then()
+            .statusCode(413);
+        given()
+            .contentType(OrderResource.NDJSON)
+            .body(repeat(element, "\n", OrderResource.MAX_BATCH_SIZE + 1, "", "\n").getBytes(StandardCharsets.UTF_8))
+            .when()
+            .post("/order/trigger-batch")
+            .then()
+            .statusCode(413);
+        assertEquals(OrderState.CREATED, OrderEventConsumer.getRepository().get(id).getCurrentState());
+
+        // A batch at the limit is applied
+        given()
+            .contentType(OrderResource.NDJSON)
+            .body(repeat(element, "\n", OrderResource.MAX_BATCH_SIZE, "", "\n").getBytes(StandardCharsets.UTF_8))
+            .when()
+            .post("/order/trigger-batch")
+            .then()
+            .statusCode(200)
+            .body("applied", equalTo(1))
+            .body("failed", equalTo(OrderResource.MAX_BATCH_SIZE - 1));
+        assertEquals(OrderState.PAID, OrderEventConsumer.getRepository().get(id).getCurrentState());
+    }
+
+    @Test
+    void testTriggerBatchReportsEveryElement() {
+        String id = createOrder();
+        List<String> statuses = given()
+            .contentType(ContentType.JSON)
+            .body("[{\"orderId\":\"" + id + "\",\"event\":\"PAY\"},"
+                + "{\"orderId\":\"" + id + "\",\"event\":\"PAY\"},"
+                + "{\"orderId\":\"missing\",\"event\":\"PAY\"}]")
+            .when()
+            .post("/order/trigger-batch")
+            .then()
+            .statusCode(200)
+            .body("applied", equalTo(1))
+            .extract().path("results.status");
+        assertEquals(List.of("OK", "INVALID_TRANSITION", "NOT_FOUND"), statuses);
+    }
+
+    @Test
+    void testExportPagesThroughEveryOrderOnce() {
+        Set<String> created = new HashSet<>();
+        for (int i = 0; i < 25; i++) {
+            created.add(createOrder());
+        }
+        Set<String> exported = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Response page = given()
+                .queryParam("limit", 7)
+                .queryParam("cursor", cursor == null ? "" : cursor)
+                .accept(OrderResource.NDJSON)
+                .when()
+                .get("/order/export")
+                .then()
+                .statusCode(200)
+                .extract().response();
+            for (String line : page.asString().split("\n")) {
+                if (!line.isEmpty()) {
+                    assertTrue(exported.add(JsonPath.from(line).getString("id")), line);
+                }
+            }
+            cursor = page.getHeader(OrderResource.EXPORT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null && pages < 1000);
+        assertNull(cursor);
+        assertTrue(exported.containsAll(created));
+    }
+
+    @Test
+    void testUnchangedOrderIsNotModified() {
+        String id = createOrder();
+        String tag = given().when().get("/order/" + id).then().statusCode(200).extract().header("ETag");
+        given()
+            .header("If-None-Match", tag)
+            .when()
+            .get("/order/" + id)
+            .then()
+            .statusCode(304);
+        given().contentType(ContentType.JSON).when().post("/order/" + id + "/trigger/PAY").then().statusCode(200);
+        given()
+            .header("If-None-Match", tag)
+            .when()
+            .get("/order/" + id)
+            .then()
+            .statusCode(200)
+            .header("ETag", not(equalTo(tag)))
+            .body("state", equalTo("PAID"));
+    }
+
+    @Test
+    void testIfMatchComparesStrongTagsElementWise() {
+        String id = createOrder();
+        String tag = given().when().get("/order/" + id).then().statusCode(200).extract().header("ETag");
+        // A weak tag never matches, even for the current version
+        given()
+            .contentType(ContentType.JSON)
+            .header("If-Match", "W/" + tag)
+            .when()
+            .post("/order/" + id + "/trigger/PAY")
+            .then()
+            .statusCode(412)
+            .header("ETag", equalTo(tag));
+        given()
+            .contentType(ContentType.JSON)
+            .header("If-Match", "\"999\", W/\"1000\", " + tag)
+            .when()
+            .post("/order/" + id + "/trigger/PAY")
+            .then()
+            .statusCode(200)
+            .body("state", equalTo("PAID"));
+        // The tag is stale now
+        given()
+            .contentType(ContentType.JSON)
+            .header("If-Match", tag)
+            .when()
+            .post("/order/" + id + "/trigger/SHIP")
+            .then()
+            .statusCode(412)
+            .body("state", equalTo("PAID"));
+        assertEquals(OrderState.PAID, OrderEventConsumer.getRepository().get(id).getCurrentState());
+    }
+
+    @Test
+    void testListByStatePagesWithTheCursor() {
+        Set<String> paid = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            String id = createOrder();
+            given().contentType(ContentType.JSON).when().post("/order/" + id + "/trigger/PAY").then().statusCode(200);
+            paid.add(id);
+        }
+        Set<String> listed = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Response page = given()
+                .queryParam("state", "paid")
+                .queryParam("limit", 5)
+                .queryParam("cursor", cursor == null ? "" : cursor)
+                .when()
+                .get("/order")
+                .then()
+                .statusCode(200)
+                .body("state", equalTo("PAID"))
+                .extract().response();
+            for (String id : page.jsonPath().getList("ids", String.class)) {
+                assertTrue(listed.add(id), id);
+            }
+            cursor = page.getHeader(OrderResource.EXPORT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null && pages < 1000);
+        assertTrue(listed.containsAll(paid));
+        given().queryParam("state", "PAID").queryParam("cursor", "%%%").when().get("/order").then().statusCode(400);
+    }
+}
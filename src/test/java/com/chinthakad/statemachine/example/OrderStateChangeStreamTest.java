@@ -0,0 +1,71 @@
+package com.chinthakad.statemachine.example;
+
+import com.chinthakad.statemachine.load.InMemoryOrderEvents;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryOrderEvents.class, restrictToAnnotatedClass = true)
+class OrderStateChangeStreamTest {
+
+    @TestHTTPResource("/order/stream")
+    URI stream;
+
+    @Inject
+    OrderStateChangeStream changes;
+
+    @Test
+    void testSubscriberReceivesTransition() throws Exception {
+        String id = OrderResourceTest.createOrder();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(stream + "?id=" + id + "&state=PAID"))
+            .header("Accept", "text/event-stream")
+            .build();
+        BlockingQueue<String> data = new LinkedBlockingQueue<>();
+        HttpClient client = HttpClient.newHttpClient();
+        Stream<String> lines = client.send(request, HttpResponse.BodyHandlers.ofLines()).body();
+        Thread reader = Thread.ofVirtual().start(() -> lines
+            .filter(line -> line.startsWith("data:"))
+            .forEach(line -> data.add(line.substring("data:".length()).trim())));
+        try {
+            awaitCondition(() -> changes.subscriberCount(id) == 1);
+            given().contentType(ContentType.JSON).when().post("/order/" + id + "/trigger/PAY").then().statusCode(200);
+
+            String event = data.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event, "No state change streamed");
+            assertTrue(event.contains("\"id\":\"" + id + "\""), event);
+            assertTrue(event.contains("\"state\":\"PAID\""), event);
+            // SHIP is filtered out by the state parameter
+            given().contentType(ContentType.JSON).when().post("/order/" + id + "/trigger/SHIP").then().statusCode(200);
+            assertNull(data.poll(500, TimeUnit.MILLISECONDS));
+        } finally {
+            lines.close();
+            reader.interrupt();
+        }
+        // Closing the connection ends the subscription
+        awaitCondition(() -> changes.subscriberCount(id) == 0);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,134 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class BackpressureControllerTest {
+    AtomicLong pending = new AtomicLong();
+    AtomicLong machines = new AtomicLong();
+    List<Boolean> changes = new ArrayList<>();
+    BackpressureController controller = new BackpressureController()
+            .signal("pending", pending::get, 100, 50)
+            .signal("machines", machines::get, 10, 5)
+            .onChange(changes::add);
+
+    @Test
+    void testHysteresis() {
+        pending.set(99);
+        assertFalse(controller.update());
+        pending.set(100);
+        assertTrue(controller.update());
+        assertEquals("pending=100", controller.getCause());
+        pending.set(60);
+        assertTrue(controller.update()); // still above the low watermark
+        pending.set(50);
+        assertFalse(controller.update());
+        assertNull(controller.getCause());
+        assertEquals(List.of(true, false), changes);
+    }
+
+    @Test
+    void testClearsOnlyWhenEverySignalIsLow() {
+        pending.set(100);
+        machines.set(10);
+        controller.update();
+        pending.set(0);
+        assertTrue(controller.update());
+        machines.set(5);
+        assertFalse(controller.update());
+    }
+
+    @Test
+    void testAwaitCapacityRecoversWhenSignalsDrop() throws Exception {
+        pending.set(200);
+        Thread drainer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.set(0);
+        });
+        drainer.start();
+        assertTrue(controller.awaitCapacity(5, TimeUnit.SECONDS));
+        drainer.join();
+        assertEquals(1, controller.getThrottledCount());
+        assertEquals(0, controller.getTimedOutCount());
+    }
+
+    @Test
+    void testAwaitCapacityTimesOut() throws Exception {
+        pending.set(200);
+        assertFalse(controller.awaitCapacity(20, TimeUnit.MILLISECONDS));
+        assertEquals(1, controller.getTimedOutCount());
+        assertTrue(controller.isSaturated());
+    }
+
+    @Test
+    void testListenersSeeEachFlipOnce() {
+        pending.set(100);
+        for (int i = 0; i < 5; i++) {
+            controller.update();
+        }
+        pending.set(70);
+        controller.update();
+        pending.set(0);
+        for (int i = 0; i < 5; i++) {
+            controller.update();
+        }
+        assertEquals(List.of(true, false), changes);
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopOthers() {
+        List<Boolean> seen = new ArrayList<>();
+        controller.onChange(saturated -> {
+            throw new IllegalStateException("boom");
+        }).onChange(seen::add);
+        pending.set(100);
+        assertTrue(controller.update());
+        assertEquals(List.of(true), seen);
+    }
+
+    @Test
+    void testAwaitCapacityReturnsAtOnceWhenClear() throws Exception {
+        assertTrue(controller.awaitCapacity(0, TimeUnit.MILLISECONDS));
+        assertEquals(0, controller.getThrottledCount());
+    }
+
+    @Test
+    void testClearingReleasesEveryWaiter() throws Exception {
+        pending.set(200);
+        controller.update();
+        int waiters = 4;
+        CountDownLatch released = new CountDownLatch(waiters);
+        for (int i = 0; i < waiters; i++) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    if (controller.awaitCapacity(5, TimeUnit.SECONDS)) {
+                        released.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+        }
+        Thread.sleep(50);
+        assertEquals(waiters, released.getCount());
+        pending.set(0);
+        assertTrue(released.await(5, TimeUnit.SECONDS));
+        assertEquals(waiters, controller.getThrottledCount());
+    }
+
+    @Test
+    void testRejectsInvertedWatermarks() {
+        assertThrows(IllegalArgumentException.class, () -> new BackpressureController().signal("x", () -> 0, 1, 2));
+    }
+}
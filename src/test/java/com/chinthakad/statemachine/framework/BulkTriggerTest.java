@@ -0,0 +1,114 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+class BulkTriggerTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, DONE, CANCELLED;
+        public boolean isTerminal() { return this == DONE || this == CANCELLED; }
+    }
+    enum SimpleEvent { START, FINISH, CANCEL }
+
+    StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    @BeforeEach
+    void setup() {
+        for (int i = 0; i < 10_000; i++) {
+            StateMachine<SimpleState, SimpleEvent> sm = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                    .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                    .transition(SimpleState.INIT, SimpleEvent.CANCEL, SimpleState.CANCELLED)
+                    .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                    .transition(SimpleState.RUNNING, SimpleEvent.CANCEL, SimpleState.CANCELLED)
+                    .build();
+            repository.save("m" + i, sm);
+            if (i % 2 == 0) {
+                sm.trigger(SimpleEvent.START);
+            }
+        }
+    }
+
+    @AfterEach
+    void teardown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void testAppliesEventToMatchingMachinesOnly() throws Exception {
+        BulkTrigger<SimpleState, SimpleEvent> bulk = new BulkTrigger<>(repository, pool, 0);
+        BulkTrigger.Job<SimpleEvent> job = bulk.start(SimpleEvent.CANCEL, s -> s == SimpleState.INIT, (id, sm) -> true);
+        job.completion().get(10, TimeUnit.SECONDS);
+
+        assertEquals(10_000, job.getScanned());
+        assertEquals(5_000, job.getMatched());
+        assertEquals(5_000, job.getApplied());
+        assertEquals(0, job.getFailed());
+        assertEquals(1.0, job.getProgress());
+        assertEquals(5_000, repository.count(SimpleState.CANCELLED));
+        assertEquals(5_000, repository.count(SimpleState.RUNNING));
+    }
+
+    @Test
+    void testAppliedTransitionsAreReported() throws Exception {
+        Set<String> reported = ConcurrentHashMap.newKeySet();
+        BulkTrigger<SimpleState, SimpleEvent> bulk = new BulkTrigger<>(repository, pool, 0, (id, sm) -> {
+            assertEquals(SimpleState.DONE, sm.getCurrentState());
+            reported.add(id);
+        });
+        BulkTrigger.Job<SimpleEvent> job = bulk.start(SimpleEvent.FINISH, s -> s != SimpleState.DONE, (id, sm) -> true);
+        job.completion().get(10, TimeUnit.SECONDS);
+        // Machines still in INIT matched but could not finish, and are not reported
+        assertEquals(10_000, job.getMatched());
+        assertEquals(5_000, reported.size());
+        assertTrue(reported.contains("m0"));
+        assertFalse(reported.contains("m1"));
+    }
+
+    @Test
+    void testFilterSelectsByAge() throws Exception {
+        BulkTrigger<SimpleState, SimpleEvent> bulk = new BulkTrigger<>(repository, pool, 0);
+        long cutoff = System.currentTimeMillis() - 60_000;
+        BulkTrigger.Job<SimpleEvent> job = bulk.start(SimpleEvent.FINISH, s -> s == SimpleState.RUNNING,
+                (id, sm) -> sm.getCreatedAt() < cutoff);
+        job.completion().get(10, TimeUnit.SECONDS);
+        assertEquals(0, job.getMatched());
+        assertEquals(0, repository.count(SimpleState.DONE));
+    }
+
+    @Test
+    void testStateConditionIsRecheckedWhenTriggering() {
+        StateMachine<SimpleState, SimpleEvent> sm = repository.get("m1");
+        assertFalse(sm.triggerIf(s -> s == SimpleState.RUNNING, SimpleEvent.CANCEL));
+        assertEquals(SimpleState.INIT, sm.getCurrentState());
+        assertTrue(sm.triggerIf(s -> s == SimpleState.INIT, SimpleEvent.CANCEL));
+    }
+
+    @Test
+    void testRateLimitSlowsTheJob() throws Exception {
+        BulkTrigger<SimpleState, SimpleEvent> bulk = new BulkTrigger<>(repository, pool, 10_000);
+        long start = System.nanoTime();
+        BulkTrigger.Job<SimpleEvent> job = bulk.start(SimpleEvent.FINISH, s -> s == SimpleState.RUNNING, (id, sm) -> true);
+        job.completion().get(10, TimeUnit.SECONDS);
+        assertEquals(5_000, job.getApplied());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(400));
+    }
+
+    @Test
+    void testCancelStopsSelection() throws Exception {
+        BulkTrigger<SimpleState, SimpleEvent> bulk = new BulkTrigger<>(repository, pool, 1_000);
+        BulkTrigger.Job<SimpleEvent> job = bulk.start(SimpleEvent.FINISH, s -> s == SimpleState.RUNNING, (id, sm) -> true);
+        Thread.sleep(50);
+        job.cancel();
+        job.completion().get(10, TimeUnit.SECONDS);
+        assertTrue(job.isCancelled());
+        assertTrue(job.getApplied() < 5_000);
+    }
+}
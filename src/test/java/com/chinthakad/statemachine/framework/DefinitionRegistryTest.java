@@ -0,0 +1,124 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class DefinitionRegistryTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, REVIEW, DONE, FAILED;
+        public boolean isTerminal() { return this == DONE || this == FAILED; }
+    }
+    enum SimpleEvent { START, FINISH, APPROVE, ERROR }
+
+    DefinitionRegistry<SimpleState, SimpleEvent> registry = new DefinitionRegistry<>();
+
+    StateMachineDefinition<SimpleState, SimpleEvent> v1() {
+        return new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.FAILED)
+                .buildDefinition();
+    }
+
+    StateMachineDefinition<SimpleState, SimpleEvent> v2() {
+        // Finished work now goes through review
+        return new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.REVIEW)
+                .transition(SimpleState.REVIEW, SimpleEvent.APPROVE, SimpleState.DONE)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.FAILED)
+                .buildDefinition();
+    }
+
+    @Test
+    void testMachinesFollowNewVersionOnNextTrigger() {
+        registry.publish(DefinitionRegistry.DEFAULT_VARIANT, v1());
+        StateMachine<SimpleState, SimpleEvent> sm = registry.newMachine(DefinitionRegistry.DEFAULT_VARIANT);
+        assertTrue(sm.trigger(SimpleEvent.START));
+        assertEquals(1, sm.getVersion().getNumber());
+
+        registry.publish(DefinitionRegistry.DEFAULT_VARIANT, v2());
+        assertEquals(1, sm.getVersion().getNumber()); // lazy
+        assertTrue(sm.trigger(SimpleEvent.FINISH));
+        assertEquals(2, sm.getVersion().getNumber());
+        assertEquals(SimpleState.REVIEW, sm.getCurrentState());
+        assertTrue(sm.trigger(SimpleEvent.APPROVE));
+    }
+
+    @Test
+    void testMigrationKeepsTheTimeLeftInTheState() {
+        AtomicLong now = new AtomicLong();
+        TimingWheel wheel = new TimingWheel(10, 4, 2, now::get);
+        registry.publish("a", timedOut(wheel));
+        StateMachine<SimpleState, SimpleEvent> sm = registry.newMachine("a");
+        sm.trigger(SimpleEvent.START);
+        now.set(60);
+        wheel.advance();
+
+        // Still RUNNING after the migration, so 40 ms of the timeout are left, not 100
+        registry.publish("a", timedOut(wheel));
+        assertFalse(sm.trigger(SimpleEvent.APPROVE));
+        assertEquals(2, sm.getVersion().getNumber());
+        now.set(100);
+        wheel.advance();
+        assertEquals(SimpleState.FAILED, sm.getCurrentState());
+    }
+
+    StateMachineDefinition<SimpleState, SimpleEvent> timedOut(TimingWheel wheel) {
+        return new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.FAILED)
+                .timeout(SimpleState.RUNNING, Duration.ofMillis(100), SimpleEvent.ERROR)
+                .timers(wheel)
+                .buildDefinition();
+    }
+
+    @Test
+    void testMigrationMapsStatesThroughEveryVersion() {
+        registry.publish("a", v1());
+        StateMachine<SimpleState, SimpleEvent> sm = registry.newMachine("a");
+        sm.trigger(SimpleEvent.START);
+        registry.publish("a", v2(), s -> s == SimpleState.RUNNING ? SimpleState.REVIEW : null);
+        registry.publish("a", v2(), s -> s == SimpleState.REVIEW ? SimpleState.RUNNING : null);
+        registry.publish("a", v2(), s -> s == SimpleState.RUNNING ? SimpleState.REVIEW : null);
+
+        assertTrue(sm.trigger(SimpleEvent.APPROVE));
+        assertEquals(4, sm.getVersion().getNumber());
+        assertEquals(SimpleState.DONE, sm.getCurrentState());
+    }
+
+    @Test
+    void testMigrationIsReportedToListenersWithoutEvent() {
+        StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+        List<String> seen = new ArrayList<>();
+        repository.addTransitionListener((id, from, event, to) -> seen.add(from + "-" + event + "->" + to));
+        registry.publish("a", v1());
+        repository.save("m", registry.newMachine("a"));
+        repository.get("m").trigger(SimpleEvent.START);
+        registry.publish("a", v2(), s -> s == SimpleState.RUNNING ? SimpleState.REVIEW : null);
+
+        repository.get("m").trigger(SimpleEvent.APPROVE);
+
+        assertEquals(List.of("INIT-START->RUNNING", "RUNNING-null->REVIEW", "REVIEW-APPROVE->DONE"), seen);
+        assertEquals(1, repository.count(SimpleState.DONE));
+        assertEquals(0, repository.count(SimpleState.REVIEW));
+    }
+
+    @Test
+    void testVariantsAreIndependent() {
+        registry.publish("a", v1());
+        registry.publish("b", v1());
+        registry.publish("b", v2());
+        StateMachine<SimpleState, SimpleEvent> a = registry.newMachine("a");
+        a.trigger(SimpleEvent.START);
+        a.trigger(SimpleEvent.FINISH);
+        assertEquals(SimpleState.DONE, a.getCurrentState());
+        assertEquals(2, registry.current("b").getNumber());
+        assertThrows(IllegalArgumentException.class, () -> registry.newMachine("c"));
+    }
+}
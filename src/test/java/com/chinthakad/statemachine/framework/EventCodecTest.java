@@ -0,0 +1,30 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCodecTest {
+    enum SimpleEvent { START, FINISH, ERROR }
+
+    EventCodec<SimpleEvent> codec = EventCodec.of(SimpleEvent.class);
+
+    @Test
+    void testDecodeIgnoresCase() {
+        assertEquals(SimpleEvent.START, codec.decode("START"));
+        assertEquals(SimpleEvent.FINISH, codec.decode("finish"));
+        assertEquals(SimpleEvent.ERROR, codec.decode(new StringBuilder("ErRoR")));
+    }
+
+    @Test
+    void testUnknownNamesReturnNull() {
+        assertNull(codec.decode("STOP"));
+        assertNull(codec.decode("STAR"));
+        assertNull(codec.decode(""));
+        assertNull(codec.decode(null));
+    }
+
+    @Test
+    void testCodecIsSharedPerType() {
+        assertSame(codec, EventCodec.of(SimpleEvent.class));
+    }
+}
@@ -0,0 +1,67 @@
+package com.chinthakad.statemachine.framework;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+class FlightRecorderEventsTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, DONE;
+        public boolean isTerminal() { return this == DONE; }
+    }
+    enum SimpleEvent { START, FINISH }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testTransitionAndDrainEvents() throws Exception {
+        StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+        repository.save("m", new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                .onInvalidTransition(msg -> { })
+                .build());
+        StateMachine<SimpleState, SimpleEvent> sm = repository.get("m");
+        Path file = dir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.chinthakad.statemachine.Transition").withThreshold(Duration.ZERO);
+            recording.enable("com.chinthakad.statemachine.PendingDrain").withThreshold(Duration.ZERO);
+            recording.start();
+            assertFalse(sm.trigger(SimpleEvent.FINISH));
+            ConcurrentLinkedQueue<SimpleEvent> pending = new ConcurrentLinkedQueue<>(List.of(SimpleEvent.FINISH));
+            sm.trigger(SimpleEvent.START);
+            sm.processPendingEvents("m", pending, Function.identity(), () -> { });
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> transitions = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.chinthakad.statemachine.Transition"))
+                .toList();
+        assertEquals(3, transitions.size());
+        RecordedEvent rejected = transitions.get(0);
+        assertEquals("m", rejected.getString("machineId"));
+        assertEquals("INIT", rejected.getString("fromState"));
+        assertEquals("FINISH", rejected.getString("event"));
+        assertFalse(rejected.getBoolean("success"));
+        assertTrue(transitions.get(2).getBoolean("success"));
+        assertEquals("DONE", transitions.get(2).getString("toState"));
+
+        RecordedEvent drain = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("com.chinthakad.statemachine.PendingDrain"))
+                .findFirst().orElseThrow();
+        assertEquals(1, drain.getInt("queueDepth"));
+        assertEquals(1, drain.getInt("applied"));
+        assertTrue(drain.getBoolean("terminal"));
+    }
+}
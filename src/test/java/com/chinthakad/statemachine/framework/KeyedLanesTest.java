@@ -0,0 +1,106 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class KeyedLanesTest {
+
+    @Test
+    void testTasksOfOneKeyRunInSubmissionOrder() {
+        Map<String, List<Integer>> seen = new ConcurrentHashMap<>();
+        try (KeyedLanes lanes = new KeyedLanes(8, "lanes-test")) {
+            for (int i = 0; i < 1000; i++) {
+                String key = "k" + (i % 20);
+                int n = i;
+                lanes.submit(key, () -> seen.computeIfAbsent(key, k -> new ArrayList<>()).add(n));
+            }
+        }
+        assertEquals(20, seen.size());
+        seen.forEach((key, values) -> {
+            assertEquals(50, values.size());
+            for (int i = 1; i < values.size(); i++) {
+                assertTrue(values.get(i - 1) < values.get(i), key + " ran out of order: " + values);
+            }
+        });
+    }
+
+    @Test
+    void testBlockedLaneDoesNotHoldUpOtherLanes() throws Exception {
+        try (KeyedLanes lanes = new KeyedLanes(4, "lanes-test")) {
+            String blocked = "a";
+            String other = "b";
+            for (int i = 0; lanes.lane(other) == lanes.lane(blocked); i++) {
+                other = "b" + i;
+            }
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch ran = new CountDownLatch(1);
+            lanes.submit(blocked, () -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            lanes.submit(other, ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            release.countDown();
+        }
+    }
+
+    @Test
+    void testFullLaneHoldsBackSubmitsInOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        try (KeyedLanes lanes = new KeyedLanes(1, 1, "lanes-test")) {
+            CountDownLatch running = new CountDownLatch(1);
+            lanes.submit("a", () -> {
+                running.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            assertTrue(lanes.submit("a", () -> seen.add(1)).toCompletableFuture().isDone());
+            // The lane is full: these wait for room, in order
+            CompletableFuture<Void> second = lanes.submit("a", () -> seen.add(2)).toCompletableFuture();
+            CompletableFuture<Void> third = lanes.submit("a", () -> seen.add(3)).toCompletableFuture();
+            Thread.sleep(50);
+            assertFalse(second.isDone());
+            assertFalse(third.isDone());
+
+            release.countDown();
+            third.get(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 100 && seen.size() < 3; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(List.of(1, 2, 3), seen);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testFailedTaskDoesNotStopItsLane() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+        try (KeyedLanes lanes = new KeyedLanes(1, "lanes-test")) {
+            lanes.submit("a", () -> {
+                throw new IllegalStateException("boom");
+            });
+            lanes.submit("a", ran::countDown);
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+        }
+    }
+}
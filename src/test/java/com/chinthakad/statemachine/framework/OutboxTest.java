@@ -0,0 +1,322 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+class OutboxTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, DONE;
+        public boolean isTerminal() { return this == DONE; }
+    }
+    enum SimpleEvent { START, FINISH }
+
+    @TempDir
+    Path dir;
+
+    static List<String> describe(List<OutboxRecord> records) {
+        List<String> described = new ArrayList<>();
+        for (OutboxRecord record : records) {
+            described.add(record.getSequence() + ":" + record.getMachineId() + ":" + record.getFrom() + "-" + record.getEvent() + "->" + record.getTo());
+        }
+        return described;
+    }
+
+    static void appendThree(Outbox outbox) {
+        outbox.append("a", "INIT", "START", "RUNNING", 1);
+        outbox.append("b", "INIT", "START", "RUNNING", 2);
+        outbox.append("a", "RUNNING", null, "DONE", 3);
+    }
+
+    void checkHandOutAcknowledgeAndRewind(Outbox outbox) {
+        appendThree(outbox);
+        assertEquals(3, outbox.size());
+        assertEquals(List.of("1:a:INIT-START->RUNNING", "2:b:INIT-START->RUNNING"), describe(outbox.next(2, Integer.MAX_VALUE)));
+        assertEquals(List.of("3:a:RUNNING-null->DONE"), describe(outbox.next(2, Integer.MAX_VALUE)));
+        assertTrue(outbox.next(2, Integer.MAX_VALUE).isEmpty());
+
+        outbox.acknowledge(1);
+        assertEquals(2, outbox.size());
+        outbox.rewind();
+        List<OutboxRecord> again = outbox.next(10, Integer.MAX_VALUE);
+        assertEquals(List.of("2:b:INIT-START->RUNNING", "3:a:RUNNING-null->DONE"), describe(again));
+        assertNull(again.get(1).getEvent());
+        assertEquals(3, again.get(1).getTimestamp());
+
+        // A byte cap still hands out one record
+        outbox.rewind();
+        assertEquals(1, outbox.next(10, 1).size());
+        outbox.acknowledge(1);
+        outbox.append("c", "INIT", "START", "RUNNING", 4);
+        assertEquals(List.of("3:a:RUNNING-null->DONE", "4:c:INIT-START->RUNNING"), describe(outbox.next(10, Integer.MAX_VALUE)));
+        outbox.acknowledge(2);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void testInMemoryOutbox() {
+        checkHandOutAcknowledgeAndRewind(new InMemoryOutbox());
+    }
+
+    @Test
+    void testFullInMemoryOutboxDropsTheOldestWaitingRecords() {
+        InMemoryOutbox outbox = new InMemoryOutbox(2);
+        outbox.append("a", "INIT", "START", "RUNNING", 1);
+        assertEquals(1, outbox.next(1, Integer.MAX_VALUE).size());
+        outbox.append("b", "INIT", "START", "RUNNING", 2);
+        outbox.append("c", "INIT", "START", "RUNNING", 3);
+        // Record 1 is handed out, so record 2 is the oldest one that can go
+        assertEquals(1, outbox.dropped());
+        assertEquals(2, outbox.size());
+        outbox.rewind();
+        assertEquals(List.of("1:a:INIT-START->RUNNING", "3:c:INIT-START->RUNNING"),
+                describe(outbox.next(10, Integer.MAX_VALUE)));
+        outbox.acknowledge(2);
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void testFileOutbox() {
+        try (FileOutbox outbox = new FileOutbox(dir.resolve("outbox.log"))) {
+            checkHandOutAcknowledgeAndRewind(outbox);
+        }
+    }
+
+    @Test
+    void testFileOutboxResumesAfterLastAcknowledgedRecord() throws IOException {
+        Path file = dir.resolve("outbox.log");
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            appendThree(outbox);
+            outbox.next(2, Integer.MAX_VALUE);
+            outbox.acknowledge(1);
+            // Handed out but never acknowledged
+            outbox.next(10, Integer.MAX_VALUE);
+        }
+        // A crash in the middle of an append leaves a torn frame behind
+        Files.write(FileOutbox.segmentFile(file, 0), new byte[] {0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            assertEquals(2, outbox.size());
+            outbox.append("c", "INIT", "START", "RUNNING", 4);
+            assertEquals(List.of("2:b:INIT-START->RUNNING", "3:a:RUNNING-null->DONE", "4:c:INIT-START->RUNNING"),
+                    describe(outbox.next(10, Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void testFileOutboxDeletesSegmentsOnceAcknowledged() throws IOException {
+        Path file = dir.resolve("outbox.log");
+        try (FileOutbox outbox = new FileOutbox(file, false, 1)) {
+            // Steady traffic: the log is never fully acknowledged, yet it does not grow
+            outbox.append("a", "INIT", "START", "RUNNING", 1);
+            for (int i = 2; i <= 50; i++) {
+                outbox.append("a", "INIT", "START", "RUNNING", i);
+                assertEquals(1, outbox.next(1, Integer.MAX_VALUE).size());
+                outbox.acknowledge(1);
+                assertEquals(1, outbox.size());
+                assertTrue(segments().size() <= 2, segments().toString());
+            }
+            assertFalse(Files.exists(FileOutbox.segmentFile(file, 0)));
+        }
+        try (FileOutbox outbox = new FileOutbox(file, false, 1)) {
+            // The unacknowledged record survives and sequence numbers carry on
+            outbox.append("c", "INIT", "START", "RUNNING", 51);
+            assertEquals(List.of("50:a:INIT-START->RUNNING", "51:c:INIT-START->RUNNING"), describe(outbox.next(10, Integer.MAX_VALUE)));
+            outbox.acknowledge(2);
+            assertEquals(0, outbox.size());
+        }
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            assertTrue(outbox.next(10, Integer.MAX_VALUE).isEmpty());
+        }
+    }
+
+    @Test
+    void testForcedAppendsFromManyThreadsAreAllPublished() throws Exception {
+        Path file = dir.resolve("outbox.log");
+        int threads = 8;
+        int perThread = 200;
+        try (FileOutbox outbox = new FileOutbox(file, true, 4096)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String id = "m" + t;
+                writers.add(Thread.ofVirtual().start(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        outbox.append(id, "INIT", "START", "RUNNING", i);
+                    }
+                }));
+            }
+            Set<Long> sequences = new HashSet<>();
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (sequences.size() < threads * perThread && System.nanoTime() < deadline) {
+                List<OutboxRecord> batch = outbox.next(100, Integer.MAX_VALUE);
+                for (OutboxRecord record : batch) {
+                    assertTrue(sequences.add(record.getSequence()));
+                }
+                outbox.acknowledge(batch.size());
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(0, outbox.size());
+            assertEquals(threads * perThread, Collections.max(sequences));
+            assertTrue(segments().size() <= 2, segments().toString());
+        }
+    }
+
+    @Test
+    void testFileOutboxRefusesAMalformedCheckpoint() throws IOException {
+        Path file = dir.resolve("outbox.log");
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            appendThree(outbox);
+        }
+        Files.write(dir.resolve("outbox.log.checkpoint"), new byte[3 * Long.BYTES]);
+        assertThrows(UncheckedIOException.class, () -> new FileOutbox(file));
+    }
+
+    List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().matches("outbox\\.log\\.\\d+")).toList();
+        }
+    }
+
+    @Test
+    void testEpochTellsRestartedNumberingApart() {
+        InMemoryOutbox first = new InMemoryOutbox();
+        InMemoryOutbox second = new InMemoryOutbox();
+        first.append("a", "INIT", "START", "RUNNING", 1);
+        second.append("a", "INIT", "START", "RUNNING", 1);
+        OutboxRecord a = first.next(1, Integer.MAX_VALUE).get(0);
+        OutboxRecord b = second.next(1, Integer.MAX_VALUE).get(0);
+        assertEquals(a.getSequence(), b.getSequence());
+        assertNotEquals(a.getEpoch(), b.getEpoch());
+        assertEquals(first.getEpoch(), a.getEpoch());
+    }
+
+    @Test
+    void testFileOutboxKeepsItsEpochAcrossRestarts() throws IOException {
+        Path file = dir.resolve("outbox.log");
+        long epoch;
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            epoch = outbox.getEpoch();
+            outbox.append("a", "INIT", "START", "RUNNING", 1);
+        }
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            assertEquals(epoch, outbox.getEpoch());
+            assertEquals(epoch, outbox.next(1, Integer.MAX_VALUE).get(0).getEpoch());
+        }
+        // A fresh log starts a new epoch
+        for (Path segment : segments()) {
+            Files.delete(segment);
+        }
+        Files.delete(dir.resolve("outbox.log.checkpoint"));
+        try (FileOutbox outbox = new FileOutbox(file)) {
+            assertNotEquals(epoch, outbox.getEpoch());
+        }
+    }
+
+    @Test
+    void testListenerAppendsTransitionsOfRepository() {
+        InMemoryOutbox outbox = new InMemoryOutbox();
+        StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+        repository.addTransitionListener(outbox.listener());
+        repository.save("m", new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                .build());
+
+        repository.get("m").trigger(SimpleEvent.START);
+        assertFalse(repository.get("m").trigger(SimpleEvent.START));
+        repository.get("m").trigger(SimpleEvent.FINISH);
+
+        assertEquals(List.of("1:m:INIT-START->RUNNING", "2:m:RUNNING-FINISH->DONE"), describe(outbox.next(10, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    void testPublisherBatchesByCountAndLinger() {
+        AtomicLong now = new AtomicLong(1000);
+        InMemoryOutbox outbox = new InMemoryOutbox();
+        List<List<String>> sent = new ArrayList<>();
+        OutboxPublisher publisher = new OutboxPublisher(outbox, batch -> {
+            sent.add(describe(batch));
+            return CompletableFuture.completedFuture(null);
+        }, 2, Integer.MAX_VALUE, 50, 1000, now::get);
+
+        assertEquals(0, publisher.publishDue());
+        outbox.append("a", "INIT", "START", "RUNNING", 1);
+        // Lingers for a full batch
+        assertEquals(0, publisher.publishDue());
+        now.addAndGet(49);
+        assertEquals(0, publisher.publishDue());
+        now.addAndGet(1);
+        assertEquals(1, publisher.publishDue());
+
+        appendThree(outbox);
+        assertEquals(2, publisher.publishDue());
+        // The remainder lingers from when the full batch was noticed
+        assertEquals(0, publisher.publishDue());
+        now.addAndGet(50);
+        assertEquals(1, publisher.publishDue());
+        assertEquals(List.of(List.of("1:a:INIT-START->RUNNING"),
+                List.of("2:a:INIT-START->RUNNING", "3:b:INIT-START->RUNNING"),
+                List.of("4:a:RUNNING-null->DONE")), sent);
+        assertEquals(4, publisher.getPublishedRecords());
+        assertEquals(3, publisher.getPublishedBatches());
+        assertEquals(0, publisher.getPendingRecords());
+    }
+
+    @Test
+    void testPublisherRetriesFailedBatch() {
+        InMemoryOutbox outbox = new InMemoryOutbox();
+        List<List<String>> attempts = new ArrayList<>();
+        OutboxPublisher publisher = new OutboxPublisher(outbox, batch -> {
+            attempts.add(describe(batch));
+            return attempts.size() == 1
+                    ? CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"))
+                    : CompletableFuture.completedFuture(null);
+        }, 10, Integer.MAX_VALUE, 0, 1000, System::currentTimeMillis);
+
+        appendThree(outbox);
+        assertEquals(-1, publisher.publishDue());
+        assertEquals(3, publisher.getPendingRecords());
+        assertEquals(3, publisher.publishDue());
+        assertEquals(attempts.get(0), attempts.get(1));
+        assertEquals(1, publisher.getFailedBatches());
+        assertEquals(0, publisher.getPendingRecords());
+    }
+
+    @Test
+    void testPublisherThreadDrainsOutbox() throws InterruptedException {
+        InMemoryOutbox outbox = new InMemoryOutbox();
+        AtomicLong received = new AtomicLong();
+        try (OutboxPublisher publisher = new OutboxPublisher(outbox, batch -> {
+            received.addAndGet(batch.size());
+            return CompletableFuture.completedFuture(null);
+        }, 100, 4096, 5)) {
+            publisher.start("outbox-test-publisher");
+            for (int i = 0; i < 1000; i++) {
+                outbox.append("m" + i, "INIT", "START", "RUNNING", i);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (received.get() < 1000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1000, received.get());
+            assertEquals(0, publisher.getPendingRecords());
+            assertTrue(publisher.getPublishedBatches() >= 10);
+        }
+    }
+}
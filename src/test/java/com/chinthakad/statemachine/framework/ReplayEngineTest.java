@@ -0,0 +1,189 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+class ReplayEngineTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, DONE, FAILED;
+        public boolean isTerminal() { return this == DONE || this == FAILED; }
+    }
+    enum SimpleEvent { START, FINISH, ERROR }
+
+    // A marker byte, a 16-byte id and an event ordinal whose high bit flags 16 more bytes
+    static final ReplayEngine.RecordLayout LAYOUT = new ReplayEngine.RecordLayout() {
+        @Override
+        public int recordSize(ByteBuffer buffer, int offset) {
+            int available = buffer.limit() - offset;
+            if (available < 18 || buffer.get(offset) != MARKER) {
+                return -1;
+            }
+            int size = (buffer.get(offset + 17) & 0x80) != 0 ? 34 : 18;
+            return size <= available ? size : -1;
+        }
+
+        @Override
+        public long idMostSigBits(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset + 1);
+        }
+
+        @Override
+        public long idLeastSigBits(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset + 9);
+        }
+
+        @Override
+        public int eventOrdinal(ByteBuffer buffer, int offset) {
+            return buffer.get(offset + 17) & 0x7F;
+        }
+    };
+    static final byte MARKER = (byte) 0xB0;
+
+    @TempDir
+    Path dir;
+
+    ReplayEngine<SimpleState, SimpleEvent> engine() {
+        StateMachineDefinition<SimpleState, SimpleEvent> definition =
+                new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                        .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                        .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                        .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.FAILED)
+                        .buildDefinition();
+        return new ReplayEngine<>(definition, SimpleEvent.class);
+    }
+
+    @Test
+    void testNdjsonReplayBuffersOutOfOrderEvents() throws IOException {
+        Path log = dir.resolve("events.ndjson");
+        Files.writeString(log, String.join("\n",
+                "{\"orderId\":\"a\",\"event\":\"START\"}",
+                "{\"orderId\":\"a\",\"event\":\"FINISH\"}",
+                "{\"orderId\":\"b\",\"event\":\"finish\"}", // early, applied once b starts
+                "{\"orderId\":\"b\", \"event\": \"START\"}",
+                "{\"orderId\":\"c\",\"event\":\"EXPLODE\"}",
+                "{\"orderId\":\"d\",\"event\":\"ERROR\"}",
+                "",
+                "not json") + "\n");
+
+        ReplayReport<SimpleState> report = engine().parallelism(3).replay(log, ReplayEngine.Format.NDJSON);
+
+        assertEquals(7, report.getEvents());
+        assertEquals(4, report.getApplied());
+        assertEquals(2, report.getInvalidEvents());
+        assertEquals(2, report.getInvalidTransitions());
+        assertEquals(3, report.getMachines());
+        assertEquals(2L, report.getFinalStates().get(SimpleState.DONE));
+        assertEquals(1L, report.getFinalStates().get(SimpleState.INIT));
+        assertEquals(1, report.getPendingRemaining());
+        assertEquals(1, report.getMachinesWithPending());
+    }
+
+    @Test
+    void testCustomFieldNames() throws IOException {
+        Path log = dir.resolve("custom.ndjson");
+        Files.writeString(log, "{\"type\":\"START\",\"key\":\"x\",\"note\":\"key\"}\n");
+
+        ReplayReport<SimpleState> report = engine().fields("key", "type").replay(log, ReplayEngine.Format.NDJSON);
+
+        assertEquals(1L, report.getFinalStates().get(SimpleState.RUNNING));
+    }
+
+    @Test
+    void testBinaryReplayAcrossRegionsMatchesSequentialRun() throws IOException {
+        int machines = 500;
+        ByteBuffer buffer = ByteBuffer.allocate(machines * 2 * 34 + 10);
+        UUID[] ids = new UUID[machines];
+        for (int i = 0; i < machines; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+        for (SimpleEvent event : new SimpleEvent[] {SimpleEvent.START, SimpleEvent.FINISH}) {
+            for (int i = 0; i < machines; i++) {
+                // Every third record carries 16 extra bytes
+                int flag = i % 3 == 0 ? 0x80 : 0;
+                buffer.put(MARKER).putLong(ids[i].getMostSignificantBits()).putLong(ids[i].getLeastSignificantBits());
+                buffer.put((byte) ((i % 5 == 0 && event == SimpleEvent.FINISH ? SimpleEvent.ERROR.ordinal() : event.ordinal()) | flag));
+                if (flag != 0) {
+                    buffer.putLong(-1).putLong(-1);
+                }
+            }
+        }
+        // A record cut off at the end of the log is ignored
+        buffer.put(MARKER).putInt(7);
+        Path log = dir.resolve("events.bin");
+        Files.write(log, Arrays.copyOf(buffer.array(), buffer.position()));
+
+        ReplayReport<SimpleState> sequential = engine().parallelism(1).binaryLayout(LAYOUT)
+                .replay(log, ReplayEngine.Format.BINARY);
+        ReplayReport<SimpleState> report = engine().parallelism(4).regionSize(1000).sliceSize(100).binaryLayout(LAYOUT)
+                .replay(log, ReplayEngine.Format.BINARY);
+
+        assertEquals(sequential.getFinalStates(), report.getFinalStates());
+        assertEquals(2L * machines, report.getEvents());
+        assertEquals(2L * machines, report.getApplied());
+        assertEquals(machines, report.getMachines());
+        assertEquals(400L, report.getFinalStates().get(SimpleState.DONE));
+        assertEquals(100L, report.getFinalStates().get(SimpleState.FAILED));
+    }
+
+    @Test
+    void testBinaryReplayNeedsALayout() throws IOException {
+        Path log = dir.resolve("empty.bin");
+        Files.write(log, new byte[0]);
+        assertThrows(IllegalStateException.class, () -> engine().replay(log, ReplayEngine.Format.BINARY));
+    }
+
+    @Test
+    void testNdjsonRegionsSplitOnLineBoundaries() throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            lines.append("{\"orderId\":\"order-").append(i).append("\",\"event\":\"START\"}\n");
+        }
+        Path log = dir.resolve("many.ndjson");
+        Files.write(log, lines.toString().getBytes(StandardCharsets.US_ASCII));
+
+        ReplayReport<SimpleState> report = engine().parallelism(2).regionSize(100)
+                .replay(log, ReplayEngine.Format.NDJSON);
+
+        assertEquals(200, report.getEvents());
+        assertEquals(0, report.getInvalidEvents());
+        assertEquals(200L, report.getFinalStates().get(SimpleState.RUNNING));
+    }
+
+    @Test
+    void testSlicedParsingMatchesSequentialRun() throws IOException {
+        Random random = new Random(42);
+        String[] events = {"START", "FINISH", "ERROR", "NOPE"};
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            lines.append("{\"orderId\":\"order-").append(random.nextInt(100))
+                    .append("\",\"event\":\"").append(events[random.nextInt(events.length)]).append("\"}\n");
+            if (i % 500 == 0) {
+                lines.append("garbage\n");
+            }
+        }
+        Path log = dir.resolve("mixed.ndjson");
+        Files.write(log, lines.toString().getBytes(StandardCharsets.US_ASCII));
+
+        ReplayReport<SimpleState> sequential = engine().parallelism(1).replay(log, ReplayEngine.Format.NDJSON);
+        ReplayReport<SimpleState> sliced = engine().parallelism(4).regionSize(10_000).sliceSize(300)
+                .replay(log, ReplayEngine.Format.NDJSON);
+
+        assertEquals(2004, sliced.getEvents());
+        assertEquals(sequential.getEvents(), sliced.getEvents());
+        assertEquals(sequential.getApplied(), sliced.getApplied());
+        assertEquals(sequential.getInvalidEvents(), sliced.getInvalidEvents());
+        assertEquals(sequential.getInvalidTransitions(), sliced.getInvalidTransitions());
+        assertEquals(sequential.getPendingRemaining(), sliced.getPendingRemaining());
+        assertEquals(sequential.getFinalStates(), sliced.getFinalStates());
+    }
+}
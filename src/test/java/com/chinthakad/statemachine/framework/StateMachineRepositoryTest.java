@@ -0,0 +1,264 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+class StateMachineRepositoryTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, DONE, FAILED;
+        public boolean isTerminal() { return this == DONE || this == FAILED; }
+    }
+    enum SimpleEvent { START, FINISH, ERROR }
+
+    StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository;
+
+    @BeforeEach
+    void setup() {
+        repository = new StateMachineRepository<>();
+    }
+
+    StateMachine<SimpleState, SimpleEvent> newMachine() {
+        return new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.FAILED)
+                .build();
+    }
+
+    @Test
+    void testListenersSeeTransitionsWithMachineId() {
+        List<String> seen = new ArrayList<>();
+        repository.addTransitionListener((id, from, event, to) -> seen.add(id + ":" + from + "-" + event + "->" + to));
+        repository.save("a", newMachine());
+        repository.get("a").trigger(SimpleEvent.START);
+        repository.get("a").trigger(SimpleEvent.START); // invalid, not reported
+        assertEquals(List.of("a:INIT-START->RUNNING"), seen);
+    }
+
+    @Test
+    void testFailingListenerDoesNotBreakTrigger() {
+        List<String> seen = new ArrayList<>();
+        repository.addTransitionListener((id, from, event, to) -> { throw new IllegalStateException("boom"); });
+        repository.addTransitionListener((id, from, event, to) -> seen.add(id));
+        repository.save("a", newMachine());
+        assertTrue(repository.get("a").trigger(SimpleEvent.START));
+        assertEquals(List.of("a"), seen);
+    }
+
+    @Test
+    void testStateIndexFollowsTransitions() {
+        repository.save("a", newMachine());
+        repository.save("b", newMachine());
+        repository.save("c", newMachine());
+        repository.get("a").trigger(SimpleEvent.START);
+        repository.get("b").trigger(SimpleEvent.START);
+        repository.get("b").trigger(SimpleEvent.FINISH);
+
+        assertEquals(1, repository.count(SimpleState.INIT));
+        assertEquals(1, repository.count(SimpleState.RUNNING));
+        assertEquals(1, repository.count(SimpleState.DONE));
+        assertEquals(List.of("a"), idsIn(SimpleState.RUNNING));
+        assertEquals(List.of("c"), idsIn(SimpleState.INIT));
+
+        repository.remove("b");
+        assertEquals(0, repository.count(SimpleState.DONE));
+        assertEquals(Long.valueOf(0), repository.countByState().get(SimpleState.DONE));
+    }
+
+    @Test
+    void testStatePaging() {
+        for (int i = 0; i < 50; i++) {
+            repository.save("m" + i, newMachine());
+            if (i % 2 == 0) {
+                repository.get("m" + i).trigger(SimpleEvent.START);
+            }
+        }
+        List<String> all = new ArrayList<>();
+        ExportCursor cursor = ExportCursor.START;
+        while (cursor != null) {
+            cursor = repository.exportState(SimpleState.INIT, cursor, 10, (id, sm) -> all.add(id));
+        }
+        assertEquals(25, all.size());
+        assertEquals(25, new java.util.HashSet<>(all).size());
+        assertTrue(all.stream().allMatch(id -> Integer.parseInt(id.substring(1)) % 2 == 1));
+        assertEquals(all.stream().sorted().toList(), all);
+    }
+
+    List<String> idsIn(SimpleState state) {
+        List<String> ids = new ArrayList<>();
+        assertNull(repository.exportState(state, ExportCursor.START, 10, (id, sm) -> ids.add(id)));
+        return ids;
+    }
+
+    @Test
+    void testReplacingMachineMovesIndexEntry() {
+        repository.save("a", newMachine());
+        repository.get("a").trigger(SimpleEvent.START);
+        repository.save("a", newMachine());
+        assertEquals(0, repository.count(SimpleState.RUNNING));
+        assertEquals(1, repository.count(SimpleState.INIT));
+        assertEquals(1, repository.size());
+    }
+
+    @Test
+    void testPendingCountFollowsQueues() {
+        repository.save("a", newMachine());
+        repository.save("b", newMachine());
+        repository.addPendingEvent("a", SimpleEvent.FINISH);
+        repository.addPendingEvent("a", SimpleEvent.START);
+        repository.addPendingEvent("b", SimpleEvent.FINISH);
+        assertEquals(3, repository.pendingCount());
+
+        // Retrying removes START through the queue's iterator
+        StateMachine<SimpleState, SimpleEvent> a = repository.get("a");
+        a.processPendingEvents("a", repository.getPendingEvents("a"), e -> e, () -> repository.remove("a"));
+        assertEquals(SimpleState.DONE, a.getCurrentState());
+        assertEquals(1, repository.pendingCount());
+
+        repository.clearPendingEvents("b");
+        assertEquals(0, repository.pendingCount());
+    }
+
+    @Test
+    void testPendingEventsForRemovedMachineAreDropped() {
+        repository.save("a", newMachine());
+        repository.remove("a");
+        assertFalse(repository.addPendingEvent("a", SimpleEvent.START));
+        assertFalse(repository.addPendingEvent("missing", SimpleEvent.START));
+        assertEquals(0, repository.pendingCount());
+        assertTrue(repository.getPendingEvents("a").isEmpty());
+        assertNull(repository.withMachine("a", sm -> sm.trigger(SimpleEvent.START)));
+    }
+
+    @Test
+    void testRemovedMachinesAreRetainedUpToTheirLimit() {
+        repository.save("a", newMachine());
+        repository.remove("a");
+        assertNull(repository.findRemoved("a"));
+
+        repository.setRemovedRetention(2);
+        for (String id : List.of("b", "c", "d")) {
+            StateMachine<SimpleState, SimpleEvent> sm = newMachine();
+            repository.save(id, sm);
+            sm.trigger(SimpleEvent.START);
+            sm.trigger(SimpleEvent.FINISH);
+            repository.remove(id);
+        }
+        assertNull(repository.findRemoved("b"));
+        assertEquals(SimpleState.DONE, repository.findRemoved("c").getCurrentState());
+        assertEquals(SimpleState.DONE, repository.findRemoved("d").getCurrentState());
+        assertNull(repository.get("d"));
+
+        repository.setRemovedRetention(1);
+        assertNull(repository.findRemoved("c"));
+        assertNotNull(repository.findRemoved("d"));
+    }
+
+    @Test
+    void testWithMachineRunsUnderTheMachinesLock() throws Exception {
+        repository.save("a", newMachine());
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> repository.withMachine("a", sm -> {
+            inside.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return repository.addPendingEvent("a", SimpleEvent.FINISH);
+        }));
+        holder.start();
+        inside.await();
+        Thread remover = new Thread(() -> repository.remove("a"));
+        remover.start();
+        Thread.sleep(50);
+        // Removal waits for the action, then drops what it buffered
+        assertTrue(repository.exists("a"));
+        release.countDown();
+        holder.join();
+        remover.join();
+        assertFalse(repository.exists("a"));
+        assertEquals(0, repository.pendingCount());
+    }
+
+    @Test
+    void testTimeoutToTerminalStateRunsTheCleanup() {
+        AtomicLong now = new AtomicLong();
+        TimingWheel wheel = new TimingWheel(10, 4, 2, now::get);
+        List<String> cleaned = new ArrayList<>();
+        repository.setTerminalTimeoutHandler(id -> {
+            cleaned.add(id);
+            repository.remove(id);
+        });
+        for (String id : List.of("a", "b")) {
+            repository.save(id, new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                    .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                    .transition(SimpleState.INIT, SimpleEvent.ERROR, SimpleState.FAILED)
+                    .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE)
+                    .timeout(SimpleState.INIT, Duration.ofMillis(50), SimpleEvent.ERROR)
+                    .timers(wheel)
+                    .build());
+        }
+        repository.get("b").trigger(SimpleEvent.START);
+        repository.addPendingEvent("a", SimpleEvent.FINISH);
+
+        now.set(50);
+        wheel.advance();
+
+        assertEquals(List.of("a"), cleaned);
+        assertFalse(repository.exists("a"));
+        assertEquals(0, repository.pendingCount());
+        assertEquals(0, repository.count(SimpleState.FAILED));
+        assertEquals(SimpleState.RUNNING, repository.get("b").getCurrentState());
+    }
+
+    @Test
+    void testExportVisitsEveryMachineOnceAcrossPages() {
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            repository.save("m" + i, newMachine());
+            expected.add("m" + i);
+        }
+        List<String> exported = new ArrayList<>();
+        ExportCursor cursor = ExportCursor.START;
+        int pages = 0;
+        while (cursor != null) {
+            // Round-trip the token the way a client resuming the export would
+            cursor = repository.export(ExportCursor.parse(cursor.toToken()), 37, (id, sm) -> exported.add(id));
+            pages++;
+            if (pages == 5) {
+                repository.remove("m999");
+                expected.remove("m999");
+            }
+        }
+        assertTrue(pages >= 1000 / 37);
+        assertEquals(exported.size(), new HashSet<>(exported).size(), "no machine exported twice");
+        assertTrue(new HashSet<>(exported).containsAll(expected));
+    }
+
+    @Test
+    void testExportReportsCurrentState() {
+        repository.save("a", newMachine());
+        repository.get("a").trigger(SimpleEvent.START);
+        List<SimpleState> states = new ArrayList<>();
+        assertNull(repository.export(ExportCursor.START, 10, (id, sm) -> states.add(sm.getCurrentState())));
+        assertEquals(List.of(SimpleState.RUNNING), states);
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertEquals(ExportCursor.START, ExportCursor.parse(null));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.parse("!!"));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.parse("eA"));
+    }
+}
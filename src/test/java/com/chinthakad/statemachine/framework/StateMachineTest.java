@@ -1,10 +1,17 @@
 package com.chinthakad.statemachine.framework;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -81,4 +88,129 @@ class StateMachineTest {
         assertEquals(SimpleState.DONE, lastState.get());
         assertTrue(pending.isEmpty());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testProcessPendingEventsDiscardsUnresolvableMessages() {
+        Queue<String> pending = new LinkedList<>();
+        pending.add("bogus");
+        pending.add("start");
+        EventCodec<SimpleEvent> codec = EventCodec.of(SimpleEvent.class);
+        sm.processPendingEvents("id", pending, codec::decode, () -> {});
+        assertEquals(SimpleState.RUNNING, sm.getCurrentState());
+        assertTrue(pending.isEmpty());
+    }
+
+    @Test
+    void testMachinesShareCompiledDefinition() {
+        StateMachineDefinition<SimpleState, SimpleEvent> definition = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .buildDefinition();
+        StateMachine<SimpleState, SimpleEvent> first = definition.newMachine();
+        StateMachine<SimpleState, SimpleEvent> second = definition.newMachine();
+        assertTrue(definition.isCompiled());
+        assertSame(first.getDefinition(), second.getDefinition());
+        assertTrue(first.trigger(SimpleEvent.START));
+        assertEquals(SimpleState.RUNNING, first.getCurrentState());
+        assertEquals(SimpleState.INIT, second.getCurrentState());
+        assertThrows(IllegalStateException.class, () -> definition.addTransition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE));
+    }
+
+    @Test
+    void testDefinitionRejectsTransitionsFromTerminalState() {
+        StateMachineBuilder<SimpleState, SimpleEvent> builder = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.DONE, SimpleEvent.START, SimpleState.RUNNING);
+        assertThrows(IllegalStateException.class, builder::buildDefinition);
+    }
+
+    @Test
+    void testDefinitionRejectsTimeoutWithoutTransition() {
+        StateMachineBuilder<SimpleState, SimpleEvent> builder = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .timeout(SimpleState.INIT, java.time.Duration.ofSeconds(1), SimpleEvent.ERROR);
+        assertThrows(IllegalStateException.class, builder::buildDefinition);
+    }
+
+    @Test
+    void testVersionCountsStateChanges() {
+        assertEquals(0, sm.getStateVersion());
+        sm.trigger(SimpleEvent.START);
+        sm.trigger(SimpleEvent.START); // invalid, version unchanged
+        StateSnapshot<SimpleState> snapshot = sm.readState();
+        assertEquals(SimpleState.RUNNING, snapshot.getState());
+        assertEquals(1, snapshot.getVersion());
+    }
+
+    @Test
+    void testTriggerIfVersionRejectsStaleVersion() {
+        long seen = sm.readState().getVersion();
+        assertTrue(sm.trigger(SimpleEvent.START));
+        assertFalse(sm.triggerIfVersion(seen, SimpleEvent.FINISH));
+        assertEquals(SimpleState.RUNNING, sm.getCurrentState());
+        assertTrue(sm.triggerIfVersion(sm.getStateVersion(), SimpleEvent.FINISH));
+        assertEquals(SimpleState.DONE, sm.getCurrentState());
+    }
+
+    @Test
+    void testSnapshotsPairStateWithItsVersion() throws Exception {
+        // Toggles between INIT (even versions) and RUNNING (odd versions)
+        StateMachine<SimpleState, SimpleEvent> toggle = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.INIT)
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> mismatch = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                StateSnapshot<SimpleState> snapshot = toggle.readState();
+                SimpleState expected = snapshot.getVersion() % 2 == 0 ? SimpleState.INIT : SimpleState.RUNNING;
+                if (snapshot.getState() != expected) {
+                    mismatch.set(snapshot.toString());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 100_000; i++) {
+            toggle.trigger(i % 2 == 0 ? SimpleEvent.START : SimpleEvent.ERROR);
+        }
+        running.set(false);
+        reader.join();
+        assertNull(mismatch.get());
+        assertEquals(100_000, toggle.getStateVersion());
+    }
+
+    @Test
+    void testBlockingCallbacksDoNotPinVirtualThreads(@TempDir Path dir) throws Exception {
+        StateMachine<SimpleState, SimpleEvent> toggle = new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.ERROR, SimpleState.INIT)
+                .onTransition(SimpleEvent.START, (from, to) -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .onInvalidTransition(msg -> { })
+                .build();
+        Path file = dir.resolve("pinning.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+            recording.start();
+            // Sleeping in the callback and waiting for the lock both park while another thread holds it
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                SimpleEvent event = i % 2 == 0 ? SimpleEvent.START : SimpleEvent.ERROR;
+                threads.add(Thread.ofVirtual().start(() -> toggle.trigger(event)));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        assertTrue(toggle.getStateVersion() > 0);
+        assertEquals(0, RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .count());
+    }
+}
@@ -0,0 +1,104 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TimingWheelTest {
+    AtomicLong now = new AtomicLong();
+    List<Long> fired = new ArrayList<>();
+    TimingWheel wheel;
+
+    @BeforeEach
+    void setup() {
+        // 4 slots per level, 3 levels: horizon of 64 ticks
+        wheel = new TimingWheel(10, 2, 3, now::get);
+    }
+
+    long scheduleAt(long delayMillis) {
+        return wheel.schedule(delayMillis, handle -> fired.add(now.get()));
+    }
+
+    void advanceTo(long millis) {
+        for (long t = now.get() + 10; t <= millis; t += 10) {
+            now.set(t);
+            wheel.advance();
+        }
+    }
+
+    @Test
+    void testTimersFireAtTheirTickAcrossLevels() {
+        for (long delay : new long[] {10, 30, 40, 170, 630}) {
+            scheduleAt(delay);
+        }
+        advanceTo(700);
+        assertEquals(List.of(10L, 30L, 40L, 170L, 630L), fired);
+        assertEquals(0, wheel.pendingCount());
+    }
+
+    @Test
+    void testTimersBeyondHorizonFireOnTime() {
+        scheduleAt(2_000);
+        advanceTo(3_000);
+        assertEquals(List.of(2_000L), fired);
+    }
+
+    @Test
+    void testCancelledTimerDoesNotFire() {
+        long handle = scheduleAt(200);
+        scheduleAt(300);
+        assertTrue(wheel.cancel(handle));
+        assertFalse(wheel.cancel(handle));
+        advanceTo(400);
+        assertEquals(List.of(300L), fired);
+    }
+
+    @Test
+    void testStaleHandleAfterSlotReuseIsIgnored() {
+        long first = scheduleAt(10);
+        advanceTo(10);
+        long second = scheduleAt(10);
+        assertNotEquals(first, second);
+        assertFalse(wheel.cancel(first));
+        assertEquals(1, wheel.pendingCount());
+    }
+
+    @Test
+    void testStateTimeoutTriggersEvent() {
+        StateMachine<StateMachineTest.SimpleState, StateMachineTest.SimpleEvent> sm =
+                new StateMachineBuilder<StateMachineTest.SimpleState, StateMachineTest.SimpleEvent>(StateMachineTest.SimpleState.INIT)
+                        .transition(StateMachineTest.SimpleState.INIT, StateMachineTest.SimpleEvent.START, StateMachineTest.SimpleState.RUNNING)
+                        .transition(StateMachineTest.SimpleState.RUNNING, StateMachineTest.SimpleEvent.ERROR, StateMachineTest.SimpleState.FAILED)
+                        .timeout(StateMachineTest.SimpleState.RUNNING, java.time.Duration.ofMillis(50), StateMachineTest.SimpleEvent.ERROR)
+                        .timers(wheel)
+                        .build();
+        assertEquals(0, wheel.pendingCount());
+        sm.trigger(StateMachineTest.SimpleEvent.START);
+        assertEquals(1, wheel.pendingCount());
+        advanceTo(40);
+        assertEquals(StateMachineTest.SimpleState.RUNNING, sm.getCurrentState());
+        advanceTo(50);
+        assertEquals(StateMachineTest.SimpleState.FAILED, sm.getCurrentState());
+        assertEquals(0, wheel.pendingCount());
+    }
+
+    @Test
+    void testLeavingStateCancelsTimeout() {
+        StateMachine<StateMachineTest.SimpleState, StateMachineTest.SimpleEvent> sm =
+                new StateMachineBuilder<StateMachineTest.SimpleState, StateMachineTest.SimpleEvent>(StateMachineTest.SimpleState.INIT)
+                        .transition(StateMachineTest.SimpleState.INIT, StateMachineTest.SimpleEvent.START, StateMachineTest.SimpleState.RUNNING)
+                        .transition(StateMachineTest.SimpleState.INIT, StateMachineTest.SimpleEvent.ERROR, StateMachineTest.SimpleState.FAILED)
+                        .timeout(StateMachineTest.SimpleState.INIT, java.time.Duration.ofMillis(50), StateMachineTest.SimpleEvent.ERROR)
+                        .timers(wheel)
+                        .build();
+        assertEquals(1, wheel.pendingCount());
+        sm.trigger(StateMachineTest.SimpleEvent.START);
+        assertEquals(0, wheel.pendingCount());
+        advanceTo(100);
+        assertEquals(StateMachineTest.SimpleState.RUNNING, sm.getCurrentState());
+    }
+}
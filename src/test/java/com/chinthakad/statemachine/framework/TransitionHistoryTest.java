@@ -0,0 +1,141 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class TransitionHistoryTest {
+    enum SimpleState implements TerminalState {
+        INIT, RUNNING, PAUSED, DONE;
+        public boolean isTerminal() { return this == DONE; }
+    }
+    enum SimpleEvent { START, PAUSE, RESUME, FINISH }
+
+    StateMachineBuilder<SimpleState, SimpleEvent> builder() {
+        return new StateMachineBuilder<SimpleState, SimpleEvent>(SimpleState.INIT)
+                .transition(SimpleState.INIT, SimpleEvent.START, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.PAUSE, SimpleState.PAUSED)
+                .transition(SimpleState.PAUSED, SimpleEvent.RESUME, SimpleState.RUNNING)
+                .transition(SimpleState.RUNNING, SimpleEvent.FINISH, SimpleState.DONE);
+    }
+
+    static List<String> describe(List<TransitionRecord<SimpleState, SimpleEvent>> history) {
+        List<String> described = new ArrayList<>();
+        for (TransitionRecord<SimpleState, SimpleEvent> record : history) {
+            described.add(record.getFrom() + "-" + record.getEvent() + "->" + record.getTo());
+        }
+        return described;
+    }
+
+    @Test
+    void testNoHistoryByDefault() {
+        StateMachine<SimpleState, SimpleEvent> sm = builder().build();
+        sm.trigger(SimpleEvent.START);
+        assertTrue(sm.getHistory().isEmpty());
+    }
+
+    @Test
+    void testKeepsLastTransitionsOldestFirst() {
+        StateMachine<SimpleState, SimpleEvent> sm = builder().history(3).build();
+        assertTrue(sm.getHistory().isEmpty());
+        long before = System.currentTimeMillis();
+        sm.trigger(SimpleEvent.START);
+        sm.trigger(SimpleEvent.PAUSE);
+        assertEquals(List.of("INIT-START->RUNNING", "RUNNING-PAUSE->PAUSED"), describe(sm.getHistory()));
+
+        sm.trigger(SimpleEvent.RESUME);
+        sm.trigger(SimpleEvent.FINISH);
+        List<TransitionRecord<SimpleState, SimpleEvent>> history = sm.getHistory();
+        assertEquals(List.of("RUNNING-PAUSE->PAUSED", "PAUSED-RESUME->RUNNING", "RUNNING-FINISH->DONE"), describe(history));
+        for (TransitionRecord<SimpleState, SimpleEvent> record : history) {
+            assertTrue(record.getTimestamp() >= sm.getCreatedAt());
+            assertTrue(record.getTimestamp() <= System.currentTimeMillis());
+        }
+        assertTrue(history.get(0).getTimestamp() >= before - 1);
+    }
+
+    @Test
+    void testRejectedEventsAreNotRecorded() {
+        StateMachine<SimpleState, SimpleEvent> sm = builder().history(4).build();
+        assertFalse(sm.trigger(SimpleEvent.FINISH));
+        assertTrue(sm.getHistory().isEmpty());
+    }
+
+    @Test
+    void testMigrationIsRecordedWithoutEvent() {
+        DefinitionRegistry<SimpleState, SimpleEvent> registry = new DefinitionRegistry<>();
+        registry.publish("a", builder().history(4).buildDefinition());
+        StateMachine<SimpleState, SimpleEvent> sm = registry.newMachine("a");
+        sm.trigger(SimpleEvent.START);
+        registry.publish("a", builder().history(4).buildDefinition(), s -> s == SimpleState.RUNNING ? SimpleState.PAUSED : null);
+
+        assertTrue(sm.trigger(SimpleEvent.RESUME));
+
+        List<TransitionRecord<SimpleState, SimpleEvent>> history = sm.getHistory();
+        assertEquals(List.of("INIT-START->RUNNING", "RUNNING-null->PAUSED", "PAUSED-RESUME->RUNNING"), describe(history));
+        assertNull(history.get(1).getEvent());
+    }
+
+    @Test
+    void testArenaSlotsAreReusedAfterRemoval() {
+        HistoryArena arena = new HistoryArena(2);
+        StateMachineDefinition<SimpleState, SimpleEvent> definition = builder().history(arena).buildDefinition();
+        StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+        repository.save("a", new StateMachine<>(definition));
+        repository.save("b", new StateMachine<>(definition));
+        assertEquals(0, arena.getAllocatedSlots()); // only allocated on the first transition
+
+        repository.get("a").trigger(SimpleEvent.START);
+        repository.get("a").trigger(SimpleEvent.PAUSE);
+        repository.get("a").trigger(SimpleEvent.RESUME);
+        repository.get("b").trigger(SimpleEvent.START);
+        assertEquals(2, arena.getAllocatedSlots());
+        assertEquals(List.of("RUNNING-PAUSE->PAUSED", "PAUSED-RESUME->RUNNING"), describe(repository.get("a").getHistory()));
+        assertEquals(List.of("INIT-START->RUNNING"), describe(repository.get("b").getHistory()));
+
+        repository.remove("a");
+        assertEquals(1, arena.getAllocatedSlots());
+        repository.save("c", new StateMachine<>(definition));
+        repository.get("c").trigger(SimpleEvent.START);
+        assertEquals(2, arena.getAllocatedSlots());
+        // The reused slot starts empty
+        assertEquals(List.of("INIT-START->RUNNING"), describe(repository.get("c").getHistory()));
+        assertTrue(arena.getReservedBytes() > 0);
+    }
+
+    @Test
+    void testRemovedMachineKeepsItsHistoryWithoutASlot() {
+        HistoryArena arena = new HistoryArena(4);
+        StateMachineDefinition<SimpleState, SimpleEvent> definition = builder().history(arena).buildDefinition();
+        StateMachineRepository<SimpleState, SimpleEvent, SimpleEvent> repository = new StateMachineRepository<>();
+        StateMachine<SimpleState, SimpleEvent> held = new StateMachine<>(definition);
+        repository.save("a", held);
+        held.trigger(SimpleEvent.START);
+        assertEquals(1, arena.getAllocatedSlots());
+
+        repository.remove("a");
+        assertEquals(0, arena.getAllocatedSlots());
+        assertEquals(List.of("INIT-START->RUNNING"), describe(held.getHistory()));
+        // A caller still holding the removed machine keeps triggering it
+        held.trigger(SimpleEvent.PAUSE);
+        assertEquals(0, arena.getAllocatedSlots());
+        assertEquals(List.of("INIT-START->RUNNING", "RUNNING-PAUSE->PAUSED"), describe(held.getHistory()));
+
+        // Machines never saved do not take slots either
+        StateMachine<SimpleState, SimpleEvent> unsaved = new StateMachine<>(definition);
+        unsaved.trigger(SimpleEvent.START);
+        assertEquals(0, arena.getAllocatedSlots());
+        assertEquals(List.of("INIT-START->RUNNING"), describe(unsaved.getHistory()));
+    }
+
+    @Test
+    void testHistoryNeedsEnumStatesAndEvents() {
+        StateMachineBuilder<String, String> builder = new StateMachineBuilder<String, String>("init")
+                .transition("init", "start", "running")
+                .history(4);
+        assertThrows(IllegalStateException.class, builder::buildDefinition);
+        assertThrows(IllegalArgumentException.class, () -> builder().history(0));
+    }
+}
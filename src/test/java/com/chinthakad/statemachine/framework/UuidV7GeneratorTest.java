@@ -0,0 +1,63 @@
+package com.chinthakad.statemachine.framework;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void testVersionVariantAndTimestamp() {
+        UuidV7Generator generator = new UuidV7Generator(() -> 1_700_000_000_000L);
+        UUID id = generator.nextId();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        assertEquals(1_700_000_000_000L, UuidV7Generator.timestamp(id));
+    }
+
+    @Test
+    void testIdsIncreaseWithinOneMillisecond() {
+        UuidV7Generator generator = new UuidV7Generator(() -> 1_700_000_000_000L);
+        UUID previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            UUID next = generator.nextId();
+            assertTrue(Long.compareUnsigned(previous.getMostSignificantBits(), next.getMostSignificantBits()) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testIdsOfAllThreadsShareOneSequence() throws Exception {
+        UuidV7Generator generator = new UuidV7Generator(() -> 1_700_000_000_000L);
+        Set<Long> prefixes = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    prefixes.add(generator.nextId().getMostSignificantBits());
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Every id took its own step, carrying into later milliseconds once the sequence ran out
+        assertEquals(40_000, prefixes.size());
+        UUID next = generator.nextId();
+        for (long prefix : prefixes) {
+            assertTrue(Long.compareUnsigned(prefix, next.getMostSignificantBits()) < 0);
+        }
+    }
+
+    @Test
+    void testGeneratorsAreSelectedByName() {
+        assertEquals(7, IdGenerator.named("UUIDv7").nextId().version());
+        assertEquals(4, IdGenerator.named("random").nextId().version());
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.named("uuidv8"));
+    }
+}
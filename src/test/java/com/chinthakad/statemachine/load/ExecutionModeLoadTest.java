@@ -0,0 +1,108 @@
+package com.chinthakad.statemachine.load;
+
+import com.chinthakad.statemachine.framework.StateMachine;
+import com.chinthakad.statemachine.framework.StateMachineBuilder;
+import com.chinthakad.statemachine.framework.StateMachineDefinition;
+import com.chinthakad.statemachine.framework.StateMachineRepository;
+import com.chinthakad.statemachine.framework.TerminalState;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Virtual threads against a platform worker pool for I/O-bound work: each request waits on a
+ * simulated backend call, as a dedup check waits on the database, then triggers a machine whose
+ * callback blocks briefly. The pool is sized like Quarkus' default worker pool, so once the
+ * offered rate exceeds threads / latency its requests queue, while virtual threads keep up
+ * without any sizing. Only runs with {@code mvn test -Pload}; tune with
+ * {@code -Dload.execution.rate}, {@code -Dload.backend.latency.ms} and {@code -Dload.callback.latency.ms}.
+ */
+@EnabledIfSystemProperty(named = "load", matches = "true")
+class ExecutionModeLoadTest {
+    static final double RATE = Double.parseDouble(System.getProperty("load.execution.rate", "20000"));
+    static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration.seconds", 20));
+    static final long BACKEND_LATENCY_MILLIS = Long.getLong("load.backend.latency.ms", 20);
+    static final long CALLBACK_LATENCY_MILLIS = Long.getLong("load.callback.latency.ms", 1);
+    static final int MACHINES = Integer.getInteger("load.orders", 5000);
+    static final int WORKER_THREADS = Math.max(200, 8 * Runtime.getRuntime().availableProcessors());
+
+    enum State implements TerminalState {
+        IDLE, BUSY;
+        public boolean isTerminal() { return false; }
+    }
+    enum Event { START, STOP }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testVirtualThreadsAgainstWorkerPool() throws Exception {
+        StateMachineRepository<State, Event, Event> repository = repository();
+        LoadResult platform = run("platform pool", repository, Executors.newFixedThreadPool(WORKER_THREADS));
+
+        Path file = dir.resolve("pinning.jfr");
+        LoadResult virtual;
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            virtual = run("virtual threads", repository, Executors.newVirtualThreadPerTaskExecutor());
+            recording.stop();
+            recording.dump(file);
+        }
+        long pinned = RecordingFile.readAllEvents(file).stream()
+                .filter(e -> e.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .count();
+
+        System.out.printf("%d worker threads, %d ms backend latency, %d ms callback latency%n",
+                WORKER_THREADS, BACKEND_LATENCY_MILLIS, CALLBACK_LATENCY_MILLIS);
+        platform.report(System.out);
+        virtual.report(System.out);
+        System.out.printf("virtual thread pinned events: %d%n", pinned);
+        assertEquals(0, virtual.getErrors());
+        assertEquals(0, pinned);
+    }
+
+    private static LoadResult run(String name, StateMachineRepository<State, Event, Event> repository,
+                                  ExecutorService executor) throws InterruptedException {
+        return new LoadGenerator(name, TrafficShape.constant(RATE), DURATION, executor)
+                .run((seq, intended) -> {
+                    Thread.sleep(BACKEND_LATENCY_MILLIS);
+                    StateMachine<State, Event> sm = repository.get("m" + ThreadLocalRandom.current().nextInt(MACHINES));
+                    // Racing requests may pick the wrong event; the transition then just fails
+                    sm.trigger(sm.getCurrentState() == State.IDLE ? Event.START : Event.STOP);
+                });
+    }
+
+    private static StateMachineRepository<State, Event, Event> repository() {
+        StateMachineDefinition<State, Event> definition = new StateMachineBuilder<State, Event>(State.IDLE)
+                .transition(State.IDLE, Event.START, State.BUSY)
+                .transition(State.BUSY, Event.STOP, State.IDLE)
+                // Blocks under the machine's lock, as a synchronous publish would
+                .onTransition(Event.START, (from, to) -> sleep(CALLBACK_LATENCY_MILLIS))
+                .onInvalidTransition(msg -> { })
+                .buildDefinition();
+        StateMachineRepository<State, Event, Event> repository = new StateMachineRepository<>();
+        for (int i = 0; i < MACHINES; i++) {
+            repository.save("m" + i, new StateMachine<>(definition));
+        }
+        return repository;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
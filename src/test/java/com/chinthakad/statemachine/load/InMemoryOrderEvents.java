@@ -0,0 +1,27 @@
+package com.chinthakad.statemachine.load;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the Kafka connectors of the order-events and order-state-changes channels with
+ * in-process ones.
+ */
+public class InMemoryOrderEvents implements QuarkusTestResourceLifecycleManager {
+
+    @Override
+    public Map<String, String> start() {
+        Map<String, String> config = new HashMap<>(InMemoryConnector.switchIncomingChannelsToInMemory("order-events"));
+        config.putAll(InMemoryConnector.switchOutgoingChannelsToInMemory("order-state-changes"));
+        config.put("quarkus.kafka.devservices.enabled", "false");
+        return config;
+    }
+
+    @Override
+    public void stop() {
+        InMemoryConnector.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package com.chinthakad.statemachine.load;
+
+import org.HdrHistogram.Recorder;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator.
+ * <p>
+ * Requests are issued on a schedule derived from the {@link TrafficShape} regardless of how
+ * earlier requests are doing, and latency is measured from each request's intended start time
+ * rather than from when it actually got sent. A stall therefore shows up as latency for every
+ * request scheduled during it, instead of silently lowering the offered load (coordinated
+ * omission). By default every request runs on its own virtual thread.
+ */
+public class LoadGenerator {
+    private final String name;
+    private final TrafficShape shape;
+    private final Duration duration;
+    private final ExecutorService executor;
+
+    public LoadGenerator(String name, TrafficShape shape, Duration duration) {
+        this(name, shape, duration, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @param executor Runs the requests; a single thread keeps them in schedule order
+     */
+    public LoadGenerator(String name, TrafficShape shape, Duration duration, ExecutorService executor) {
+        this.name = name;
+        this.shape = shape;
+        this.duration = duration;
+        this.executor = executor;
+    }
+
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Issue request {@code sequence}, blocking until it completes.
+         * @param intendedStartNanos {@link System#nanoTime()} at which the request was due
+         */
+        void run(long sequence, long intendedStartNanos) throws Exception;
+    }
+
+    public LoadResult run(Operation operation) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        AtomicLong errors = new AtomicLong();
+        long durationNanos = duration.toNanos();
+        long start = System.nanoTime();
+        long intended = start;
+        long sequence = 0;
+        while (intended - start < durationNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intendedStart = intended;
+            long seq = sequence++;
+            executor.execute(() -> {
+                try {
+                    operation.run(seq, intendedStart);
+                    recorder.recordValue(System.nanoTime() - intendedStart);
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+            });
+            double rate = shape.ratePerSecond(intended - start);
+            intended += (long) (TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 0.001));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+        return new LoadResult(name, recorder.getIntervalHistogram(), sequence, errors.get(), elapsed);
+    }
+}
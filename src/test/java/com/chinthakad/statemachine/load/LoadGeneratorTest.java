@@ -0,0 +1,71 @@
+package com.chinthakad.statemachine.load;
+
+import com.chinthakad.statemachine.example.OrderEventMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadGeneratorTest {
+
+    @Test
+    void testLatencyIncludesQueueingBehindSlowRequests() throws Exception {
+        // 1000/s offered to a single 5 ms server: each request waits longer than the last
+        LoadResult result = new LoadGenerator("slow", TrafficShape.constant(1000), Duration.ofMillis(100),
+                Executors.newSingleThreadExecutor())
+                .run((seq, intended) -> Thread.sleep(5));
+        assertEquals(100, result.getSent(), 2);
+        assertTrue(result.percentileNanos(99) > TimeUnit.MILLISECONDS.toNanos(200),
+                "p99 " + result.percentileNanos(99));
+    }
+
+    @Test
+    void testErrorsAreCounted() throws Exception {
+        LoadResult result = new LoadGenerator("failing", TrafficShape.constant(1000), Duration.ofMillis(20))
+                .run((seq, intended) -> {
+                    if (seq % 2 == 0) {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+        assertEquals(result.getSent(), result.getErrors() + result.getLatencies().getTotalCount());
+        assertTrue(result.getErrors() > 0);
+    }
+
+    @Test
+    void testRampAndSpikeShapes() {
+        TrafficShape ramp = TrafficShape.ramp(100, 300, Duration.ofSeconds(2));
+        assertEquals(200, ramp.ratePerSecond(TimeUnit.SECONDS.toNanos(1)), 1e-9);
+        assertEquals(300, ramp.ratePerSecond(TimeUnit.SECONDS.toNanos(5)), 1e-9);
+        TrafficShape spike = TrafficShape.spike(10, 100, Duration.ofSeconds(1), Duration.ofSeconds(1));
+        assertEquals(100, spike.ratePerSecond(TimeUnit.MILLISECONDS.toNanos(1500)), 1e-9);
+        assertEquals(10, spike.ratePerSecond(TimeUnit.MILLISECONDS.toNanos(2500)), 1e-9);
+    }
+
+    @Test
+    void testLifecyclesKeepPerOrderOrderAndInjectDuplicates() {
+        List<String> ids = List.of("a", "b", "c", "d", "e", "f", "g", "h");
+        List<OrderEventMessage> log = new OrderLifecycles(7).cancelRate(0).duplicateRate(1).interleave(ids);
+        Map<String, Integer> perOrder = new HashMap<>();
+        Set<String> eventIds = new HashSet<>();
+        int duplicates = 0;
+        for (OrderEventMessage message : log) {
+            perOrder.merge(message.orderId, 1, Integer::sum);
+            if (!eventIds.add(message.eventId)) {
+                duplicates++;
+            }
+        }
+        assertEquals(ids.size(), duplicates);
+        perOrder.values().forEach(count -> assertEquals(4, count));
+
+        List<OrderEventMessage> inOrder = new OrderLifecycles(7).cancelRate(0).lifecycle("x");
+        assertEquals(List.of("PAY", "SHIP", "DELIVER"), inOrder.stream().map(m -> m.event).toList());
+    }
+}
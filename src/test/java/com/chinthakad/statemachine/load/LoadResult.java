@@ -0,0 +1,66 @@
+package com.chinthakad.statemachine.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution and counts of one load run. Latencies are in nanoseconds.
+ */
+public class LoadResult {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final String name;
+    private final Histogram latencies;
+    private final long sent;
+    private final long errors;
+    private final long elapsedNanos;
+
+    public LoadResult(String name, Histogram latencies, long sent, long errors, long elapsedNanos) {
+        this.name = name;
+        this.latencies = latencies;
+        this.sent = sent;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getThroughput() {
+        return latencies.getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public long percentileNanos(double percentile) {
+        return latencies.getValueAtPercentile(percentile);
+    }
+
+    public void report(PrintStream out) {
+        out.printf("%-16s sent=%d ok=%d errors=%d throughput=%.1f/s%n",
+                name, sent, latencies.getTotalCount(), errors, getThroughput());
+        StringBuilder line = new StringBuilder("                ");
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(" p%s=%.3fms", trim(percentile), percentileNanos(percentile) / 1e6));
+        }
+        line.append(String.format(" max=%.3fms", latencies.getMaxValue() / 1e6));
+        out.println(line);
+    }
+
+    private static String trim(double percentile) {
+        return percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile);
+    }
+}
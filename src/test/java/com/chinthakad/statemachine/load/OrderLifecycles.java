@@ -0,0 +1,105 @@
+package com.chinthakad.statemachine.load;
+
+import com.chinthakad.statemachine.example.OrderEvent;
+import com.chinthakad.statemachine.example.OrderEventMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates order event sequences as they would arrive from Kafka: mostly complete lifecycles,
+ * some cancelled, with a configurable share of adjacent events swapped and events redelivered.
+ */
+public class OrderLifecycles {
+    private final Random random;
+    private double cancelRate = 0.1;
+    private double outOfOrderRate;
+    private double duplicateRate;
+
+    public OrderLifecycles(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public OrderLifecycles cancelRate(double cancelRate) {
+        this.cancelRate = cancelRate;
+        return this;
+    }
+
+    /**
+     * Share of lifecycles with one pair of adjacent events swapped.
+     */
+    public OrderLifecycles outOfOrderRate(double outOfOrderRate) {
+        this.outOfOrderRate = outOfOrderRate;
+        return this;
+    }
+
+    /**
+     * Share of lifecycles with one event delivered twice under the same event id.
+     */
+    public OrderLifecycles duplicateRate(double duplicateRate) {
+        this.duplicateRate = duplicateRate;
+        return this;
+    }
+
+    public List<OrderEventMessage> lifecycle(String orderId) {
+        List<OrderEvent> events = new ArrayList<>(4);
+        if (random.nextDouble() < cancelRate) {
+            if (random.nextBoolean()) {
+                events.add(OrderEvent.PAY);
+            }
+            events.add(OrderEvent.CANCEL);
+        } else {
+            events.add(OrderEvent.PAY);
+            events.add(OrderEvent.SHIP);
+            events.add(OrderEvent.DELIVER);
+        }
+        List<OrderEventMessage> messages = new ArrayList<>(events.size() + 1);
+        for (OrderEvent event : events) {
+            messages.add(new OrderEventMessage(orderId, event.name(), UUID.randomUUID().toString()));
+        }
+        if (messages.size() > 1 && random.nextDouble() < outOfOrderRate) {
+            int i = random.nextInt(messages.size() - 1);
+            Collections.swap(messages, i, i + 1);
+        }
+        if (random.nextDouble() < duplicateRate) {
+            int i = random.nextInt(messages.size());
+            OrderEventMessage original = messages.get(i);
+            int at = i + 1 + random.nextInt(messages.size() - i);
+            messages.add(at, new OrderEventMessage(original.orderId, original.event, original.eventId));
+        }
+        return messages;
+    }
+
+    /**
+     * Lifecycles of all orders, interleaved as concurrent traffic would be while keeping each
+     * order's own events in their generated order.
+     */
+    public List<OrderEventMessage> interleave(List<String> orderIds) {
+        List<List<OrderEventMessage>> lifecycles = new ArrayList<>(orderIds.size());
+        int total = 0;
+        for (String orderId : orderIds) {
+            List<OrderEventMessage> lifecycle = lifecycle(orderId);
+            lifecycles.add(lifecycle);
+            total += lifecycle.size();
+        }
+        int[] next = new int[lifecycles.size()];
+        List<Integer> open = new ArrayList<>(lifecycles.size());
+        for (int i = 0; i < lifecycles.size(); i++) {
+            open.add(i);
+        }
+        List<OrderEventMessage> log = new ArrayList<>(total);
+        while (!open.isEmpty()) {
+            int pick = random.nextInt(open.size());
+            int order = open.get(pick);
+            log.add(lifecycles.get(order).get(next[order]++));
+            if (next[order] == lifecycles.get(order).size()) {
+                open.set(pick, open.get(open.size() - 1));
+                open.remove(open.size() - 1);
+            }
+        }
+        return log;
+    }
+}
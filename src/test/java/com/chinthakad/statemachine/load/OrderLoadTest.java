@@ -0,0 +1,188 @@
+package com.chinthakad.statemachine.load;
+
+import com.chinthakad.statemachine.example.OrderEvent;
+import com.chinthakad.statemachine.example.OrderEventConsumer;
+import com.chinthakad.statemachine.example.OrderEventMessage;
+import com.chinthakad.statemachine.example.OrderState;
+import com.chinthakad.statemachine.example.OrderStateMachineFactory;
+import com.chinthakad.statemachine.framework.TransitionListener;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySource;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load against the running application. Only runs with {@code mvn test -Pload};
+ * rates, durations and injection rates come from the profile's properties.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = InMemoryOrderEvents.class, restrictToAnnotatedClass = true)
+@EnabledIfSystemProperty(named = "load", matches = "true")
+class OrderLoadTest {
+    static final double RATE = Double.parseDouble(System.getProperty("load.rate", "500"));
+    static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration.seconds", 20));
+    static final int ORDERS = Integer.getInteger("load.orders", 5000);
+    static final double OUT_OF_ORDER_RATE = Double.parseDouble(System.getProperty("load.out.of.order.rate", "0.05"));
+    static final double DUPLICATE_RATE = Double.parseDouble(System.getProperty("load.duplicate.rate", "0.05"));
+
+    @TestHTTPResource("/")
+    URL base;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    final HttpClient http = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+    final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void testOrderEndpoints() throws Exception {
+        List<String> ids = new CopyOnWriteArrayList<>();
+        LoadResult create = new LoadGenerator("POST /order", TrafficShape.constant(RATE), DURATION)
+                .run((seq, intended) -> ids.add(createOrder()));
+        LoadResult get = new LoadGenerator("GET /order/{id}", TrafficShape.constant(RATE), DURATION)
+                .run((seq, intended) -> send("GET", "order/" + randomOf(ids), 200));
+        LoadResult trigger = new LoadGenerator("POST trigger", TrafficShape.constant(RATE), DURATION)
+                .run((seq, intended) -> send("POST", "order/" + ids.get((int) (seq % ids.size())) + "/trigger/PAY", -1));
+        report(create, get, trigger);
+        assertEquals(0, create.getErrors());
+        assertEquals(0, get.getErrors());
+    }
+
+    @Test
+    void testBloomFilterCheck() throws Exception {
+        List<String> seen = new CopyOnWriteArrayList<>();
+        LoadResult check = new LoadGenerator("bloom check", TrafficShape.constant(RATE), DURATION)
+                .run((seq, intended) -> {
+                    // One in ten checks repeats an earlier item
+                    String item = seq % 10 == 9 && !seen.isEmpty() ? randomOf(seen) : UUID.randomUUID().toString();
+                    seen.add(item);
+                    send("POST", "bloom-filter/check", "{\"item\":\"" + item + "\"}", 200);
+                });
+        report(check);
+        assertEquals(0, check.getErrors());
+    }
+
+    @Test
+    void testOrderEventConsumer() throws Exception {
+        List<String> ids = new ArrayList<>(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            String id = UUID.randomUUID().toString();
+            OrderEventConsumer.getRepository().save(id, OrderStateMachineFactory.create());
+            ids.add(id);
+        }
+        List<OrderEventMessage> log = new OrderLifecycles(42)
+                .outOfOrderRate(OUT_OF_ORDER_RATE)
+                .duplicateRate(DUPLICATE_RATE)
+                .interleave(ids);
+
+        // Time from an event's intended send until the consumer applied it, pending time included
+        Map<String, Long> intendedByEvent = new ConcurrentHashMap<>();
+        Recorder applied = new Recorder(3);
+        AtomicLong appliedCount = new AtomicLong();
+        TransitionListener<OrderState, OrderEvent> listener = (id, from, event, to) -> {
+            Long intended = event == null ? null : intendedByEvent.remove(id + ":" + event);
+            if (intended != null) {
+                applied.recordValue(System.nanoTime() - intended);
+                appliedCount.incrementAndGet();
+            }
+        };
+        OrderEventConsumer.getRepository().addTransitionListener(listener);
+        InMemorySource<OrderEventMessage> source = connector.source("order-events");
+        Duration duration = Duration.ofNanos((long) (log.size() / RATE * 1e9));
+        try {
+            // One sender thread keeps the log order, as a single Kafka partition would
+            LoadResult send = new LoadGenerator("order-events send", TrafficShape.constant(RATE), duration,
+                    Executors.newSingleThreadExecutor())
+                    .run((seq, intended) -> {
+                        if (seq >= log.size()) {
+                            return;
+                        }
+                        OrderEventMessage message = log.get((int) seq);
+                        intendedByEvent.putIfAbsent(message.orderId + ":" + message.event, intended);
+                        source.send(message);
+                    });
+            awaitQuiet(appliedCount);
+            report(send);
+            // Events never applied (rejected, or dropped after their order completed) count as errors
+            new LoadResult("order-events apply", applied.getIntervalHistogram(), log.size(),
+                    intendedByEvent.size(), duration.toNanos()).report(System.out);
+        } finally {
+            OrderEventConsumer.getRepository().removeTransitionListener(listener);
+        }
+    }
+
+    private String createOrder() throws Exception {
+        HttpResponse<String> response = http.send(request("POST", "order", null), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("POST /order returned " + response.statusCode());
+        }
+        return mapper.readTree(response.body()).get("id").asText();
+    }
+
+    private void send(String method, String path, int expectedStatus) throws Exception {
+        send(method, path, null, expectedStatus);
+    }
+
+    /**
+     * @param expectedStatus -1 accepts any status, e.g. for triggers that may be invalid transitions
+     */
+    private void send(String method, String path, String body, int expectedStatus) throws Exception {
+        HttpResponse<Void> response = http.send(request(method, path, body), HttpResponse.BodyHandlers.discarding());
+        if (expectedStatus >= 0 && response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(method + " " + path + " returned " + response.statusCode());
+        }
+    }
+
+    private HttpRequest request(String method, String path, String body) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(base.toString()).resolve(path));
+        if (body != null) {
+            builder.header("Content-Type", "application/json");
+        }
+        return builder.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static String randomOf(List<String> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+
+    private static void awaitQuiet(AtomicLong counter) throws InterruptedException {
+        long last = -1;
+        for (int i = 0; i < 60 && counter.get() != last; i++) {
+            last = counter.get();
+            Thread.sleep(1000);
+        }
+    }
+
+    private static void report(LoadResult... results) {
+        for (LoadResult result : results) {
+            result.report(System.out);
+        }
+    }
+}
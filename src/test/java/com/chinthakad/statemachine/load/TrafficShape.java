@@ -0,0 +1,32 @@
+package com.chinthakad.statemachine.load;
+
+import java.time.Duration;
+
+/**
+ * Target request rate over the course of a run.
+ */
+@FunctionalInterface
+public interface TrafficShape {
+    double ratePerSecond(long elapsedNanos);
+
+    static TrafficShape constant(double ratePerSecond) {
+        return elapsed -> ratePerSecond;
+    }
+
+    /**
+     * Linear ramp from {@code from} to {@code to} over {@code over}, then steady at {@code to}.
+     */
+    static TrafficShape ramp(double from, double to, Duration over) {
+        long rampNanos = over.toNanos();
+        return elapsed -> elapsed >= rampNanos ? to : from + (to - from) * elapsed / rampNanos;
+    }
+
+    /**
+     * Steady {@code base} rate with {@code peak} between {@code start} and {@code start + length}.
+     */
+    static TrafficShape spike(double base, double peak, Duration start, Duration length) {
+        long from = start.toNanos();
+        long until = from + length.toNanos();
+        return elapsed -> elapsed >= from && elapsed < until ? peak : base;
+    }
+}